@@ -1,5 +1,4 @@
 import view.MainApplicationFrame;
-import util.NotificationListener;
 import javax.swing.*;
 
 /**
@@ -16,15 +15,7 @@ public class Main {
             e.printStackTrace();
         }
         
-        // Start notification listener in background
-        try {
-            NotificationListener.getInstance().startListening();
-        } catch (Exception e) {
-            System.err.println("Warning: Could not start notification listener. ActiveMQ may not be running.");
-            System.err.println("Notifications will not be available, but the application will continue to work.");
-        }
-        
-        // Start application with main frame
+        // Start application with main frame; notifications are subscribed at login (AuthController)
         SwingUtilities.invokeLater(() -> MainApplicationFrame.getInstance());
     }
 }
@@ -2,6 +2,7 @@ package controller;
 
 import model.User;
 import service.UserService;
+import util.NotificationListener;
 import util.PasswordUtil;
 import util.RMIClientUtil;
 import util.SessionManager;
@@ -35,6 +36,9 @@ public class AuthController {
             
             if (user != null) {
                 SessionManager.setCurrentUser(user);
+                
+                // Subscribe to this user's notifications in background (ActiveMQ may not be running)
+                NotificationListener.getInstance().startListening();
                 return true;
             } else {
                 JOptionPane.showMessageDialog(null, 
@@ -2,7 +2,13 @@ package dao;
 
 import controller.BookingController;
 import model.Booking;
+import model.BookingPage;
+import model.BookingQuery;
+import model.GroupReservationResult;
+import model.PaymentTransition;
+import model.StatusChange;
 import service.BookingService;
+import service.ExportCursor;
 import util.RMIClientUtil;
 import java.util.List;
 
@@ -39,13 +45,12 @@ public class BookingDAO {
         }
     }
     
-    public boolean createBooking(Booking booking) {
+    public BookingPage findBookings(BookingQuery query) {
         try {
-            Booking result = bookingService != null ? bookingService.createBooking(booking) : null;
-            return result != null;
+            return bookingService != null ? bookingService.findBookings(query) : null;
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
+            return null;
         }
     }
     
@@ -58,34 +63,48 @@ public class BookingDAO {
         }
     }
     
-    public String generateTicketNumber() {
+    public boolean updatePaymentStatus(int bookingId, String status) {
         try {
-            return bookingService != null ? bookingService.generateTicketNumber() : "TKT-" + System.currentTimeMillis();
+            return bookingService != null ? bookingService.updatePaymentStatus(bookingId, status) : false;
         } catch (Exception e) {
             e.printStackTrace();
-            return "TKT-" + System.currentTimeMillis();
+            return false;
         }
     }
     
-    public boolean updatePaymentStatus(int bookingId, String status) {
+    public GroupReservationResult createBookings(List<Booking> bookings) {
         try {
-            return bookingService != null ? bookingService.updatePaymentStatus(bookingId, status) : false;
+            return bookingService != null ? bookingService.createBookings(bookings) : null;
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
+            return null;
         }
     }
     
-    public boolean reactivateBooking(int bookingId) {
+    public PaymentTransition transitionPaymentStatus(int bookingId, String expectedStatus, String newStatus) {
         try {
-            // Reactivate by setting status back to pending
-            return bookingService != null ? bookingService.updatePaymentStatus(bookingId, "pending") : false;
+            return bookingService != null ? bookingService.transitionPaymentStatus(bookingId, expectedStatus, newStatus) : null;
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
+            return null;
         }
     }
     
+    public List<PaymentTransition> applyPaymentStatuses(List<StatusChange> changes) {
+        try {
+            return bookingService != null ? bookingService.applyPaymentStatuses(changes) : null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    public boolean reactivateBooking(int bookingId) {
+        // Reactivate by setting status back to pending, only if it is still cancelled
+        PaymentTransition transition = transitionPaymentStatus(bookingId, "cancelled", "pending");
+        return transition != null && transition.isApplied();
+    }
+    
     public Booking getBookingById(int bookingId) {
         try {
             Booking booking = new Booking();
@@ -96,5 +115,14 @@ public class BookingDAO {
             return null;
         }
     }
+    
+    public ExportCursor exportBookings() {
+        try {
+            return bookingService != null ? bookingService.exportBookings() : null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 }
 
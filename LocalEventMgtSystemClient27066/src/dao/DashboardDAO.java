@@ -1,55 +1,43 @@
 package dao;
 
-import model.Booking;
-import model.Event;
-import service.BookingService;
-import service.EventService;
+import model.DashboardSnapshot;
+import service.DashboardService;
 import util.RMIClientUtil;
-import java.util.List;
 
 /**
  * Dashboard DAO - Client-side wrapper using RMI services
- * Provides aggregated data for dashboard views
+ * Provides aggregated data for dashboard views; all figures come from one
+ * server-side snapshot computed with COUNT/SUM queries
  * 
  * @author 27066
  */
 public class DashboardDAO {
-    private EventService eventService;
-    private BookingService bookingService;
+    private DashboardService dashboardService;
     
     public DashboardDAO() {
-        eventService = RMIClientUtil.getEventService();
-        bookingService = RMIClientUtil.getBookingService();
+        dashboardService = RMIClientUtil.getDashboardService();
     }
     
-    public int getTotalEvents() {
+    public DashboardSnapshot getSnapshot() {
         try {
-            List<Event> events = eventService != null ? eventService.findAllEvents() : null;
-            return events != null ? events.size() : 0;
+            DashboardSnapshot snapshot = dashboardService != null ? dashboardService.getSnapshot() : null;
+            return snapshot != null ? snapshot : new DashboardSnapshot();
         } catch (Exception e) {
             e.printStackTrace();
-            return 0;
+            return new DashboardSnapshot();
         }
     }
     
+    public int getTotalEvents() {
+        return (int) getSnapshot().getTotalEvents();
+    }
+    
     public int getTotalBookings() {
-        try {
-            List<Booking> bookings = bookingService != null ? bookingService.findAllBookings() : null;
-            return bookings != null ? bookings.size() : 0;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
-        }
+        return (int) getSnapshot().getTotalBookings();
     }
     
     public int getScheduledEventsCount() {
-        try {
-            List<Event> events = eventService != null ? eventService.findScheduledEvents() : null;
-            return events != null ? events.size() : 0;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
-        }
+        return (int) getSnapshot().getScheduledEvents();
     }
     
     public int getUpcomingEventsCount() {
@@ -57,32 +45,10 @@ public class DashboardDAO {
     }
     
     public int getTotalUsers() {
-        try {
-            // This would require UserService - for now return 0 or implement if needed
-            // You can add UserService to DashboardDAO if needed
-            return 0; // Placeholder
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
-        }
+        return (int) getSnapshot().getTotalUsers();
     }
     
     public double getTotalRevenue() {
-        try {
-            List<Booking> bookings = bookingService != null ? bookingService.findAllBookings() : null;
-            if (bookings == null) return 0.0;
-            
-            double total = 0.0;
-            for (Booking booking : bookings) {
-                if ("paid".equals(booking.getPaymentStatus())) {
-                    total += booking.getTotalAmount();
-                }
-            }
-            return total;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0.0;
-        }
+        return getSnapshot().getPaidRevenue();
     }
 }
-
@@ -2,8 +2,11 @@ package dao;
 
 import model.Event;
 import service.EventService;
+import service.ExportCursor;
 import util.RMIClientUtil;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Event DAO - Client-side wrapper using RMI services
@@ -45,6 +48,15 @@ public class EventDAO {
         }
     }
     
+    public List<Event> getScheduledEventsWithAvailability() {
+        try {
+            return eventService != null ? eventService.findScheduledEventsWithAvailability() : null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
     public Event getEventById(int eventId) {
         try {
             Event event = new Event();
@@ -96,5 +108,22 @@ public class EventDAO {
             return 0;
         }
     }
+    
+    public Map<Integer, Integer> getAvailableCapacities(Collection<Integer> eventIds) {
+        try {
+            return eventService != null ? eventService.getAvailableCapacities(eventIds) : null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    public ExportCursor exportEvents() {
+        try {
+            return eventService != null ? eventService.exportEvents() : null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 }
-
@@ -0,0 +1,61 @@
+package dao;
+
+import java.util.List;
+import model.InboxNotification;
+import service.NotificationService;
+import util.RMIClientUtil;
+
+/**
+ * Notification DAO - Client-side wrapper for the server-side notification inbox
+ * 
+ * @author 27066
+ */
+public class NotificationDAO {
+    private NotificationService notificationService;
+    
+    public NotificationDAO() {
+        notificationService = RMIClientUtil.getNotificationService();
+    }
+    
+    public boolean isAvailable() {
+        return notificationService != null;
+    }
+    
+    // null when the server could not be reached
+    public List<InboxNotification> fetchSince(int userId, long cursor, int limit) {
+        try {
+            return notificationService != null ? notificationService.fetchSince(userId, cursor, limit) : null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    // -1 when the server could not be reached
+    public int unreadCount(int userId) {
+        try {
+            return notificationService != null ? notificationService.unreadCount(userId) : -1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+    
+    public int markRead(int userId, List<Long> notificationIds) {
+        try {
+            return notificationService != null ? notificationService.markRead(userId, notificationIds) : -1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+    
+    public int markAllRead(int userId) {
+        try {
+            return notificationService != null ? notificationService.markAllRead(userId) : -1;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+}
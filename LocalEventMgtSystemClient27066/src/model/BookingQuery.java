@@ -0,0 +1,57 @@
+package model;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Booking search filters and page request (Client side)
+ * - null filters are ignored
+ * - fromDate is inclusive, toDate is exclusive
+ * - after is the cursor returned with the previous page (null for the first page)
+ * 
+ * @author 27066
+ */
+public class BookingQuery implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    
+    private String paymentStatus;
+    private Integer eventId;
+    private Integer userId;
+    private Timestamp fromDate;
+    private Timestamp toDate;
+    private String ticketNumberPrefix;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private BookingCursor after;
+
+    // Constructors
+    public BookingQuery() {}
+
+    // Getters and setters
+    public String getPaymentStatus() { return paymentStatus; }
+    public void setPaymentStatus(String paymentStatus) { this.paymentStatus = paymentStatus; }
+    
+    public Integer getEventId() { return eventId; }
+    public void setEventId(Integer eventId) { this.eventId = eventId; }
+    
+    public Integer getUserId() { return userId; }
+    public void setUserId(Integer userId) { this.userId = userId; }
+    
+    public Timestamp getFromDate() { return fromDate; }
+    public void setFromDate(Timestamp fromDate) { this.fromDate = fromDate; }
+    
+    public Timestamp getToDate() { return toDate; }
+    public void setToDate(Timestamp toDate) { this.toDate = toDate; }
+    
+    public String getTicketNumberPrefix() { return ticketNumberPrefix; }
+    public void setTicketNumberPrefix(String ticketNumberPrefix) { this.ticketNumberPrefix = ticketNumberPrefix; }
+    
+    public int getPageSize() { return pageSize; }
+    public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+    
+    public BookingCursor getAfter() { return after; }
+    public void setAfter(BookingCursor after) { this.after = after; }
+}
@@ -22,6 +22,7 @@ public class Event implements Serializable {
     private int venueId;
     private int organizerId;
     private int capacity;
+    private Integer remainingCapacity; // Filled by findScheduledEventsWithAvailability
     private double ticketPrice;
     private Double vvipPrice;  // Must match server (Double wrapper for nullable fields)
     private Double vipPrice;   // Must match server (Double wrapper for nullable fields)
@@ -76,6 +77,9 @@ public class Event implements Serializable {
     public int getCapacity() { return capacity; }
     public void setCapacity(int capacity) { this.capacity = capacity; }
     
+    public Integer getRemainingCapacity() { return remainingCapacity; }
+    public void setRemainingCapacity(Integer remainingCapacity) { this.remainingCapacity = remainingCapacity; }
+    
     public double getTicketPrice() { return ticketPrice; }
     public void setTicketPrice(double ticketPrice) { this.ticketPrice = ticketPrice; }
     
@@ -0,0 +1,62 @@
+package model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of an all-or-nothing group reservation returned over RMI
+ * - accepted: every requested booking was priced, numbered and inserted
+ * - rejected: nothing was written, message explains why and
+ *   remainingCapacity holds the seats left for the events involved
+ * 
+ * @author 27066
+ */
+public class GroupReservationResult implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private boolean accepted;
+    private List<Booking> bookings = new ArrayList<>();
+    private Map<Integer, Integer> remainingCapacity = new HashMap<>();
+    private String message;
+
+    // Constructors
+    public GroupReservationResult() {}
+
+    public GroupReservationResult(boolean accepted, String message) {
+        this.accepted = accepted;
+        this.message = message;
+    }
+    
+    public int getTotalTickets() {
+        int total = 0;
+        for (Booking booking : bookings) {
+            total += booking.getNumberOfTickets();
+        }
+        return total;
+    }
+    
+    public double getTotalAmount() {
+        double total = 0;
+        for (Booking booking : bookings) {
+            total += booking.getTotalAmount();
+        }
+        return total;
+    }
+
+    // Getters and setters
+    public boolean isAccepted() { return accepted; }
+    public void setAccepted(boolean accepted) { this.accepted = accepted; }
+    
+    public List<Booking> getBookings() { return bookings; }
+    public void setBookings(List<Booking> bookings) { this.bookings = bookings; }
+    
+    public Map<Integer, Integer> getRemainingCapacity() { return remainingCapacity; }
+    public void setRemainingCapacity(Map<Integer, Integer> remainingCapacity) { this.remainingCapacity = remainingCapacity; }
+    
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,44 @@
+package model;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Inbox notification model for Client (POJO without Hibernate annotations)
+ * 
+ * @author 27066
+ */
+public class InboxNotification implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private long notificationId;
+    private int userId;
+    private String notificationType;
+    private String body;
+    private Timestamp createdAt;
+    private Timestamp readAt;
+    
+    public InboxNotification() {}
+    
+    // Getters and setters
+    public long getNotificationId() { return notificationId; }
+    public void setNotificationId(long notificationId) { this.notificationId = notificationId; }
+    
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+    
+    public String getNotificationType() { return notificationType; }
+    public void setNotificationType(String notificationType) { this.notificationType = notificationType; }
+    
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+    
+    public Timestamp getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
+    
+    public Timestamp getReadAt() { return readAt; }
+    public void setReadAt(Timestamp readAt) { this.readAt = readAt; }
+    
+    public boolean isRead() { return readAt != null; }
+}
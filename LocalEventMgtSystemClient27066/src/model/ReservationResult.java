@@ -0,0 +1,43 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * Result of an atomic ticket reservation (Client side)
+ * - accepted: the capacity counter was decremented and the booking inserted
+ * - rejected: nothing was written, message explains why
+ * 
+ * @author 27066
+ */
+public class ReservationResult implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private boolean accepted;
+    private Booking booking;
+    private int remainingCapacity;
+    private String message;
+
+    // Constructors
+    public ReservationResult() {}
+
+    public ReservationResult(boolean accepted, Booking booking, int remainingCapacity, String message) {
+        this.accepted = accepted;
+        this.booking = booking;
+        this.remainingCapacity = remainingCapacity;
+        this.message = message;
+    }
+
+    // Getters and setters
+    public boolean isAccepted() { return accepted; }
+    public void setAccepted(boolean accepted) { this.accepted = accepted; }
+    
+    public Booking getBooking() { return booking; }
+    public void setBooking(Booking booking) { this.booking = booking; }
+    
+    public int getRemainingCapacity() { return remainingCapacity; }
+    public void setRemainingCapacity(int remainingCapacity) { this.remainingCapacity = remainingCapacity; }
+    
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,16 @@
+package service;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import model.DashboardSnapshot;
+
+/**
+ * Remote interface for Dashboard Service (Client side)
+ * 
+ * @author 27066
+ */
+public interface DashboardService extends Remote {
+    
+    // Aggregated statistics in one round trip
+    DashboardSnapshot getSnapshot() throws RemoteException;
+}
@@ -2,7 +2,9 @@ package service;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import model.Event;
 
 /**
@@ -23,5 +25,12 @@ public interface EventService extends Remote {
     List<Event> findEventsByOrganizer(int organizerId) throws RemoteException;
     List<Event> findScheduledEvents() throws RemoteException;
     int getAvailableCapacity(int eventId) throws RemoteException;
+    
+    // Bulk operations (one round trip instead of one call per event)
+    Map<Integer, Integer> getAvailableCapacities(Collection<Integer> eventIds) throws RemoteException;
+    List<Event> findScheduledEventsWithAvailability() throws RemoteException;
+    
+    // Streaming report export: rows are pulled in chunks from a server-side cursor (null when busy)
+    ExportCursor exportEvents() throws RemoteException;
 }
 
@@ -0,0 +1,24 @@
+package service;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Remote chunk iterator over a server-side export cursor.
+ * Call nextChunk() until it returns an empty list, then close().
+ * Values in a row are serializable JDK types (Integer, String, Double, java.sql dates) or null.
+ * 
+ * @author 27066
+ */
+public interface ExportCursor extends Remote {
+    
+    // Column headers, in row order
+    String[] getHeaders() throws RemoteException;
+    
+    // Next rows (at most the server's chunk size); empty once the export is complete
+    List<Object[]> nextChunk() throws RemoteException;
+    
+    // Release the cursor and its database connection; safe to call more than once
+    void close() throws RemoteException;
+}
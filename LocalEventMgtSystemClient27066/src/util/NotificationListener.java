@@ -1,35 +1,57 @@
 package util;
 
 import javax.jms.*;
-import javax.swing.*;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import util.SessionManager;
-import util.NotificationManager;
+import model.User;
 
 /**
  * Notification Listener for receiving real-time notifications via ActiveMQ
- * 
+ *
+ * The server publishes each notification on its audience's topic
+ * (notifications.admin / notifications.customer). On login this listener
+ * subscribes the current user with a JMS selector, so the broker does the
+ * fan-out and filtering and only this user's traffic reaches the desktop:
+ * - admins: every message on notifications.admin
+ * - customers: broadcasts (no userId) and messages for their own userId
+ * - the subscription is durable (client id per user), so messages sent while the
+ *   desktop was closed are delivered at the next login, until the server's
+ *   time-to-live expires them; a second desktop of the same user falls back to
+ *   a non-durable subscription
+ * - a message only wakes NotificationManager, which fetches the new entries from
+ *   the server-side inbox (or keeps the pushed text when the server has none)
+ * - a BytesMessage is a NotificationEnvelope packing every notification for this
+ *   user from one server batch; it is read into a reused buffer and walked in place
+ *   by a reused reader (messages arrive on the session thread, one at a time); an
+ *   envelope this reader cannot read (a newer version) only triggers an inbox fetch;
+ *   TextMessages from a server sending notifications.format=text are still accepted
+ *
  * @author 27066
  */
 public class NotificationListener {
     
-    private static final String BROKER_URL = "tcp://localhost:61616";
-    private static final String QUEUE_NAME = "payment.notifications";
+    private static final String BROKER_URL = System.getProperty("notifications.brokerUrl", "tcp://localhost:61616");
+    private static final String TOPIC_PREFIX = "notifications.";
+    private static final String CLIENT_ID_PREFIX = "event-desktop-";
     
     private Connection connection;
-    private Session session;
-    private MessageConsumer consumer;
-    private ExecutorService executor;
+    private final ExecutorService executor;
+    private byte[] envelope = new byte[1024];
+    private final NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader();
     
     private static NotificationListener instance;
     
     private NotificationListener() {
-        executor = Executors.newSingleThreadExecutor();
+        // Connects and disconnects off the EDT, in login/logout order
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "notification-listener");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
-    public static NotificationListener getInstance() {
+    public static synchronized NotificationListener getInstance() {
         if (instance == null) {
             instance = new NotificationListener();
         }
@@ -37,194 +59,104 @@ public class NotificationListener {
     }
     
     /**
-     * Start listening for notifications
+     * Start listening for the logged-in user's notifications (no-op when nobody is logged in)
      */
     public void startListening() {
+        User user = SessionManager.getCurrentUser();
+        if (user == null) {
+            return;
+        }
+        // Notifications sent while this user was away are read from the server inbox
+        NotificationManager.getInstance().startSession(user.getUserId());
         executor.submit(() -> {
+            closeConnection();
+            String role = user.getUserRole();
+            if (!"admin".equals(role) && !"customer".equals(role)) {
+                return; // No notifications are addressed to other roles
+            }
             try {
                 ConnectionFactory connectionFactory = new ActiveMQConnectionFactory(BROKER_URL);
+                boolean durable = true;
                 connection = connectionFactory.createConnection();
-                connection.start();
-                session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-                Queue queue = session.createQueue(QUEUE_NAME);
-                consumer = session.createConsumer(queue);
-                
-                System.out.println("Notification listener started. Waiting for notifications...");
+                try {
+                    connection.setClientID(CLIENT_ID_PREFIX + user.getUserId());
+                } catch (InvalidClientIDException e) {
+                    // Same user already connected from another desktop
+                    connection.close();
+                    connection = connectionFactory.createConnection();
+                    durable = false;
+                }
                 
-                while (true) {
-                    Message message = consumer.receive();
-                    if (message instanceof TextMessage) {
-                        TextMessage textMessage = (TextMessage) message;
-                        String notificationText = textMessage.getText();
-                        String notificationType = textMessage.getStringProperty("notificationType");
-                        String targetRole = textMessage.getStringProperty("targetRole");
-                        String userId = textMessage.getStringProperty("userId");
-                        
-                        // Check if notification should be shown to current user
-                        if (shouldShowNotification(targetRole, userId)) {
-                            handleNotification(notificationType, notificationText);
+                Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                Topic topic = session.createTopic(TOPIC_PREFIX + role);
+                String selector = "admin".equals(role)
+                    ? "targetRole = 'admin'"
+                    : "targetRole = 'customer' AND (userId IS NULL OR userId = '" + user.getUserId() + "')";
+                MessageConsumer consumer = durable
+                    ? session.createDurableSubscriber(topic, role + "-" + user.getUserId(), selector, false)
+                    : session.createConsumer(topic, selector);
+                consumer.setMessageListener(message -> {
+                    try {
+                        if (message instanceof BytesMessage) {
+                            onEnvelope((BytesMessage) message);
+                        } else if (message instanceof TextMessage) {
+                            TextMessage textMessage = (TextMessage) message;
+                            NotificationManager.getInstance().onPushed(
+                                textMessage.getStringProperty("notificationType"), textMessage.getText());
                         }
+                    } catch (JMSException | IllegalArgumentException e) {
+                        System.err.println("Error reading notification: " + e.getMessage());
                     }
-                }
+                });
+                connection.start();
+                
+                System.out.println("Notification listener started for " + role + " " + user.getUserId()
+                    + (durable ? " (durable)" : "") + ". Waiting for notifications...");
             } catch (JMSException e) {
                 System.err.println("Error in notification listener: " + e.getMessage());
                 // Don't print stack trace for connection errors (ActiveMQ may not be running)
-                if (!e.getMessage().contains("Connection refused")) {
+                if (e.getMessage() == null || !e.getMessage().contains("Connection refused")) {
                     e.printStackTrace();
                 }
+                closeConnection();
             }
         });
     }
     
-    /**
-     * Check if notification should be shown to current user based on role and userId
-     */
-    private boolean shouldShowNotification(String targetRole, String userId) {
-        if (!SessionManager.isLoggedIn()) {
-            return false; // Don't show notifications if not logged in
-        }
-        
-        // If targetRole is "admin", only show to admins
-        if ("admin".equals(targetRole)) {
-            return SessionManager.isAdmin();
+    private void onEnvelope(BytesMessage message) throws JMSException {
+        int length = (int) message.getBodyLength();
+        if (length > envelope.length) {
+            envelope = new byte[Math.max(length, envelope.length * 2)];
         }
-        
-        // If targetRole is "customer", show to customers
-        if ("customer".equals(targetRole)) {
-            // If userId is specified, only show to that specific user
-            if (userId != null && !userId.isEmpty()) {
-                try {
-                    int targetUserId = Integer.parseInt(userId);
-                    return SessionManager.getCurrentUser() != null && 
-                           SessionManager.getCurrentUser().getUserId() == targetUserId;
-                } catch (NumberFormatException e) {
-                    // If userId parsing fails, show to all customers
-                    return SessionManager.isCustomer();
-                }
-            }
-            // If no userId specified, show to all customers
-            return SessionManager.isCustomer();
+        message.readBytes(envelope, length);
+        try {
+            reader.reset(envelope, length);
+        } catch (IllegalArgumentException e) {
+            // Newer envelope version (or another format): the server-side inbox still has these notifications
+            System.err.println("Cannot read notification envelope (" + e.getMessage() + "), fetching the inbox instead");
+            NotificationManager.getInstance().refresh();
+            return;
         }
-        
-        // Default: show to all logged-in users
-        return true;
+        NotificationManager.getInstance().onPushed(reader);
     }
     
     /**
-     * Handle incoming notification
+     * Stop listening for notifications (on logout); a durable subscription keeps collecting
+     * the user's notifications on the broker until the next login
      */
-    private void handleNotification(String notificationType, String message) {
-        SwingUtilities.invokeLater(() -> {
+    public void stopListening() {
+        executor.submit(this::closeConnection);
+        NotificationManager.getInstance().endSession();
+    }
+    
+    private void closeConnection() {
+        if (connection != null) {
             try {
-                String[] parts = message.split("\\|");
-                NotificationManager notificationManager = NotificationManager.getInstance();
-                
-                if ("PAYMENT_CONFIRMED".equals(notificationType)) {
-                    if (parts.length >= 8) {
-                        String ticketNumber = parts[1];
-                        String eventName = parts[5];
-                        String amount = parts[6];
-                        
-                        String title = "Payment Confirmed! 🎉";
-                        String notificationMessage = String.format(
-                            "Ticket Number: %s\nEvent: %s\nAmount: RWF %s\n\nYour payment has been confirmed. You can now print your ticket!",
-                            ticketNumber, eventName, amount
-                        );
-                        
-                        notificationManager.addNotification(notificationType, title, notificationMessage);
-                    }
-                } else if ("TICKET_READY".equals(notificationType)) {
-                    if (parts.length >= 6) {
-                        String ticketNumber = parts[1];
-                        String eventName = parts[5];
-                        
-                        String title = "Ticket Ready! 🎫";
-                        String notificationMessage = String.format(
-                            "Ticket Number: %s\nEvent: %s\n\nYour ticket is ready to print!",
-                            ticketNumber, eventName
-                        );
-                        
-                        notificationManager.addNotification(notificationType, title, notificationMessage);
-                    }
-                } else if ("NEW_EVENT".equals(notificationType)) {
-                    if (parts.length >= 5) {
-                        String eventName = parts[1];
-                        String eventDate = parts.length > 3 ? parts[3] : "";
-                        String eventTime = parts.length > 4 ? parts[4] : "";
-                        
-                        String title = "New Event Available! 🎊";
-                        String notificationMessage = String.format(
-                            "Event: %s\n%s%s\n\nCheck out this new event and book your tickets now!",
-                            eventName,
-                            eventDate.isEmpty() ? "" : "Date: " + eventDate + "\n",
-                            eventTime.isEmpty() ? "" : "Time: " + eventTime + "\n"
-                        );
-                        
-                        notificationManager.addNotification(notificationType, title, notificationMessage);
-                    }
-                } else if ("NEW_BOOKING".equals(notificationType)) {
-                    if (parts.length >= 8) {
-                        String customerName = parts[2];
-                        String eventName = parts[4];
-                        String ticketNumber = parts[5];
-                        String amount = parts[6];
-                        String status = parts[7];
-                        
-                        String title = "New Booking Received! 📋";
-                        String notificationMessage = String.format(
-                            "Customer: %s\nEvent: %s\nTicket Number: %s\nAmount: RWF %s\nStatus: %s\n\nPlease review and confirm payment.",
-                            customerName, eventName, ticketNumber, amount, status
-                        );
-                        
-                        notificationManager.addNotification(notificationType, title, notificationMessage);
-                    }
-                } else if ("BOOKING_APPROVED".equals(notificationType)) {
-                    if (parts.length >= 5) {
-                        String ticketNumber = parts[1];
-                        String eventName = parts[3];
-                        String amount = parts[4];
-                        
-                        String title = "Booking Approved! ✅";
-                        String notificationMessage = String.format(
-                            "Ticket Number: %s\nEvent: %s\nAmount: RWF %s\n\nYour booking has been approved. You can now print your ticket!",
-                            ticketNumber, eventName, amount
-                        );
-                        
-                        notificationManager.addNotification(notificationType, title, notificationMessage);
-                    }
-                } else if ("EVENT_EXPIRED".equals(notificationType)) {
-                    if (parts.length >= 3) {
-                        String eventName = parts[1];
-                        String eventDate = parts[2];
-                        
-                        String title = "Event Expired! ⚠️";
-                        String notificationMessage = String.format(
-                            "Event: %s\nDate: %s\n\nThis event has expired. You can now delete it even if payments were made.",
-                            eventName, eventDate
-                        );
-                        
-                        notificationManager.addNotification(notificationType, title, notificationMessage);
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("Error handling notification: " + e.getMessage());
+                connection.close();
+            } catch (JMSException e) {
                 e.printStackTrace();
             }
-        });
-    }
-    
-    /**
-     * Stop listening for notifications
-     */
-    public void stopListening() {
-        try {
-            if (consumer != null) consumer.close();
-            if (session != null) session.close();
-            if (connection != null) connection.close();
-            if (executor != null) executor.shutdown();
-        } catch (JMSException e) {
-            e.printStackTrace();
+            connection = null;
         }
     }
 }
-
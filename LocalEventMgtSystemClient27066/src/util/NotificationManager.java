@@ -1,35 +1,224 @@
 package util;
 
+import dao.NotificationDAO;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.SwingUtilities;
+import model.InboxNotification;
 
 /**
  * Notification Manager to track unread notifications
- * 
+ *
+ * The logged-in user's notifications come from the server-side inbox
+ * (notificationService), so nothing sent while the desktop was closed is missed:
+ * - startSession loads the newest page and the server's unread count
+ * - a broker push only triggers an incremental fetchSince(cursor); pushes that
+ *   arrive while a fetch is pending share it
+ * - read marks are sent to the server, which keeps the authoritative unread count
+ * - without the inbox service (older server) pushed notifications are kept in memory
+ *   as before
+ * - the server coalesces: a COMPOSITE carries several notifications about one booking
+ *   or event and is shown as one entry, a DIGEST summarises a bulk operation
+ * - pushes arrive as binary NotificationEnvelopes (or single TextMessages from a
+ *   server running notifications.format=text)
+ * Server calls run on one background thread, never on the EDT.
+ *
  * @author 27066
  */
 public class NotificationManager {
     
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_KEPT = 200;
+    private static final int DIGEST_DETAILS = 10; // Booking lines shown in a digest
+    
+    // Digest lines per notification type
+    private static final Map<String, String> DIGEST_LINES = new HashMap<>();
+    static {
+        DIGEST_LINES.put("PAYMENT_CONFIRMED", "payments confirmed");
+        DIGEST_LINES.put("TICKET_READY", "tickets ready");
+        DIGEST_LINES.put("BOOKING_APPROVED", "bookings approved");
+        DIGEST_LINES.put("NEW_EVENT", "new events");
+        DIGEST_LINES.put("NEW_BOOKING", "new bookings");
+        DIGEST_LINES.put("NEW_GROUP_BOOKING", "new group bookings");
+        DIGEST_LINES.put("EVENT_EXPIRED", "events expired");
+        DIGEST_LINES.put("RESERVATION_DELAYED", "reservations not saved yet");
+    }
+    
+    // Positions of the ticket number, event name and amount in each type's body (-1: none),
+    // for the per-booking lines of a digest
+    private static final Map<String, int[]> DIGEST_FIELDS = new HashMap<>();
+    static {
+        DIGEST_FIELDS.put("PAYMENT_CONFIRMED", new int[] {2, 6, 7});
+        DIGEST_FIELDS.put("TICKET_READY", new int[] {2, 6, -1});
+        DIGEST_FIELDS.put("BOOKING_APPROVED", new int[] {2, 4, 5});
+        DIGEST_FIELDS.put("NEW_EVENT", new int[] {-1, 2, -1});
+        DIGEST_FIELDS.put("NEW_BOOKING", new int[] {6, 5, 7});
+        DIGEST_FIELDS.put("NEW_GROUP_BOOKING", new int[] {-1, 6, 5});
+        DIGEST_FIELDS.put("EVENT_EXPIRED", new int[] {-1, 2, -1});
+        DIGEST_FIELDS.put("RESERVATION_DELAYED", new int[] {1, 3, 6});
+    }
+    
     private static NotificationManager instance;
     private List<Notification> notifications;
     private List<NotificationCountListener> listeners;
-    private int unreadCount;
+    private volatile int unreadCount;
+    
+    private final NotificationDAO notificationDAO;
+    private final ExecutorService syncExecutor;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private volatile int userId;
+    private long cursor;
     
     public NotificationManager() {
         notifications = new CopyOnWriteArrayList<>();
         listeners = new CopyOnWriteArrayList<>();
         unreadCount = 0;
+        notificationDAO = new NotificationDAO();
+        syncExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "notification-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
-    public static NotificationManager getInstance() {
+    public static synchronized NotificationManager getInstance() {
         if (instance == null) {
             instance = new NotificationManager();
         }
         return instance;
     }
     
+    /**
+     * Show the inbox of a user who just logged in
+     */
+    public void startSession(int userId) {
+        syncExecutor.submit(() -> {
+            this.userId = userId;
+            cursor = 0;
+            notifications.clear();
+            unreadCount = 0;
+            notifyListeners();
+        });
+        refresh();
+    }
+    
+    /**
+     * Forget the logged-out user's notifications
+     */
+    public void endSession() {
+        syncExecutor.submit(() -> {
+            userId = 0;
+            cursor = 0;
+            notifications.clear();
+            unreadCount = 0;
+            notifyListeners();
+        });
+    }
+    
+    /**
+     * Fetch notifications newer than the cursor in the background
+     */
+    public void refresh() {
+        if (notificationDAO.isAvailable() && refreshPending.compareAndSet(false, true)) {
+            syncExecutor.submit(this::sync);
+        }
+    }
+    
+    private void sync() {
+        refreshPending.set(false);
+        int user = userId;
+        if (user == 0) {
+            return;
+        }
+        List<InboxNotification> page;
+        do {
+            page = notificationDAO.fetchSince(user, cursor, PAGE_SIZE);
+            if (page == null) {
+                return; // Server unreachable; the next push or login retries from the same cursor
+            }
+            for (InboxNotification row : page) {
+                Notification notification = describe(row.getNotificationType(), row.getBody());
+                if (notification != null) {
+                    notification.id = row.getNotificationId();
+                    notification.timestamp = row.getCreatedAt() != null ? row.getCreatedAt().getTime() : notification.timestamp;
+                    notification.read = row.isRead();
+                    notifications.add(0, notification); // Add to beginning (newest first)
+                }
+                cursor = row.getNotificationId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        
+        while (notifications.size() > MAX_KEPT) {
+            notifications.remove(notifications.size() - 1);
+        }
+        int unread = notificationDAO.unreadCount(user);
+        if (unread >= 0) {
+            unreadCount = unread;
+        }
+        notifyListeners();
+    }
+    
+    /**
+     * A notification pushed by the broker: fetch it from the inbox, or keep it in memory
+     * when the server has no inbox service
+     */
+    public void onPushed(String type, String message) {
+        if (notificationDAO.isAvailable()) {
+            refresh();
+            return;
+        }
+        keep(describe(type, message));
+    }
+    
+    /**
+     * A binary envelope pushed by the broker: with the inbox service nothing is decoded,
+     * the envelope only triggers a fetch; otherwise each record (or group of records
+     * forming one COMPOSITE) is kept in memory. The reader is only used during this call.
+     */
+    public void onPushed(NotificationEnvelope.Reader envelope) {
+        if (notificationDAO.isAvailable()) {
+            refresh();
+            return;
+        }
+        StringBuilder body = new StringBuilder(256);
+        String type = null;
+        while (envelope.next()) {
+            if (envelope.isGrouped()) {
+                body.append('\u001E');
+                type = "COMPOSITE";
+            } else {
+                if (type != null) {
+                    keep(describe(type, body.toString()));
+                }
+                body.setLength(0);
+                type = envelope.type();
+            }
+            envelope.appendBody(body);
+        }
+        if (type != null) {
+            keep(describe(type, body.toString()));
+        }
+    }
+    
+    private void keep(Notification notification) {
+        if (notification != null) {
+            SwingUtilities.invokeLater(() -> {
+                notifications.add(0, notification); // Add to beginning (newest first)
+                unreadCount++;
+                notifyListeners();
+            });
+        }
+    }
+    
     /**
      * Add a new notification
      */
@@ -49,6 +238,7 @@ public class NotificationManager {
         }
         unreadCount = 0;
         notifyListeners();
+        updateServer(null);
     }
     
     /**
@@ -59,12 +249,33 @@ public class NotificationManager {
             Notification notification = notifications.get(index);
             if (!notification.isRead()) {
                 notification.setRead(true);
-                unreadCount--;
+                unreadCount = Math.max(0, unreadCount - 1);
                 notifyListeners();
+                if (notification.id > 0) {
+                    updateServer(Collections.singletonList(notification.id));
+                }
             }
         }
     }
     
+    // Send read marks (null = all) and take the server's remaining unread count
+    private void updateServer(List<Long> ids) {
+        if (!notificationDAO.isAvailable()) {
+            return;
+        }
+        syncExecutor.submit(() -> {
+            int user = userId;
+            if (user == 0) {
+                return;
+            }
+            int unread = ids == null ? notificationDAO.markAllRead(user) : notificationDAO.markRead(user, ids);
+            if (unread >= 0 && user == userId) {
+                unreadCount = unread;
+                notifyListeners();
+            }
+        });
+    }
+    
     /**
      * Get all notifications
      */
@@ -80,12 +291,13 @@ public class NotificationManager {
     }
     
     /**
-     * Clear all notifications
+     * Clear all notifications; they are marked read and stay in the server inbox
      */
     public void clearAll() {
         notifications.clear();
         unreadCount = 0;
         notifyListeners();
+        updateServer(null);
     }
     
     /**
@@ -113,10 +325,236 @@ public class NotificationManager {
         });
     }
     
+    /**
+     * Title and text for a notification body (pipe-separated, as sent by the server);
+     * null for unknown types and malformed bodies
+     */
+    private static Notification describe(String notificationType, String message) {
+        try {
+            if ("COMPOSITE".equals(notificationType)) {
+                return describeComposite(message);
+            } else if ("DIGEST".equals(notificationType)) {
+                return describeDigest(message);
+            }
+            String[] parts = message.split("\\|");
+            
+            if ("PAYMENT_CONFIRMED".equals(notificationType)) {
+                if (parts.length >= 8) {
+                    String ticketNumber = parts[1];
+                    String eventName = parts[5];
+                    String amount = parts[6];
+                    
+                    String title = "Payment Confirmed! 🎉";
+                    String notificationMessage = String.format(
+                        "Ticket Number: %s\nEvent: %s\nAmount: RWF %s\n\nYour payment has been confirmed. You can now print your ticket!",
+                        ticketNumber, eventName, amount
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            } else if ("TICKET_READY".equals(notificationType)) {
+                if (parts.length >= 6) {
+                    String ticketNumber = parts[1];
+                    String eventName = parts[5];
+                    
+                    String title = "Ticket Ready! 🎫";
+                    String notificationMessage = String.format(
+                        "Ticket Number: %s\nEvent: %s\n\nYour ticket is ready to print!",
+                        ticketNumber, eventName
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            } else if ("NEW_EVENT".equals(notificationType)) {
+                if (parts.length >= 5) {
+                    String eventName = parts[1];
+                    String eventDate = parts.length > 3 ? parts[3] : "";
+                    String eventTime = parts.length > 4 ? parts[4] : "";
+                    
+                    String title = "New Event Available! 🎊";
+                    String notificationMessage = String.format(
+                        "Event: %s\n%s%s\n\nCheck out this new event and book your tickets now!",
+                        eventName,
+                        eventDate.isEmpty() ? "" : "Date: " + eventDate + "\n",
+                        eventTime.isEmpty() ? "" : "Time: " + eventTime + "\n"
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            } else if ("NEW_BOOKING".equals(notificationType)) {
+                if (parts.length >= 8) {
+                    String customerName = parts[2];
+                    String eventName = parts[4];
+                    String ticketNumber = parts[5];
+                    String amount = parts[6];
+                    String status = parts[7];
+                    
+                    String title = "New Booking Received! 📋";
+                    String notificationMessage = String.format(
+                        "Customer: %s\nEvent: %s\nTicket Number: %s\nAmount: RWF %s\nStatus: %s\n\nPlease review and confirm payment.",
+                        customerName, eventName, ticketNumber, amount, status
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            } else if ("NEW_GROUP_BOOKING".equals(notificationType)) {
+                if (parts.length >= 7) {
+                    String bookingCount = parts[1];
+                    String customerName = parts[3];
+                    String ticketCount = parts[4];
+                    String amount = parts[5];
+                    String events = parts[6];
+                    
+                    String title = "New Group Booking! 📋";
+                    String notificationMessage = String.format(
+                        "Customer: %s\nBookings: %s (%s tickets)\nEvents: %s\nAmount: RWF %s\n\nPlease review and confirm payment.",
+                        customerName, bookingCount, ticketCount, events, amount
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            } else if ("BOOKING_APPROVED".equals(notificationType)) {
+                if (parts.length >= 5) {
+                    String ticketNumber = parts[1];
+                    String eventName = parts[3];
+                    String amount = parts[4];
+                    
+                    String title = "Booking Approved! ✅";
+                    String notificationMessage = String.format(
+                        "Ticket Number: %s\nEvent: %s\nAmount: RWF %s\n\nYour booking has been approved. You can now print your ticket!",
+                        ticketNumber, eventName, amount
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            } else if ("EVENT_EXPIRED".equals(notificationType)) {
+                if (parts.length >= 3) {
+                    String eventName = parts[1];
+                    String eventDate = parts[2];
+                    
+                    String title = "Event Expired! ⚠️";
+                    String notificationMessage = String.format(
+                        "Event: %s\nDate: %s\n\nThis event has expired. You can now delete it even if payments were made.",
+                        eventName, eventDate
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            } else if ("RESERVATION_DELAYED".equals(notificationType)) {
+                if (parts.length >= 8) {
+                    String ticketNumber = parts[1];
+                    String eventName = parts[3];
+                    String ticketCount = parts[5];
+                    String amount = parts[6];
+                    String attempts = parts[7];
+                    
+                    String title = "Reservation Not Saved! ⚠️";
+                    String notificationMessage = String.format(
+                        "Ticket Number: %s\nEvent: %s\nTickets: %s\nAmount: RWF %s\n\n%s",
+                        ticketNumber, eventName, ticketCount, amount,
+                        "0".equals(attempts)
+                            ? "This reservation was accepted before a restart, but the event has no seats left for it."
+                            : "Saving this accepted reservation has failed " + attempts + " times. The server keeps retrying."
+                    );
+                    
+                    return new Notification(notificationType, title, notificationMessage);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error handling notification: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+    
+    // One entry for several notifications about the same booking or event: titles joined,
+    // message lines the members share (ticket number, event) shown once
+    private static Notification describeComposite(String message) {
+        Set<String> titles = new LinkedHashSet<>();
+        Set<String> lines = new LinkedHashSet<>();
+        for (String member : message.split("\u001E")) {
+            int typeEnd = member.indexOf('|');
+            Notification part = typeEnd > 0 ? describe(member.substring(0, typeEnd), member) : null;
+            if (part != null) {
+                titles.add(part.getTitle());
+                for (String line : part.getMessage().split("\n")) {
+                    if (!line.isEmpty()) {
+                        lines.add(line);
+                    }
+                }
+            }
+        }
+        return titles.isEmpty() ? null : new Notification("COMPOSITE", String.join(" · ", titles), String.join("\n", lines));
+    }
+    
+    // DIGEST|notifications|subjects|TYPE=count;...|labels|label\u001Flabel..., then per booking or
+    // event \u001D and its notifications (\u001E-separated); older servers send no items
+    private static Notification describeDigest(String message) {
+        String[] items = message.split("\u001D");
+        String[] parts = items[0].split("\\|", 6); // Event names may contain '|'
+        if (parts.length < 6) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        for (String count : parts[3].split(";")) {
+            String[] typeCount = count.split("=");
+            if (typeCount.length == 2) {
+                text.append(typeCount[1]).append(' ')
+                    .append(DIGEST_LINES.getOrDefault(typeCount[0], typeCount[0])).append('\n');
+            }
+        }
+        int labelCount = Integer.parseInt(parts[4]);
+        if (labelCount > 0 && !parts[5].isEmpty()) {
+            String[] shown = parts[5].split("\u001F");
+            text.append("\nEvents: ").append(String.join(", ", shown));
+            if (labelCount > shown.length) {
+                text.append(" and ").append(labelCount - shown.length).append(" more");
+            }
+        }
+        if (items.length > 1) {
+            text.append('\n');
+            int shown = Math.min(items.length - 1, DIGEST_DETAILS);
+            for (int i = 1; i <= shown; i++) {
+                text.append('\n').append(describeDigestItem(items[i]));
+            }
+            if (items.length - 1 > shown) {
+                text.append("\n... and ").append(items.length - 1 - shown).append(" more");
+            }
+        }
+        return new Notification("DIGEST", parts[1] + " New Notifications 📬", text.toString().trim());
+    }
+    
+    // One line per booking or event of a digest: ticket number, event and amount, taken from
+    // whichever of its notifications carry them
+    private static String describeDigestItem(String item) {
+        String[] found = new String[3];
+        for (String member : item.split("\u001E")) {
+            String[] parts = member.split("\\|");
+            int[] fields = DIGEST_FIELDS.get(parts[0]);
+            for (int f = 0; fields != null && f < found.length; f++) {
+                if (found[f] == null && fields[f] > 0 && fields[f] < parts.length && !parts[fields[f]].isEmpty()) {
+                    found[f] = parts[fields[f]];
+                }
+            }
+        }
+        List<String> line = new ArrayList<>();
+        if (found[0] != null) {
+            line.add(found[0]);
+        }
+        if (found[1] != null) {
+            line.add(found[1]);
+        }
+        if (found[2] != null) {
+            line.add("RWF " + found[2]);
+        }
+        return line.isEmpty() ? "- " + item.split("\\|")[0] : "- " + String.join(" · ", line);
+    }
+    
     /**
      * Notification data class
      */
     public static class Notification {
+        private long id; // Inbox id; 0 for notifications only kept in memory
         private String type;
         private String title;
         private String message;
@@ -131,6 +569,7 @@ public class NotificationManager {
             this.read = false;
         }
         
+        public long getId() { return id; }
         public String getType() { return type; }
         public String getTitle() { return title; }
         public String getMessage() { return message; }
@@ -146,4 +585,3 @@ public class NotificationManager {
         void onNotificationCountChanged(int count);
     }
 }
-
@@ -6,6 +6,8 @@ import service.UserService;
 import service.EventService;
 import service.BookingService;
 import service.VenueService;
+import service.DashboardService;
+import service.NotificationService;
 
 /**
  * RMI Client Utility for connecting to remote services
@@ -22,6 +24,8 @@ public class RMIClientUtil {
     private static EventService eventService;
     private static BookingService bookingService;
     private static VenueService venueService;
+    private static DashboardService dashboardService;
+    private static NotificationService notificationService;
     
     static {
         try {
@@ -30,6 +34,8 @@ public class RMIClientUtil {
             eventService = (EventService) registry.lookup("eventService");
             bookingService = (BookingService) registry.lookup("bookingService");
             venueService = (VenueService) registry.lookup("venueService");
+            dashboardService = (DashboardService) registry.lookup("dashboardService");
+            notificationService = (NotificationService) registry.lookup("notificationService");
         } catch (Exception e) {
             System.err.println("Failed to connect to RMI server: " + e.getMessage());
             e.printStackTrace();
@@ -52,9 +58,18 @@ public class RMIClientUtil {
         return venueService;
     }
     
+    public static DashboardService getDashboardService() {
+        return dashboardService;
+    }
+    
+    public static NotificationService getNotificationService() {
+        return notificationService;
+    }
+    
     public static boolean isConnected() {
         return registry != null && userService != null && eventService != null 
-               && bookingService != null && venueService != null;
+               && bookingService != null && venueService != null && dashboardService != null
+               && notificationService != null;
     }
     
     public static void reconnect() {
@@ -64,6 +79,8 @@ public class RMIClientUtil {
             eventService = (EventService) registry.lookup("eventService");
             bookingService = (BookingService) registry.lookup("bookingService");
             venueService = (VenueService) registry.lookup("venueService");
+            dashboardService = (DashboardService) registry.lookup("dashboardService");
+            notificationService = (NotificationService) registry.lookup("notificationService");
         } catch (Exception e) {
             System.err.println("Failed to reconnect to RMI server: " + e.getMessage());
             e.printStackTrace();
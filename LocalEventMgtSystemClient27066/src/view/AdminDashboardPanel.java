@@ -8,11 +8,8 @@ import util.Theme;
 import util.ExcelExportUtil;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
-import model.Booking;
-import model.Event;
+import model.DashboardSnapshot;
 
 public class AdminDashboardPanel extends JPanel {
     private final DashboardDAO dashboardDAO;
@@ -63,13 +60,15 @@ public class AdminDashboardPanel extends JPanel {
     }
     
     private void loadStatistics() {
-        totalEventsValueLabel.setText(String.valueOf(dashboardDAO.getTotalEvents()));
-        totalUsersValueLabel.setText(String.valueOf(dashboardDAO.getTotalUsers()));
+        // Single round trip for every figure on the dashboard
+        DashboardSnapshot snapshot = dashboardDAO.getSnapshot();
+        totalEventsValueLabel.setText(String.valueOf(snapshot.getTotalEvents()));
+        totalUsersValueLabel.setText(String.valueOf(snapshot.getTotalUsers()));
         
-        double revenue = dashboardDAO.getTotalRevenue();
+        double revenue = snapshot.getPaidRevenue();
         totalRevenueValueLabel.setText(String.format("RWF %,.0f", revenue));
         
-        upcomingEventsValueLabel.setText(String.valueOf(dashboardDAO.getUpcomingEventsCount()));
+        upcomingEventsValueLabel.setText(String.valueOf(snapshot.getScheduledEvents()));
         
         // Update stat cards with actual values
         JPanel statsPanel = (JPanel) getComponent(1);
@@ -92,94 +91,13 @@ public class AdminDashboardPanel extends JPanel {
     
     // Public methods for navigation panel to call
     public void exportEventsReport() {
-        try {
-            EventDAO eventDAO = new EventDAO();
-            List<Event> events = eventDAO.getAllEvents();
-            
-            if (events == null || events.isEmpty()) {
-                JOptionPane.showMessageDialog(this,
-                    "No events to export.",
-                    "No Data",
-                    JOptionPane.INFORMATION_MESSAGE);
-                return;
-            }
-            
-            // Create table model for export
-            String[] headers = {"Event ID", "Event Name", "Description", "Date", "Time", 
-                               "Venue", "Organizer", "Capacity", "Ticket Price", "Status"};
-            DefaultTableModel model = new DefaultTableModel(headers, 0);
-            
-            for (Event event : events) {
-                Object[] row = {
-                    event.getEventId(),
-                    event.getEventName(),
-                    event.getEventDescription() != null ? event.getEventDescription() : "",
-                    event.getEventDate() != null ? event.getEventDate().toString() : "",
-                    event.getEventTime() != null ? event.getEventTime().toString() : "",
-                    event.getVenueId(), // Will show venue ID, could be enhanced to show name
-                    event.getOrganizerId(), // Will show organizer ID, could be enhanced to show name
-                    event.getCapacity(),
-                    event.getTicketPrice(),
-                    event.getStatus()
-                };
-                model.addRow(row);
-            }
-            
-            JTable tempTable = new JTable(model);
-            ExcelExportUtil.exportTableToExcel(tempTable, "Events_Report", "Events");
-            
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                "Failed to export events report:\n" + e.getMessage(),
-                "Export Error",
-                JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-        }
+        // Rows stream from a server-side cursor in chunks, never as one full list
+        EventDAO eventDAO = new EventDAO();
+        ExcelExportUtil.exportCursor(eventDAO::exportEvents, "Events_Report", "Events");
     }
     
     public void exportBookingsReport() {
-        try {
-            BookingDAO bookingDAO = new BookingDAO();
-            List<Booking> bookings = bookingDAO.getAllBookings();
-            
-            if (bookings == null || bookings.isEmpty()) {
-                JOptionPane.showMessageDialog(this,
-                    "No bookings to export.",
-                    "No Data",
-                    JOptionPane.INFORMATION_MESSAGE);
-                return;
-            }
-            
-            // Create table model for export
-            String[] headers = {"Booking ID", "Ticket Number", "Event", "Customer", 
-                               "Booking Date", "Tickets", "Category", "Amount", "Status"};
-            DefaultTableModel model = new DefaultTableModel(headers, 0);
-            
-            for (Booking booking : bookings) {
-                Object[] row = {
-                    booking.getBookingId(),
-                    booking.getTicketNumber() != null ? booking.getTicketNumber() : "",
-                    booking.getEventName() != null ? booking.getEventName() : "",
-                    booking.getUserName() != null ? booking.getUserName() : "",
-                    booking.getBookingDate() != null ? booking.getBookingDate().toString() : "",
-                    booking.getNumberOfTickets(),
-                    booking.getTicketCategory() != null ? booking.getTicketCategory() : "Standard",
-                    booking.getTotalAmount(),
-                    booking.getPaymentStatus()
-                };
-                model.addRow(row);
-            }
-            
-            JTable tempTable = new JTable(model);
-            ExcelExportUtil.exportTableToExcel(tempTable, "Bookings_Report", "Bookings");
-            
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                "Failed to export bookings report:\n" + e.getMessage(),
-                "Export Error",
-                JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-        }
+        BookingDAO bookingDAO = new BookingDAO();
+        ExcelExportUtil.exportCursor(bookingDAO::exportBookings, "Bookings_Report", "Bookings");
     }
 }
-
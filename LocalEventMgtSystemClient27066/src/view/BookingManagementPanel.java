@@ -2,6 +2,11 @@ package view;
 
 import dao.BookingDAO;
 import model.Booking;
+import model.BookingCursor;
+import model.BookingPage;
+import model.BookingQuery;
+import model.PaymentTransition;
+import model.StatusChange;
 import util.SessionManager;
 import util.Theme;
 import javax.swing.*;
@@ -9,12 +14,15 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 
 public class BookingManagementPanel extends JPanel {
     private JTable bookingsTable;
     private DefaultTableModel tableModel;
     private BookingDAO bookingDAO;
+    private BookingCursor nextCursor; // Position after the last loaded page, null when all rows are shown
+    private JButton loadMoreButton;
     
     public BookingManagementPanel() {
         bookingDAO = new BookingDAO();
@@ -57,7 +65,9 @@ public class BookingManagementPanel extends JPanel {
         
         bookingsTable = new JTable(tableModel);
         Theme.styleTable(bookingsTable);
-        bookingsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Admins can select many rows for bulk approval; single-row actions use the first selected row
+        bookingsTable.setSelectionMode(SessionManager.isAdmin()
+            ? ListSelectionModel.MULTIPLE_INTERVAL_SELECTION : ListSelectionModel.SINGLE_SELECTION);
         bookingsTable.setAutoCreateRowSorter(false);
         bookingsTable.setFillsViewportHeight(true);
         bookingsTable.setShowGrid(true);
@@ -92,6 +102,10 @@ public class BookingManagementPanel extends JPanel {
             JButton updateStatusButton = Theme.createPrimaryButton("Update Payment Status");
             updateStatusButton.addActionListener(e -> updatePaymentStatus());
             buttonPanel.add(updateStatusButton);
+            
+            JButton approveSelectedButton = Theme.createSuccessButton("Approve Selected");
+            approveSelectedButton.addActionListener(e -> approveSelected());
+            buttonPanel.add(approveSelectedButton);
         }
         
         if (SessionManager.isCustomer()) {
@@ -108,6 +122,11 @@ public class BookingManagementPanel extends JPanel {
         printButton.addActionListener(e -> printTicket());
         buttonPanel.add(printButton);
         
+        loadMoreButton = Theme.createSecondaryButton("Load More");
+        loadMoreButton.addActionListener(e -> loadNextPage());
+        loadMoreButton.setEnabled(false);
+        buttonPanel.add(loadMoreButton);
+        
         JButton refreshButton = Theme.createSecondaryButton("Refresh");
         refreshButton.addActionListener(e -> loadBookings());
         buttonPanel.add(refreshButton);
@@ -118,75 +137,101 @@ public class BookingManagementPanel extends JPanel {
     
     private void loadBookings() {
         tableModel.setRowCount(0);
-        List<Booking> bookings;
+        nextCursor = null;
+        loadMoreButton.setEnabled(false);
         
+        BookingPage page = fetchPage(null);
+        if (page == null || page.getBookings() == null || page.getBookings().isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                "No bookings found.",
+                "No Data",
+                JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        showPage(page);
+    }
+    
+    private void loadNextPage() {
+        if (nextCursor == null) {
+            return;
+        }
+        BookingPage page = fetchPage(nextCursor);
+        if (page != null && page.getBookings() != null) {
+            showPage(page);
+        }
+    }
+    
+    // Customers only ever see their own bookings; the server does the filtering
+    private BookingPage fetchPage(BookingCursor after) {
         try {
-            if (SessionManager.isAdmin()) {
-                bookings = bookingDAO.getAllBookings();
-            } else {
-                bookings = bookingDAO.getBookingsByUser(SessionManager.getCurrentUser().getUserId());
-            }
-            
-            if (bookings == null || bookings.isEmpty()) {
-                JOptionPane.showMessageDialog(this,
-                    "No bookings found.",
-                    "No Data",
-                    JOptionPane.INFORMATION_MESSAGE);
-                return;
-            }
-            
-            for (Booking booking : bookings) {
-                String categoryDisplay = booking.getTicketCategory() != null ? 
-                    booking.getTicketCategory().toUpperCase() : "Standard";
-                
-                // Get event name - use display field or fallback to ID
-                String eventName = booking.getEventName();
-                if (eventName == null || eventName.trim().isEmpty()) {
-                    eventName = "Event #" + booking.getEventId();
-                }
-                
-                // Get user name - use display field or fallback to ID
-                String userName = booking.getUserName();
-                if (userName == null || userName.trim().isEmpty()) {
-                    userName = "User #" + booking.getUserId();
-                }
-                
-                // Get event date - prefer eventDate (from event) over bookingDate
-                // Combine date and time if both are available
-                String eventDateStr = "N/A";
-                if (booking.getEventDate() != null && !booking.getEventDate().trim().isEmpty()) {
-                    eventDateStr = booking.getEventDate();
-                    // If time is also available, append it
-                    if (booking.getEventTime() != null && !booking.getEventTime().trim().isEmpty()) {
-                        eventDateStr += " " + booking.getEventTime();
-                    }
-                } else if (booking.getBookingDate() != null) {
-                    // Fallback to booking date if event date is not available
-                    eventDateStr = booking.getBookingDate().toString();
-                }
-                
-                Object[] row = {
-                    booking.getBookingId(),
-                    eventName,
-                    userName,
-                    eventDateStr,
-                    booking.getNumberOfTickets(),
-                    categoryDisplay,
-                    "RWF " + String.format("%.2f", booking.getTotalAmount()),
-                    booking.getPaymentStatus() != null ? booking.getPaymentStatus() : "pending",
-                    booking.getTicketNumber() != null ? booking.getTicketNumber() : "N/A"
-                };
-                tableModel.addRow(row);
+            BookingQuery query = new BookingQuery();
+            if (!SessionManager.isAdmin()) {
+                query.setUserId(SessionManager.getCurrentUser().getUserId());
             }
+            query.setAfter(after);
+            return bookingDAO.findBookings(query);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this,
                 "Error loading bookings: " + e.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE);
             e.printStackTrace();
+            return null;
         }
     }
     
+    private void showPage(BookingPage page) {
+        for (Booking booking : page.getBookings()) {
+            addBookingRow(booking);
+        }
+        nextCursor = page.getNextCursor();
+        loadMoreButton.setEnabled(page.hasMore());
+    }
+    
+    private void addBookingRow(Booking booking) {
+        String categoryDisplay = booking.getTicketCategory() != null ? 
+            booking.getTicketCategory().toUpperCase() : "Standard";
+        
+        // Get event name - use display field or fallback to ID
+        String eventName = booking.getEventName();
+        if (eventName == null || eventName.trim().isEmpty()) {
+            eventName = "Event #" + booking.getEventId();
+        }
+        
+        // Get user name - use display field or fallback to ID
+        String userName = booking.getUserName();
+        if (userName == null || userName.trim().isEmpty()) {
+            userName = "User #" + booking.getUserId();
+        }
+        
+        // Get event date - prefer eventDate (from event) over bookingDate
+        // Combine date and time if both are available
+        String eventDateStr = "N/A";
+        if (booking.getEventDate() != null && !booking.getEventDate().trim().isEmpty()) {
+            eventDateStr = booking.getEventDate();
+            // If time is also available, append it
+            if (booking.getEventTime() != null && !booking.getEventTime().trim().isEmpty()) {
+                eventDateStr += " " + booking.getEventTime();
+            }
+        } else if (booking.getBookingDate() != null) {
+            // Fallback to booking date if event date is not available
+            eventDateStr = booking.getBookingDate().toString();
+        }
+        
+        Object[] row = {
+            booking.getBookingId(),
+            eventName,
+            userName,
+            eventDateStr,
+            booking.getNumberOfTickets(),
+            categoryDisplay,
+            "RWF " + String.format("%.2f", booking.getTotalAmount()),
+            booking.getPaymentStatus() != null ? booking.getPaymentStatus() : "pending",
+            booking.getTicketNumber() != null ? booking.getTicketNumber() : "N/A"
+        };
+        tableModel.addRow(row);
+    }
+    
     private void updatePaymentStatus() {
         int selectedRow = bookingsTable.getSelectedRow();
         if (selectedRow == -1) {
@@ -198,7 +243,17 @@ public class BookingManagementPanel extends JPanel {
         }
         
         int bookingId = (int) tableModel.getValueAt(selectedRow, 0);
-        String[] statuses = {"pending", "paid", "refunded", "cancelled"};
+        String currentStatus = (String) tableModel.getValueAt(selectedRow, 7);
+        
+        // Only offer the moves the server accepts from the status shown in the table
+        String[] statuses = PaymentTransition.allowedTargets(currentStatus).toArray(new String[0]);
+        if (statuses.length == 0) {
+            JOptionPane.showMessageDialog(this, 
+                "A " + currentStatus + " booking cannot change payment status.", 
+                "Invalid Status", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
         
         String newStatus = (String) JOptionPane.showInputDialog(this,
             "Select new payment status:",
@@ -206,10 +261,12 @@ public class BookingManagementPanel extends JPanel {
             JOptionPane.QUESTION_MESSAGE,
             null,
             statuses,
-            tableModel.getValueAt(selectedRow, 7));
+            statuses[0]);
         
         if (newStatus != null) {
-            if (bookingDAO.updatePaymentStatus(bookingId, newStatus)) {
+            // Applied only if nobody changed the booking since this table was loaded
+            PaymentTransition transition = bookingDAO.transitionPaymentStatus(bookingId, currentStatus, newStatus);
+            if (transition != null && transition.isApplied()) {
                 JOptionPane.showMessageDialog(this, 
                     "Payment status updated successfully!", 
                     "Success", 
@@ -217,13 +274,66 @@ public class BookingManagementPanel extends JPanel {
                 loadBookings();
             } else {
                 JOptionPane.showMessageDialog(this, 
-                    "Failed to update payment status.", 
+                    transition != null ? transition.getMessage() : "Failed to update payment status.", 
                     "Error", 
                     JOptionPane.ERROR_MESSAGE);
+                if (transition != null && transition.getCurrentStatus() != null) {
+                    loadBookings();
+                }
             }
         }
     }
     
+    private void approveSelected() {
+        int[] selectedRows = bookingsTable.getSelectedRows();
+        List<StatusChange> changes = new ArrayList<>();
+        for (int row : selectedRows) {
+            if ("pending".equals(tableModel.getValueAt(row, 7))) {
+                changes.add(new StatusChange((int) tableModel.getValueAt(row, 0), "pending", "paid"));
+            }
+        }
+        if (changes.isEmpty()) {
+            JOptionPane.showMessageDialog(this, 
+                "Please select one or more pending bookings!", 
+                "No Selection", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        int confirm = JOptionPane.showConfirmDialog(this,
+            "Mark " + changes.size() + " pending booking(s) as paid?",
+            "Confirm Approval",
+            JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) {
+            return;
+        }
+        
+        // One RMI call for the whole selection
+        List<PaymentTransition> outcomes = bookingDAO.applyPaymentStatuses(changes);
+        if (outcomes == null) {
+            JOptionPane.showMessageDialog(this, 
+                "Failed to update payment status.", 
+                "Error", 
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        int applied = 0;
+        StringBuilder failures = new StringBuilder();
+        for (PaymentTransition outcome : outcomes) {
+            if (outcome.isApplied()) {
+                applied++;
+            } else if (failures.length() < 1000) {
+                failures.append("\nBooking #").append(outcome.getBookingId()).append(": ").append(outcome.getMessage());
+            }
+        }
+        JOptionPane.showMessageDialog(this, 
+            applied + " of " + outcomes.size() + " booking(s) approved." + failures, 
+            "Bulk Approval", 
+            applied == outcomes.size() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+        loadBookings();
+    }
+    
     private void cancelBooking() {
         int selectedRow = bookingsTable.getSelectedRow();
         if (selectedRow == -1) {
@@ -97,14 +97,15 @@ public class CustomerDashboardPanel extends JPanel {
     
     private void loadEvents() {
         tableModel.setRowCount(0);
-        List<Event> events = eventDAO.getScheduledEvents();
+        // One round trip: events come back with their remaining capacity
+        List<Event> events = eventDAO.getScheduledEventsWithAvailability();
         
         if (events == null) {
             return; // Handle null gracefully
         }
         
         for (Event event : events) {
-            int available = eventDAO.getAvailableCapacity(event.getEventId());
+            int available = event.getRemainingCapacity() != null ? event.getRemainingCapacity() : 0;
             String priceDisplay;
             if ("category".equals(event.getPricingType())) {
                 priceDisplay = String.format("VVIP: RWF %.0f | VIP: RWF %.0f | Casual: RWF %.0f", 
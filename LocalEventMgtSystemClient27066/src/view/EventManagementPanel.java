@@ -709,6 +709,16 @@ public class EventManagementPanel extends JPanel {
                 
                 updatedEvent.setStatus(event.getStatus()); // Keep same status
                 
+                // The server rejects a capacity below the tickets already sold; say so instead of a generic failure
+                int sold = event.getCapacity() - eventDAO.getAvailableCapacity(event.getEventId());
+                if (updatedEvent.getCapacity() < sold) {
+                    JOptionPane.showMessageDialog(dialog, 
+                        "Capacity cannot be lower than the " + sold + " tickets already sold.", 
+                        "Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
                 if (eventDAO.updateEvent(updatedEvent)) {
                     JOptionPane.showMessageDialog(dialog, 
                         "Event updated successfully!", 
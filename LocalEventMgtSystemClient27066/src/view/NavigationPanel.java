@@ -2,6 +2,7 @@ package view;
 
 import util.SessionManager;
 import util.Theme;
+import util.NotificationListener;
 import util.NotificationManager;
 import model.User;
 import javax.swing.*;
@@ -413,6 +414,7 @@ public class NavigationPanel extends JPanel {
         );
         
         if (confirm == JOptionPane.YES_OPTION) {
+            NotificationListener.getInstance().stopListening();
             SessionManager.logout();
             MainApplicationFrame.getInstance().showCard(MainApplicationFrame.LOGIN_CARD);
             MainApplicationFrame.getInstance().setNavigationVisible(false);
@@ -0,0 +1,116 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time and peak heap of a bookings export against row count: the streaming xlsx writer
+ * (SXSSF, 200-row window) and the CSV writer. Forks run with a 256 MB heap, so a writer
+ * that keeps rows in memory fails instead of just slowing down. Peak heap (all heap
+ * pools, after a GC before each export) is printed after every export.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args=ExportBenchmark
+ *
+ * @author 27066
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ExportBenchmark {
+
+    // Same columns as ExportDao.BOOKING_HEADERS on the server
+    private static final String[] HEADERS = {"Booking ID", "Ticket Number", "Event", "Customer",
+        "Booking Date", "Tickets", "Category", "Amount", "Status"};
+    private static final String[] CATEGORIES = {"Standard", "VIP", "VVIP", "Casual"};
+    private static final String[] STATUSES = {"pending", "paid", "cancelled"};
+
+    @Param({"10000", "100000", "500000"})
+    public int rows;
+
+    private File file;
+
+    @Setup(Level.Invocation)
+    public void prepare() throws Exception {
+        file = File.createTempFile("export-benchmark", ".tmp");
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void report() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%n  rows=%d file=%.1f MB peak heap=%.1f MB%n",
+            rows, file.length() / 1048576.0, peak / 1048576.0);
+        file.delete();
+    }
+
+    @Benchmark
+    public long xlsx() throws Exception {
+        return ExcelExportUtil.writeWorkbook(file, "Bookings", HEADERS, bookings());
+    }
+
+    @Benchmark
+    public long csv() throws Exception {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            return ExcelExportUtil.writeDelimited(out, ',', HEADERS, bookings());
+        }
+    }
+
+    // Synthetic booking rows shaped like the export cursor's chunks
+    private ExcelExportUtil.RowSource bookings() {
+        long start = Timestamp.valueOf("2026-01-01 09:00:00").getTime();
+        int[] next = {0};
+        return () -> {
+            int i = next[0]++;
+            if (i >= rows) {
+                return null;
+            }
+            return new Object[] {
+                i + 1,
+                String.format("TKT-%013X", 0x5F3A00000L + i * 7919L),
+                "Event " + (i % 250),
+                "Customer " + (i % 5000),
+                new Timestamp(start + i * 60_000L),
+                1 + i % 10,
+                CATEGORIES[i % CATEGORIES.length],
+                (1 + i % 10) * 5000.0,
+                STATUSES[i % STATUSES.length]
+            };
+        };
+    }
+}
@@ -6,6 +6,18 @@ import service.implementation.UserServiceImpl;
 import service.implementation.EventServiceImpl;
 import service.implementation.BookingServiceImpl;
 import service.implementation.VenueServiceImpl;
+import service.implementation.DashboardServiceImpl;
+import service.implementation.NotificationServiceImpl;
+import util.CapacityLedger;
+import util.EmbeddedBroker;
+import util.EventCatalogue;
+import util.EventExpirySweeper;
+import util.NotificationService;
+import util.OutboxRelay;
+import dao.HibernateUtil;
+import dao.LocalRegionFactory;
+import dao.PooledConnectionProvider;
+import dao.UnitOfWork;
 
 /**
  * RMI Server for Local Event Management System
@@ -18,14 +30,35 @@ public class Server {
             // Set properties
             System.setProperty("java.rmi.server.hostname", "127.0.0.1");
             
+            // Optional in-process ActiveMQ broker (-Dbroker.embedded=true); must start before any notification
+            if (EmbeddedBroker.isEnabled()) {
+                EmbeddedBroker.start();
+            }
+            
             // Create registry on port 3000 (within required range 3000-4000)
             Registry registry = LocateRegistry.createRegistry(3000);
             
+            // Optional in-memory capacity ledger (-Dbooking.ledger=true)
+            if (CapacityLedger.isEnabled()) {
+                CapacityLedger.getInstance().start();
+            }
+            
+            // Scheduled-events snapshot served to customer dashboards
+            EventCatalogue.getInstance().start();
+            
+            // Admin EVENT_EXPIRED notices, sent once per event when it starts
+            EventExpirySweeper.getInstance().start();
+            
+            // Publishes notifications committed to the outbox table (-Dnotifications.outbox=false to bypass)
+            OutboxRelay.getInstance().start();
+            
             // Register all services
             registry.rebind("userService", new UserServiceImpl());
             registry.rebind("eventService", new EventServiceImpl());
             registry.rebind("bookingService", new BookingServiceImpl());
             registry.rebind("venueService", new VenueServiceImpl());
+            registry.rebind("dashboardService", new DashboardServiceImpl());
+            registry.rebind("notificationService", new NotificationServiceImpl());
             
             System.out.println("========================================");
             System.out.println("  Local Event Management System");
@@ -37,12 +70,32 @@ public class Server {
             System.out.println("  - eventService        (EventService)");
             System.out.println("  - bookingService      (BookingService)");
             System.out.println("  - venueService        (VenueService)");
+            System.out.println("  - dashboardService    (DashboardService)");
+            System.out.println("  - notificationService (NotificationService)");
+            System.out.println("\nCapacity ledger: " + (CapacityLedger.isEnabled() ? "enabled (write-behind)" : "disabled"));
+            System.out.println("Notification broker: " + (EmbeddedBroker.isRunning() ? "embedded" : "external"));
+            System.out.println("Notification outbox: " + (NotificationService.isOutboxEnabled() ? "enabled" : "disabled"));
+            System.out.println("Notification inbox: " + (NotificationService.isInboxEnabled() ? "enabled" : "disabled"));
             System.out.println("\nPress Ctrl+C to stop the server...");
             System.out.println("========================================\n");
             
+            // Optional periodic pool and cache statistics (-Ddb.stats.seconds=N)
+            long statsSeconds = Long.getLong("db.stats.seconds", 0);
+            long lastStats = System.currentTimeMillis();
+            
             // Keep the server running - prevents JVM from exiting
             while (true) {
                 Thread.sleep(1000);
+                if (statsSeconds > 0 && System.currentTimeMillis() - lastStats >= statsSeconds * 1000) {
+                    lastStats = System.currentTimeMillis();
+                    PooledConnectionProvider pool = HibernateUtil.getConnectionPool();
+                    System.out.println((pool != null ? pool.getStatistics() + " " : "") + UnitOfWork.getStatistics()
+                        + " " + LocalRegionFactory.getStatistics() + " " + EventCatalogue.getInstance().getStatistics()
+                        + " " + EventExpirySweeper.getInstance().getStatistics()
+                        + " " + NotificationService.getInstance().getStatistics()
+                        + " " + OutboxRelay.getInstance().getStatistics()
+                        + (EmbeddedBroker.isRunning() ? " " + EmbeddedBroker.getStatistics() : ""));
+                }
             }
             
         } catch (Exception ex) {
@@ -1,40 +1,172 @@
 package dao;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import model.Booking;
+import model.BookingCursor;
+import model.BookingPage;
+import model.BookingQuery;
+import model.BookingView;
 import model.Event;
+import model.GroupReservationResult;
+import model.PaymentTransition;
+import model.ReservationResult;
+import model.StatusChange;
 import model.User;
-import model.Venue;
-import org.hibernate.*;
+import org.hibernate.Session;
 import org.hibernate.query.Query;
+import util.TicketNumberGenerator;
 
 /**
  * Booking DAO with Hibernate implementation
- * 
+ * Every method runs inside a UnitOfWork, joining the caller's session when one is bound
+ *
  * @author 27066
  */
 public class BookingDao {
     
-    // CREATE
-    public Booking createBooking(Booking bookingObj) {
+    // CREATE - Atomic reservation: conditional counter decrement + insert in one transaction
+    public ReservationResult reserveTickets(int eventId, int userId, int quantity, String ticketCategory) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            
-            // If event/user are not set but IDs are, load them
-            if (bookingObj.getEvent() == null && bookingObj.getEventId() > 0) {
-                Event event = ss.get(Event.class, bookingObj.getEventId());
-                bookingObj.setEvent(event);
-            }
-            if (bookingObj.getUser() == null && bookingObj.getUserId() > 0) {
-                User user = ss.get(User.class, bookingObj.getUserId());
-                bookingObj.setUser(user);
+            return UnitOfWork.execute(ss -> {
+                Event event = ss.get(Event.class, eventId);
+                User user = ss.get(User.class, userId);
+                if (event == null || user == null) {
+                    return new ReservationResult(false, null, 0, event == null ? "Event not found." : "User not found.");
+                }
+                
+                EventDao.initRemainingCapacity(ss, eventId);
+                int remaining = EventDao.claimCapacity(ss, eventId, quantity);
+                if (remaining < 0) {
+                    int available = new EventDao().getAvailableCapacity(eventId);
+                    return new ReservationResult(false, null, available,
+                        "Not enough tickets available. Only " + available + " tickets left.");
+                }
+                
+                // Price is decided here, never trusted from the client
+                Booking booking = new Booking(event, user, "pending", generateTicketNumber(),
+                    quantity, event.priceFor(ticketCategory) * quantity);
+                booking.setTicketCategory(event.categoryFor(ticketCategory));
+                booking.setBookingDate(new java.sql.Timestamp(System.currentTimeMillis()));
+                ss.save(booking);
+                
+                booking.setEventId(eventId);
+                booking.setUserId(userId);
+                booking.setEventName(event.getEventName());
+                booking.setUserName(user.getFullName());
+                return new ReservationResult(true, booking, remaining, "Booking created successfully!");
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return new ReservationResult(false, null, 0, "Reservation failed: " + ex.getMessage());
+        }
+    }
+    
+    // CREATE - All-or-nothing group reservation: one grouped capacity claim for every
+    // event involved, then one batched insert of all rows, in a single transaction
+    public GroupReservationResult reserveGroup(List<Booking> requests) {
+        Map<Integer, Integer> ticketsPerEvent = new HashMap<>();
+        Set<Integer> userIds = new HashSet<>();
+        for (Booking request : requests) {
+            ticketsPerEvent.merge(request.getEventId(), request.getNumberOfTickets(), Integer::sum);
+            userIds.add(request.getUserId());
+        }
+        
+        try {
+            return UnitOfWork.execute(ss -> {
+                Map<Integer, Event> events = new HashMap<>();
+                for (Event event : ss.createQuery("FROM Event WHERE eventId IN (:ids)", Event.class)
+                        .setParameterList("ids", ticketsPerEvent.keySet()).list()) {
+                    events.put(event.getEventId(), event);
+                }
+                Map<Integer, User> users = new HashMap<>();
+                for (User user : ss.createQuery("FROM User WHERE userId IN (:ids)", User.class)
+                        .setParameterList("ids", userIds).list()) {
+                    users.put(user.getUserId(), user);
+                }
+                if (events.size() < ticketsPerEvent.size() || users.size() < userIds.size()) {
+                    return new GroupReservationResult(false,
+                        events.size() < ticketsPerEvent.size() ? "Event not found." : "User not found.");
+                }
+                
+                EventDao.initRemainingCapacities(ss, ticketsPerEvent.keySet());
+                Map<Integer, Integer> remaining = EventDao.claimCapacities(ss, ticketsPerEvent);
+                if (remaining.size() < ticketsPerEvent.size()) {
+                    // Some event was short: roll back the claims that did succeed
+                    List<String> shortEvents = new ArrayList<>();
+                    for (Integer eventId : ticketsPerEvent.keySet()) {
+                        if (!remaining.containsKey(eventId)) {
+                            shortEvents.add(events.get(eventId).getEventName());
+                        }
+                    }
+                    throw new Rejected(new GroupReservationResult(false, "Not enough tickets available for "
+                        + String.join(", ", shortEvents) + ". No bookings were made."));
+                }
+                
+                GroupReservationResult result = new GroupReservationResult(true, "Group booking created successfully!");
+                java.sql.Timestamp now = new java.sql.Timestamp(System.currentTimeMillis());
+                for (Booking request : requests) {
+                    Event event = events.get(request.getEventId());
+                    User user = users.get(request.getUserId());
+                    
+                    // Price is decided here, never trusted from the client
+                    Booking booking = new Booking(event, user, "pending", generateTicketNumber(),
+                        request.getNumberOfTickets(), event.priceFor(request.getTicketCategory()) * request.getNumberOfTickets());
+                    booking.setTicketCategory(event.categoryFor(request.getTicketCategory()));
+                    booking.setBookingDate(now);
+                    ss.save(booking);
+                    
+                    booking.setEventId(event.getEventId());
+                    booking.setUserId(user.getUserId());
+                    booking.setEventName(event.getEventName());
+                    booking.setUserName(user.getFullName());
+                    booking.setUserEmail(user.getEmail());
+                    booking.setUserPhone(user.getPhoneNumber());
+                    result.getBookings().add(booking);
+                }
+                result.setRemainingCapacity(remaining);
+                return result;
+            });
+        } catch (Rejected ex) {
+            GroupReservationResult rejected = (GroupReservationResult) ex.result;
+            Map<Integer, Integer> available = new EventDao().getAvailableCapacities(ticketsPerEvent.keySet());
+            if (available != null) {
+                rejected.setRemainingCapacity(available);
             }
-            
-            ss.save(bookingObj);
-            tr.commit();
-            ss.close();
-            return bookingObj;
+            return rejected;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return new GroupReservationResult(false, "Group booking failed: " + ex.getMessage());
+        }
+    }
+    
+    // CREATE - Write-behind flush of reservations already accepted by the in-memory ledger
+    public List<Booking> persistReservations(List<Booking> reservations) {
+        try {
+            return UnitOfWork.execute(ss -> {
+                // Seats per event taken by this batch, applied to the DB counter once per event
+                Map<Integer, Integer> ticketsPerEvent = new HashMap<>();
+                for (Booking booking : reservations) {
+                    booking.setEvent(ss.get(Event.class, booking.getEventId()));
+                    booking.setUser(ss.get(User.class, booking.getUserId()));
+                    ss.save(booking);
+                    ticketsPerEvent.merge(booking.getEventId(), booking.getNumberOfTickets(), Integer::sum);
+                }
+                for (Map.Entry<Integer, Integer> entry : ticketsPerEvent.entrySet()) {
+                    EventDao.adjustRemainingCapacity(ss, entry.getKey(), -entry.getValue());
+                }
+                return reservations;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -44,12 +176,10 @@ public class BookingDao {
     // UPDATE
     public Booking updateBooking(Booking bookingObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.update(bookingObj);
-            tr.commit();
-            ss.close();
-            return bookingObj;
+            return UnitOfWork.execute(ss -> {
+                ss.update(bookingObj);
+                return bookingObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -59,12 +189,10 @@ public class BookingDao {
     // DELETE
     public Booking deleteBooking(Booking bookingObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.delete(bookingObj);
-            tr.commit();
-            ss.close();
-            return bookingObj;
+            return UnitOfWork.execute(ss -> {
+                ss.delete(bookingObj);
+                return bookingObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -73,24 +201,13 @@ public class BookingDao {
     
     // READ - Find by ID
     public Booking findBookingById(Booking bookingObj) {
-        try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Booking booking = ss.get(Booking.class, bookingObj.getBookingId());
-            ss.close();
-            return booking;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return null;
-        }
+        return findBookingById(bookingObj.getBookingId());
     }
     
     // READ - Find by ID (int)
     public Booking findBookingById(int bookingId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Booking booking = ss.get(Booking.class, bookingId);
-            ss.close();
-            return booking;
+            return UnitOfWork.read(ss -> ss.get(Booking.class, bookingId));
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -100,25 +217,14 @@ public class BookingDao {
     // READ - Find all bookings with display data populated
     public List<Booking> findAllBookings() {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            // Use JOIN FETCH to eagerly load relationships
-            Query<Booking> query = ss.createQuery(
-                "SELECT DISTINCT b FROM Booking b " +
-                "LEFT JOIN FETCH b.event e " +
-                "LEFT JOIN FETCH b.user u " +
-                "LEFT JOIN FETCH e.venue v " +
-                "ORDER BY b.bookingDate DESC", 
-                Booking.class
-            );
-            List<Booking> bookings = query.list();
-            
-            // Populate display fields while session is open
-            for (Booking booking : bookings) {
-                populateDisplayFields(booking, ss);
-            }
-            
-            ss.close();
-            return bookings;
+            return UnitOfWork.read(ss -> {
+                // Flat projection: no entity hydration, no dirty-tracking, no DISTINCT
+                List<BookingView> views = ss.createQuery(
+                    BookingView.SELECT + "ORDER BY b.bookingDate DESC",
+                    BookingView.class
+                ).list();
+                return toBookings(views);
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -128,195 +234,432 @@ public class BookingDao {
     // READ - Find bookings by user with display data populated
     public List<Booking> findBookingsByUser(int userId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            // Use JOIN FETCH to eagerly load relationships
-            Query<Booking> query = ss.createQuery(
-                "SELECT DISTINCT b FROM Booking b " +
-                "LEFT JOIN FETCH b.event e " +
-                "LEFT JOIN FETCH b.user u " +
-                "LEFT JOIN FETCH e.venue v " +
-                "WHERE b.user.userId = :userId " +
-                "ORDER BY b.bookingDate DESC", 
-                Booking.class
-            );
-            query.setParameter("userId", userId);
-            List<Booking> bookings = query.list();
-            
-            // Populate display fields while session is open
-            for (Booking booking : bookings) {
-                populateDisplayFields(booking, ss);
-            }
-            
-            ss.close();
-            return bookings;
+            return UnitOfWork.read(ss -> {
+                Query<BookingView> query = ss.createQuery(
+                    BookingView.SELECT + "WHERE u.userId = :userId ORDER BY b.bookingDate DESC",
+                    BookingView.class
+                );
+                query.setParameter("userId", userId);
+                return toBookings(query.list());
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
         }
     }
     
-    // Helper method to populate display fields while session is open
-    private void populateDisplayFields(Booking booking, Session session) {
+    // Matches idx_bookings_date_id (see SchemaMigration)
+    private static final String ORDER = " ORDER BY b.bookingDate DESC NULLS LAST, b.bookingId DESC";
+    
+    // READ - Filtered keyset page ordered by (bookingDate DESC NULLS LAST, bookingId DESC)
+    public BookingPage findBookings(BookingQuery criteria) {
         try {
-            // Force initialization of lazy-loaded relationships
-            if (booking.getEvent() != null) {
-                Event event = booking.getEvent();
-                // Access fields to trigger lazy loading
-                String eventName = event.getEventName();
-                String eventDesc = event.getEventDescription();
-                
-                // Only set if not null/empty - let null pass through for client-side handling
-                if (eventName != null && !eventName.trim().isEmpty()) {
-                    booking.setEventName(eventName);
-                }
-                if (eventDesc != null && !eventDesc.trim().isEmpty()) {
-                    booking.setEventDescription(eventDesc);
-                }
-                
-                // Set event date - format it properly
-                if (event.getEventDate() != null) {
-                    booking.setEventDate(event.getEventDate().toString());
-                } else {
-                    // If event date is null, try to use booking date as fallback
-                    if (booking.getBookingDate() != null) {
-                        booking.setEventDate(booking.getBookingDate().toString());
+            int pageSize = Math.max(1, Math.min(criteria.getPageSize(), BookingQuery.MAX_PAGE_SIZE));
+            
+            StringBuilder hql = new StringBuilder(BookingView.SELECT + "WHERE 1 = 1");
+            Map<String, Object> params = new HashMap<>();
+            
+            if (criteria.getPaymentStatus() != null) {
+                hql.append(" AND b.paymentStatus = :status");
+                params.put("status", criteria.getPaymentStatus());
+            }
+            if (criteria.getEventId() != null) {
+                hql.append(" AND e.eventId = :eventId");
+                params.put("eventId", criteria.getEventId());
+            }
+            if (criteria.getUserId() != null) {
+                hql.append(" AND u.userId = :userId");
+                params.put("userId", criteria.getUserId());
+            }
+            if (criteria.getFromDate() != null) {
+                hql.append(" AND b.bookingDate >= :fromDate");
+                params.put("fromDate", criteria.getFromDate());
+            }
+            if (criteria.getToDate() != null) {
+                hql.append(" AND b.bookingDate < :toDate");
+                params.put("toDate", criteria.getToDate());
+            }
+            if (criteria.getTicketNumberPrefix() != null && !criteria.getTicketNumberPrefix().isEmpty()) {
+                hql.append(" AND b.ticketNumber LIKE :ticketPrefix ESCAPE '!'");
+                params.put("ticketPrefix", escapeLike(criteria.getTicketNumberPrefix()) + "%");
+            }
+            
+            // Seek past the cursor in two phases, each one range scan of idx_bookings_date_id:
+            // dated rows by row-value comparison, then the undated tail (sorted last) by id.
+            // Both keep the index's ORDER BY, so the planner reads the page straight off it.
+            BookingCursor after = criteria.getAfter();
+            int limit = pageSize + 1; // One extra row tells us whether another page exists
+            List<BookingView> views = UnitOfWork.read(ss -> {
+                List<BookingView> page = new ArrayList<>(limit);
+                if (after == null || after.getBookingDate() != null) {
+                    Query<BookingView> dated = ss.createQuery(hql + " AND b.bookingDate IS NOT NULL" +
+                        (after != null ? " AND (b.bookingDate, b.bookingId) < (:afterDate, :afterId)" : "") +
+                        ORDER, BookingView.class);
+                    if (after != null) {
+                        dated.setParameter("afterDate", after.getBookingDate());
+                        dated.setParameter("afterId", after.getBookingId());
                     }
+                    page.addAll(list(dated, params, limit));
                 }
-                if (event.getEventTime() != null) {
-                    booking.setEventTime(event.getEventTime().toString());
-                }
-                
-                // Load venue if available
-                Venue venue = event.getVenue();
-                if (venue != null) {
-                    String venueName = venue.getVenueName();
-                    if (venueName != null && !venueName.trim().isEmpty()) {
-                        booking.setVenueName(venueName);
-                    }
-                    String venueLoc = venue.getLocation();
-                    if (venueLoc != null && !venueLoc.trim().isEmpty()) {
-                        booking.setVenueLocation(venueLoc);
+                // A date range excludes undated rows
+                if (page.size() < limit && criteria.getFromDate() == null && criteria.getToDate() == null) {
+                    Query<BookingView> undated = ss.createQuery(hql + " AND b.bookingDate IS NULL" +
+                        (after != null && after.getBookingDate() == null ? " AND b.bookingId < :afterId" : "") +
+                        ORDER, BookingView.class);
+                    if (after != null && after.getBookingDate() == null) {
+                        undated.setParameter("afterId", after.getBookingId());
                     }
+                    page.addAll(list(undated, params, limit - page.size()));
                 }
-            }
+                return page;
+            });
             
-            if (booking.getUser() != null) {
-                User user = booking.getUser();
-                // Access fields to trigger lazy loading
-                String fullName = user.getFullName();
-                String email = user.getEmail();
-                String phone = user.getPhoneNumber();
-                
-                // Only set if not null/empty - let null pass through for client-side handling
-                if (fullName != null && !fullName.trim().isEmpty()) {
-                    booking.setUserName(fullName);
-                }
-                if (email != null && !email.trim().isEmpty()) {
-                    booking.setUserEmail(email);
-                }
-                if (phone != null && !phone.trim().isEmpty()) {
-                    booking.setUserPhone(phone);
-                }
+            BookingCursor nextCursor = null;
+            if (views.size() > pageSize) {
+                views = views.subList(0, pageSize);
+                BookingView last = views.get(pageSize - 1);
+                nextCursor = new BookingCursor(last.bookingDate(), last.bookingId());
             }
-        } catch (Exception e) {
-            // If any field access fails, log but continue
-            System.err.println("Error populating display fields for booking " + booking.getBookingId() + ": " + e.getMessage());
-            e.printStackTrace();
+            return new BookingPage(toBookings(views), nextCursor);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
         }
     }
     
+    private static List<BookingView> list(Query<BookingView> query, Map<String, Object> params, int maxResults) {
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            query.setParameter(param.getKey(), param.getValue());
+        }
+        return query.setMaxResults(maxResults).list();
+    }
+    
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+    
+    private static List<Booking> toBookings(List<BookingView> views) {
+        List<Booking> bookings = new ArrayList<>(views.size());
+        for (BookingView view : views) {
+            bookings.add(view.toBooking());
+        }
+        return bookings;
+    }
+    
     // UPDATE - Cancel booking
     public boolean cancelBooking(int bookingId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            Booking booking = ss.get(Booking.class, bookingId);
-            if (booking != null) {
+            return UnitOfWork.execute(ss -> {
+                Booking booking = ss.get(Booking.class, bookingId);
+                if (booking == null) {
+                    return false;
+                }
+                // Give the seats back to the event unless they were already released
+                if (!"cancelled".equalsIgnoreCase(booking.getPaymentStatus())) {
+                    EventDao.adjustRemainingCapacity(ss, booking.getEventId(), booking.getNumberOfTickets());
+                }
                 booking.setPaymentStatus("cancelled");
                 ss.update(booking);
-                tr.commit();
-                ss.close();
                 return true;
-            }
-            tr.rollback();
-            ss.close();
-            return false;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return false;
         }
     }
     
-    // UPDATE - Update payment status
-    public boolean updatePaymentStatus(int bookingId, String status) {
+    // UPDATE - Compare-and-set payment transition: one UPDATE ... RETURNING that also
+    // returns the notification payload, plus a counter update when seats move
+    public PaymentTransition transitionPaymentStatus(int bookingId, String expectedStatus, String newStatus) {
+        return transitionPaymentStatus(bookingId, expectedStatus, newStatus, applied -> {});
+    }
+    
+    // Same, with onApplied run inside the transaction once the row has changed (e.g. to write outbox rows)
+    public PaymentTransition transitionPaymentStatus(int bookingId, String expectedStatus, String newStatus,
+            Consumer<List<PaymentTransition>> onApplied) {
+        String from = expectedStatus != null ? expectedStatus.toLowerCase() : null;
+        String to = newStatus != null ? newStatus.toLowerCase() : null;
+        PaymentTransition transition = new PaymentTransition(bookingId, from, to);
+        if (!PaymentTransition.isAllowed(from, to)) {
+            return transition.rejected(from, "Cannot change payment status from " + from + " to " + to + ".");
+        }
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            Booking booking = ss.get(Booking.class, bookingId);
-            if (booking != null) {
-                String oldStatus = booking.getPaymentStatus();
-                booking.setPaymentStatus(status);
-                ss.update(booking);
-                tr.commit();
+            return UnitOfWork.execute(ss -> {
+                Booking booking = ss.doReturningWork(connection -> {
+                    try (PreparedStatement ps = connection.prepareStatement(TRANSITION_SQL)) {
+                        ps.setString(1, to);
+                        ps.setInt(2, bookingId);
+                        ps.setString(3, from);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            return rs.next() ? toTransitionedBooking(rs, to) : null;
+                        }
+                    }
+                });
                 
-                // If payment was confirmed (changed to 'paid'), trigger notification
-                if ("paid".equalsIgnoreCase(status) && !"paid".equalsIgnoreCase(oldStatus)) {
-                    // Load related entities for notification
-                    booking = ss.get(Booking.class, bookingId);
-                    if (booking.getEvent() != null && booking.getUser() != null) {
-                        // Notification will be sent by service layer
-                        // We return the booking with loaded relationships
+                if (booking == null) {
+                    // Lost the race or wrong expectation: report what the row really holds
+                    String current = currentPaymentStatus(ss, bookingId);
+                    return transition.rejected(current, current == null
+                        ? "Booking not found."
+                        : "Booking is " + current + ", not " + from + "; it may have been updated by someone else.");
+                }
+                
+                if ("cancelled".equals(to)) {
+                    EventDao.adjustRemainingCapacity(ss, booking.getEventId(), booking.getNumberOfTickets());
+                } else if ("cancelled".equals(from)) {
+                    // Reactivation must win the seats back like a new reservation
+                    EventDao.initRemainingCapacity(ss, booking.getEventId());
+                    if (EventDao.claimCapacity(ss, booking.getEventId(), booking.getNumberOfTickets()) < 0) {
+                        throw new Rejected(transition.rejected(from,
+                            "Not enough tickets available to reactivate this booking."));
+                    }
+                }
+                PaymentTransition applied = transition.applied(booking, "Payment status updated to " + to + ".");
+                onApplied.accept(Collections.singletonList(applied));
+                return applied;
+            });
+        } catch (Rejected ex) {
+            return (PaymentTransition) ex.result;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return transition.rejected(null, "Status update failed: " + ex.getMessage());
+        }
+    }
+    
+    // UPDATE - Bulk compare-and-set transitions, one set-based UPDATE ... RETURNING per chunk.
+    // Outcomes come back in request order.
+    public List<PaymentTransition> applyPaymentStatuses(List<StatusChange> changes) {
+        return applyPaymentStatuses(changes, applied -> {});
+    }
+    
+    // Same, with onApplied run inside each chunk's transaction for the transitions it applied
+    public List<PaymentTransition> applyPaymentStatuses(List<StatusChange> changes,
+            Consumer<List<PaymentTransition>> onApplied) {
+        PaymentTransition[] outcomes = new PaymentTransition[changes.size()];
+        List<Integer> batchable = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < changes.size(); i++) {
+            StatusChange change = changes.get(i);
+            String from = change.getExpectedStatus() != null ? change.getExpectedStatus().toLowerCase() : null;
+            String to = change.getNewStatus() != null ? change.getNewStatus().toLowerCase() : null;
+            PaymentTransition transition = new PaymentTransition(change.getBookingId(), from, to);
+            if (!seen.add(change.getBookingId())) {
+                outcomes[i] = transition.rejected(null, "Duplicate change for this booking in the batch.");
+            } else if (!PaymentTransition.isAllowed(from, to)) {
+                outcomes[i] = transition.rejected(from, "Cannot change payment status from " + from + " to " + to + ".");
+            } else if ("cancelled".equals(from)) {
+                // Reactivations claim seats per booking, so they take the single-row path
+                outcomes[i] = transitionPaymentStatus(change.getBookingId(), from, to, onApplied);
+            } else {
+                outcomes[i] = transition;
+                batchable.add(i);
+            }
+        }
+        
+        for (int start = 0; start < batchable.size(); start += BULK_CHUNK_SIZE) {
+            applyChunk(outcomes, batchable.subList(start, Math.min(start + BULK_CHUNK_SIZE, batchable.size())), onApplied);
+        }
+        return Arrays.asList(outcomes);
+    }
+    
+    private void applyChunk(PaymentTransition[] outcomes, List<Integer> chunk,
+            Consumer<List<PaymentTransition>> onApplied) {
+        Integer[] ids = new Integer[chunk.size()];
+        String[] expected = new String[chunk.size()];
+        String[] targets = new String[chunk.size()];
+        Map<Integer, Integer> indexByBooking = new HashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            PaymentTransition transition = outcomes[chunk.get(i)];
+            ids[i] = transition.getBookingId();
+            expected[i] = transition.getFromStatus();
+            targets[i] = transition.getToStatus();
+            indexByBooking.put(ids[i], chunk.get(i));
+        }
+        
+        try {
+            // Results are staged and only published once the chunk has committed
+            PaymentTransition[] staged = UnitOfWork.execute(ss -> {
+                PaymentTransition[] results = new PaymentTransition[outcomes.length];
+                Map<Integer, Integer> releasedPerEvent = new HashMap<>();
+                ss.doWork(connection -> {
+                    try (PreparedStatement ps = connection.prepareStatement(BULK_TRANSITION_SQL)) {
+                        ps.setArray(1, connection.createArrayOf("int4", ids));
+                        ps.setArray(2, connection.createArrayOf("varchar", expected));
+                        ps.setArray(3, connection.createArrayOf("varchar", targets));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                Booking booking = toTransitionedBooking(rs, rs.getString("payment_status"));
+                                int index = indexByBooking.get(booking.getBookingId());
+                                PaymentTransition transition = outcomes[index];
+                                results[index] = new PaymentTransition(booking.getBookingId(),
+                                    transition.getFromStatus(), transition.getToStatus())
+                                    .applied(booking, "Payment status updated to " + transition.getToStatus() + ".");
+                                if ("cancelled".equals(transition.getToStatus())) {
+                                    releasedPerEvent.merge(booking.getEventId(), booking.getNumberOfTickets(), Integer::sum);
+                                }
+                            }
+                        }
+                    }
+                    
+                    // Rows that did not match: report what they really hold, in one query
+                    List<Integer> missed = new ArrayList<>();
+                    for (Integer id : ids) {
+                        if (results[indexByBooking.get(id)] == null) {
+                            missed.add(id);
+                        }
+                    }
+                    Map<Integer, String> current = new HashMap<>();
+                    if (!missed.isEmpty()) {
+                        try (PreparedStatement ps = connection.prepareStatement(
+                                "SELECT booking_id, payment_status FROM bookings WHERE booking_id = ANY(?)")) {
+                            ps.setArray(1, connection.createArrayOf("int4", missed.toArray()));
+                            try (ResultSet rs = ps.executeQuery()) {
+                                while (rs.next()) {
+                                    current.put(rs.getInt(1), rs.getString(2));
+                                }
+                            }
+                        }
+                    }
+                    for (Integer id : missed) {
+                        int index = indexByBooking.get(id);
+                        PaymentTransition transition = outcomes[index];
+                        String status = current.get(id);
+                        results[index] = new PaymentTransition(id, transition.getFromStatus(), transition.getToStatus())
+                            .rejected(status, status == null
+                                ? "Booking not found."
+                                : "Booking is " + status + ", not " + transition.getFromStatus() + ".");
                     }
+                });
+                
+                // Cancelled seats go back to their events, one counter update per event
+                for (Map.Entry<Integer, Integer> entry : releasedPerEvent.entrySet()) {
+                    EventDao.adjustRemainingCapacity(ss, entry.getKey(), entry.getValue());
                 }
                 
-                ss.close();
-                return true;
+                List<PaymentTransition> applied = new ArrayList<>();
+                for (Integer index : chunk) {
+                    if (results[index].isApplied()) {
+                        applied.add(results[index]);
+                    }
+                }
+                if (!applied.isEmpty()) {
+                    onApplied.accept(applied);
+                }
+                return results;
+            });
+            for (Integer index : chunk) {
+                outcomes[index] = staged[index];
             }
-            tr.rollback();
-            ss.close();
-            return false;
         } catch (Exception ex) {
             ex.printStackTrace();
-            return false;
+            for (Integer index : chunk) {
+                PaymentTransition transition = outcomes[index];
+                outcomes[index] = new PaymentTransition(transition.getBookingId(), transition.getFromStatus(),
+                    transition.getToStatus()).rejected(null, "Status update failed: " + ex.getMessage());
+            }
+        }
+    }
+    
+    // READ - Current payment status only, without loading the booking
+    public String findPaymentStatus(int bookingId) {
+        try {
+            return UnitOfWork.read(ss -> currentPaymentStatus(ss, bookingId));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+    
+    private static final String TRANSITION_SQL =
+        "WITH t AS (" +
+        "UPDATE bookings SET payment_status = ? WHERE booking_id = ? AND payment_status = ? " +
+        "RETURNING booking_id, event_id, user_id, booking_date, ticket_number, number_of_tickets, " +
+        "total_amount, ticket_category) " +
+        "SELECT t.*, e.event_name, u.full_name, u.email, u.phone_number FROM t " +
+        "LEFT JOIN events e ON e.event_id = t.event_id " +
+        "LEFT JOIN users u ON u.user_id = t.user_id";
+    
+    private static final int BULK_CHUNK_SIZE = Integer.getInteger("booking.bulk.chunkSize", 500);
+    
+    private static final String BULK_TRANSITION_SQL =
+        "WITH c AS (SELECT * FROM unnest(?::int[], ?::varchar[], ?::varchar[]) AS c(booking_id, expected, target)), " +
+        "t AS (" +
+        "UPDATE bookings b SET payment_status = c.target FROM c " +
+        "WHERE b.booking_id = c.booking_id AND b.payment_status = c.expected " +
+        "RETURNING b.booking_id, b.event_id, b.user_id, b.booking_date, b.ticket_number, b.number_of_tickets, " +
+        "b.total_amount, b.ticket_category, b.payment_status) " +
+        "SELECT t.*, e.event_name, u.full_name, u.email, u.phone_number FROM t " +
+        "LEFT JOIN events e ON e.event_id = t.event_id " +
+        "LEFT JOIN users u ON u.user_id = t.user_id";
+    
+    private static Booking toTransitionedBooking(ResultSet rs, String status) throws SQLException {
+        Booking booking = new Booking();
+        booking.setBookingId(rs.getInt("booking_id"));
+        booking.setEventId(rs.getInt("event_id"));
+        booking.setUserId(rs.getInt("user_id"));
+        booking.setBookingDate(rs.getTimestamp("booking_date"));
+        booking.setPaymentStatus(status);
+        booking.setTicketNumber(rs.getString("ticket_number"));
+        booking.setNumberOfTickets(rs.getInt("number_of_tickets"));
+        booking.setTotalAmount(rs.getDouble("total_amount"));
+        booking.setTicketCategory(rs.getString("ticket_category"));
+        booking.setEventName(rs.getString("event_name"));
+        booking.setUserName(rs.getString("full_name"));
+        booking.setUserEmail(rs.getString("email"));
+        booking.setUserPhone(rs.getString("phone_number"));
+        return booking;
+    }
+    
+    private static String currentPaymentStatus(Session ss, int bookingId) {
+        return ss.createNativeQuery(
+            "SELECT payment_status FROM bookings WHERE booking_id = :bookingId", 
+            String.class
+        ).setParameter("bookingId", bookingId).uniqueResult();
+    }
+    
+    // Carries a rejection result out of the unit of work so counter changes are rolled back;
+    // an onApplied callback throws it with a PaymentTransition to veto the transition
+    public static class Rejected extends RuntimeException {
+        final Object result;
+        
+        public Rejected(Object result) {
+            super("rejected", null, false, false);
+            this.result = result;
         }
     }
     
     // Get booking with all relationships loaded for notifications
     public Booking getBookingWithRelations(int bookingId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Booking booking = ss.get(Booking.class, bookingId);
-            if (booking != null) {
-                // Force load relationships while session is open
-                if (booking.getEvent() != null) {
-                    booking.getEvent().getEventName(); // Trigger lazy load
-                    if (booking.getEvent().getVenue() != null) {
-                        booking.getEvent().getVenue().getVenueName(); // Trigger lazy load
+            return UnitOfWork.read(ss -> {
+                Booking booking = ss.get(Booking.class, bookingId);
+                if (booking != null) {
+                    // Force load relationships while session is open
+                    if (booking.getEvent() != null) {
+                        booking.getEvent().getEventName(); // Trigger lazy load
+                        if (booking.getEvent().getVenue() != null) {
+                            booking.getEvent().getVenue().getVenueName(); // Trigger lazy load
+                        }
+                        if (booking.getEvent().getOrganizer() != null) {
+                            booking.getEvent().getOrganizer().getFullName(); // Trigger lazy load
+                        }
                     }
-                    if (booking.getEvent().getOrganizer() != null) {
-                        booking.getEvent().getOrganizer().getFullName(); // Trigger lazy load
+                    if (booking.getUser() != null) {
+                        booking.getUser().getFullName(); // Trigger lazy load
+                        booking.getUser().getEmail(); // Trigger lazy load
+                        booking.getUser().getPhoneNumber(); // Trigger lazy load
                     }
                 }
-                if (booking.getUser() != null) {
-                    booking.getUser().getFullName(); // Trigger lazy load
-                    booking.getUser().getEmail(); // Trigger lazy load
-                    booking.getUser().getPhoneNumber(); // Trigger lazy load
-                }
-            }
-            // Keep session open - will be closed by caller or use different approach
-            // For now, we'll return and let service handle it
-            Booking result = booking;
-            ss.close();
-            return result;
+                return booking;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
         }
     }
     
-    // Generate ticket number
+    // Generate ticket number (unique, monotonic, with a check character)
     public String generateTicketNumber() {
-        return "TKT-" + System.currentTimeMillis();
+        return TicketNumberGenerator.getInstance().nextTicketNumber();
     }
 }
-
@@ -0,0 +1,53 @@
+package dao;
+
+import java.util.List;
+import model.DashboardSnapshot;
+
+/**
+ * Dashboard DAO - aggregate queries for the admin dashboard
+ * 
+ * @author 27066
+ */
+public class DashboardDao {
+    
+    // READ - All dashboard counters in one session
+    public DashboardSnapshot getSnapshot() {
+        try {
+            // All counters on one connection in one read-only transaction
+            return UnitOfWork.read(ss -> {
+                DashboardSnapshot snapshot = new DashboardSnapshot();
+                
+                Object[] eventCounts = ss.createQuery(
+                    "SELECT COUNT(e), " +
+                    "COALESCE(SUM(CASE WHEN e.status = 'scheduled' AND e.eventDate >= CURRENT_DATE THEN 1 ELSE 0 END), 0) " +
+                    "FROM Event e", 
+                    Object[].class
+                ).uniqueResult();
+                snapshot.setTotalEvents(((Number) eventCounts[0]).longValue());
+                snapshot.setScheduledEvents(((Number) eventCounts[1]).longValue());
+                
+                Long userCount = ss.createQuery("SELECT COUNT(u) FROM User u", Long.class).uniqueResult();
+                snapshot.setTotalUsers(userCount != null ? userCount : 0);
+                
+                List<Object[]> byStatus = ss.createQuery(
+                    "SELECT b.paymentStatus, COUNT(b), COALESCE(SUM(b.totalAmount), 0) " +
+                    "FROM Booking b GROUP BY b.paymentStatus", 
+                    Object[].class
+                ).list();
+                long totalBookings = 0;
+                for (Object[] row : byStatus) {
+                    String status = row[0] != null ? (String) row[0] : "unknown";
+                    long count = ((Number) row[1]).longValue();
+                    totalBookings += count;
+                    snapshot.getBookingsByStatus().put(status, count);
+                    snapshot.getRevenueByStatus().put(status, ((Number) row[2]).doubleValue());
+                }
+                snapshot.setTotalBookings(totalBookings);
+                return snapshot;
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+}
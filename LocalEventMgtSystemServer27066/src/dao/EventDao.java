@@ -1,15 +1,24 @@
 package dao;
 
-import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 import model.Event;
 import model.Venue;
 import model.User;
 import org.hibernate.*;
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 
 /**
  * Event DAO with Hibernate implementation
+ * Every method runs inside a UnitOfWork, joining the caller's session when one is bound
  * 
  * @author 27066
  */
@@ -18,23 +27,23 @@ public class EventDao {
     // CREATE
     public Event createEvent(Event eventObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            
-            // If venue/organizer are not set but IDs are, load them
-            if (eventObj.getVenue() == null && eventObj.getVenueId() > 0) {
-                Venue venue = ss.get(Venue.class, eventObj.getVenueId());
-                eventObj.setVenue(venue);
-            }
-            if (eventObj.getOrganizer() == null && eventObj.getOrganizerId() > 0) {
-                User organizer = ss.get(User.class, eventObj.getOrganizerId());
-                eventObj.setOrganizer(organizer);
-            }
-            
-            ss.save(eventObj);
-            tr.commit();
-            ss.close();
-            return eventObj;
+            return UnitOfWork.execute(ss -> {
+                // If venue/organizer are not set but IDs are, load them
+                if (eventObj.getVenue() == null && eventObj.getVenueId() > 0) {
+                    Venue venue = ss.get(Venue.class, eventObj.getVenueId());
+                    eventObj.setVenue(venue);
+                }
+                if (eventObj.getOrganizer() == null && eventObj.getOrganizerId() > 0) {
+                    User organizer = ss.get(User.class, eventObj.getOrganizerId());
+                    eventObj.setOrganizer(organizer);
+                }
+                
+                // Nothing is sold yet, every seat is available
+                eventObj.setRemainingCapacity(eventObj.getCapacity());
+                
+                ss.save(eventObj);
+                return eventObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -44,41 +53,50 @@ public class EventDao {
     // UPDATE
     public Event updateEvent(Event eventObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            
-            // Load existing event to preserve relationships
-            Event existing = ss.get(Event.class, eventObj.getEventId());
-            if (existing == null) {
-                tr.rollback();
-                ss.close();
-                return null;
-            }
-            
-            // Update venue if changed
-            if (eventObj.getVenueId() > 0 && 
-                (existing.getVenue() == null || existing.getVenue().getVenueId() != eventObj.getVenueId())) {
-                Venue venue = ss.get(Venue.class, eventObj.getVenueId());
-                existing.setVenue(venue);
-            }
-            
-            // Update other fields
-            existing.setEventName(eventObj.getEventName());
-            existing.setEventDescription(eventObj.getEventDescription());
-            existing.setEventDate(eventObj.getEventDate());
-            existing.setEventTime(eventObj.getEventTime());
-            existing.setCapacity(eventObj.getCapacity());
-            existing.setTicketPrice(eventObj.getTicketPrice());
-            existing.setVvipPrice(eventObj.getVvipPrice());
-            existing.setVipPrice(eventObj.getVipPrice());
-            existing.setCasualPrice(eventObj.getCasualPrice());
-            existing.setPricingType(eventObj.getPricingType());
-            existing.setStatus(eventObj.getStatus());
-            
-            ss.update(existing);
-            tr.commit();
-            ss.close();
-            return existing;
+            return UnitOfWork.execute(ss -> {
+                // Load existing event to preserve relationships
+                Event existing = ss.get(Event.class, eventObj.getEventId());
+                if (existing == null) {
+                    return null;
+                }
+                
+                // Update venue if changed
+                if (eventObj.getVenueId() > 0 && 
+                    (existing.getVenue() == null || existing.getVenue().getVenueId() != eventObj.getVenueId())) {
+                    Venue venue = ss.get(Venue.class, eventObj.getVenueId());
+                    existing.setVenue(venue);
+                }
+                
+                // Shift the remaining seats by the capacity change so sold tickets stay sold.
+                // A cut larger than the unsold seats is rejected, not clamped: it is taken from the
+                // counter like a claim, before the new capacity is flushed, and fails if the seats are gone.
+                int capacityDelta = eventObj.getCapacity() - existing.getCapacity();
+                if (capacityDelta < 0) {
+                    initRemainingCapacity(ss, existing.getEventId());
+                    if (claimCapacity(ss, existing.getEventId(), -capacityDelta) < 0) {
+                        throw new IllegalStateException("Capacity of event " + existing.getEventId() + " cannot drop to "
+                            + eventObj.getCapacity() + ": fewer than " + (-capacityDelta) + " seats are unsold");
+                    }
+                } else if (capacityDelta > 0) {
+                    adjustRemainingCapacity(ss, existing.getEventId(), capacityDelta);
+                }
+                
+                // Update other fields
+                existing.setEventName(eventObj.getEventName());
+                existing.setEventDescription(eventObj.getEventDescription());
+                existing.setEventDate(eventObj.getEventDate());
+                existing.setEventTime(eventObj.getEventTime());
+                existing.setCapacity(eventObj.getCapacity());
+                existing.setTicketPrice(eventObj.getTicketPrice());
+                existing.setVvipPrice(eventObj.getVvipPrice());
+                existing.setVipPrice(eventObj.getVipPrice());
+                existing.setCasualPrice(eventObj.getCasualPrice());
+                existing.setPricingType(eventObj.getPricingType());
+                existing.setStatus(eventObj.getStatus());
+                
+                ss.update(existing);
+                return existing;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -88,46 +106,39 @@ public class EventDao {
     // DELETE
     public Event deleteEvent(Event eventObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            
-            // Load the event to check if it's expired
-            Event existingEvent = ss.get(Event.class, eventObj.getEventId());
-            if (existingEvent == null) {
-                tr.rollback();
-                ss.close();
-                return null;
-            }
-            
-            // Check if event is expired (event date has passed)
-            boolean isExpired = false;
-            if (existingEvent.getEventDate() != null) {
-                java.util.Date today = new java.util.Date();
-                java.util.Date eventDate = new java.util.Date(existingEvent.getEventDate().getTime());
-                isExpired = eventDate.before(today);
-            }
-            
-            // Only check for paid bookings if event is NOT expired
-            // Expired events can be deleted even with paid bookings (event has passed, tickets used)
-            if (!isExpired) {
-                Query<Long> checkQuery = ss.createQuery(
-                    "SELECT COUNT(*) FROM Booking WHERE event.eventId = :eventId AND paymentStatus = 'paid'", 
-                    Long.class
-                );
-                checkQuery.setParameter("eventId", eventObj.getEventId());
-                Long count = checkQuery.uniqueResult();
+            return UnitOfWork.execute(ss -> {
+                // Load the event to check if it's expired
+                Event existingEvent = ss.get(Event.class, eventObj.getEventId());
+                if (existingEvent == null) {
+                    return null;
+                }
                 
-                if (count != null && count > 0) {
-                    tr.rollback();
-                    ss.close();
-                    return null; // Cannot delete non-expired event with paid bookings
+                // Check if event is expired (event date has passed)
+                boolean isExpired = false;
+                if (existingEvent.getEventDate() != null) {
+                    java.util.Date today = new java.util.Date();
+                    java.util.Date eventDate = new java.util.Date(existingEvent.getEventDate().getTime());
+                    isExpired = eventDate.before(today);
                 }
-            }
-            
-            ss.delete(existingEvent);
-            tr.commit();
-            ss.close();
-            return eventObj;
+                
+                // Only check for paid bookings if event is NOT expired
+                // Expired events can be deleted even with paid bookings (event has passed, tickets used)
+                if (!isExpired) {
+                    Query<Long> checkQuery = ss.createQuery(
+                        "SELECT COUNT(*) FROM Booking WHERE event.eventId = :eventId AND paymentStatus = 'paid'", 
+                        Long.class
+                    );
+                    checkQuery.setParameter("eventId", eventObj.getEventId());
+                    Long count = checkQuery.uniqueResult();
+                    
+                    if (count != null && count > 0) {
+                        return null; // Cannot delete non-expired event with paid bookings
+                    }
+                }
+                
+                ss.delete(existingEvent);
+                return eventObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -136,24 +147,13 @@ public class EventDao {
     
     // READ - Find by ID
     public Event findEventById(Event eventObj) {
-        try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Event event = ss.get(Event.class, eventObj.getEventId());
-            ss.close();
-            return event;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return null;
-        }
+        return findEventById(eventObj.getEventId());
     }
     
     // READ - Find by ID (int)
     public Event findEventById(int eventId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Event event = ss.get(Event.class, eventId);
-            ss.close();
-            return event;
+            return UnitOfWork.read(ss -> ss.get(Event.class, eventId));
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -163,14 +163,10 @@ public class EventDao {
     // READ - Find all events
     public List<Event> findAllEvents() {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<Event> query = ss.createQuery(
+            return UnitOfWork.read(ss -> ss.createQuery(
                 "FROM Event ORDER BY eventDate, eventTime", 
                 Event.class
-            );
-            List<Event> events = query.list();
-            ss.close();
-            return events;
+            ).list());
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -180,15 +176,14 @@ public class EventDao {
     // READ - Find events by organizer
     public List<Event> findEventsByOrganizer(int organizerId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<Event> query = ss.createQuery(
-                "FROM Event WHERE organizer.userId = :organizerId ORDER BY eventDate, eventTime", 
-                Event.class
-            );
-            query.setParameter("organizerId", organizerId);
-            List<Event> events = query.list();
-            ss.close();
-            return events;
+            return UnitOfWork.read(ss -> {
+                Query<Event> query = ss.createQuery(
+                    "FROM Event WHERE organizer.userId = :organizerId ORDER BY eventDate, eventTime", 
+                    Event.class
+                );
+                query.setParameter("organizerId", organizerId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -198,14 +193,10 @@ public class EventDao {
     // READ - Find scheduled events
     public List<Event> findScheduledEvents() {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<Event> query = ss.createQuery(
+            return UnitOfWork.read(ss -> ss.createQuery(
                 "FROM Event WHERE status = 'scheduled' AND eventDate >= CURRENT_DATE ORDER BY eventDate, eventTime", 
                 Event.class
-            );
-            List<Event> events = query.list();
-            ss.close();
-            return events;
+            ).list());
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -215,33 +206,271 @@ public class EventDao {
     // READ - Get available capacity
     public int getAvailableCapacity(int eventId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
+            Integer remaining = UnitOfWork.execute(ss -> {
+                // Seed the counter once for events created before it existed
+                initRemainingCapacity(ss, eventId);
+                
+                return ss.createNativeQuery(
+                    "SELECT remaining_capacity FROM events WHERE event_id = :eventId", 
+                    Integer.class
+                ).setParameter("eventId", eventId).uniqueResult();
+            });
+            return remaining != null ? remaining : 0;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return 0;
+        }
+    }
+    
+    // READ - Available capacity for many events in one grouped query
+    public Map<Integer, Integer> getAvailableCapacities(Collection<Integer> eventIds) {
+        Map<Integer, Integer> capacities = new HashMap<>();
+        if (eventIds == null || eventIds.isEmpty()) {
+            return capacities;
+        }
+        try {
+            // Bookings are only summed for legacy rows whose counter has not been seeded yet
+            List<Object[]> rows = UnitOfWork.read(ss -> ss.createNativeQuery(
+                "SELECT e.event_id, COALESCE(e.remaining_capacity, e.capacity - COALESCE(SUM(b.number_of_tickets), 0)) " +
+                "FROM events e LEFT JOIN bookings b ON b.event_id = e.event_id " +
+                "AND b.payment_status <> 'cancelled' AND e.remaining_capacity IS NULL " +
+                "WHERE e.event_id IN (:eventIds) " +
+                "GROUP BY e.event_id, e.remaining_capacity, e.capacity", 
+                Object[].class
+            ).setParameterList("eventIds", eventIds).list());
             
-            // Get event capacity
-            Event event = ss.get(Event.class, eventId);
-            if (event == null) {
-                ss.close();
-                return 0;
+            for (Object[] row : rows) {
+                capacities.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
             }
-            
-            int totalCapacity = event.getCapacity();
-            
-            // Count booked tickets
-            Query<Long> bookingQuery = ss.createQuery(
-                "SELECT COALESCE(SUM(numberOfTickets), 0) FROM Booking WHERE event.eventId = :eventId AND paymentStatus != 'cancelled'", 
-                Long.class
-            );
-            bookingQuery.setParameter("eventId", eventId);
-            Long bookedTickets = bookingQuery.uniqueResult();
-            
-            ss.close();
-            
-            int booked = bookedTickets != null ? bookedTickets.intValue() : 0;
-            return totalCapacity - booked;
+            return capacities;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+    
+    // READ - Scheduled events with remainingCapacity filled in
+    public List<Event> findScheduledEventsWithAvailability() {
+        List<Event> events = findScheduledEvents();
+        if (events == null) {
+            return null;
+        }
+        
+        List<Integer> unseeded = new ArrayList<>();
+        for (Event event : events) {
+            if (event.getRemainingCapacity() == null) {
+                unseeded.add(event.getEventId());
+            }
+        }
+        if (!unseeded.isEmpty()) {
+            Map<Integer, Integer> capacities = getAvailableCapacities(unseeded);
+            if (capacities != null) {
+                for (Event event : events) {
+                    if (event.getRemainingCapacity() == null) {
+                        event.setRemainingCapacity(capacities.getOrDefault(event.getEventId(), 0));
+                    }
+                }
+            }
+        }
+        return events;
+    }
+    
+    // READ - Events whose expiry notice has not been sent yet: (event_id, start timestamp)
+    public List<Object[]> findPendingExpiries() {
+        try {
+            return UnitOfWork.read(ss -> ss.createNativeQuery(
+                "SELECT event_id, event_date + COALESCE(event_time, TIME '00:00') FROM events " +
+                "WHERE expiry_notified_at IS NULL AND status NOT IN ('cancelled', 'completed')", 
+                Object[].class
+            ).list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+    
+    // UPDATE - Treat events that ended more than graceDays ago as already notified
+    public int markHistoricExpiries(int graceDays) {
+        try {
+            return UnitOfWork.execute(ss -> eventsUpdate(ss,
+                "UPDATE events SET expiry_notified_at = LOCALTIMESTAMP " +
+                "WHERE expiry_notified_at IS NULL AND event_date < CURRENT_DATE - :graceDays"
+            ).setParameter("graceDays", graceDays).executeUpdate());
         } catch (Exception ex) {
             ex.printStackTrace();
             return 0;
         }
     }
+    
+    // UPDATE - Allow a new expiry notice once an event has been moved back into the future
+    public boolean resetExpiryNotice(int eventId) {
+        try {
+            UnitOfWork.execute(ss -> eventsUpdate(ss,
+                "UPDATE events SET expiry_notified_at = NULL " +
+                "WHERE event_id = :eventId AND event_date + COALESCE(event_time, TIME '00:00') > LOCALTIMESTAMP"
+            ).setParameter("eventId", eventId).executeUpdate());
+            return true;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Send the expiry notices of the given events at most once. expiry_notified_at is
+     * flipped from NULL in the same transaction that calls notifier, so only one caller
+     * wins, and a notifier that fails (returns false) rolls every flag back for a later
+     * retry. Claiming the events that fall due together in one transaction lets their
+     * notices be coalesced into one admin digest.
+     * Returns the number sent (0 when there was nothing to send: already sent,
+     * rescheduled, cancelled or not started yet), null on failure.
+     */
+    public Integer sendExpiryNotices(Collection<Integer> eventIds, Predicate<Event> notifier) {
+        try {
+            return UnitOfWork.execute(ss -> {
+                List<Event> events = ss.doReturningWork(connection -> {
+                    List<Event> claimed = new ArrayList<>();
+                    try (PreparedStatement ps = connection.prepareStatement(
+                            "UPDATE events SET expiry_notified_at = LOCALTIMESTAMP " +
+                            "WHERE event_id = ANY(?) AND expiry_notified_at IS NULL " +
+                            "AND status NOT IN ('cancelled', 'completed') " +
+                            "AND event_date + COALESCE(event_time, TIME '00:00') <= LOCALTIMESTAMP " +
+                            "RETURNING event_id, event_name, event_date")) {
+                        ps.setArray(1, connection.createArrayOf("int4", eventIds.toArray()));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                Event event = new Event();
+                                event.setEventId(rs.getInt(1));
+                                event.setEventName(rs.getString(2));
+                                event.setEventDate(rs.getDate(3));
+                                claimed.add(event);
+                            }
+                        }
+                    }
+                    return claimed;
+                });
+                for (Event event : events) {
+                    if (!notifier.test(event)) {
+                        throw new IllegalStateException("Expiry notice for event " + event.getEventId() + " was not sent");
+                    }
+                }
+                return events.size();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+    
+    // UPDATE - Rebuild every event's remaining_capacity from the bookings table
+    public boolean reconcileRemainingCapacity() {
+        try {
+            UnitOfWork.execute(ss -> eventsUpdate(ss,
+                "UPDATE events e SET remaining_capacity = e.capacity - COALESCE(" +
+                "(SELECT SUM(b.number_of_tickets) FROM bookings b " +
+                "WHERE b.event_id = e.event_id AND b.payment_status <> 'cancelled'), 0)"
+            ).executeUpdate());
+            return true;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Backfill remaining_capacity from the bookings table when it is still NULL
+     * (rows created before the column was added). Concurrent callers serialize
+     * on the row lock and the loser re-checks IS NULL, so this runs once.
+     */
+    static void initRemainingCapacity(Session ss, int eventId) {
+        eventsUpdate(ss,
+            "UPDATE events e SET remaining_capacity = e.capacity - COALESCE(" +
+            "(SELECT SUM(b.number_of_tickets) FROM bookings b " +
+            "WHERE b.event_id = e.event_id AND b.payment_status <> 'cancelled'), 0) " +
+            "WHERE e.event_id = :eventId AND e.remaining_capacity IS NULL"
+        ).setParameter("eventId", eventId).executeUpdate();
+    }
+    
+    /**
+     * Atomically take tickets from the event's counter.
+     * Returns the seats left after the claim, or -1 if there were not enough.
+     */
+    static int claimCapacity(Session ss, int eventId, int quantity) {
+        return ss.doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE events SET remaining_capacity = remaining_capacity - ? " +
+                    "WHERE event_id = ? AND remaining_capacity >= ? RETURNING remaining_capacity")) {
+                ps.setInt(1, quantity);
+                ps.setInt(2, eventId);
+                ps.setInt(3, quantity);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : -1;
+                }
+            }
+        });
+    }
+    
+    /**
+     * Grouped initRemainingCapacity for several events in one statement
+     */
+    static void initRemainingCapacities(Session ss, Collection<Integer> eventIds) {
+        eventsUpdate(ss,
+            "UPDATE events e SET remaining_capacity = e.capacity - COALESCE(" +
+            "(SELECT SUM(b.number_of_tickets) FROM bookings b " +
+            "WHERE b.event_id = e.event_id AND b.payment_status <> 'cancelled'), 0) " +
+            "WHERE e.event_id IN (:eventIds) AND e.remaining_capacity IS NULL"
+        ).setParameterList("eventIds", eventIds).executeUpdate();
+    }
+    
+    /**
+     * Atomically take tickets from several events' counters in one statement.
+     * Rows are locked in event_id order so overlapping group claims cannot deadlock.
+     * Returns the seats left per event that had enough; events missing from the
+     * map were short, and the caller must roll back.
+     */
+    static Map<Integer, Integer> claimCapacities(Session ss, Map<Integer, Integer> ticketsPerEvent) {
+        Integer[] eventIds = ticketsPerEvent.keySet().toArray(new Integer[0]);
+        Integer[] quantities = new Integer[eventIds.length];
+        for (int i = 0; i < eventIds.length; i++) {
+            quantities[i] = ticketsPerEvent.get(eventIds[i]);
+        }
+        return ss.doReturningWork(connection -> {
+            Map<Integer, Integer> remaining = new HashMap<>();
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "WITH c AS (SELECT * FROM unnest(?::int[], ?::int[]) AS c(event_id, qty)), " +
+                    "l AS (SELECT e.event_id FROM events e JOIN c ON c.event_id = e.event_id " +
+                    "ORDER BY e.event_id FOR UPDATE OF e) " +
+                    "UPDATE events e SET remaining_capacity = e.remaining_capacity - c.qty FROM c, l " +
+                    "WHERE e.event_id = c.event_id AND l.event_id = c.event_id AND e.remaining_capacity >= c.qty " +
+                    "RETURNING e.event_id, e.remaining_capacity")) {
+                ps.setArray(1, connection.createArrayOf("int4", eventIds));
+                ps.setArray(2, connection.createArrayOf("int4", quantities));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        remaining.put(rs.getInt(1), rs.getInt(2));
+                    }
+                }
+            }
+            return remaining;
+        });
+    }
+    
+    /**
+     * Unconditionally move the event's counter by delta (release on cancel, capacity edits)
+     */
+    static void adjustRemainingCapacity(Session ss, int eventId, int delta) {
+        eventsUpdate(ss,
+            "UPDATE events SET remaining_capacity = remaining_capacity + :delta " +
+            "WHERE event_id = :eventId AND remaining_capacity IS NOT NULL"
+        ).setParameter("delta", delta).setParameter("eventId", eventId).executeUpdate();
+    }
+    
+    /**
+     * Native UPDATE on events only. Without a declared query space Hibernate
+     * assumes a native statement may touch any table and evicts every
+     * second-level cache region (venues, users, tags) on each seat claim.
+     */
+    private static MutationQuery eventsUpdate(Session ss, String sql) {
+        return ((NativeQuery<?>) ss.createNativeMutationQuery(sql)).addSynchronizedEntityClass(Event.class);
+    }
 }
-
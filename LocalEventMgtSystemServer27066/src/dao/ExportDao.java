@@ -0,0 +1,126 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+/**
+ * Report export queries, read through a stateless session and a forward-only cursor.
+ *
+ * - No persistence context: rows are flat tuples and nothing is cached or dirty-checked
+ * - The JDBC fetch size bounds how many rows the driver buffers (PostgreSQL only
+ *   honours it inside a transaction, so the stream keeps one open until closed)
+ * - Rows are handed out in chunks with next(max); memory stays at one chunk
+ *   no matter how large the table is
+ *
+ * @author 27066
+ */
+public class ExportDao {
+    
+    public static final String[] BOOKING_HEADERS = {"Booking ID", "Ticket Number", "Event", "Customer",
+        "Booking Date", "Tickets", "Category", "Amount", "Status"};
+    
+    public static final String[] EVENT_HEADERS = {"Event ID", "Event Name", "Description", "Date", "Time",
+        "Venue", "Organizer", "Capacity", "Ticket Price", "Status"};
+    
+    // Column order matches BOOKING_HEADERS; ordered by primary key so the scan can follow the index
+    private static final String BOOKINGS_HQL =
+        "SELECT b.bookingId, b.ticketNumber, e.eventName, u.fullName, b.bookingDate, " +
+        "b.numberOfTickets, COALESCE(b.ticketCategory, 'Standard'), b.totalAmount, b.paymentStatus " +
+        "FROM Booking b " +
+        "LEFT JOIN b.event e " +
+        "LEFT JOIN b.user u " +
+        "ORDER BY b.bookingId";
+    
+    // Column order matches EVENT_HEADERS
+    private static final String EVENTS_HQL =
+        "SELECT e.eventId, e.eventName, e.eventDescription, e.eventDate, e.eventTime, " +
+        "v.venueName, o.fullName, e.capacity, e.ticketPrice, e.status " +
+        "FROM Event e " +
+        "LEFT JOIN e.venue v " +
+        "LEFT JOIN e.organizer o " +
+        "ORDER BY e.eventId";
+    
+    // Open a cursor over every booking
+    public RowStream openBookings(int fetchSize) {
+        return open(BOOKINGS_HQL, fetchSize);
+    }
+    
+    // Open a cursor over every event
+    public RowStream openEvents(int fetchSize) {
+        return open(EVENTS_HQL, fetchSize);
+    }
+    
+    private RowStream open(String hql, int fetchSize) {
+        StatelessSession ss = null;
+        try {
+            ss = HibernateUtil.getSessionFactory().openStatelessSession();
+            Transaction tr = ss.beginTransaction();
+            ScrollableResults<Object[]> rows = ss.createQuery(hql, Object[].class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY);
+            return new RowStream(ss, tr, rows);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            if (ss != null) {
+                ss.close();
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Open forward-only cursor. Holds one pooled connection until close().
+     */
+    public static final class RowStream implements AutoCloseable {
+        
+        private final StatelessSession session;
+        private final Transaction transaction;
+        private final ScrollableResults<Object[]> rows;
+        private boolean exhausted;
+        
+        private RowStream(StatelessSession session, Transaction transaction, ScrollableResults<Object[]> rows) {
+            this.session = session;
+            this.transaction = transaction;
+            this.rows = rows;
+        }
+        
+        /**
+         * Up to max rows; an empty list once the cursor is exhausted
+         */
+        public List<Object[]> next(int max) {
+            List<Object[]> chunk = new ArrayList<>(Math.min(max, 1024));
+            while (!exhausted && chunk.size() < max) {
+                if (rows.next()) {
+                    chunk.add(rows.get());
+                } else {
+                    exhausted = true;
+                }
+            }
+            return chunk;
+        }
+        
+        public boolean isExhausted() {
+            return exhausted;
+        }
+        
+        @Override
+        public void close() {
+            try {
+                rows.close();
+                if (transaction.isActive()) {
+                    // Read-only: nothing to commit, just end the transaction
+                    transaction.rollback();
+                }
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            } finally {
+                session.close();
+            }
+        }
+    }
+}
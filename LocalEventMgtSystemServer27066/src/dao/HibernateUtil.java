@@ -3,6 +3,7 @@ package dao;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
 import org.hibernate.service.ServiceRegistry;
 
 // Import all entity classes
@@ -12,6 +13,9 @@ import model.Event;
 import model.Booking;
 import model.UserProfile;
 import model.EventTag;
+import model.OutboxMessage;
+import model.InboxNotification;
+import model.UnreadCounter;
 
 /**
  * Hibernate Utility class with a convenient method to get Session Factory
@@ -21,7 +25,7 @@ import model.EventTag;
  * @author 27066
  */
 public class HibernateUtil {
-
+    
     private static final SessionFactory sessionFactory;
     private static final ServiceRegistry serviceRegistry;
     
@@ -32,6 +36,14 @@ public class HibernateUtil {
             Configuration configuration = new Configuration();
             configuration.configure("hibernate.cfg.xml");
             
+            // -Dhibernate.* overrides the file, e.g. hibernate.connection.url to point the server
+            // (or the tests) at another database, or hibernate.show_sql=false for benchmarks
+            for (String key : System.getProperties().stringPropertyNames()) {
+                if (key.startsWith("hibernate.")) {
+                    configuration.setProperty(key, System.getProperty(key));
+                }
+            }
+            
             // Explicitly add annotated classes (required for Hibernate 6 in JAR)
             configuration.addAnnotatedClass(User.class);
             configuration.addAnnotatedClass(Venue.class);
@@ -39,9 +51,15 @@ public class HibernateUtil {
             configuration.addAnnotatedClass(Booking.class);
             configuration.addAnnotatedClass(UserProfile.class);
             configuration.addAnnotatedClass(EventTag.class);
+            configuration.addAnnotatedClass(OutboxMessage.class);
+            configuration.addAnnotatedClass(InboxNotification.class);
+            configuration.addAnnotatedClass(UnreadCounter.class);
             
             System.out.println("Entity classes registered successfully");
             
+            // Move existing SERIAL/identity keys to pooled sequences before Hibernate validates them
+            SequenceMigration.run(configuration.getProperties());
+            
             // Build service registry
             serviceRegistry = new StandardServiceRegistryBuilder()
                     .applySettings(configuration.getProperties())
@@ -52,6 +70,9 @@ public class HibernateUtil {
             
             System.out.println("SessionFactory created successfully");
             
+            // Indexes hbm2ddl cannot express (NULLS LAST, operator classes)
+            SchemaMigration.run(configuration.getProperties());
+            
         } catch (Throwable ex) {
             // Log the exception. 
             System.err.println("Initial SessionFactory creation failed: " + ex);
@@ -64,6 +85,17 @@ public class HibernateUtil {
         return sessionFactory;
     }
     
+    /**
+     * The HikariCP pool behind the session factory, or null when another provider is configured
+     */
+    public static PooledConnectionProvider getConnectionPool() {
+        ConnectionProvider provider = serviceRegistry.getService(ConnectionProvider.class);
+        if (provider != null && provider.isUnwrappableAs(PooledConnectionProvider.class)) {
+            return provider.unwrap(PooledConnectionProvider.class);
+        }
+        return null;
+    }
+    
     public static void shutdown() {
         // Close caches and connection pools
         if (sessionFactory != null) {
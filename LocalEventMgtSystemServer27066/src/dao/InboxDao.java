@@ -0,0 +1,150 @@
+package dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import model.InboxNotification;
+
+/**
+ * Per-user notification inbox DAO
+ * append() joins the caller's UnitOfWork like OutboxDao.append(), so the inbox rows
+ * commit with the change they announce. notification_unread is adjusted by the same
+ * statement that appends or marks rows, so unreadCount() is a primary-key lookup
+ * instead of a COUNT over the inbox.
+ *
+ * @author 27066
+ */
+public class InboxDao {
+    
+    // Recipients are locked in user_id order so concurrent fan-outs cannot deadlock on the counters
+    private static final String APPEND_SQL =
+        "WITH appended AS (" +
+        "  INSERT INTO notification_inbox (user_id, notification_type, body, created_at) " +
+        "  SELECT user_id, ?, ?, LOCALTIMESTAMP FROM users WHERE %s ORDER BY user_id " +
+        "  RETURNING user_id) " +
+        "INSERT INTO notification_unread (user_id, unread_count) " +
+        "SELECT user_id, COUNT(*) FROM appended GROUP BY user_id ORDER BY user_id " +
+        "ON CONFLICT (user_id) DO UPDATE SET unread_count = notification_unread.unread_count + EXCLUDED.unread_count";
+    
+    // CREATE - Append a notification to its recipients' inboxes in the current transaction:
+    // the userId property's user, otherwise every active user of targetRole.
+    // Returns the number of inboxes written, or -1 on failure.
+    public int append(String notificationType, String body, Map<String, String> properties) {
+        String userId = properties.get("userId");
+        String targetRole = properties.get("targetRole");
+        if (userId == null && targetRole == null) {
+            return 0;
+        }
+        try {
+            return UnitOfWork.execute(ss -> ss.doReturningWork(connection -> {
+                String recipients = userId != null ? "user_id = ?" : "user_role = ? AND account_status = 'active'";
+                try (PreparedStatement ps = connection.prepareStatement(String.format(APPEND_SQL, recipients))) {
+                    ps.setString(1, notificationType);
+                    ps.setString(2, body);
+                    if (userId != null) {
+                        ps.setInt(3, Integer.parseInt(userId));
+                    } else {
+                        ps.setString(3, targetRole);
+                    }
+                    return ps.executeUpdate();
+                }
+            }));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+    
+    // READ - Up to limit notifications newer than cursor (a notification id), oldest first.
+    // cursor <= 0 returns the newest limit notifications, so a first sync never walks the whole history.
+    public List<InboxNotification> fetchSince(int userId, long cursor, int limit) {
+        try {
+            return UnitOfWork.read(ss -> ss.doReturningWork(connection -> {
+                String sql = cursor > 0
+                    ? "SELECT notification_id, notification_type, body, created_at, read_at FROM notification_inbox " +
+                      "WHERE user_id = ? AND notification_id > ? ORDER BY notification_id LIMIT ?"
+                    : "SELECT * FROM (SELECT notification_id, notification_type, body, created_at, read_at " +
+                      "FROM notification_inbox WHERE user_id = ? ORDER BY notification_id DESC LIMIT ?) newest " +
+                      "ORDER BY notification_id";
+                List<InboxNotification> page = new ArrayList<>();
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setInt(1, userId);
+                    if (cursor > 0) {
+                        ps.setLong(2, cursor);
+                        ps.setInt(3, limit);
+                    } else {
+                        ps.setInt(2, limit);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            InboxNotification notification = new InboxNotification();
+                            notification.setNotificationId(rs.getLong(1));
+                            notification.setUserId(userId);
+                            notification.setNotificationType(rs.getString(2));
+                            notification.setBody(rs.getString(3));
+                            notification.setCreatedAt(rs.getTimestamp(4));
+                            notification.setReadAt(rs.getTimestamp(5));
+                            page.add(notification);
+                        }
+                    }
+                }
+                return page;
+            }));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+    
+    // READ - Maintained unread count; -1 on failure
+    public int unreadCount(int userId) {
+        try {
+            return UnitOfWork.read(ss -> ss.doReturningWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "SELECT unread_count FROM notification_unread WHERE user_id = ?")) {
+                    ps.setInt(1, userId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            }));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+    
+    // UPDATE - Mark the user's unread notifications among ids (all of them when ids is null) as read
+    // and take exactly those off the counter. Returns the remaining unread count, or -1 on failure.
+    public int markRead(int userId, List<Long> ids) {
+        if (ids != null && ids.isEmpty()) {
+            return unreadCount(userId);
+        }
+        try {
+            return UnitOfWork.execute(ss -> ss.doReturningWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "WITH marked AS (" +
+                        "  UPDATE notification_inbox SET read_at = LOCALTIMESTAMP " +
+                        "  WHERE user_id = ? AND read_at IS NULL" + (ids != null ? " AND notification_id = ANY(?)" : "") +
+                        "  RETURNING 1) " +
+                        "UPDATE notification_unread SET unread_count = GREATEST(unread_count - (SELECT COUNT(*) FROM marked), 0) " +
+                        "WHERE user_id = ? RETURNING unread_count")) {
+                    int index = 1;
+                    ps.setInt(index++, userId);
+                    if (ids != null) {
+                        ps.setArray(index++, connection.createArrayOf("int8", ids.toArray()));
+                    }
+                    ps.setInt(index, userId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            }));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * In-process second-level cache for Hibernate, plugged in with
+ * hibernate.cache.region.factory_class in hibernate.cfg.xml.
+ *
+ * Each entity region is a bounded LRU map with a time-to-live:
+ * - hibernate.cache.local.<region>.max_entries  entries kept before the least recently used is evicted (default 1000)
+ * - hibernate.cache.local.<region>.ttl_seconds  seconds an entry stays valid, 0 = no expiry (default 600)
+ *
+ * Invalidation is Hibernate's: READ_WRITE regions are soft-locked when a session
+ * updates or deletes an entity and refreshed after commit, so VenueDao/UserDao
+ * writes never leave a stale entry. The TTL only bounds drift from changes made
+ * outside Hibernate (psql, another application). Hits, misses, puts and
+ * evictions are counted per region for monitoring.
+ *
+ * @author 27066
+ */
+public class LocalRegionFactory extends RegionFactoryTemplate {
+    
+    private static final String PREFIX = "hibernate.cache.local.";
+    
+    private static final Map<String, LocalStorage> REGIONS = new ConcurrentHashMap<>();
+    
+    private Map<String, Object> settings;
+    
+    @Override
+    protected void prepareForUse(SessionFactoryOptions options, Map<String, Object> configValues) {
+        settings = configValues;
+    }
+    
+    @Override
+    protected void releaseFromUse() {
+        REGIONS.values().forEach(LocalStorage::release);
+        REGIONS.clear();
+    }
+    
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.READ_WRITE;
+    }
+    
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        String name = regionConfig.getRegionName();
+        return register(new LocalStorage(name, number(name, "max_entries", 1000), number(name, "ttl_seconds", 600)));
+    }
+    
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return register(new LocalStorage(regionName, number(regionName, "max_entries", 1000), number(regionName, "ttl_seconds", 600)));
+    }
+    
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        // Update timestamps must never be evicted, or cached query results would outlive their tables
+        return register(new LocalStorage(regionName, Integer.MAX_VALUE, 0));
+    }
+    
+    private LocalStorage register(LocalStorage storage) {
+        REGIONS.put(storage.name, storage);
+        System.out.println("Cache region " + storage.name + ": maxEntries=" + storage.maxEntries
+            + ", ttl=" + (storage.ttlMillis / 1000) + "s");
+        return storage;
+    }
+    
+    private int number(String region, String name, int defaultValue) {
+        Object value = settings != null ? settings.get(PREFIX + region + "." + name) : null;
+        return value != null ? Integer.parseInt(value.toString().trim()) : defaultValue;
+    }
+    
+    // Statistics
+    public static String getStatistics() {
+        StringBuilder stats = new StringBuilder("SecondLevelCache[");
+        String separator = "";
+        for (LocalStorage region : REGIONS.values()) {
+            if (region.maxEntries == Integer.MAX_VALUE) {
+                continue; // timestamps region
+            }
+            stats.append(separator).append(region.getStatistics());
+            separator = ", ";
+        }
+        return stats.append(']').toString();
+    }
+    
+    /**
+     * One region: access-ordered LinkedHashMap guarded by its own monitor.
+     * Reference data regions are small, so a single lock is cheaper than the
+     * bookkeeping a concurrent LRU would need.
+     */
+    static final class LocalStorage implements DomainDataStorageAccess {
+        
+        private final String name;
+        private final int maxEntries;
+        private final long ttlMillis;
+        private final LinkedHashMap<Object, Entry> entries;
+        
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong puts = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        
+        LocalStorage(String name, int maxEntries, int ttlSeconds) {
+            this.name = name;
+            this.maxEntries = maxEntries;
+            this.ttlMillis = ttlSeconds * 1000L;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                    if (size() > LocalStorage.this.maxEntries) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(key);
+                if (entry != null && entry.isExpired()) {
+                    entries.remove(key);
+                    evictions.incrementAndGet();
+                    entry = null;
+                }
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            Entry entry = new Entry(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE);
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+            puts.incrementAndGet();
+        }
+        
+        @Override
+        public boolean contains(Object key) {
+            synchronized (entries) {
+                Entry entry = entries.get(key);
+                return entry != null && !entry.isExpired();
+            }
+        }
+        
+        @Override
+        public void evictData() {
+            synchronized (entries) {
+                entries.clear();
+            }
+        }
+        
+        @Override
+        public void evictData(Object key) {
+            synchronized (entries) {
+                entries.remove(key);
+            }
+        }
+        
+        @Override
+        public void release() {
+            evictData();
+        }
+        
+        String getStatistics() {
+            int size;
+            synchronized (entries) {
+                size = entries.size();
+            }
+            long lookups = hits.get() + misses.get();
+            return String.format("%s{size=%d, hits=%d, misses=%d, hitRatio=%.1f%%, puts=%d, evictions=%d}",
+                name, size, hits.get(), misses.get(), lookups == 0 ? 0.0 : hits.get() * 100.0 / lookups,
+                puts.get(), evictions.get());
+        }
+    }
+    
+    private static final class Entry {
+        final Object value;
+        final long expiresAt;
+        
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+        
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
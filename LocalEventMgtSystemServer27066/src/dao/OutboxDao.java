@@ -0,0 +1,176 @@
+package dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import model.OutboxMessage;
+
+/**
+ * Notification outbox DAO
+ * append() joins the caller's UnitOfWork, so the outbox row commits or rolls back
+ * together with the booking/event change it announces. claim() and settle() are the
+ * relay side, in two short transactions around the broker publish: a claimed row is
+ * leased (available_at) rather than locked, failed rows back off on their attempt
+ * count, and rows out of attempts are dead-lettered (failed_at) so they never block
+ * the rows behind them.
+ *
+ * @author 27066
+ */
+public class OutboxDao {
+    
+    // CREATE - Queue a notification in the current transaction
+    public boolean append(String notificationType, String body, Map<String, String> properties) {
+        try {
+            return UnitOfWork.execute(ss -> {
+                ss.persist(new OutboxMessage(notificationType, body, encode(properties)));
+                return true;
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+    
+    // UPDATE - Lease up to limit due rows (rows locked by another relay are skipped) for leaseSeconds and
+    // count the attempt. The short transaction commits before anything is published, so no lock or
+    // connection is held while the broker confirms; a relay that dies mid-publish loses its lease and
+    // the rows become due again. Returns the rows in outbox_id order, or null on failure.
+    public List<OutboxMessage> claim(int limit, int leaseSeconds) {
+        try {
+            return UnitOfWork.execute(ss -> ss.doReturningWork(connection -> {
+                List<OutboxMessage> rows = new ArrayList<>();
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "UPDATE notification_outbox SET attempts = attempts + 1, " +
+                        "available_at = LOCALTIMESTAMP + make_interval(secs => ?) " +
+                        "WHERE outbox_id IN (" +
+                        "  SELECT outbox_id FROM notification_outbox " +
+                        "  WHERE delivered_at IS NULL AND failed_at IS NULL " +
+                        "  AND (available_at IS NULL OR available_at <= LOCALTIMESTAMP) " +
+                        "  ORDER BY outbox_id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                        "RETURNING outbox_id, notification_type, body, properties, created_at, attempts")) {
+                    ps.setInt(1, leaseSeconds);
+                    ps.setInt(2, limit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            OutboxMessage row = new OutboxMessage();
+                            row.setOutboxId(rs.getLong(1));
+                            row.setNotificationType(rs.getString(2));
+                            row.setBody(rs.getString(3));
+                            row.setProperties(rs.getString(4));
+                            row.setCreatedAt(rs.getTimestamp(5));
+                            row.setAttempts(rs.getInt(6));
+                            rows.add(row);
+                        }
+                    }
+                }
+                rows.sort(Comparator.comparingLong(OutboxMessage::getOutboxId));
+                return rows;
+            }));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+    
+    // UPDATE - Settle claimed rows after publishing: the delivered ids are marked delivered; every other
+    // claimed row is due again after retryMillis * 2^(attempts - 1) (at most maxRetryMillis), or is
+    // dead-lettered (failed_at) once it has had maxAttempts attempts. Returns the number dead-lettered,
+    // or -1 on failure (the leases then expire and the rows are retried).
+    public int settle(List<OutboxMessage> claimed, Collection<Long> delivered,
+                      int maxAttempts, long retryMillis, long maxRetryMillis) {
+        Set<Long> confirmed = new HashSet<>(delivered);
+        List<Long> failed = new ArrayList<>();
+        for (OutboxMessage row : claimed) {
+            if (!confirmed.contains(row.getOutboxId())) {
+                failed.add(row.getOutboxId());
+            }
+        }
+        try {
+            return UnitOfWork.execute(ss -> ss.doReturningWork(connection -> {
+                if (!delivered.isEmpty()) {
+                    try (PreparedStatement ps = connection.prepareStatement(
+                            "UPDATE notification_outbox SET delivered_at = LOCALTIMESTAMP " +
+                            "WHERE outbox_id = ANY(?) AND delivered_at IS NULL")) {
+                        ps.setArray(1, connection.createArrayOf("int8", delivered.toArray()));
+                        ps.executeUpdate();
+                    }
+                }
+                if (failed.isEmpty()) {
+                    return 0;
+                }
+                int deadLettered = 0;
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "UPDATE notification_outbox SET " +
+                        "failed_at = CASE WHEN attempts >= ? THEN LOCALTIMESTAMP END, " +
+                        "available_at = LOCALTIMESTAMP + make_interval(secs => LEAST(? * power(2, LEAST(attempts - 1, 30)), ?) / 1000.0) " +
+                        "WHERE outbox_id = ANY(?) AND delivered_at IS NULL " +
+                        "RETURNING failed_at IS NOT NULL")) {
+                    ps.setInt(1, maxAttempts);
+                    ps.setLong(2, retryMillis);
+                    ps.setLong(3, maxRetryMillis);
+                    ps.setArray(4, connection.createArrayOf("int8", failed.toArray()));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            if (rs.getBoolean(1)) {
+                                deadLettered++;
+                            }
+                        }
+                    }
+                }
+                return deadLettered;
+            }));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+    
+    // DELETE - Drop rows delivered more than retentionHours ago
+    public int purgeDelivered(int retentionHours) {
+        try {
+            return UnitOfWork.execute(ss -> ss.doReturningWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "DELETE FROM notification_outbox " +
+                        "WHERE delivered_at < LOCALTIMESTAMP - make_interval(hours => ?)")) {
+                    ps.setInt(1, retentionHours);
+                    return ps.executeUpdate();
+                }
+            }));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+    
+    // Property values are ids and role names, never line breaks
+    public static String encode(Map<String, String> properties) {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            if (encoded.length() > 0) {
+                encoded.append('\n');
+            }
+            encoded.append(property.getKey()).append('=').append(property.getValue());
+        }
+        return encoded.toString();
+    }
+    
+    public static Map<String, String> decode(String encoded) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (encoded != null && !encoded.isEmpty()) {
+            for (String line : encoded.split("\n")) {
+                int separator = line.indexOf('=');
+                if (separator > 0) {
+                    properties.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return properties;
+    }
+}
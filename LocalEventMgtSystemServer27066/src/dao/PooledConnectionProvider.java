@@ -0,0 +1,170 @@
+package dao;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+/**
+ * HikariCP connection provider for Hibernate, replacing the built-in pool
+ * (hibernate.connection.pool_size), which has no timeouts or validation.
+ * Plugged in with hibernate.connection.provider_class in hibernate.cfg.xml.
+ *
+ * Settings (hibernate.cfg.xml or -D system properties):
+ * - hibernate.pool.max_size                  maximum connections (default 20)
+ * - hibernate.pool.min_idle                  idle connections kept ready (default 5)
+ * - hibernate.pool.acquisition_timeout       ms an RMI thread waits for a connection before failing (default 5000)
+ * - hibernate.pool.leak_detection_threshold  ms a connection may be held before a leak warning, 0 = off (default 20000)
+ * - hibernate.pool.idle_timeout              ms before an idle connection above min_idle is retired (default 300000)
+ * - hibernate.pool.max_lifetime              ms before any connection is recycled (default 1800000)
+ * - hibernate.pool.statement_cache_size      server-prepared statements cached per connection (default 256)
+ * - hibernate.pool.prepare_threshold         executions before a statement is server-prepared (default 3)
+ *
+ * @author 27066
+ */
+public class PooledConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+    
+    private static final String PREFIX = "hibernate.pool.";
+    
+    private HikariDataSource dataSource;
+    
+    // Acquisition metrics, fed by the pool's metrics tracker
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong acquisitionNanos = new AtomicLong();
+    private final AtomicLong maxAcquisitionNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    
+    @Override
+    public void configure(Map<String, Object> settings) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("event-mgt-pool");
+        config.setDriverClassName(string(settings, "hibernate.connection.driver_class", null));
+        config.setJdbcUrl(string(settings, "hibernate.connection.url", null));
+        config.setUsername(string(settings, "hibernate.connection.username", null));
+        config.setPassword(string(settings, "hibernate.connection.password", null));
+        
+        config.setMaximumPoolSize(number(settings, "max_size", 20));
+        config.setMinimumIdle(number(settings, "min_idle", 5));
+        config.setConnectionTimeout(number(settings, "acquisition_timeout", 5000));
+        config.setLeakDetectionThreshold(number(settings, "leak_detection_threshold", 20000));
+        config.setIdleTimeout(number(settings, "idle_timeout", 300000));
+        config.setMaxLifetime(number(settings, "max_lifetime", 1800000));
+        
+        // Prepared-statement caching is done by the PostgreSQL driver, per connection
+        config.addDataSourceProperty("preparedStatementCacheQueries", number(settings, "statement_cache_size", 256));
+        config.addDataSourceProperty("prepareThreshold", number(settings, "prepare_threshold", 3));
+        
+        config.setMetricsTrackerFactory(new AcquisitionTrackerFactory());
+        dataSource = new HikariDataSource(config);
+        
+        System.out.println("Connection pool started: max=" + config.getMaximumPoolSize()
+            + ", minIdle=" + config.getMinimumIdle()
+            + ", acquisitionTimeout=" + config.getConnectionTimeout() + "ms"
+            + ", leakDetection=" + config.getLeakDetectionThreshold() + "ms");
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+    
+    @Override
+    public void closeConnection(Connection conn) throws SQLException {
+        conn.close();
+    }
+    
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+    
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isInstance(this) || unwrapType.isInstance(dataSource);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isInstance(this)) {
+            return (T) this;
+        }
+        if (unwrapType.isInstance(dataSource)) {
+            return (T) dataSource;
+        }
+        throw new IllegalArgumentException("Cannot unwrap to " + unwrapType.getName());
+    }
+    
+    @Override
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+    
+    // Statistics
+    public int getActiveConnections() { return pool() != null ? pool().getActiveConnections() : 0; }
+    public int getIdleConnections() { return pool() != null ? pool().getIdleConnections() : 0; }
+    public int getWaitingThreads() { return pool() != null ? pool().getThreadsAwaitingConnection() : 0; }
+    public int getTotalConnections() { return pool() != null ? pool().getTotalConnections() : 0; }
+    public long getAcquisitionCount() { return acquisitions.get(); }
+    public long getTimeoutCount() { return timeouts.get(); }
+    
+    public double getAverageAcquisitionMillis() {
+        long count = acquisitions.get();
+        return count == 0 ? 0 : acquisitionNanos.get() / (count * 1_000_000.0);
+    }
+    
+    public double getMaxAcquisitionMillis() {
+        return maxAcquisitionNanos.get() / 1_000_000.0;
+    }
+    
+    public String getStatistics() {
+        return String.format("ConnectionPool[active=%d, idle=%d, waiting=%d, total=%d, acquired=%d, "
+            + "avgAcquire=%.2fms, maxAcquire=%.2fms, timeouts=%d]",
+            getActiveConnections(), getIdleConnections(), getWaitingThreads(), getTotalConnections(),
+            getAcquisitionCount(), getAverageAcquisitionMillis(), getMaxAcquisitionMillis(), getTimeoutCount());
+    }
+    
+    private HikariPoolMXBean pool() {
+        return dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+    }
+    
+    private class AcquisitionTrackerFactory implements MetricsTrackerFactory {
+        @Override
+        public IMetricsTracker create(String poolName, PoolStats poolStats) {
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                    acquisitions.incrementAndGet();
+                    acquisitionNanos.addAndGet(elapsedAcquiredNanos);
+                    maxAcquisitionNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+                }
+                
+                @Override
+                public void recordConnectionTimeout() {
+                    timeouts.incrementAndGet();
+                }
+            };
+        }
+    }
+    
+    private static String string(Map<String, Object> settings, String key, String defaultValue) {
+        Object value = settings.get(key);
+        return value != null ? value.toString() : defaultValue;
+    }
+    
+    private static int number(Map<String, Object> settings, String name, int defaultValue) {
+        Object value = settings.get(PREFIX + name);
+        return value != null ? Integer.parseInt(value.toString().trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,134 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Indexes and CHECK constraints that hbm2ddl cannot declare (NULLS LAST, operator classes,
+ * partial) or does not add to existing tables, so databases created or updated by Hibernate
+ * end up with the same ones as database/postgres.sql.
+ * Runs from HibernateUtil after the SessionFactory is built, when hbm2ddl has created
+ * the tables. Idempotent; an index whose definition differs is rebuilt.
+ *
+ * @author 27066
+ */
+public final class SchemaMigration {
+
+    // {name, table, definition as pg_indexes shows it after "USING btree "}
+    private static final String[][] INDEXES = {
+        // Keyset pagination in BookingDao.findBookings (ORDER BY booking_date DESC NULLS LAST, booking_id DESC)
+        {"idx_bookings_date_id", "bookings", "(booking_date DESC NULLS LAST, booking_id DESC)"},
+        // Ticket-number prefix filter (LIKE 'prefix%'), independent of the database collation
+        {"idx_bookings_ticket_prefix", "bookings", "(ticket_number text_pattern_ops)"},
+        // Outbox rows util.OutboxRelay can still claim (in outbox_id order)
+        {"idx_outbox_pending", "notification_outbox", "(outbox_id) WHERE ((delivered_at IS NULL) AND (failed_at IS NULL))"}
+    };
+
+    // {name, table, condition as pg_get_constraintdef shows it}; postgres.sql declares them inline,
+    // so a database built from it already has them under these names
+    private static final String[][] CHECKS = {
+        // Seat counter maintained by EventDao; a negative value means overselling
+        {"events_remaining_capacity_check", "events", "((remaining_capacity >= 0))"}
+    };
+
+    private SchemaMigration() {}
+
+    public static void run(Properties settings) {
+        String url = settings.getProperty("hibernate.connection.url");
+        if (url == null) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(url,
+                settings.getProperty("hibernate.connection.username"),
+                settings.getProperty("hibernate.connection.password"))) {
+            for (String[] index : INDEXES) {
+                try {
+                    createIndex(connection, index[0], index[1], index[2]);
+                } catch (SQLException ex) {
+                    // The others are still created; this one is retried at the next start
+                    System.err.println("Index " + index[0] + " not migrated: " + ex.getMessage());
+                }
+            }
+            for (String[] check : CHECKS) {
+                try {
+                    addCheck(connection, check[0], check[1], check[2]);
+                } catch (SQLException ex) {
+                    System.err.println("Constraint " + check[0] + " not migrated: " + ex.getMessage());
+                }
+            }
+        } catch (SQLException ex) {
+            System.err.println("Schema migration skipped: " + ex.getMessage());
+        }
+    }
+
+    private static void createIndex(Connection connection, String name, String table, String definition) throws SQLException {
+        String existing = null;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT indexdef FROM pg_indexes WHERE schemaname = current_schema() AND indexname = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                existing = rs.next() ? rs.getString(1) : null;
+            }
+        }
+        if (existing != null && existing.endsWith("USING btree " + definition)) {
+            return;
+        }
+        // One transaction, so a failed CREATE leaves the old index in place
+        connection.setAutoCommit(false);
+        try (Statement st = connection.createStatement()) {
+            if (existing != null) {
+                st.execute("DROP INDEX " + name);
+            }
+            st.execute("CREATE INDEX " + name + " ON " + table + " " + definition);
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        System.out.println((existing != null ? "Rebuilt index " : "Created index ") + name + " on " + table + " " + definition);
+    }
+
+    private static void addCheck(Connection connection, String name, String table, String condition) throws SQLException {
+        // Any equivalent CHECK counts, whatever it was named
+        String existing = null;
+        boolean validated = false;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT conname, convalidated FROM pg_constraint WHERE conrelid = to_regclass(?) AND contype = 'c' " +
+                "AND pg_get_constraintdef(oid) IN (?, ?)")) {
+            ps.setString(1, table);
+            ps.setString(2, "CHECK " + condition);
+            ps.setString(3, "CHECK " + condition + " NOT VALID");
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    existing = rs.getString(1);
+                    validated = rs.getBoolean(2);
+                }
+            }
+        }
+        if (validated) {
+            return;
+        }
+        try (Statement st = connection.createStatement()) {
+            if (existing == null) {
+                // NOT VALID enforces it for new writes at once; existing rows are checked below
+                st.execute("ALTER TABLE " + table + " ADD CONSTRAINT " + name + " CHECK " + condition + " NOT VALID");
+                System.out.println("Added constraint " + name + " on " + table);
+                existing = name;
+            }
+            try {
+                st.execute("ALTER TABLE " + table + " VALIDATE CONSTRAINT " + existing);
+            } catch (SQLException ex) {
+                // e.g. a counter already negative (EventDao.reconcileRemainingCapacity repairs it);
+                // validation is retried at the next start
+                System.err.println("Constraint " + existing + " left NOT VALID: " + ex.getMessage());
+            }
+        }
+    }
+}
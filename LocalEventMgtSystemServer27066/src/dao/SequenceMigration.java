@@ -0,0 +1,108 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * One-time migration of the SERIAL / identity primary keys to pooled sequences.
+ * Runs from HibernateUtil before the SessionFactory is built, because Hibernate
+ * checks sequence increments against allocationSize at startup.
+ *
+ * For every entity table that already exists:
+ * - identity columns become GENERATED BY DEFAULT so Hibernate can supply the id
+ * - the backing sequence (same name for SERIAL and identity) gets INCREMENT BY ALLOCATION_SIZE
+ * - the sequence restarts just above the current MAX(id), so a pooled-lo block never overlaps old rows
+ *
+ * Idempotent: sequences already at ALLOCATION_SIZE are left alone. Fresh databases
+ * are skipped entirely and hbm2ddl creates the sequences with the right increment.
+ *
+ * @author 27066
+ */
+public final class SequenceMigration {
+
+    // Must match allocationSize in the entities' @SequenceGenerator
+    public static final int ALLOCATION_SIZE = 50;
+
+    private static final String[][] ID_COLUMNS = {
+        {"users", "user_id"},
+        {"venues", "venue_id"},
+        {"events", "event_id"},
+        {"bookings", "booking_id"},
+        {"user_profiles", "profile_id"},
+        {"event_tags", "tag_id"}
+    };
+
+    private SequenceMigration() {}
+
+    public static void run(Properties settings) {
+        String url = settings.getProperty("hibernate.connection.url");
+        if (url == null) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(url,
+                settings.getProperty("hibernate.connection.username"),
+                settings.getProperty("hibernate.connection.password"))) {
+            for (String[] idColumn : ID_COLUMNS) {
+                migrate(connection, idColumn[0], idColumn[1]);
+            }
+        } catch (SQLException ex) {
+            // Hibernate falls back to the database increment (FIX strategy), so ids stay safe
+            System.err.println("Sequence migration skipped: " + ex.getMessage());
+        }
+    }
+
+    private static void migrate(Connection connection, String table, String column) throws SQLException {
+        String sequence;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT pg_get_serial_sequence(?, ?) WHERE to_regclass(?) IS NOT NULL")) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            ps.setString(3, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                sequence = rs.next() ? rs.getString(1) : null;
+            }
+        }
+        if (sequence == null) {
+            return; // table not created yet, or id has no sequence
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT increment_by FROM pg_sequences WHERE (schemaname || '.' || sequencename) = ?")) {
+            ps.setString(1, sequence);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getLong(1) == ALLOCATION_SIZE) {
+                    return; // already migrated
+                }
+            }
+        }
+
+        boolean identity;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT is_identity FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?")) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                identity = rs.next() && "YES".equalsIgnoreCase(rs.getString(1));
+            }
+        }
+
+        try (Statement st = connection.createStatement()) {
+            if (identity) {
+                st.execute("ALTER TABLE " + table + " ALTER COLUMN " + column +
+                    " SET GENERATED BY DEFAULT SET INCREMENT BY " + ALLOCATION_SIZE);
+            } else {
+                st.execute("ALTER SEQUENCE " + sequence + " INCREMENT BY " + ALLOCATION_SIZE);
+            }
+            // pooled-lo hands out [value, value + ALLOCATION_SIZE), so start above every existing id
+            st.execute("SELECT setval('" + sequence + "', COALESCE((SELECT MAX(" + column + ") FROM " + table + "), 0) + 1, false)");
+        }
+        System.out.println("Migrated " + table + "." + column + " to sequence " + sequence +
+            " (increment " + ALLOCATION_SIZE + ")");
+    }
+}
@@ -0,0 +1,155 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+/**
+ * Unit of work / transaction template for the DAOs and services.
+ *
+ * - The outermost call opens one Session and one Transaction, binds them to the
+ *   current thread, commits on success and ALWAYS rolls back (if still active)
+ *   and closes in finally, so the pooled connection is returned on every path
+ * - Nested calls on the same thread join the bound session, so a service can run
+ *   several DAO methods in one session and one transaction
+ * - A failure inside a nested call marks the whole unit rollback-only, even when
+ *   the DAO method swallows the exception
+ * - beforeCommit hooks let a caller collect state over the whole unit and write it
+ *   once, inside the transaction, just before the commit
+ * - Occupancy counters (active, peak, opened, rolled back) are exposed for monitoring
+ *
+ * @author 27066
+ */
+public final class UnitOfWork {
+    
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute(Session session) throws Exception;
+    }
+    
+    private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<List<Work<?>>> HOOKS = new ThreadLocal<>();
+    
+    private static final AtomicInteger active = new AtomicInteger();
+    private static final AtomicInteger peak = new AtomicInteger();
+    private static final AtomicLong opened = new AtomicLong();
+    private static final AtomicLong rolledBack = new AtomicLong();
+    
+    private UnitOfWork() {}
+    
+    /**
+     * Run work in a read-write transaction
+     */
+    public static <T> T execute(Work<T> work) {
+        return run(work, false);
+    }
+    
+    /**
+     * Run work in a read-only transaction; loaded entities are not snapshotted for dirty checking
+     */
+    public static <T> T read(Work<T> work) {
+        return run(work, true);
+    }
+    
+    private static <T> T run(Work<T> work, boolean readOnly) {
+        Session bound = CURRENT.get();
+        if (bound != null) {
+            return join(bound, work);
+        }
+        
+        Session ss = HibernateUtil.getSessionFactory().openSession();
+        opened.incrementAndGet();
+        peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+        Transaction tr = null;
+        List<Work<?>> hooks = new ArrayList<>();
+        CURRENT.set(ss);
+        HOOKS.set(hooks);
+        try {
+            if (readOnly) {
+                ss.setDefaultReadOnly(true);
+            }
+            tr = ss.beginTransaction();
+            T result = work.execute(ss);
+            // Index loop: a hook may register another one
+            for (int i = 0; i < hooks.size() && !tr.getRollbackOnly(); i++) {
+                hooks.get(i).execute(ss);
+            }
+            if (tr.getRollbackOnly()) {
+                // A nested call failed; never report success for a unit that will not commit
+                throw new IllegalStateException("Unit of work was marked rollback-only");
+            }
+            tr.commit();
+            return result;
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            CURRENT.remove();
+            HOOKS.remove();
+            try {
+                if (tr != null && tr.isActive()) {
+                    rolledBack.incrementAndGet();
+                    tr.rollback();
+                }
+            } finally {
+                ss.close();
+                active.decrementAndGet();
+            }
+        }
+    }
+    
+    private static <T> T join(Session ss, Work<T> work) {
+        try {
+            return work.execute(ss);
+        } catch (Exception ex) {
+            Transaction tr = ss.getTransaction();
+            if (tr.isActive()) {
+                tr.markRollbackOnly();
+            }
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+    
+    /**
+     * The hook of this type on the current unit, created and registered on first use.
+     * Hooks run in registration order after the outermost work, in the same transaction,
+     * and are discarded with the unit on rollback; a failing hook rolls the unit back.
+     */
+    public static <H extends Work<?>> H beforeCommit(Class<H> type, Supplier<H> factory) {
+        List<Work<?>> hooks = HOOKS.get();
+        if (hooks == null) {
+            throw new IllegalStateException("No active unit of work");
+        }
+        for (Work<?> hook : hooks) {
+            if (type.isInstance(hook)) {
+                return type.cast(hook);
+            }
+        }
+        H hook = factory.get();
+        hooks.add(hook);
+        return hook;
+    }
+    
+    // Monitoring
+    public static int getActiveCount() { return active.get(); }
+    public static int getPeakCount() { return peak.get(); }
+    public static long getOpenedCount() { return opened.get(); }
+    public static long getRolledBackCount() { return rolledBack.get(); }
+    
+    public static String getStatistics() {
+        return String.format("UnitOfWork[active=%d, peak=%d, opened=%d, rolledBack=%d]",
+            getActiveCount(), getPeakCount(), getOpenedCount(), getRolledBackCount());
+    }
+}
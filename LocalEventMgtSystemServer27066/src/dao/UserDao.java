@@ -2,11 +2,11 @@ package dao;
 
 import java.util.List;
 import model.User;
-import org.hibernate.*;
 import org.hibernate.query.Query;
 
 /**
  * User DAO with Hibernate implementation
+ * Every method runs inside a UnitOfWork, joining the caller's session when one is bound
  * 
  * @author 27066
  */
@@ -15,12 +15,10 @@ public class UserDao {
     // CREATE
     public User createUser(User userObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.save(userObj);
-            tr.commit();
-            ss.close();
-            return userObj;
+            return UnitOfWork.execute(ss -> {
+                ss.save(userObj);
+                return userObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -30,12 +28,10 @@ public class UserDao {
     // UPDATE
     public User updateUser(User userObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.update(userObj);
-            tr.commit();
-            ss.close();
-            return userObj;
+            return UnitOfWork.execute(ss -> {
+                ss.update(userObj);
+                return userObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -45,12 +41,10 @@ public class UserDao {
     // DELETE
     public User deleteUser(User userObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.delete(userObj);
-            tr.commit();
-            ss.close();
-            return userObj;
+            return UnitOfWork.execute(ss -> {
+                ss.delete(userObj);
+                return userObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -60,10 +54,7 @@ public class UserDao {
     // READ - Find by ID
     public User findUserById(User userObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            User user = ss.get(User.class, userObj.getUserId());
-            ss.close();
-            return user;
+            return UnitOfWork.read(ss -> ss.get(User.class, userObj.getUserId()));
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -73,12 +64,11 @@ public class UserDao {
     // READ - Find by Username
     public User findUserByUsername(String username) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<User> query = ss.createQuery("FROM User WHERE username = :username", User.class);
-            query.setParameter("username", username);
-            User user = query.uniqueResult();
-            ss.close();
-            return user;
+            return UnitOfWork.read(ss -> {
+                Query<User> query = ss.createQuery("FROM User WHERE username = :username", User.class);
+                query.setParameter("username", username);
+                return query.uniqueResult();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -88,25 +78,23 @@ public class UserDao {
     // READ - Login
     public User login(String username, String hashedPassword) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<User> query = ss.createQuery(
-                "FROM User WHERE username = :username AND password = :password AND accountStatus = 'active'", 
-                User.class
-            );
-            query.setParameter("username", username);
-            query.setParameter("password", hashedPassword);
-            User user = query.uniqueResult();
-            
-            if (user != null) {
-                // Update last login
-                Transaction tr = ss.beginTransaction();
-                user.setLastLogin(new java.sql.Timestamp(System.currentTimeMillis()));
-                ss.update(user);
-                tr.commit();
-            }
-            
-            ss.close();
-            return user;
+            // Read-write: a successful login stamps lastLogin in the same transaction
+            return UnitOfWork.execute(ss -> {
+                Query<User> query = ss.createQuery(
+                    "FROM User WHERE username = :username AND password = :password AND accountStatus = 'active'", 
+                    User.class
+                );
+                query.setParameter("username", username);
+                query.setParameter("password", hashedPassword);
+                User user = query.uniqueResult();
+                
+                if (user != null) {
+                    // Update last login
+                    user.setLastLogin(new java.sql.Timestamp(System.currentTimeMillis()));
+                    ss.update(user);
+                }
+                return user;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -116,14 +104,14 @@ public class UserDao {
     // READ - Check if username exists
     public boolean isUsernameExists(String username) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<Long> query = ss.createQuery(
-                "SELECT COUNT(*) FROM User WHERE username = :username", 
-                Long.class
-            );
-            query.setParameter("username", username);
-            Long count = query.uniqueResult();
-            ss.close();
+            Long count = UnitOfWork.read(ss -> {
+                Query<Long> query = ss.createQuery(
+                    "SELECT COUNT(*) FROM User WHERE username = :username", 
+                    Long.class
+                );
+                query.setParameter("username", username);
+                return query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -134,14 +122,14 @@ public class UserDao {
     // READ - Check if email exists
     public boolean isEmailExists(String email) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<Long> query = ss.createQuery(
-                "SELECT COUNT(*) FROM User WHERE email = :email", 
-                Long.class
-            );
-            query.setParameter("email", email);
-            Long count = query.uniqueResult();
-            ss.close();
+            Long count = UnitOfWork.read(ss -> {
+                Query<Long> query = ss.createQuery(
+                    "SELECT COUNT(*) FROM User WHERE email = :email", 
+                    Long.class
+                );
+                query.setParameter("email", email);
+                return query.uniqueResult();
+            });
             return count != null && count > 0;
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -152,15 +140,10 @@ public class UserDao {
     // READ - Find all users
     public List<User> findAllUsers() {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<User> query = ss.createQuery("FROM User ORDER BY userId", User.class);
-            List<User> users = query.list();
-            ss.close();
-            return users;
+            return UnitOfWork.read(ss -> ss.createQuery("FROM User ORDER BY userId", User.class).list());
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
         }
     }
 }
-
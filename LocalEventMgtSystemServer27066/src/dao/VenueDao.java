@@ -2,11 +2,10 @@ package dao;
 
 import java.util.List;
 import model.Venue;
-import org.hibernate.*;
-import org.hibernate.query.Query;
 
 /**
  * Venue DAO with Hibernate implementation
+ * Every method runs inside a UnitOfWork, joining the caller's session when one is bound
  * 
  * @author 27066
  */
@@ -15,12 +14,10 @@ public class VenueDao {
     // CREATE
     public Venue createVenue(Venue venueObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.save(venueObj);
-            tr.commit();
-            ss.close();
-            return venueObj;
+            return UnitOfWork.execute(ss -> {
+                ss.save(venueObj);
+                return venueObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -30,12 +27,10 @@ public class VenueDao {
     // UPDATE
     public Venue updateVenue(Venue venueObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.update(venueObj);
-            tr.commit();
-            ss.close();
-            return venueObj;
+            return UnitOfWork.execute(ss -> {
+                ss.update(venueObj);
+                return venueObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -45,12 +40,10 @@ public class VenueDao {
     // DELETE
     public Venue deleteVenue(Venue venueObj) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Transaction tr = ss.beginTransaction();
-            ss.delete(venueObj);
-            tr.commit();
-            ss.close();
-            return venueObj;
+            return UnitOfWork.execute(ss -> {
+                ss.delete(venueObj);
+                return venueObj;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -59,24 +52,13 @@ public class VenueDao {
     
     // READ - Find by ID
     public Venue findVenueById(Venue venueObj) {
-        try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Venue venue = ss.get(Venue.class, venueObj.getVenueId());
-            ss.close();
-            return venue;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return null;
-        }
+        return findVenueById(venueObj.getVenueId());
     }
     
     // READ - Find by ID (int)
     public Venue findVenueById(int venueId) {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Venue venue = ss.get(Venue.class, venueId);
-            ss.close();
-            return venue;
+            return UnitOfWork.read(ss -> ss.get(Venue.class, venueId));
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -86,11 +68,7 @@ public class VenueDao {
     // READ - Find all venues
     public List<Venue> findAllVenues() {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<Venue> query = ss.createQuery("FROM Venue ORDER BY venueName", Venue.class);
-            List<Venue> venues = query.list();
-            ss.close();
-            return venues;
+            return UnitOfWork.read(ss -> ss.createQuery("FROM Venue ORDER BY venueName", Venue.class).list());
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -100,18 +78,13 @@ public class VenueDao {
     // READ - Find available venues
     public List<Venue> findAvailableVenues() {
         try {
-            Session ss = HibernateUtil.getSessionFactory().openSession();
-            Query<Venue> query = ss.createQuery(
+            return UnitOfWork.read(ss -> ss.createQuery(
                 "FROM Venue WHERE availabilityStatus = 'available' ORDER BY venueName", 
                 Venue.class
-            );
-            List<Venue> venues = query.list();
-            ss.close();
-            return venues;
+            ).list());
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
         }
     }
 }
-
@@ -13,13 +13,17 @@ import jakarta.persistence.Transient;
  * @author 27066
  */
 @Entity
+// idx_bookings_date_id (booking_date DESC NULLS LAST, booking_id DESC) is created by dao.SchemaMigration:
+// @Index cannot express NULLS LAST
 @Table(name = "bookings")
 public class Booking implements Serializable {
     
     private static final long serialVersionUID = 1L;
     
+    // Pooled sequence (allocationSize = SequenceMigration.ALLOCATION_SIZE) so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_booking_id_seq", allocationSize = 50)
     @Column(name = "booking_id")
     private int bookingId;
     
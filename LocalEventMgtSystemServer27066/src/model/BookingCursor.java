@@ -0,0 +1,32 @@
+package model;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * Keyset position in the bookings list, ordered by (bookingDate DESC, bookingId DESC)
+ * 
+ * @author 27066
+ */
+public class BookingCursor implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private Timestamp bookingDate;
+    private int bookingId;
+
+    // Constructors
+    public BookingCursor() {}
+
+    public BookingCursor(Timestamp bookingDate, int bookingId) {
+        this.bookingDate = bookingDate;
+        this.bookingId = bookingId;
+    }
+
+    // Getters and setters
+    public Timestamp getBookingDate() { return bookingDate; }
+    public void setBookingDate(Timestamp bookingDate) { this.bookingDate = bookingDate; }
+    
+    public int getBookingId() { return bookingId; }
+    public void setBookingId(int bookingId) { this.bookingId = bookingId; }
+}
@@ -0,0 +1,35 @@
+package model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of booking search results
+ * nextCursor is null when there are no more rows
+ * 
+ * @author 27066
+ */
+public class BookingPage implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private List<Booking> bookings;
+    private BookingCursor nextCursor;
+
+    // Constructors
+    public BookingPage() {}
+
+    public BookingPage(List<Booking> bookings, BookingCursor nextCursor) {
+        this.bookings = bookings;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and setters
+    public List<Booking> getBookings() { return bookings; }
+    public void setBookings(List<Booking> bookings) { this.bookings = bookings; }
+    
+    public BookingCursor getNextCursor() { return nextCursor; }
+    public void setNextCursor(BookingCursor nextCursor) { this.nextCursor = nextCursor; }
+    
+    public boolean hasMore() { return nextCursor != null; }
+}
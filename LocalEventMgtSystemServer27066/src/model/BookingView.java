@@ -0,0 +1,90 @@
+package model;
+
+import java.io.Serializable;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * Flat, read-only booking row selected with an HQL constructor expression.
+ * Only the columns the booking screens show are read, so no Booking, Event,
+ * User or Venue entities are hydrated or tracked by the session.
+ * 
+ * @author 27066
+ */
+public record BookingView(
+        Integer bookingId,
+        Integer eventId,
+        Integer userId,
+        Timestamp bookingDate,
+        String paymentStatus,
+        String ticketNumber,
+        Integer numberOfTickets,
+        Double totalAmount,
+        Boolean checkInStatus,
+        String ticketCategory,
+        String eventName,
+        String eventDescription,
+        Date eventDate,
+        Time eventTime,
+        String venueName,
+        String venueLocation,
+        String userName,
+        String userEmail,
+        String userPhone) implements Serializable {
+    
+    /**
+     * HQL select list matching the component order above.
+     * Aliases: b = Booking, e = Event, v = Venue, u = User
+     */
+    public static final String SELECT =
+        "SELECT new model.BookingView(" +
+        "b.bookingId, e.eventId, u.userId, b.bookingDate, b.paymentStatus, b.ticketNumber, " +
+        "b.numberOfTickets, b.totalAmount, b.checkInStatus, b.ticketCategory, " +
+        "e.eventName, e.eventDescription, e.eventDate, e.eventTime, " +
+        "v.venueName, v.location, u.fullName, u.email, u.phoneNumber) " +
+        "FROM Booking b " +
+        "LEFT JOIN b.event e " +
+        "LEFT JOIN b.user u " +
+        "LEFT JOIN e.venue v ";
+    
+    /**
+     * Plain Booking carrying only display fields, for the existing RMI signatures
+     */
+    public Booking toBooking() {
+        Booking booking = new Booking();
+        booking.setBookingId(bookingId != null ? bookingId : 0);
+        booking.setEventId(eventId != null ? eventId : 0);
+        booking.setUserId(userId != null ? userId : 0);
+        booking.setBookingDate(bookingDate);
+        booking.setPaymentStatus(paymentStatus);
+        booking.setTicketNumber(ticketNumber);
+        booking.setNumberOfTickets(numberOfTickets != null ? numberOfTickets : 0);
+        booking.setTotalAmount(totalAmount != null ? totalAmount : 0.0);
+        booking.setCheckInStatus(checkInStatus != null && checkInStatus);
+        booking.setTicketCategory(ticketCategory);
+        
+        // Only set if not null/empty - let null pass through for client-side handling
+        booking.setEventName(nonBlank(eventName));
+        booking.setEventDescription(nonBlank(eventDescription));
+        if (eventDate != null) {
+            booking.setEventDate(eventDate.toString());
+        } else if (bookingDate != null) {
+            // If event date is null, fall back to the booking date
+            booking.setEventDate(bookingDate.toString());
+        }
+        if (eventTime != null) {
+            booking.setEventTime(eventTime.toString());
+        }
+        booking.setVenueName(nonBlank(venueName));
+        booking.setVenueLocation(nonBlank(venueLocation));
+        booking.setUserName(nonBlank(userName));
+        booking.setUserEmail(nonBlank(userEmail));
+        booking.setUserPhone(nonBlank(userPhone));
+        return booking;
+    }
+    
+    private static String nonBlank(String value) {
+        return value != null && !value.trim().isEmpty() ? value : null;
+    }
+}
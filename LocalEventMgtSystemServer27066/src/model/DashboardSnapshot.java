@@ -0,0 +1,50 @@
+package model;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admin dashboard statistics computed with COUNT/SUM queries on the server
+ * 
+ * @author 27066
+ */
+public class DashboardSnapshot implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private long totalEvents;
+    private long scheduledEvents;
+    private long totalBookings;
+    private long totalUsers;
+    private Map<String, Long> bookingsByStatus = new HashMap<>();
+    private Map<String, Double> revenueByStatus = new HashMap<>();
+
+    // Constructors
+    public DashboardSnapshot() {}
+
+    // Getters and setters
+    public long getTotalEvents() { return totalEvents; }
+    public void setTotalEvents(long totalEvents) { this.totalEvents = totalEvents; }
+    
+    public long getScheduledEvents() { return scheduledEvents; }
+    public void setScheduledEvents(long scheduledEvents) { this.scheduledEvents = scheduledEvents; }
+    
+    public long getTotalBookings() { return totalBookings; }
+    public void setTotalBookings(long totalBookings) { this.totalBookings = totalBookings; }
+    
+    public long getTotalUsers() { return totalUsers; }
+    public void setTotalUsers(long totalUsers) { this.totalUsers = totalUsers; }
+    
+    public Map<String, Long> getBookingsByStatus() { return bookingsByStatus; }
+    public void setBookingsByStatus(Map<String, Long> bookingsByStatus) { this.bookingsByStatus = bookingsByStatus; }
+    
+    public Map<String, Double> getRevenueByStatus() { return revenueByStatus; }
+    public void setRevenueByStatus(Map<String, Double> revenueByStatus) { this.revenueByStatus = revenueByStatus; }
+    
+    // Revenue that has actually been collected
+    public double getPaidRevenue() {
+        Double paid = revenueByStatus.get("paid");
+        return paid != null ? paid : 0.0;
+    }
+}
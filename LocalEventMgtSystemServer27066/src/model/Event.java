@@ -25,7 +25,8 @@ public class Event implements Serializable {
     private static final long serialVersionUID = 1L;
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "events_seq")
+    @SequenceGenerator(name = "events_seq", sequenceName = "events_event_id_seq", allocationSize = 50)
     @Column(name = "event_id")
     private int eventId;
     
@@ -52,6 +53,10 @@ public class Event implements Serializable {
     @Column(name = "capacity", nullable = false)
     private int capacity;
     
+    // Seats left for sale; only changed through conditional UPDATEs in the DAOs
+    @Column(name = "remaining_capacity", updatable = false)
+    private Integer remainingCapacity;
+    
     @Column(name = "ticket_price", nullable = false)
     private double ticketPrice;
     
@@ -73,6 +78,10 @@ public class Event implements Serializable {
     @Column(name = "created_at")
     private Timestamp createdAt;
     
+    // When the admin EVENT_EXPIRED notice was sent; written only by util.EventExpirySweeper
+    @Column(name = "expiry_notified_at", insertable = false, updatable = false)
+    private Timestamp expiryNotifiedAt;
+    
     // One-to-Many relationship with Bookings
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Booking> bookings;
@@ -128,6 +137,9 @@ public class Event implements Serializable {
     public int getCapacity() { return capacity; }
     public void setCapacity(int capacity) { this.capacity = capacity; }
     
+    public Integer getRemainingCapacity() { return remainingCapacity; }
+    public void setRemainingCapacity(Integer remainingCapacity) { this.remainingCapacity = remainingCapacity; }
+    
     public double getTicketPrice() { return ticketPrice; }
     public void setTicketPrice(double ticketPrice) { this.ticketPrice = ticketPrice; }
     
@@ -149,6 +161,8 @@ public class Event implements Serializable {
     public Timestamp getCreatedAt() { return createdAt; }
     public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
     
+    public Timestamp getExpiryNotifiedAt() { return expiryNotifiedAt; }
+    
     public List<Booking> getBookings() { return bookings; }
     public void setBookings(List<Booking> bookings) { this.bookings = bookings; }
     
@@ -185,6 +199,17 @@ public class Event implements Serializable {
         this.organizerId = organizerId;
     }
     
+    // Category a booking is stored with: the requested one under category pricing, none otherwise
+    public String categoryFor(String requestedCategory) {
+        return "category".equals(pricingType) ? requestedCategory : null;
+    }
+    
+    // Price of one ticket booked with categoryFor(requestedCategory)
+    public double priceFor(String requestedCategory) {
+        String category = categoryFor(requestedCategory);
+        return category != null ? getPriceForCategory(category) : ticketPrice;
+    }
+    
     public double getPriceForCategory(String category) {
         if ("category".equals(pricingType)) {
             switch (category.toLowerCase()) {
@@ -3,6 +3,8 @@ package model;
 import java.io.Serializable;
 import java.util.Set;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * EventTag entity for Many-to-Many relationship with Events
@@ -11,12 +13,15 @@ import jakarta.persistence.*;
  */
 @Entity
 @Table(name = "event_tags")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "event_tag")
 public class EventTag implements Serializable {
     
     private static final long serialVersionUID = 1L;
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "event_tags_seq")
+    @SequenceGenerator(name = "event_tags_seq", sequenceName = "event_tags_tag_id_seq", allocationSize = 50)
     @Column(name = "tag_id")
     private int tagId;
     
@@ -0,0 +1,66 @@
+package model;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import jakarta.persistence.*;
+
+/**
+ * One notification in a user's server-side inbox (notification_inbox)
+ * Rows are appended by util.NotificationService in the transaction of the change they
+ * announce and only ever updated once afterwards, to set readAt
+ * 
+ * @author 27066
+ */
+@Entity
+@Table(name = "notification_inbox", indexes = {
+    @Index(name = "idx_inbox_user_id", columnList = "user_id, notification_id")
+})
+public class InboxNotification implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    // Rows are inserted with INSERT ... SELECT (one per recipient), so the database assigns the id
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "notification_id")
+    private long notificationId;
+    
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+    
+    @Column(name = "notification_type", nullable = false, length = 40)
+    private String notificationType;
+    
+    // Same pipe-separated body as the broker message
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+    
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+    
+    @Column(name = "read_at")
+    private Timestamp readAt;
+    
+    public InboxNotification() {}
+    
+    // Getters and setters
+    public long getNotificationId() { return notificationId; }
+    public void setNotificationId(long notificationId) { this.notificationId = notificationId; }
+    
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+    
+    public String getNotificationType() { return notificationType; }
+    public void setNotificationType(String notificationType) { this.notificationType = notificationType; }
+    
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+    
+    public Timestamp getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
+    
+    public Timestamp getReadAt() { return readAt; }
+    public void setReadAt(Timestamp readAt) { this.readAt = readAt; }
+    
+    public boolean isRead() { return readAt != null; }
+}
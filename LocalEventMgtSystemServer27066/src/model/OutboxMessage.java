@@ -0,0 +1,89 @@
+package model;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import jakarta.persistence.*;
+
+/**
+ * Notification outbox row: a broker message written in the same transaction as
+ * the booking or event change it announces, and published later by util.OutboxRelay
+ *
+ * @author 27066
+ */
+@Entity
+@Table(name = "notification_outbox")
+public class OutboxMessage implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    // Pooled sequence so a bulk payment's notifications are inserted in JDBC batches
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_outbox_seq")
+    @SequenceGenerator(name = "notification_outbox_seq", sequenceName = "notification_outbox_outbox_id_seq", allocationSize = 50)
+    @Column(name = "outbox_id")
+    private long outboxId;
+    
+    @Column(name = "notification_type", nullable = false, length = 40)
+    private String notificationType;
+    
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+    
+    // JMS string properties, one name=value per line
+    @Column(name = "properties", nullable = false, columnDefinition = "TEXT")
+    private String properties;
+    
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    @Column(name = "delivered_at")
+    private Timestamp deliveredAt;
+    
+    // Not claimable before this time: a relay's lease, or the retry backoff (null = due now)
+    @Column(name = "available_at")
+    private Timestamp availableAt;
+    
+    // Dead-lettered after the last allowed attempt; set it back to null (and attempts to 0) to retry
+    @Column(name = "failed_at")
+    private Timestamp failedAt;
+    
+    public OutboxMessage() {}
+    
+    public OutboxMessage(String notificationType, String body, String properties) {
+        this.notificationType = notificationType;
+        this.body = body;
+        this.properties = properties;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+    
+    // Getters and setters
+    public long getOutboxId() { return outboxId; }
+    public void setOutboxId(long outboxId) { this.outboxId = outboxId; }
+    
+    public String getNotificationType() { return notificationType; }
+    public void setNotificationType(String notificationType) { this.notificationType = notificationType; }
+    
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+    
+    public String getProperties() { return properties; }
+    public void setProperties(String properties) { this.properties = properties; }
+    
+    public Timestamp getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Timestamp createdAt) { this.createdAt = createdAt; }
+    
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    
+    public Timestamp getDeliveredAt() { return deliveredAt; }
+    public void setDeliveredAt(Timestamp deliveredAt) { this.deliveredAt = deliveredAt; }
+    
+    public Timestamp getAvailableAt() { return availableAt; }
+    public void setAvailableAt(Timestamp availableAt) { this.availableAt = availableAt; }
+    
+    public Timestamp getFailedAt() { return failedAt; }
+    public void setFailedAt(Timestamp failedAt) { this.failedAt = failedAt; }
+}
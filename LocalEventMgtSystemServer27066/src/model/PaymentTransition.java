@@ -0,0 +1,94 @@
+package model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a compare-and-set payment status transition returned over RMI
+ * - applied: the row still had the expected status and now has the new one
+ * - rejected: nothing was written; currentStatus is what the row really holds
+ *   (null when the booking does not exist), message explains why
+ * 
+ * @author 27066
+ */
+public class PaymentTransition implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    // Allowed moves between payment statuses
+    private static final Map<String, List<String>> ALLOWED = new HashMap<>();
+    static {
+        ALLOWED.put("pending", Arrays.asList("paid", "cancelled"));
+        ALLOWED.put("paid", Arrays.asList("refunded", "cancelled"));
+        ALLOWED.put("cancelled", Arrays.asList("pending", "paid"));
+        ALLOWED.put("refunded", Collections.emptyList());
+    }
+    
+    private boolean applied;
+    private int bookingId;
+    private String fromStatus;
+    private String toStatus;
+    private String currentStatus;
+    private Booking booking;
+    private String message;
+
+    // Constructors
+    public PaymentTransition() {}
+
+    public PaymentTransition(int bookingId, String fromStatus, String toStatus) {
+        this.bookingId = bookingId;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+    }
+    
+    public static boolean isAllowed(String fromStatus, String toStatus) {
+        List<String> targets = fromStatus != null ? ALLOWED.get(fromStatus.toLowerCase()) : null;
+        return targets != null && toStatus != null && targets.contains(toStatus.toLowerCase());
+    }
+    
+    public static List<String> allowedTargets(String fromStatus) {
+        List<String> targets = fromStatus != null ? ALLOWED.get(fromStatus.toLowerCase()) : null;
+        return targets != null ? targets : Collections.emptyList();
+    }
+    
+    public PaymentTransition applied(Booking booking, String message) {
+        this.applied = true;
+        this.currentStatus = toStatus;
+        this.booking = booking;
+        this.message = message;
+        return this;
+    }
+    
+    public PaymentTransition rejected(String currentStatus, String message) {
+        this.applied = false;
+        this.currentStatus = currentStatus;
+        this.message = message;
+        return this;
+    }
+
+    // Getters and setters
+    public boolean isApplied() { return applied; }
+    public void setApplied(boolean applied) { this.applied = applied; }
+    
+    public int getBookingId() { return bookingId; }
+    public void setBookingId(int bookingId) { this.bookingId = bookingId; }
+    
+    public String getFromStatus() { return fromStatus; }
+    public void setFromStatus(String fromStatus) { this.fromStatus = fromStatus; }
+    
+    public String getToStatus() { return toStatus; }
+    public void setToStatus(String toStatus) { this.toStatus = toStatus; }
+    
+    public String getCurrentStatus() { return currentStatus; }
+    public void setCurrentStatus(String currentStatus) { this.currentStatus = currentStatus; }
+    
+    public Booking getBooking() { return booking; }
+    public void setBooking(Booking booking) { this.booking = booking; }
+    
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
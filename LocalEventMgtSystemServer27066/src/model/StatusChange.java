@@ -0,0 +1,38 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * One requested payment status change in a bulk reconciliation
+ * (e.g. a line of a mobile-money settlement file).
+ * Applied compare-and-set: only while the booking still has expectedStatus.
+ * 
+ * @author 27066
+ */
+public class StatusChange implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private int bookingId;
+    private String expectedStatus;
+    private String newStatus;
+
+    // Constructors
+    public StatusChange() {}
+
+    public StatusChange(int bookingId, String expectedStatus, String newStatus) {
+        this.bookingId = bookingId;
+        this.expectedStatus = expectedStatus;
+        this.newStatus = newStatus;
+    }
+
+    // Getters and setters
+    public int getBookingId() { return bookingId; }
+    public void setBookingId(int bookingId) { this.bookingId = bookingId; }
+    
+    public String getExpectedStatus() { return expectedStatus; }
+    public void setExpectedStatus(String expectedStatus) { this.expectedStatus = expectedStatus; }
+    
+    public String getNewStatus() { return newStatus; }
+    public void setNewStatus(String newStatus) { this.newStatus = newStatus; }
+}
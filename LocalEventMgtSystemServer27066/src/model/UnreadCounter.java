@@ -0,0 +1,33 @@
+package model;
+
+import java.io.Serializable;
+import jakarta.persistence.*;
+
+/**
+ * Per-user unread notification count (notification_unread), kept in step with
+ * notification_inbox by dao.InboxDao in the same statements that append or mark rows
+ * 
+ * @author 27066
+ */
+@Entity
+@Table(name = "notification_unread")
+public class UnreadCounter implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    @Id
+    @Column(name = "user_id")
+    private int userId;
+    
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+    
+    public UnreadCounter() {}
+    
+    // Getters and setters
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+    
+    public int getUnreadCount() { return unreadCount; }
+    public void setUnreadCount(int unreadCount) { this.unreadCount = unreadCount; }
+}
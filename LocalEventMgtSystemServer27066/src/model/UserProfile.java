@@ -15,7 +15,8 @@ public class UserProfile implements Serializable {
     private static final long serialVersionUID = 1L;
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_profiles_seq")
+    @SequenceGenerator(name = "user_profiles_seq", sequenceName = "user_profiles_profile_id_seq", allocationSize = 50)
     @Column(name = "profile_id")
     private int profileId;
     
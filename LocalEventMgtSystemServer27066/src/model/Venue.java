@@ -3,6 +3,8 @@ package model;
 import java.io.Serializable;
 import java.util.List;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Venue entity with One-to-Many relationship with Events
@@ -11,12 +13,15 @@ import jakarta.persistence.*;
  */
 @Entity
 @Table(name = "venues")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "venue")
 public class Venue implements Serializable {
     
     private static final long serialVersionUID = 1L;
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "venues_seq")
+    @SequenceGenerator(name = "venues_seq", sequenceName = "venues_venue_id_seq", allocationSize = 50)
     @Column(name = "venue_id")
     private int venueId;
     
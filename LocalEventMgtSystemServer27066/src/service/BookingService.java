@@ -4,6 +4,12 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
 import model.Booking;
+import model.BookingPage;
+import model.BookingQuery;
+import model.GroupReservationResult;
+import model.PaymentTransition;
+import model.ReservationResult;
+import model.StatusChange;
 
 /**
  * Remote interface for Booking Service
@@ -13,7 +19,6 @@ import model.Booking;
 public interface BookingService extends Remote {
     
     // CRUD operations
-    Booking createBooking(Booking booking) throws RemoteException;
     Booking updateBooking(Booking booking) throws RemoteException;
     Booking deleteBooking(Booking booking) throws RemoteException;
     Booking findBookingById(Booking booking) throws RemoteException;
@@ -21,8 +26,23 @@ public interface BookingService extends Remote {
     
     // Query operations
     List<Booking> findBookingsByUser(int userId) throws RemoteException;
+    BookingPage findBookings(BookingQuery query) throws RemoteException;
     boolean cancelBooking(int bookingId) throws RemoteException;
     boolean updatePaymentStatus(int bookingId, String status) throws RemoteException;
-    String generateTicketNumber() throws RemoteException;
+    
+    // Atomic reservation: capacity check, pricing and insert happen server-side in one transaction
+    ReservationResult reserveTickets(int eventId, int userId, int quantity, String ticketCategory) throws RemoteException;
+    
+    // Group reservation: all rows are checked against capacity together and inserted in one transaction, or none are
+    GroupReservationResult createBookings(List<Booking> bookings) throws RemoteException;
+    
+    // Compare-and-set payment transition: applied only while the booking still has expectedStatus
+    PaymentTransition transitionPaymentStatus(int bookingId, String expectedStatus, String newStatus) throws RemoteException;
+    
+    // Bulk reconciliation: set-based chunks, one outcome per change in request order
+    List<PaymentTransition> applyPaymentStatuses(List<StatusChange> changes) throws RemoteException;
+    
+    // Streaming report export: rows are pulled in chunks from a server-side cursor (null when busy)
+    ExportCursor exportBookings() throws RemoteException;
 }
 
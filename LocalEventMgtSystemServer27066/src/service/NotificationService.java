@@ -0,0 +1,26 @@
+package service;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+import model.InboxNotification;
+
+/**
+ * Remote interface for the per-user notification inbox
+ * The broker pushes notifications live; the inbox keeps them for users who were offline
+ * 
+ * @author 27066
+ */
+public interface NotificationService extends Remote {
+    
+    // Up to limit notifications with an id greater than cursor, oldest first;
+    // cursor 0 returns the newest limit notifications
+    List<InboxNotification> fetchSince(int userId, long cursor, int limit) throws RemoteException;
+    
+    // Unread notifications of the user
+    int unreadCount(int userId) throws RemoteException;
+    
+    // Mark notifications read; returns the remaining unread count (-1 on failure)
+    int markRead(int userId, List<Long> notificationIds) throws RemoteException;
+    int markAllRead(int userId) throws RemoteException;
+}
@@ -1,13 +1,25 @@
 package service.implementation;
 
 import dao.BookingDao;
+import dao.ExportDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import model.Booking;
-import model.Event;
-import model.User;
+import model.BookingPage;
+import model.BookingQuery;
+import model.GroupReservationResult;
+import model.PaymentTransition;
+import model.ReservationResult;
+import model.StatusChange;
 import service.BookingService;
+import service.ExportCursor;
+import util.CapacityLedger;
 import util.NotificationService;
 
 /**
@@ -17,46 +29,16 @@ import util.NotificationService;
  */
 public class BookingServiceImpl extends UnicastRemoteObject implements BookingService {
 
+    // Rows per createBookings call, keeps one group inside a single batched transaction
+    private static final int MAX_GROUP_SIZE = 500;
+    
     private BookingDao dao = new BookingDao();
+    private ExportDao exportDao = new ExportDao();
     
     public BookingServiceImpl() throws RemoteException {
         super();
     }
 
-    @Override
-    public Booking createBooking(Booking booking) throws RemoteException {
-        Booking result = dao.createBooking(booking);
-        if (result != null) {
-            // Get booking with relationships for notification
-            Booking bookingWithRelations = dao.getBookingWithRelations(result.getBookingId());
-            
-            // Clear Hibernate relationships to avoid serialization issues
-            if (result.getEvent() != null) {
-                result.getEvent().setBookings(null);
-                result.getEvent().setTags(null);
-            }
-            if (result.getUser() != null) {
-                result.getUser().setBookings(null);
-                result.getUser().setOrganizedEvents(null);
-                result.getUser().setUserProfile(null);
-            }
-            
-            // Send notification to admin about new booking
-            if (bookingWithRelations != null && bookingWithRelations.getUser() != null && bookingWithRelations.getEvent() != null) {
-                new Thread(() -> {
-                    try {
-                        NotificationService.getInstance().sendNewBookingNotification(
-                            bookingWithRelations, bookingWithRelations.getUser(), bookingWithRelations.getEvent()
-                        );
-                    } catch (Exception e) {
-                        System.err.println("Failed to send new booking notification: " + e.getMessage());
-                    }
-                }).start();
-            }
-        }
-        return result;
-    }
-
     @Override
     public Booking updateBooking(Booking booking) throws RemoteException {
         Booking result = dao.updateBooking(booking);
@@ -98,89 +80,275 @@ public class BookingServiceImpl extends UnicastRemoteObject implements BookingSe
 
     @Override
     public List<Booking> findAllBookings() throws RemoteException {
-        List<Booking> bookings = dao.findAllBookings();
-        if (bookings != null) {
-            // Detach Hibernate entities and clear relationships to avoid RMI serialization issues
-            for (Booking booking : bookings) {
-                detachBooking(booking);
-            }
-        }
-        return bookings;
+        // Rows come from a flat projection, there are no Hibernate relationships to clear
+        return dao.findAllBookings();
     }
 
     @Override
     public List<Booking> findBookingsByUser(int userId) throws RemoteException {
-        List<Booking> bookings = dao.findBookingsByUser(userId);
-        if (bookings != null) {
-            // Detach Hibernate entities and clear relationships
-            for (Booking booking : bookings) {
-                detachBooking(booking);
-            }
-        }
-        return bookings;
+        return dao.findBookingsByUser(userId);
+    }
+    
+    @Override
+    public BookingPage findBookings(BookingQuery query) throws RemoteException {
+        return dao.findBookings(query != null ? query : new BookingQuery());
     }
     
-    // Helper method to detach booking from Hibernate session
-    private void detachBooking(Booking booking) {
+    @Override
+    public boolean cancelBooking(int bookingId) throws RemoteException {
+        if (!CapacityLedger.isEnabled()) {
+            return dao.cancelBooking(bookingId);
+        }
+        
+        // Seats to hand back to the ledger, decided in the same transaction as the cancel
+        int[] released = new int[2];
+        boolean result;
         try {
-            // Clear Hibernate relationships to avoid serialization issues
-            // The transient fields (eventName, userName, etc.) are already populated by DAO
-            booking.setEvent(null); // Clear the relationship
-            booking.setUser(null); // Clear the relationship
+            result = UnitOfWork.execute(ss -> {
+                Booking before = dao.findBookingById(bookingId);
+                if (before != null && !"cancelled".equalsIgnoreCase(before.getPaymentStatus())) {
+                    released[0] = before.getEventId();
+                    released[1] = before.getNumberOfTickets();
+                }
+                return dao.cancelBooking(bookingId);
+            });
         } catch (Exception e) {
-            // If any error occurs, continue - the transient fields should have the data
-            System.err.println("Warning: Error detaching booking: " + e.getMessage());
+            e.printStackTrace();
+            result = false;
+        }
+        if (result && released[1] > 0) {
+            CapacityLedger.getInstance().release(released[0], released[1]);
         }
+        return result;
     }
 
     @Override
-    public boolean cancelBooking(int bookingId) throws RemoteException {
-        return dao.cancelBooking(bookingId);
+    public boolean updatePaymentStatus(int bookingId, String status) throws RemoteException {
+        // Legacy API without an expected status: expect whatever the row holds right now
+        String current = dao.findPaymentStatus(bookingId);
+        if (current == null) {
+            return false;
+        }
+        if (current.equalsIgnoreCase(status)) {
+            return true;
+        }
+        return transitionPaymentStatus(bookingId, current, status).isApplied();
+    }
+    
+    @Override
+    public PaymentTransition transitionPaymentStatus(int bookingId, String expectedStatus, String newStatus) throws RemoteException {
+        // Payment confirmed: the notifications are written to the outbox inside the transition's transaction
+        Map<Integer, int[]> ledgerSeats = new HashMap<>();
+        PaymentTransition transition = dao.transitionPaymentStatus(bookingId, expectedStatus, newStatus,
+            applied -> onApplied(applied, ledgerSeats));
+        settleLedger(Collections.singletonList(transition), ledgerSeats);
+        return transition;
+    }
+    
+    // Runs inside the transition's transaction. In ledger mode the in-memory counter is authoritative
+    // for seats moving out of 'cancelled': a reactivation takes them here, and one that cannot is
+    // rejected, which rolls its status change back. Then payment confirmed is announced.
+    private void onApplied(List<PaymentTransition> applied, Map<Integer, int[]> ledgerSeats) {
+        if (CapacityLedger.isEnabled()) {
+            for (PaymentTransition transition : applied) {
+                if (!"cancelled".equals(transition.getFromStatus())) {
+                    continue;
+                }
+                Booking booking = transition.getBooking();
+                if (!CapacityLedger.getInstance().take(booking.getEventId(), booking.getNumberOfTickets())) {
+                    // Seats went to queued reservations the database has not seen yet
+                    throw new BookingDao.Rejected(new PaymentTransition(booking.getBookingId(), transition.getFromStatus(),
+                        transition.getToStatus()).rejected("cancelled", "Not enough tickets available to reactivate this booking."));
+                }
+                ledgerSeats.put(booking.getBookingId(), new int[] {booking.getEventId(), booking.getNumberOfTickets()});
+            }
+        }
+        
+        List<Booking> paid = new ArrayList<>();
+        for (PaymentTransition transition : applied) {
+            if ("paid".equals(transition.getToStatus())) {
+                paid.add(transition.getBooking());
+            }
+        }
+        if (!paid.isEmpty()) {
+            NotificationService.getInstance().sendPaymentConfirmedBatch(paid);
+        }
+    }
+    
+    // After commit: cancelled seats go back to the ledger, and so do seats a reactivation
+    // took for a transaction that then did not commit
+    private static void settleLedger(List<PaymentTransition> outcomes, Map<Integer, int[]> ledgerSeats) {
+        if (!CapacityLedger.isEnabled()) {
+            return;
+        }
+        CapacityLedger ledger = CapacityLedger.getInstance();
+        for (PaymentTransition transition : outcomes) {
+            if (!transition.isApplied()) {
+                continue;
+            }
+            ledgerSeats.remove(transition.getBookingId());
+            if ("cancelled".equals(transition.getToStatus())) {
+                Booking booking = transition.getBooking();
+                ledger.release(booking.getEventId(), booking.getNumberOfTickets());
+            }
+        }
+        for (int[] taken : ledgerSeats.values()) {
+            ledger.release(taken[0], taken[1]);
+        }
     }
 
     @Override
-    public boolean updatePaymentStatus(int bookingId, String status) throws RemoteException {
-        // Get old status before update
-        Booking oldBooking = dao.findBookingById(bookingId);
-        String oldStatus = oldBooking != null ? oldBooking.getPaymentStatus() : null;
+    public List<PaymentTransition> applyPaymentStatuses(List<StatusChange> changes) throws RemoteException {
+        if (changes == null || changes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, int[]> ledgerSeats = new HashMap<>();
+        List<PaymentTransition> outcomes = dao.applyPaymentStatuses(changes, applied -> onApplied(applied, ledgerSeats));
+        settleLedger(outcomes, ledgerSeats);
+        return outcomes;
+    }
+    
+    @Override
+    public ExportCursor exportBookings() throws RemoteException {
+        return ExportCursorImpl.open(ExportDao.BOOKING_HEADERS, exportDao::openBookings);
+    }
+
+    @Override
+    public ReservationResult reserveTickets(int eventId, int userId, int quantity, String ticketCategory) throws RemoteException {
+        if (quantity < 1 || quantity > 10) {
+            return new ReservationResult(false, null, 0, "Number of tickets must be between 1 and 10.");
+        }
         
-        boolean result = dao.updatePaymentStatus(bookingId, status);
+        if (CapacityLedger.isEnabled()) {
+            return reserveFromLedger(eventId, userId, quantity, ticketCategory);
+        }
         
-        // If payment was confirmed (changed to 'paid'), send notification
-        if (result && "paid".equalsIgnoreCase(status) && !"paid".equalsIgnoreCase(oldStatus)) {
-            try {
-                // Get booking with relationships loaded
-                Booking booking = dao.getBookingWithRelations(bookingId);
-                if (booking != null && booking.getUser() != null && booking.getEvent() != null) {
-                    // Send notifications asynchronously to avoid blocking
-                    new Thread(() -> {
-                        try {
-                            NotificationService.getInstance().sendPaymentConfirmationNotification(
-                                booking, booking.getUser(), booking.getEvent()
-                            );
-                            NotificationService.getInstance().sendTicketReadyNotification(
-                                booking, booking.getUser(), booking.getEvent()
-                            );
-                            NotificationService.getInstance().sendBookingApprovedNotification(
-                                booking, booking.getUser(), booking.getEvent()
-                            );
-                        } catch (Exception e) {
-                            System.err.println("Failed to send notification: " + e.getMessage());
-                        }
-                    }).start();
+        // Reservation and the admin notification's outbox row commit together
+        ReservationResult[] outcome = new ReservationResult[1];
+        ReservationResult result;
+        try {
+            result = UnitOfWork.execute(ss -> {
+                outcome[0] = dao.reserveTickets(eventId, userId, quantity, ticketCategory);
+                if (outcome[0].isAccepted()) {
+                    Booking booking = outcome[0].getBooking();
+                    NotificationService.getInstance().sendNewBookingNotification(booking, booking.getUser(), booking.getEvent());
                 }
-            } catch (Exception e) {
-                System.err.println("Failed to prepare notification: " + e.getMessage());
-                // Don't fail the update if notification fails
+                return outcome[0];
+            });
+        } catch (Exception e) {
+            // The reservation's own failure also fails this unit: keep its message
+            if (outcome[0] != null && !outcome[0].isAccepted()) {
+                return outcome[0];
             }
+            e.printStackTrace();
+            return new ReservationResult(false, null, 0, "Reservation failed: " + e.getMessage());
+        }
+        if (result.isAccepted()) {
+            Booking booking = result.getBooking();
+            
+            // Ship a detached copy without the Hibernate relations
+            result.setBooking(detachedCopy(booking));
         }
-        
         return result;
     }
-
+    
+    // Ledger mode: answered from memory, the booking row is written by the next flush
+    private ReservationResult reserveFromLedger(int eventId, int userId, int quantity, String ticketCategory) {
+        CapacityLedger ledger = CapacityLedger.getInstance();
+        Booking queued = ledger.reserve(eventId, userId, quantity, ticketCategory);
+        if (queued == null) {
+            int available = ledger.getRemaining(eventId);
+            return new ReservationResult(false, null, available,
+                "Not enough tickets available. Only " + available + " tickets left.");
+        }
+        
+        // Booking ID is assigned at flush; the ticket number identifies the booking until then
+        Booking detached = detachedCopy(queued);
+        return new ReservationResult(true, detached, ledger.getRemaining(eventId), "Booking created successfully!");
+    }
+    
     @Override
-    public String generateTicketNumber() throws RemoteException {
-        return dao.generateTicketNumber();
+    public GroupReservationResult createBookings(List<Booking> bookings) throws RemoteException {
+        if (bookings == null || bookings.isEmpty()) {
+            return new GroupReservationResult(false, "No bookings requested.");
+        }
+        if (bookings.size() > MAX_GROUP_SIZE) {
+            return new GroupReservationResult(false, "A group booking is limited to " + MAX_GROUP_SIZE + " bookings.");
+        }
+        for (Booking booking : bookings) {
+            if (booking.getNumberOfTickets() < 1 || booking.getNumberOfTickets() > 10) {
+                return new GroupReservationResult(false, "Number of tickets must be between 1 and 10.");
+            }
+        }
+        
+        if (CapacityLedger.isEnabled()) {
+            return createBookingsFromLedger(bookings);
+        }
+        
+        // One consolidated notification to admin for the whole group, committed with the bookings
+        GroupReservationResult[] outcome = new GroupReservationResult[1];
+        GroupReservationResult result;
+        try {
+            result = UnitOfWork.execute(ss -> {
+                outcome[0] = dao.reserveGroup(bookings);
+                if (outcome[0].isAccepted()) {
+                    NotificationService.getInstance().sendGroupBookingNotification(outcome[0].getBookings());
+                }
+                return outcome[0];
+            });
+        } catch (Exception e) {
+            // A rejected group rolls back its partial claims, which also fails this unit: keep its message
+            if (outcome[0] != null && !outcome[0].isAccepted()) {
+                return outcome[0];
+            }
+            e.printStackTrace();
+            return new GroupReservationResult(false, "Group booking failed: " + e.getMessage());
+        }
+        if (result.isAccepted()) {
+            List<Booking> created = result.getBookings();
+            
+            List<Booking> detached = new ArrayList<>();
+            for (Booking booking : created) {
+                detached.add(detachedCopy(booking));
+            }
+            result.setBookings(detached);
+        }
+        return result;
+    }
+    
+    // Ledger mode: all seats taken in memory or none; rows are written (and announced) by the next flush
+    private GroupReservationResult createBookingsFromLedger(List<Booking> bookings) {
+        CapacityLedger ledger = CapacityLedger.getInstance();
+        List<Booking> queued = ledger.reserveGroup(bookings);
+        
+        GroupReservationResult result = queued != null
+            ? new GroupReservationResult(true, "Group booking created successfully!")
+            : new GroupReservationResult(false, "Not enough tickets available. No bookings were made.");
+        for (Booking booking : bookings) {
+            result.getRemainingCapacity().put(booking.getEventId(), ledger.getRemaining(booking.getEventId()));
+        }
+        if (queued != null) {
+            for (Booking booking : queued) {
+                result.getBookings().add(detachedCopy(booking));
+            }
+        }
+        return result;
+    }
+    
+    // Flat copy without Hibernate relations, safe to serialize over RMI
+    private static Booking detachedCopy(Booking booking) {
+        Booking detached = new Booking();
+        detached.setBookingId(booking.getBookingId());
+        detached.setEventId(booking.getEventId());
+        detached.setUserId(booking.getUserId());
+        detached.setBookingDate(booking.getBookingDate());
+        detached.setPaymentStatus(booking.getPaymentStatus());
+        detached.setTicketNumber(booking.getTicketNumber());
+        detached.setNumberOfTickets(booking.getNumberOfTickets());
+        detached.setTotalAmount(booking.getTotalAmount());
+        detached.setTicketCategory(booking.getTicketCategory());
+        detached.setEventName(booking.getEventName());
+        detached.setUserName(booking.getUserName());
+        return detached;
     }
 }
-
@@ -0,0 +1,26 @@
+package service.implementation;
+
+import dao.DashboardDao;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import model.DashboardSnapshot;
+import service.DashboardService;
+
+/**
+ * Dashboard Service Implementation
+ * 
+ * @author 27066
+ */
+public class DashboardServiceImpl extends UnicastRemoteObject implements DashboardService {
+
+    private DashboardDao dao = new DashboardDao();
+    
+    public DashboardServiceImpl() throws RemoteException {
+        super();
+    }
+
+    @Override
+    public DashboardSnapshot getSnapshot() throws RemoteException {
+        return dao.getSnapshot();
+    }
+}
@@ -1,11 +1,21 @@
 package service.implementation;
 
 import dao.EventDao;
+import dao.ExportDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import model.Event;
 import service.EventService;
+import service.ExportCursor;
+import util.CapacityLedger;
+import util.EventCatalogue;
+import util.EventExpirySweeper;
 import util.NotificationService;
 
 /**
@@ -16,6 +26,7 @@ import util.NotificationService;
 public class EventServiceImpl extends UnicastRemoteObject implements EventService {
 
     private EventDao dao = new EventDao();
+    private ExportDao exportDao = new ExportDao();
     
     public EventServiceImpl() throws RemoteException {
         super();
@@ -23,37 +34,69 @@ public class EventServiceImpl extends UnicastRemoteObject implements EventServic
 
     @Override
     public Event createEvent(Event event) throws RemoteException {
-        Event result = dao.createEvent(event);
+        // The event and its announcement (an outbox row) commit together
+        Event result;
+        try {
+            result = UnitOfWork.execute(ss -> {
+                Event created = dao.createEvent(event);
+                if (created != null) {
+                    // Send notification to all users about new event
+                    NotificationService.getInstance().sendNewEventNotification(created);
+                }
+                return created;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            result = null;
+        }
         if (result != null) {
+            EventCatalogue.getInstance().eventsChanged();
+            EventExpirySweeper.getInstance().eventChanged(result);
+            
             // Clear Hibernate collections to avoid serialization issues
             result.setBookings(null);
             result.setTags(null);
-            
-            // Send notification to all users about new event
-            new Thread(() -> {
-                try {
-                    NotificationService.getInstance().sendNewEventNotification(result);
-                } catch (Exception e) {
-                    System.err.println("Failed to send new event notification: " + e.getMessage());
-                }
-            }).start();
         }
         return result;
     }
 
     @Override
     public Event updateEvent(Event event) throws RemoteException {
+        // Capacity below the seats already sold is rejected; in ledger mode that includes unflushed ones
+        CapacityLedger ledger = CapacityLedger.isEnabled() ? CapacityLedger.getInstance() : null;
+        int cut = ledger != null ? ledger.cutCapacity(event) : 0;
+        if (cut < 0) {
+            System.err.println("Capacity of event " + event.getEventId() + " cannot drop to "
+                + event.getCapacity() + ": seats already sold");
+            return null;
+        }
         Event result = dao.updateEvent(event);
+        if (result == null && cut > 0) {
+            ledger.release(event.getEventId(), cut);
+        }
         if (result != null) {
+            EventCatalogue.getInstance().eventsChanged();
+            EventExpirySweeper.getInstance().eventChanged(result);
             result.setBookings(null);
             result.setTags(null);
+            if (ledger != null) {
+                ledger.eventUpdated(result);
+            }
         }
         return result;
     }
 
     @Override
     public Event deleteEvent(Event event) throws RemoteException {
-        return dao.deleteEvent(event);
+        Event result = dao.deleteEvent(event);
+        if (result != null) {
+            EventCatalogue.getInstance().eventsChanged();
+            EventExpirySweeper.getInstance().eventDeleted(result.getEventId());
+            if (CapacityLedger.isEnabled()) {
+                CapacityLedger.getInstance().eventDeleted(result.getEventId());
+            }
+        }
+        return result;
     }
 
     @Override
@@ -75,36 +118,10 @@ public class EventServiceImpl extends UnicastRemoteObject implements EventServic
                 event.setBookings(null);
                 event.setTags(null);
             }
-            
-            // Check for expired events and notify admin
-            checkAndNotifyExpiredEvents(events);
         }
         return events;
     }
     
-    /**
-     * Check for expired events and send notifications to admin
-     */
-    private void checkAndNotifyExpiredEvents(List<Event> events) {
-        new Thread(() -> {
-            try {
-                java.util.Date today = new java.util.Date();
-                for (Event event : events) {
-                    if (event.getEventDate() != null) {
-                        java.util.Date eventDate = new java.util.Date(event.getEventDate().getTime());
-                        // Check if event date has passed (expired)
-                        if (eventDate.before(today)) {
-                            // Send notification to admin about expired event
-                            NotificationService.getInstance().sendEventExpiredNotification(event);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to check expired events: " + e.getMessage());
-            }
-        }).start();
-    }
-
     @Override
     public List<Event> findEventsByOrganizer(int organizerId) throws RemoteException {
         List<Event> events = dao.findEventsByOrganizer(organizerId);
@@ -119,19 +136,89 @@ public class EventServiceImpl extends UnicastRemoteObject implements EventServic
 
     @Override
     public List<Event> findScheduledEvents() throws RemoteException {
-        List<Event> events = dao.findScheduledEvents();
-        if (events != null) {
-            for (Event event : events) {
-                event.setBookings(null);
-                event.setTags(null);
+        // Served from the in-memory snapshot; a copy so the client gets a list it can sort
+        List<Event> events = EventCatalogue.getInstance().getScheduledEvents();
+        return events != null ? new ArrayList<>(events) : null;
+    }
+
+    @Override
+    public int getAvailableCapacity(int eventId) throws RemoteException {
+        if (CapacityLedger.isEnabled()) {
+            return CapacityLedger.getInstance().getRemaining(eventId);
+        }
+        return dao.getAvailableCapacity(eventId);
+    }
+
+    @Override
+    public Map<Integer, Integer> getAvailableCapacities(Collection<Integer> eventIds) throws RemoteException {
+        if (CapacityLedger.isEnabled()) {
+            Map<Integer, Integer> capacities = new HashMap<>();
+            for (Integer eventId : eventIds) {
+                capacities.put(eventId, CapacityLedger.getInstance().getRemaining(eventId));
+            }
+            return capacities;
+        }
+        return dao.getAvailableCapacities(eventIds);
+    }
+
+    @Override
+    public List<Event> findScheduledEventsWithAvailability() throws RemoteException {
+        List<Event> catalogue = EventCatalogue.getInstance().getScheduledEvents();
+        if (catalogue == null) {
+            return null;
+        }
+        
+        // Seats change with every booking, so only they are read fresh: from the ledger, or one grouped query
+        Map<Integer, Integer> capacities;
+        if (CapacityLedger.isEnabled()) {
+            capacities = new HashMap<>();
+            for (Event event : catalogue) {
+                capacities.put(event.getEventId(), CapacityLedger.getInstance().getRemaining(event.getEventId()));
             }
+        } else {
+            List<Integer> eventIds = new ArrayList<>(catalogue.size());
+            for (Event event : catalogue) {
+                eventIds.add(event.getEventId());
+            }
+            capacities = dao.getAvailableCapacities(eventIds);
+            if (capacities == null) {
+                return null;
+            }
+        }
+        
+        // Snapshot events are shared between callers, so the seats go on copies
+        List<Event> events = new ArrayList<>(catalogue.size());
+        for (Event event : catalogue) {
+            events.add(withRemainingCapacity(event, capacities.getOrDefault(event.getEventId(), 0)));
         }
         return events;
     }
 
     @Override
-    public int getAvailableCapacity(int eventId) throws RemoteException {
-        return dao.getAvailableCapacity(eventId);
+    public ExportCursor exportEvents() throws RemoteException {
+        return ExportCursorImpl.open(ExportDao.EVENT_HEADERS, exportDao::openEvents);
+    }
+    
+    private static Event withRemainingCapacity(Event event, int remaining) {
+        Event copy = new Event();
+        copy.setEventId(event.getEventId());
+        copy.setEventName(event.getEventName());
+        copy.setEventDescription(event.getEventDescription());
+        copy.setEventDate(event.getEventDate());
+        copy.setEventTime(event.getEventTime());
+        copy.setVenue(event.getVenue());
+        copy.setOrganizer(event.getOrganizer());
+        copy.setVenueId(event.getVenueId());
+        copy.setOrganizerId(event.getOrganizerId());
+        copy.setCapacity(event.getCapacity());
+        copy.setRemainingCapacity(remaining);
+        copy.setTicketPrice(event.getTicketPrice());
+        copy.setVvipPrice(event.getVvipPrice());
+        copy.setVipPrice(event.getVipPrice());
+        copy.setCasualPrice(event.getCasualPrice());
+        copy.setPricingType(event.getPricingType());
+        copy.setStatus(event.getStatus());
+        copy.setCreatedAt(event.getCreatedAt());
+        return copy;
     }
 }
-
@@ -0,0 +1,147 @@
+package service.implementation;
+
+import dao.ExportDao.RowStream;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import service.ExportCursor;
+
+/**
+ * Export cursor exported to the client as its own remote object.
+ *
+ * Each open cursor pins one pooled connection, so:
+ * - at most export.maxCursors (default 4) are open at once; further exports wait
+ *   up to export.acquireSeconds (default 10) and then fail instead of draining the pool
+ * - a cursor not read for export.idleSeconds (default 60) is closed by a reaper
+ * - a cursor whose client went away is closed by RMI's unreferenced() callback
+ * - the cursor closes itself as soon as the last row has been sent
+ *
+ * Chunk size comes from export.chunkSize (default 1000), also used as the JDBC fetch size.
+ *
+ * @author 27066
+ */
+public class ExportCursorImpl extends UnicastRemoteObject implements ExportCursor, Unreferenced {
+    
+    public static final int CHUNK_SIZE = Integer.getInteger("export.chunkSize", 1000);
+    private static final long IDLE_MILLIS = Long.getLong("export.idleSeconds", 60) * 1000;
+    private static final long ACQUIRE_SECONDS = Long.getLong("export.acquireSeconds", 10);
+    
+    private static final Semaphore SLOTS = new Semaphore(Integer.getInteger("export.maxCursors", 4), true);
+    private static final Set<ExportCursorImpl> OPEN = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "export-cursor-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    static {
+        REAPER.scheduleWithFixedDelay(ExportCursorImpl::closeIdle, 15, 15, TimeUnit.SECONDS);
+    }
+    
+    private final String[] headers;
+    private final RowStream rows;
+    private volatile long lastAccess = System.currentTimeMillis();
+    private boolean closed;
+    
+    private ExportCursorImpl(String[] headers, RowStream rows) throws RemoteException {
+        super();
+        this.headers = headers;
+        this.rows = rows;
+    }
+    
+    /**
+     * Open a cursor through the given DAO call (which receives the fetch size).
+     * Returns null when no slot frees up in time or the query cannot be opened.
+     */
+    public static ExportCursor open(String[] headers, IntFunction<RowStream> opener) throws RemoteException {
+        try {
+            if (!SLOTS.tryAcquire(ACQUIRE_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Export rejected: " + OPEN.size() + " exports already running");
+                return null;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        
+        RowStream rows = null;
+        try {
+            rows = opener.apply(CHUNK_SIZE);
+            if (rows == null) {
+                SLOTS.release();
+                return null;
+            }
+            ExportCursorImpl cursor = new ExportCursorImpl(headers, rows);
+            OPEN.add(cursor);
+            return cursor;
+        } catch (RemoteException | RuntimeException ex) {
+            if (rows != null) {
+                rows.close();
+            }
+            SLOTS.release();
+            throw ex;
+        }
+    }
+    
+    @Override
+    public String[] getHeaders() throws RemoteException {
+        return headers.clone();
+    }
+    
+    @Override
+    public synchronized List<Object[]> nextChunk() throws RemoteException {
+        if (closed) {
+            return List.of();
+        }
+        lastAccess = System.currentTimeMillis();
+        try {
+            List<Object[]> chunk = rows.next(CHUNK_SIZE);
+            if (rows.isExhausted()) {
+                close();
+            }
+            return chunk;
+        } catch (RuntimeException ex) {
+            close();
+            throw new RemoteException("Export failed", ex);
+        }
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        OPEN.remove(this);
+        try {
+            rows.close();
+        } finally {
+            // The empty shell stays exported so a last nextChunk() still answers; DGC drops it with the stub
+            SLOTS.release();
+        }
+    }
+    
+    @Override
+    public void unreferenced() {
+        // Client crashed or dropped the stub without closing
+        close();
+    }
+    
+    private static void closeIdle() {
+        long now = System.currentTimeMillis();
+        for (ExportCursorImpl cursor : OPEN) {
+            if (now - cursor.lastAccess > IDLE_MILLIS) {
+                System.err.println("Closing idle export cursor");
+                cursor.close();
+            }
+        }
+    }
+}
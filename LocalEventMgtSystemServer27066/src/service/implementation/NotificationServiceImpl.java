@@ -0,0 +1,47 @@
+package service.implementation;
+
+import dao.InboxDao;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import model.InboxNotification;
+import service.NotificationService;
+
+/**
+ * Notification inbox Service Implementation
+ * 
+ * @author 27066
+ */
+public class NotificationServiceImpl extends UnicastRemoteObject implements NotificationService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+    
+    private InboxDao dao = new InboxDao();
+    
+    public NotificationServiceImpl() throws RemoteException {
+        super();
+    }
+
+    @Override
+    public List<InboxNotification> fetchSince(int userId, long cursor, int limit) throws RemoteException {
+        return dao.fetchSince(userId, cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+    }
+
+    @Override
+    public int unreadCount(int userId) throws RemoteException {
+        return dao.unreadCount(userId);
+    }
+
+    @Override
+    public int markRead(int userId, List<Long> notificationIds) throws RemoteException {
+        if (notificationIds == null) {
+            return dao.unreadCount(userId);
+        }
+        return dao.markRead(userId, notificationIds);
+    }
+
+    @Override
+    public int markAllRead(int userId) throws RemoteException {
+        return dao.markRead(userId, null);
+    }
+}
@@ -0,0 +1,458 @@
+package util;
+
+import dao.BookingDao;
+import dao.EventDao;
+import dao.UnitOfWork;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Booking;
+import model.Event;
+
+/**
+ * In-memory capacity ledger with write-behind to the bookings table.
+ * Optional server mode, enabled with -Dbooking.ledger=true.
+ *
+ * - Each event has its own AtomicInteger counter, so contention is per event
+ *   and reservations are a CAS loop instead of a row lock in Postgres
+ * - Sold-out rejections are answered from memory without touching the database
+ * - Accepted reservations are queued and flushed in batches by one background thread
+ * - A reservation that cannot be written is never dropped: it keeps its seats and is
+ *   retried on its own with exponential backoff, and admin is told once it has failed
+ *   booking.ledger.alertAttempts times
+ * - Reservations still unwritten at shutdown go to a dead-letter file
+ *   (booking.ledger.deadLetterFile) that the next start queues again
+ * - On start the events.remaining_capacity column is rebuilt from the bookings
+ *   table, so a crash only loses reservations that were not flushed yet
+ *
+ * Capacity is per event in this schema (ticket categories share one pool),
+ * so the ledger is keyed by event only.
+ *
+ * @author 27066
+ */
+public class CapacityLedger {
+
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("booking.ledger.flushMillis", 200);
+    private static final int FLUSH_BATCH_SIZE = Integer.getInteger("booking.ledger.batchSize", 500);
+    private static final long RETRY_MILLIS = Long.getLong("booking.ledger.retryMillis", 1000);
+    private static final long MAX_RETRY_MILLIS = Long.getLong("booking.ledger.maxRetryMillis", 60000);
+    private static final int ALERT_ATTEMPTS = Integer.getInteger("booking.ledger.alertAttempts", 5);
+    private static final Path DEAD_LETTER_FILE = Paths.get(
+        System.getProperty("booking.ledger.deadLetterFile", "capacity-ledger-unflushed.tsv"));
+
+    private static CapacityLedger instance;
+
+    private final EventDao eventDao = new EventDao();
+    private final BookingDao bookingDao = new BookingDao();
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Booking> pending = new ConcurrentLinkedQueue<>();
+    private final List<Retry> retrying = new ArrayList<>(); // Guarded by itself, also the flush lock
+    private ScheduledExecutorService flusher;
+
+    // Remaining seats plus the pricing snapshot used for accepted reservations
+    private static class Entry {
+        final AtomicInteger remaining;
+        volatile Event event;
+
+        Entry(int remaining, Event event) {
+            this.remaining = new AtomicInteger(remaining);
+            this.event = event;
+        }
+    }
+
+    // A reservation whose write failed; it keeps its seats until it is written
+    private static class Retry {
+        final Booking booking;
+        int attempts = 1;
+        long dueAt;
+
+        Retry(Booking booking) {
+            this.booking = booking;
+        }
+    }
+
+    private CapacityLedger() {}
+
+    public static synchronized CapacityLedger getInstance() {
+        if (instance == null) {
+            instance = new CapacityLedger();
+        }
+        return instance;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("booking.ledger");
+    }
+
+    /**
+     * Reconcile the database counters, queue reservations left in the dead-letter file
+     * by the last shutdown, and start the write-behind flusher
+     */
+    public synchronized void start() {
+        if (flusher != null) {
+            return;
+        }
+        reconcile();
+        requeueDeadLetters();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "capacity-ledger-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "capacity-ledger-shutdown"));
+    }
+
+    /**
+     * Stop the flusher and write out everything still queued; reservations that still
+     * fail, after one last attempt each, go to the dead-letter file
+     */
+    public synchronized void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+        while (!pending.isEmpty()) {
+            flush();
+        }
+        synchronized (retrying) {
+            retry(Long.MAX_VALUE);
+            writeDeadLetters();
+        }
+    }
+
+    /**
+     * Crash recovery: rebuild remaining_capacity from the bookings table and
+     * drop the in-memory counters so they are re-seeded from the fresh values
+     */
+    public void reconcile() {
+        if (eventDao.reconcileRemainingCapacity()) {
+            entries.clear();
+            System.out.println("Capacity ledger reconciled from bookings table");
+        }
+    }
+
+    /**
+     * Try to take seats and queue the booking for write-behind.
+     * Returns the queued booking, or null when the event is unknown or sold out.
+     */
+    public Booking reserve(int eventId, int userId, int quantity, String ticketCategory) {
+        if (!take(eventId, quantity)) {
+            return null;
+        }
+        return queue(eventId, userId, quantity, ticketCategory);
+    }
+
+    /**
+     * All-or-nothing group reservation: seats are taken for every event first,
+     * and given back if any event is short. Returns the queued bookings, or null.
+     */
+    public List<Booking> reserveGroup(List<Booking> requests) {
+        Map<Integer, Integer> ticketsPerEvent = new HashMap<>();
+        for (Booking request : requests) {
+            ticketsPerEvent.merge(request.getEventId(), request.getNumberOfTickets(), Integer::sum);
+        }
+
+        Map<Integer, Integer> taken = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : ticketsPerEvent.entrySet()) {
+            if (!take(entry.getKey(), entry.getValue())) {
+                for (Map.Entry<Integer, Integer> undo : taken.entrySet()) {
+                    release(undo.getKey(), undo.getValue());
+                }
+                return null;
+            }
+            taken.put(entry.getKey(), entry.getValue());
+        }
+
+        List<Booking> queued = new ArrayList<>();
+        for (Booking request : requests) {
+            queued.add(queue(request.getEventId(), request.getUserId(),
+                request.getNumberOfTickets(), request.getTicketCategory()));
+        }
+        return queued;
+    }
+
+    // Price and number a booking whose seats are already taken, and hand it to the flusher
+    private Booking queue(int eventId, int userId, int quantity, String ticketCategory) {
+        Event event = entries.get(eventId).event;
+
+        Booking booking = new Booking();
+        booking.setEventId(eventId);
+        booking.setUserId(userId);
+        booking.setPaymentStatus("pending");
+        booking.setTicketNumber(bookingDao.generateTicketNumber());
+        booking.setNumberOfTickets(quantity);
+        booking.setTotalAmount(event.priceFor(ticketCategory) * quantity);
+        booking.setTicketCategory(event.categoryFor(ticketCategory));
+        booking.setBookingDate(new Timestamp(System.currentTimeMillis()));
+        booking.setEventName(event.getEventName());
+        pending.add(booking);
+        return booking;
+    }
+
+    /**
+     * Take seats without queueing a booking (reactivating a cancelled booking)
+     */
+    public boolean take(int eventId, int quantity) {
+        Entry entry = entry(eventId);
+        if (entry == null) {
+            return false;
+        }
+
+        AtomicInteger remaining = entry.remaining;
+        int current;
+        do {
+            current = remaining.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!remaining.compareAndSet(current, current - quantity));
+        return true;
+    }
+
+    /**
+     * Seats left for an event as seen by the ledger
+     */
+    public int getRemaining(int eventId) {
+        Entry entry = entry(eventId);
+        return entry != null ? entry.remaining.get() : 0;
+    }
+
+    /**
+     * Return seats to an event (cancellation, undone reactivation)
+     */
+    public void release(int eventId, int quantity) {
+        Entry entry = entries.get(eventId);
+        if (entry != null) {
+            entry.remaining.addAndGet(quantity);
+        }
+    }
+
+    /**
+     * Take a capacity cut from the counter before the edit is written, like a reservation,
+     * so it cannot eat seats sold but not flushed yet. Returns the seats taken (0 when the
+     * capacity grows or the event is not seeded), or -1 when fewer seats are unsold.
+     * Give them back with release() if the edit is not saved.
+     */
+    public int cutCapacity(Event edited) {
+        Entry entry = entries.get(edited.getEventId());
+        if (entry == null) {
+            return 0;
+        }
+        int cut = entry.event.getCapacity() - edited.getCapacity();
+        if (cut <= 0) {
+            return 0;
+        }
+        return take(edited.getEventId(), cut) ? cut : -1;
+    }
+
+    /**
+     * Apply a saved event edit: add any capacity increase (cuts were taken by cutCapacity)
+     * and refresh pricing
+     */
+    public void eventUpdated(Event updated) {
+        Entry entry = entries.get(updated.getEventId());
+        if (entry != null) {
+            entry.remaining.addAndGet(Math.max(0, updated.getCapacity() - entry.event.getCapacity()));
+            entry.event = updated;
+        }
+    }
+
+    public void eventDeleted(int eventId) {
+        entries.remove(eventId);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    // Accepted reservations whose write failed and is being retried
+    public int getRetryingCount() {
+        synchronized (retrying) {
+            return retrying.size();
+        }
+    }
+
+    // Seeded outside the map: computeIfAbsent would hold the bin lock, and block other events
+    // in the same bin, for the whole database round trip. A racing seed is discarded.
+    private Entry entry(int eventId) {
+        Entry entry = entries.get(eventId);
+        if (entry != null) {
+            return entry;
+        }
+        Entry seeded = seed(eventId);
+        if (seeded == null) {
+            return null;
+        }
+        entry = entries.putIfAbsent(eventId, seeded);
+        return entry != null ? entry : seeded;
+    }
+
+    private Entry seed(int eventId) {
+        Event event = eventDao.findEventById(eventId);
+        if (event == null) {
+            return null;
+        }
+        return new Entry(eventDao.getAvailableCapacity(eventId), event);
+    }
+
+    private void flush() {
+        synchronized (retrying) {
+            retry(System.currentTimeMillis());
+
+            List<Booking> batch = new ArrayList<>();
+            Booking next;
+            while (batch.size() < FLUSH_BATCH_SIZE && (next = pending.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty() || persistAndAnnounce(batch) != null) {
+                return;
+            }
+
+            // Isolate the failing rows; the ones that still fail keep their seats and are retried
+            for (Booking booking : batch) {
+                resetForRetry(booking);
+                if (persistAndAnnounce(Collections.singletonList(booking)) == null) {
+                    Retry retry = new Retry(booking);
+                    retry.dueAt = System.currentTimeMillis() + RETRY_MILLIS;
+                    retrying.add(retry);
+                    System.err.println("Reservation " + booking.getTicketNumber() + " not written, retrying");
+                }
+            }
+        }
+    }
+
+    // One row per transaction, for every retry due at now; backoff doubles up to MAX_RETRY_MILLIS
+    private void retry(long now) {
+        for (Iterator<Retry> it = retrying.iterator(); it.hasNext(); ) {
+            Retry retry = it.next();
+            if (retry.dueAt > now) {
+                continue;
+            }
+            resetForRetry(retry.booking);
+            if (persistAndAnnounce(Collections.singletonList(retry.booking)) != null) {
+                it.remove();
+                continue;
+            }
+            retry.attempts++;
+            long backoff = RETRY_MILLIS << Math.min(retry.attempts - 1, 20);
+            retry.dueAt = System.currentTimeMillis() + Math.min(backoff, MAX_RETRY_MILLIS);
+            if (retry.attempts == ALERT_ATTEMPTS) {
+                NotificationService.getInstance().sendReservationDelayedNotification(retry.booking, retry.attempts);
+            }
+        }
+    }
+
+    // Tab-separated: ticket, event, user, tickets, amount, category, booked at (millis), event name
+    private void writeDeadLetters() {
+        if (retrying.isEmpty()) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        for (Retry retry : retrying) {
+            Booking booking = retry.booking;
+            lines.add(String.join("\t",
+                booking.getTicketNumber(),
+                String.valueOf(booking.getEventId()),
+                String.valueOf(booking.getUserId()),
+                String.valueOf(booking.getNumberOfTickets()),
+                String.valueOf(booking.getTotalAmount()),
+                booking.getTicketCategory() != null ? booking.getTicketCategory() : "",
+                String.valueOf(booking.getBookingDate().getTime()),
+                booking.getEventName() != null ? booking.getEventName().replaceAll("[\t\r\n]", " ") : ""));
+        }
+        try {
+            Files.write(DEAD_LETTER_FILE, lines, StandardCharsets.UTF_8);
+            System.err.println(lines.size() + " unwritten reservations saved to " + DEAD_LETTER_FILE.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Could not save unwritten reservations to " + DEAD_LETTER_FILE + ": " + e.getMessage());
+            for (String line : lines) {
+                System.err.println("Unwritten reservation: " + line);
+            }
+        }
+        retrying.clear();
+    }
+
+    // Seats are taken again from the reconciled counters, which do not include these rows
+    private void requeueDeadLetters() {
+        if (!Files.exists(DEAD_LETTER_FILE)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(DEAD_LETTER_FILE, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] fields = line.split("\t", -1);
+                Booking booking = new Booking();
+                booking.setTicketNumber(fields[0]);
+                booking.setEventId(Integer.parseInt(fields[1]));
+                booking.setUserId(Integer.parseInt(fields[2]));
+                booking.setNumberOfTickets(Integer.parseInt(fields[3]));
+                booking.setTotalAmount(Double.parseDouble(fields[4]));
+                booking.setTicketCategory(fields[5].isEmpty() ? null : fields[5]);
+                booking.setBookingDate(new Timestamp(Long.parseLong(fields[6])));
+                booking.setEventName(fields[7]);
+                booking.setPaymentStatus("pending");
+                if (!take(booking.getEventId(), booking.getNumberOfTickets())) {
+                    // Sold before the restart, so it is still written; admin has to resolve the overbooking
+                    NotificationService.getInstance().sendReservationDelayedNotification(booking, 0);
+                }
+                pending.add(booking);
+            }
+            Files.delete(DEAD_LETTER_FILE);
+            System.out.println(lines.size() + " unwritten reservations queued again from " + DEAD_LETTER_FILE);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read unwritten reservations from " + DEAD_LETTER_FILE + ": " + e.getMessage());
+        }
+    }
+
+    // Rows and their admin notifications (outbox rows) commit in one transaction; null on failure
+    private List<Booking> persistAndAnnounce(List<Booking> reservations) {
+        try {
+            return UnitOfWork.execute(ss -> {
+                List<Booking> persisted = bookingDao.persistReservations(reservations);
+                if (persisted != null) {
+                    for (Booking booking : persisted) {
+                        NotificationService.getInstance().sendNewBookingNotification(
+                            booking, booking.getUser(), booking.getEvent()
+                        );
+                    }
+                }
+                return persisted;
+            });
+        } catch (Exception e) {
+            System.err.println("Failed to persist reservations: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void resetForRetry(Booking booking) {
+        int eventId = booking.getEventId();
+        int userId = booking.getUserId();
+        booking.setBookingId(0);
+        booking.setEvent(null);
+        booking.setUser(null);
+        booking.setEventId(eventId);
+        booking.setUserId(userId);
+    }
+}
@@ -0,0 +1,113 @@
+package util;
+
+import java.io.File;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.TransportConnector;
+import org.apache.activemq.broker.region.DestinationStatistics;
+import org.apache.activemq.broker.region.RegionBroker;
+import org.apache.activemq.store.kahadb.KahaDBPersistenceAdapter;
+
+/**
+ * Optional ActiveMQ broker inside the server process (-Dbroker.embedded=true),
+ * for single-node deployments, benchmarks and integration tests without an
+ * external ActiveMQ.
+ *
+ * - broker.store        kahadb (default): messages survive restarts in broker.dataDir
+ *                       (default activemq-data); memory: nothing is written to disk
+ * - broker.connector    transport remote desktops connect to (default tcp://0.0.0.0:61616);
+ *                       none = in-VM only
+ * - Server-side producers use the in-VM transport (getVmUrl), so a notification is
+ *   handed to the broker without a TCP hop or wire marshalling
+ *
+ * @author 27066
+ */
+public final class EmbeddedBroker {
+    
+    private static final String BROKER_NAME = "event-notifications";
+    
+    private static BrokerService broker;
+    
+    private EmbeddedBroker() {}
+    
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("broker.embedded");
+    }
+    
+    public static synchronized boolean isRunning() {
+        return broker != null && broker.isStarted();
+    }
+    
+    /**
+     * Start the broker; must run before anything uses NotificationService
+     */
+    public static synchronized void start() throws Exception {
+        if (broker != null) {
+            return;
+        }
+        BrokerService service = new BrokerService();
+        service.setBrokerName(BROKER_NAME);
+        service.setUseJmx(Boolean.getBoolean("broker.jmx"));
+        service.setSchedulerSupport(false);
+        service.setAdvisorySupport(false);
+        
+        String store = System.getProperty("broker.store", "kahadb");
+        if ("memory".equalsIgnoreCase(store)) {
+            service.setPersistent(false);
+        } else {
+            File dataDir = new File(System.getProperty("broker.dataDir", "activemq-data"));
+            KahaDBPersistenceAdapter kahaDB = new KahaDBPersistenceAdapter();
+            kahaDB.setDirectory(new File(dataDir, "kahadb"));
+            service.setDataDirectoryFile(dataDir);
+            service.setPersistenceAdapter(kahaDB);
+        }
+        
+        String connector = System.getProperty("broker.connector", "tcp://0.0.0.0:61616");
+        if (!"none".equalsIgnoreCase(connector)) {
+            service.addConnector(connector);
+        }
+        service.start();
+        service.waitUntilStarted();
+        broker = service;
+        System.out.println("Embedded ActiveMQ broker started: store=" + store.toLowerCase()
+            + ", connector=" + connector + ", server producers=" + getVmUrl());
+    }
+    
+    /**
+     * In-VM URL of the running broker; create=false so a stopped broker is never silently recreated
+     */
+    public static String getVmUrl() {
+        return "vm://" + BROKER_NAME + "?create=false";
+    }
+    
+    public static synchronized void stop() {
+        if (broker != null) {
+            try {
+                broker.stop();
+                broker.waitUntilStopped();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            broker = null;
+        }
+    }
+    
+    // Monitoring
+    public static synchronized String getStatistics() {
+        if (broker == null) {
+            return "EmbeddedBroker[stopped]";
+        }
+        try {
+            // Read from the region broker: the JMX admin view only exists with broker.jmx=true
+            DestinationStatistics totals = ((RegionBroker) broker.getRegionBroker()).getDestinationStatistics();
+            int connections = 0;
+            for (TransportConnector connector : broker.getTransportConnectors()) {
+                connections += connector.getConnections().size();
+            }
+            return String.format("EmbeddedBroker[remoteConnections=%d, enqueued=%d, dequeued=%d, pending=%d, store=%dKB]",
+                connections, totals.getEnqueues().getCount(), totals.getDequeues().getCount(),
+                totals.getMessages().getCount(), broker.getPersistenceAdapter().size() / 1024);
+        } catch (Exception e) {
+            return "EmbeddedBroker[" + e.getMessage() + "]";
+        }
+    }
+}
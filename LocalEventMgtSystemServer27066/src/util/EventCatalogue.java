@@ -0,0 +1,148 @@
+package util;
+
+import dao.EventDao;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.Event;
+
+/**
+ * Server-side snapshot of the scheduled-events catalogue that every customer
+ * dashboard loads, so findScheduledEvents() is answered without a database round trip.
+ *
+ * - The snapshot is an unmodifiable list, already in (eventDate, eventTime) order,
+ *   published through a volatile field: readers never lock and never see a half-built list
+ * - EventServiceImpl calls eventsChanged() after create/update/delete commits; the
+ *   catalogue is reloaded and swapped in one step
+ * - The snapshot is tied to the day it was built for; a timer rebuilds it just after
+ *   midnight, and a reader that still finds an old day reloads it itself
+ * - Remaining seats are not part of the snapshot (they change with every booking);
+ *   callers that need them overlay fresh values
+ *
+ * @author 27066
+ */
+public class EventCatalogue {
+    
+    private static EventCatalogue instance;
+    
+    private final EventDao eventDao = new EventDao();
+    private volatile Snapshot current;
+    private ScheduledExecutorService rollover;
+    
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    
+    private static final class Snapshot {
+        final LocalDate day;
+        final List<Event> events;
+        
+        Snapshot(LocalDate day, List<Event> events) {
+            this.day = day;
+            this.events = events;
+        }
+    }
+    
+    private EventCatalogue() {}
+    
+    public static synchronized EventCatalogue getInstance() {
+        if (instance == null) {
+            instance = new EventCatalogue();
+        }
+        return instance;
+    }
+    
+    /**
+     * Build the first snapshot and schedule the day-rollover rebuild
+     */
+    public synchronized void start() {
+        if (rollover != null) {
+            return;
+        }
+        reload();
+        rollover = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "event-catalogue-rollover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleRollover();
+    }
+    
+    /**
+     * Scheduled events from today on, sorted by date and time. Null if the catalogue cannot be loaded.
+     */
+    public List<Event> getScheduledEvents() {
+        reads.incrementAndGet();
+        Snapshot snapshot = current;
+        if (snapshot == null || !snapshot.day.equals(LocalDate.now())) {
+            snapshot = reloadIfStale();
+        }
+        return snapshot != null ? snapshot.events : null;
+    }
+    
+    /**
+     * An event was created, updated or deleted and its transaction committed
+     */
+    public void eventsChanged() {
+        reload();
+    }
+    
+    private synchronized Snapshot reloadIfStale() {
+        // Another reader may have rebuilt it while this one waited for the lock
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.day.equals(LocalDate.now())) {
+            return snapshot;
+        }
+        return reload();
+    }
+    
+    private synchronized Snapshot reload() {
+        // Serialized, so the last reload always starts after the last committed change
+        LocalDate day = LocalDate.now();
+        List<Event> events = eventDao.findScheduledEvents();
+        if (events == null) {
+            // Never keep serving a catalogue that is known to be out of date
+            current = null;
+            return null;
+        }
+        for (Event event : events) {
+            // Clear Hibernate collections to avoid RMI serialization issues
+            event.setBookings(null);
+            event.setTags(null);
+            event.setRemainingCapacity(null);
+        }
+        Snapshot snapshot = new Snapshot(day, Collections.unmodifiableList(new ArrayList<>(events)));
+        current = snapshot;
+        reloads.incrementAndGet();
+        return snapshot;
+    }
+    
+    private void scheduleRollover() {
+        LocalDateTime nextMidnight = LocalDate.now().plusDays(1).atStartOfDay();
+        long delay = nextMidnight.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+            - System.currentTimeMillis();
+        rollover.schedule(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                System.err.println("Event catalogue rollover failed: " + e.getMessage());
+            } finally {
+                scheduleRollover();
+            }
+        }, Math.max(delay, 0) + 1000, TimeUnit.MILLISECONDS);
+    }
+    
+    // Monitoring
+    public String getStatistics() {
+        Snapshot snapshot = current;
+        return String.format("EventCatalogue[events=%d, day=%s, reads=%d, reloads=%d]",
+            snapshot != null ? snapshot.events.size() : 0, snapshot != null ? snapshot.day : "-",
+            reads.get(), reloads.get());
+    }
+}
@@ -0,0 +1,243 @@
+package util;
+
+import dao.EventDao;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.Event;
+
+/**
+ * Sends the admin EVENT_EXPIRED notice once per event, when the event starts.
+ * Replaces the thread findAllEvents() used to start, which re-sent a notice for
+ * every past event on every admin refresh.
+ *
+ * - Unnotified events wait in a DelayQueue ordered by start time; one daemon
+ *   thread sleeps until the earliest one is due, so the read path does no work;
+ *   events that are due together are claimed in one transaction, so the admin gets
+ *   one digest rather than a notice per event
+ * - events.expiry_notified_at records what was sent. It is set in the same
+ *   transaction as the send (EventDao.sendExpiryNotices), so a restart or a
+ *   second server never sends twice, and a failed send is retried later
+ * - EventServiceImpl reports creates, updates and deletes, so moved or removed
+ *   events are rescheduled or dropped
+ * - On start, events that ended more than events.expiry.graceDays (default 1) ago
+ *   are marked as notified without a message, so history is not replayed
+ * - The queue is resynced from the database every events.expiry.resyncMinutes
+ *   (default 60) to pick up changes made outside this server
+ *
+ * @author 27066
+ */
+public class EventExpirySweeper {
+    
+    private static final int GRACE_DAYS = Integer.getInteger("events.expiry.graceDays", 1);
+    private static final long RESYNC_MILLIS = Long.getLong("events.expiry.resyncMinutes", 60) * 60_000;
+    private static final long RETRY_MILLIS = 60_000;
+    
+    private static EventExpirySweeper instance;
+    
+    private final EventDao eventDao = new EventDao();
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+    // Current queue entry per event, so a reschedule replaces instead of duplicating
+    private final ConcurrentHashMap<Integer, Expiry> scheduled = new ConcurrentHashMap<>();
+    private Thread worker;
+    
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    
+    // One pending notice; the resync marker uses eventId 0
+    private static final class Expiry implements Delayed {
+        final int eventId;
+        final long dueAt;
+        
+        Expiry(int eventId, long dueAt) {
+            this.eventId = eventId;
+            this.dueAt = dueAt;
+        }
+        
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+        
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((Expiry) other).dueAt);
+        }
+    }
+    
+    private EventExpirySweeper() {}
+    
+    public static synchronized EventExpirySweeper getInstance() {
+        if (instance == null) {
+            instance = new EventExpirySweeper();
+        }
+        return instance;
+    }
+    
+    /**
+     * Retire old history, load pending events and start the sweeper thread
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        int retired = eventDao.markHistoricExpiries(GRACE_DAYS);
+        if (retired > 0) {
+            System.out.println("Expiry sweeper: " + retired + " past events marked as already notified");
+        }
+        resync();
+        worker = new Thread(this::run, "event-expiry-sweeper");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+     * Stop the sweeper thread and forget the schedule; start() reloads it from the database
+     */
+    public synchronized void stop() {
+        if (worker == null) {
+            return;
+        }
+        worker.interrupt();
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+        queue.clear();
+        scheduled.clear();
+    }
+    
+    /**
+     * An event was created or updated and its transaction committed
+     */
+    public void eventChanged(Event event) {
+        if (event.getEventDate() == null) {
+            return;
+        }
+        long dueAt = startOf(event.getEventDate(), event.getEventTime());
+        if (dueAt > System.currentTimeMillis()) {
+            // Moved into the future: a notice already sent for the old date no longer applies
+            eventDao.resetExpiryNotice(event.getEventId());
+        }
+        if ("cancelled".equals(event.getStatus()) || "completed".equals(event.getStatus())) {
+            eventDeleted(event.getEventId());
+        } else {
+            schedule(event.getEventId(), dueAt);
+        }
+    }
+    
+    /**
+     * An event was deleted
+     */
+    public void eventDeleted(int eventId) {
+        Expiry removed = scheduled.remove(eventId);
+        if (removed != null) {
+            queue.remove(removed);
+        }
+    }
+    
+    private void schedule(int eventId, long dueAt) {
+        Expiry expiry = new Expiry(eventId, dueAt);
+        Expiry previous = scheduled.put(eventId, expiry);
+        if (previous != null) {
+            queue.remove(previous);
+        }
+        queue.add(expiry);
+    }
+    
+    private void resync() {
+        List<Object[]> pending = eventDao.findPendingExpiries();
+        if (pending != null) {
+            for (Object[] row : pending) {
+                int eventId = ((Number) row[0]).intValue();
+                long dueAt = toMillis(row[1]);
+                Expiry current = scheduled.get(eventId);
+                if (current == null || current.dueAt != dueAt) {
+                    schedule(eventId, dueAt);
+                }
+            }
+        }
+        queue.add(new Expiry(0, System.currentTimeMillis() + RESYNC_MILLIS));
+    }
+    
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Expiry> due = new ArrayList<>();
+                due.add(queue.take());
+                queue.drainTo(due);
+                List<Expiry> firing = new ArrayList<>(due.size());
+                boolean resync = false;
+                for (Expiry expiry : due) {
+                    if (expiry.eventId == 0) {
+                        resync = true;
+                    } else if (scheduled.remove(expiry.eventId, expiry)) {
+                        firing.add(expiry);
+                    }
+                    // Otherwise the event was rescheduled or deleted after this entry was queued
+                }
+                if (!firing.isEmpty()) {
+                    fire(firing);
+                }
+                if (resync) {
+                    resync();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.err.println("Expiry sweeper error: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void fire(List<Expiry> expiries) {
+        List<Integer> eventIds = new ArrayList<>(expiries.size());
+        for (Expiry expiry : expiries) {
+            eventIds.add(expiry.eventId);
+        }
+        Integer result = eventDao.sendExpiryNotices(eventIds,
+            event -> NotificationService.getInstance().sendEventExpiredNotification(event));
+        if (result == null) {
+            // Broker or database down: nothing was recorded, try again later
+            failures.incrementAndGet();
+            long retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+            for (int eventId : eventIds) {
+                Expiry retry = new Expiry(eventId, retryAt);
+                if (scheduled.putIfAbsent(eventId, retry) == null) {
+                    queue.add(retry);
+                }
+            }
+        } else {
+            sent.addAndGet(result);
+        }
+    }
+    
+    private static long startOf(Date date, Time time) {
+        return time != null
+            ? Timestamp.valueOf(date.toLocalDate().atTime(time.toLocalTime())).getTime()
+            : Timestamp.valueOf(date.toLocalDate().atStartOfDay()).getTime();
+    }
+    
+    private static long toMillis(Object timestamp) {
+        if (timestamp instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) timestamp).getTime();
+        }
+        return ((java.util.Date) timestamp).getTime();
+    }
+    
+    // Monitoring
+    public String getStatistics() {
+        return String.format("ExpirySweeper[pending=%d, sent=%d, failures=%d]",
+            scheduled.size(), sent.get(), failures.get());
+    }
+}
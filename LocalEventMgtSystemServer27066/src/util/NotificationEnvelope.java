@@ -0,0 +1,571 @@
+package util;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary notification envelope carried as a JMS BytesMessage body.
+ * The same class is used by the server (Writer) and the desktop client (Reader).
+ *
+ * Layout, version 1 (integers are LEB128 varints, signed ones zigzag-encoded):
+ *   'N' version count baseTime, then count records
+ *   record = head, createdAt - baseTime, fields
+ *   head   = type code (bits 0-5) | 0x40 when the record belongs to the same
+ *            COMPOSITE as the previous record
+ * Fields follow the type's schema: I integer, A amount in cents, D date (epoch day + 1,
+ * 0 = empty), T time (second of day + 1, 0 = empty), S string: length * 2 followed by
+ * its UTF-8 bytes, or index * 2 + 1 to repeat the index-th string literal of this
+ * envelope (names, e-mails and event names recur across a packed batch; the first
+ * MAX_STRINGS literals are numbered).
+ * A body that does not round-trip exactly through its schema (or an unknown type) is
+ * sent as type 0 with two strings, type name and body. Every record decodes back to
+ * the pipe-separated text body it was encoded from.
+ *
+ * @author 27066
+ */
+public final class NotificationEnvelope {
+    
+    public static final int VERSION = 1;
+    private static final byte MAGIC = 'N';
+    private static final int GROUPED = 0x40;
+    private static final int TYPE_MASK = 0x3F;
+    
+    // Type codes are the array index; append only, never reorder
+    private static final String[] TYPES = {
+        null, "PAYMENT_CONFIRMED", "TICKET_READY", "BOOKING_APPROVED", "NEW_EVENT",
+        "NEW_BOOKING", "NEW_GROUP_BOOKING", "EVENT_EXPIRED", "DIGEST"
+    };
+    private static final String[] SCHEMAS = {
+        "SS", "ISSSSSAS", "ISSSSS", "ISSSA", "ISSDT",
+        "IISSSSAS", "IISIAS", "ISD", "IISIS"
+    };
+    private static final int MAX_FIELDS = 8;
+    private static final int MAX_STRINGS = 256;
+    private static final int MIN_REPEATED = 4; // Shorter strings are not worth a lookup
+    
+    private NotificationEnvelope() {}
+    
+    // Code of the type name body[0..typeEnd), 0 when unknown
+    private static int codeOf(String body, int typeEnd) {
+        for (int code = 1; code < TYPES.length; code++) {
+            if (TYPES[code].length() == typeEnd && body.startsWith(TYPES[code])) {
+                return code;
+            }
+        }
+        return 0;
+    }
+    
+    private static final long NOT_CANONICAL = Long.MIN_VALUE;
+    
+    // value[start..end) as Long.toString() writes it (optional '-', no leading zeros, at most 18 digits), else NOT_CANONICAL
+    private static long parseCanonical(String value, int start, int end) {
+        boolean negative = start < end && value.charAt(start) == '-';
+        int first = negative ? start + 1 : start;
+        int size = end - first;
+        if (size < 1 || size > 18 || (size > 1 && value.charAt(first) == '0')) {
+            return NOT_CANONICAL;
+        }
+        long number = 0;
+        for (int i = first; i < end; i++) {
+            if (!isDigit(value, i)) {
+                return NOT_CANONICAL;
+            }
+            number = number * 10 + value.charAt(i) - '0';
+        }
+        return negative ? (number == 0 ? NOT_CANONICAL : -number) : number;
+    }
+    
+    // count decimal digits at value[start..], -1 if any is not a digit
+    private static int digits(String value, int start, int count) {
+        int number = 0;
+        for (int i = start; i < start + count; i++) {
+            if (!isDigit(value, i)) {
+                return -1;
+            }
+            number = number * 10 + value.charAt(i) - '0';
+        }
+        return number;
+    }
+    
+    private static boolean isDigit(String value, int index) {
+        char c = value.charAt(index);
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * Builds one envelope; reusable after reset(), not thread-safe
+     */
+    public static final class Writer {
+        private byte[] records = new byte[1024];
+        private int length;
+        private int count;
+        private long baseTime;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private int literals;
+        
+        public Writer reset() {
+            length = 0;
+            count = 0;
+            strings.clear();
+            literals = 0;
+            return this;
+        }
+        
+        public int count() {
+            return count;
+        }
+        
+        /**
+         * Append a notification given as its text body (TYPE|field|field...)
+         */
+        public Writer add(String body, long createdAt, boolean grouped) {
+            if (count == 0) {
+                baseTime = createdAt;
+            }
+            int typeEnd = body.indexOf('|');
+            int code = codeOf(body, typeEnd < 0 ? body.length() : typeEnd);
+            int mark = length;
+            int literalMark = literals;
+            if (code == 0 || !writeRecord(code, body, typeEnd + 1, createdAt, grouped)) {
+                length = mark;
+                if (literals > literalMark) {
+                    literals = literalMark;
+                    strings.values().removeIf(index -> index >= literalMark);
+                }
+                writeHead(0, createdAt, grouped);
+                writeString(body, 0, typeEnd < 0 ? body.length() : typeEnd);
+                writeString(body, 0, body.length());
+            }
+            count++;
+            return this;
+        }
+        
+        private boolean writeRecord(int code, String body, int start, long createdAt, boolean grouped) {
+            writeHead(code, createdAt, grouped);
+            String schema = SCHEMAS[code];
+            for (int i = 0; i < schema.length(); i++) {
+                int end = i == schema.length() - 1 ? body.length() : body.indexOf('|', start);
+                if (end < 0 || !writeField(schema.charAt(i), body, start, end)) {
+                    return false;
+                }
+                start = end + 1;
+            }
+            return true;
+        }
+        
+        // Typed fields are only used when they decode back to exactly the same text
+        private boolean writeField(char kind, String body, int start, int end) {
+            switch (kind) {
+                case 'I': {
+                    long number = parseCanonical(body, start, end);
+                    if (number == NOT_CANONICAL) {
+                        return false;
+                    }
+                    writeVarLong(zigzag(number));
+                    return true;
+                }
+                case 'A': {
+                    // %.2f: canonical integer part, '.', two digits
+                    int dot = end - 3;
+                    if (dot <= start || body.charAt(dot) != '.' || !isDigit(body, dot + 1) || !isDigit(body, dot + 2)) {
+                        return false;
+                    }
+                    long whole = parseCanonical(body, start, dot);
+                    if (whole == NOT_CANONICAL) {
+                        return false;
+                    }
+                    long fraction = (body.charAt(dot + 1) - '0') * 10 + body.charAt(dot + 2) - '0';
+                    // "-0.xx" is not canonical, so whole < 0 for every negative amount
+                    writeVarLong(zigzag(whole * 100 + (whole < 0 ? -fraction : fraction)));
+                    return true;
+                }
+                case 'D': {
+                    // LocalDate.toString(): yyyy-MM-dd
+                    if (start == end) {
+                        writeVarLong(0);
+                        return true;
+                    }
+                    if (end - start != 10 || body.charAt(start + 4) != '-' || body.charAt(start + 7) != '-') {
+                        return false;
+                    }
+                    int year = digits(body, start, 4);
+                    int month = digits(body, start + 5, 2);
+                    int day = digits(body, start + 8, 2);
+                    if (year < 0 || month < 1 || month > 12 || day < 1 || day > YearMonth.of(year, month).lengthOfMonth()) {
+                        return false;
+                    }
+                    writeVarLong(zigzag(LocalDate.of(year, month, day).toEpochDay()) + 1);
+                    return true;
+                }
+                case 'T': {
+                    // java.sql.Time.toString(): HH:mm:ss
+                    if (start == end) {
+                        writeVarLong(0);
+                        return true;
+                    }
+                    if (end - start != 8 || body.charAt(start + 2) != ':' || body.charAt(start + 5) != ':') {
+                        return false;
+                    }
+                    int hours = digits(body, start, 2);
+                    int minutes = digits(body, start + 3, 2);
+                    int seconds = digits(body, start + 6, 2);
+                    if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+                        return false;
+                    }
+                    writeVarLong(hours * 3600 + minutes * 60 + seconds + 1);
+                    return true;
+                }
+                default:
+                    writeString(body, start, end);
+                    return true;
+            }
+        }
+        
+        private void writeHead(int code, long createdAt, boolean grouped) {
+            ensure(1);
+            records[length++] = (byte) (code | (grouped && count > 0 ? GROUPED : 0));
+            writeVarLong(zigzag(createdAt - baseTime));
+        }
+        
+        // UTF-8 of value[start..end), encoded in place
+        private void writeString(String value, int start, int end) {
+            if (literals < MAX_STRINGS) {
+                if (end - start >= MIN_REPEATED) {
+                    String literal = value.substring(start, end);
+                    Integer index = strings.putIfAbsent(literal, literals);
+                    if (index != null) {
+                        writeVarLong((long) index << 1 | 1);
+                        return;
+                    }
+                }
+                literals++;
+            }
+            int size = 0;
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    size += 4;
+                    i++;
+                } else {
+                    size += c < 0x80 || Character.isSurrogate(c) ? 1 : c < 0x800 ? 2 : 3;
+                }
+            }
+            writeVarLong((long) size << 1);
+            ensure(size);
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    records[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    records[length++] = (byte) (0xC0 | c >> 6);
+                    records[length++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    records[length++] = (byte) (0xF0 | codePoint >> 18);
+                    records[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    records[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    records[length++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    records[length++] = (byte) '?'; // Unpaired surrogate, as String.getBytes(UTF_8)
+                } else {
+                    records[length++] = (byte) (0xE0 | c >> 12);
+                    records[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    records[length++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+        }
+        
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                records[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            records[length++] = (byte) value;
+        }
+        
+        private void ensure(int extra) {
+            if (length + extra > records.length) {
+                byte[] grown = new byte[Math.max(records.length * 2, length + extra)];
+                System.arraycopy(records, 0, grown, 0, length);
+                records = grown;
+            }
+        }
+        
+        /**
+         * The finished envelope
+         */
+        public byte[] toByteArray() {
+            byte[] header = header();
+            byte[] envelope = new byte[header.length + length];
+            System.arraycopy(header, 0, envelope, 0, header.length);
+            System.arraycopy(records, 0, envelope, header.length, length);
+            return envelope;
+        }
+        
+        /**
+         * Write the finished envelope into a message body; returns its size in bytes
+         */
+        public int writeTo(javax.jms.BytesMessage message) throws javax.jms.JMSException {
+            byte[] header = header();
+            message.writeBytes(header);
+            message.writeBytes(records, 0, length);
+            return header.length + length;
+        }
+        
+        private byte[] header() {
+            byte[] header = new byte[22];
+            header[0] = MAGIC;
+            header[1] = VERSION;
+            int size = putVarLong(header, 2, count);
+            return java.util.Arrays.copyOf(header, putVarLong(header, size, baseTime));
+        }
+    }
+    
+    /**
+     * Walks an envelope record by record without copying it; field values are decoded
+     * only when appended. Reusable after reset(), not thread-safe.
+     */
+    public static final class Reader {
+        private byte[] data;
+        private int position;
+        private int end;
+        private int count;
+        private int remaining;
+        private long baseTime;
+        
+        private int code;
+        private boolean grouped;
+        private long createdAt;
+        private int fieldCount;
+        // Typed fields hold their value; strings hold offset and length in data
+        private final long[] values = new long[MAX_FIELDS];
+        private final int[] lengths = new int[MAX_FIELDS];
+        // Offset and length in data of each numbered string literal
+        private final int[] literalOffsets = new int[MAX_STRINGS];
+        private final int[] literalLengths = new int[MAX_STRINGS];
+        private int literals;
+        private char[] chars = new char[256];
+        
+        /**
+         * Start reading data[0..length); IllegalArgumentException for another format or a newer version
+         */
+        public Reader reset(byte[] data, int length) {
+            if (length < 2 || data[0] != MAGIC) {
+                throw new IllegalArgumentException("Not a notification envelope");
+            }
+            if (data[1] < 1 || data[1] > VERSION) {
+                throw new IllegalArgumentException("Unsupported notification envelope version " + data[1]);
+            }
+            this.data = data;
+            this.end = length;
+            this.position = 2;
+            count = (int) readVarLong();
+            baseTime = readVarLong();
+            remaining = count;
+            literals = 0;
+            return this;
+        }
+        
+        public int count() {
+            return count;
+        }
+        
+        /**
+         * Move to the next record; false at the end
+         */
+        public boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            if (position >= end) {
+                throw new IllegalArgumentException("Truncated notification envelope");
+            }
+            remaining--;
+            int head = data[position++] & 0xFF;
+            code = head & TYPE_MASK;
+            grouped = (head & GROUPED) != 0;
+            if (code >= SCHEMAS.length) {
+                throw new IllegalArgumentException("Unknown notification type code " + code);
+            }
+            createdAt = baseTime + unzigzag(readVarLong());
+            String schema = SCHEMAS[code];
+            fieldCount = schema.length();
+            for (int i = 0; i < fieldCount; i++) {
+                values[i] = readVarLong();
+                if (schema.charAt(i) == 'S') {
+                    readString(i);
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Type of the current record; a shared constant except for type-0 records
+         */
+        public String type() {
+            return code > 0 ? TYPES[code] : appendUtf8(new StringBuilder(), 0).toString();
+        }
+        
+        // Part of the same COMPOSITE as the previous record
+        public boolean isGrouped() {
+            return grouped;
+        }
+        
+        public long createdAt() {
+            return createdAt;
+        }
+        
+        /**
+         * Append the current record's text body (TYPE|field|field...)
+         */
+        public StringBuilder appendBody(StringBuilder out) {
+            if (code == 0) {
+                return appendUtf8(out, 1);
+            }
+            out.append(TYPES[code]);
+            String schema = SCHEMAS[code];
+            for (int i = 0; i < fieldCount; i++) {
+                out.append('|');
+                switch (schema.charAt(i)) {
+                    case 'I':
+                        out.append(unzigzag(values[i]));
+                        break;
+                    case 'A':
+                        appendAmount(out, unzigzag(values[i]));
+                        break;
+                    case 'D':
+                        if (values[i] != 0) {
+                            appendDate(out, LocalDate.ofEpochDay(unzigzag(values[i] - 1)));
+                        }
+                        break;
+                    case 'T':
+                        if (values[i] != 0) {
+                            appendTime(out, (int) values[i] - 1);
+                        }
+                        break;
+                    default:
+                        appendUtf8(out, i);
+                }
+            }
+            return out;
+        }
+        
+        private void readString(int field) {
+            long value = values[field];
+            if ((value & 1) != 0) {
+                long index = value >>> 1;
+                if (index >= literals) {
+                    throw new IllegalArgumentException("Bad string reference in notification envelope");
+                }
+                values[field] = literalOffsets[(int) index];
+                lengths[field] = literalLengths[(int) index];
+                return;
+            }
+            long size = value >>> 1;
+            if (size > end - position) {
+                throw new IllegalArgumentException("Truncated notification envelope");
+            }
+            values[field] = position;
+            lengths[field] = (int) size;
+            if (literals < MAX_STRINGS) {
+                literalOffsets[literals] = position;
+                literalLengths[literals] = (int) size;
+                literals++;
+            }
+            position += (int) size;
+        }
+        
+        // Decode string field straight into out through a reused buffer, without an intermediate String
+        private StringBuilder appendUtf8(StringBuilder out, int field) {
+            int i = (int) values[field];
+            int stop = i + lengths[field];
+            if (chars.length < lengths[field]) {
+                chars = new char[Math.max(lengths[field], chars.length * 2)];
+            }
+            int size = 0;
+            while (i < stop) {
+                int b = data[i++];
+                if (b >= 0) {
+                    chars[size++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0 && i < stop) {
+                    chars[size++] = (char) (((b & 0x1F) << 6) | (data[i++] & 0x3F));
+                } else if ((b & 0xF0) == 0xE0 && i + 1 < stop) {
+                    chars[size++] = (char) (((b & 0x0F) << 12) | ((data[i++] & 0x3F) << 6) | (data[i++] & 0x3F));
+                } else if ((b & 0xF8) == 0xF0 && i + 2 < stop) {
+                    int codePoint = ((b & 0x07) << 18) | ((data[i++] & 0x3F) << 12)
+                        | ((data[i++] & 0x3F) << 6) | (data[i++] & 0x3F);
+                    chars[size++] = Character.highSurrogate(codePoint);
+                    chars[size++] = Character.lowSurrogate(codePoint);
+                } else {
+                    throw new IllegalArgumentException("Malformed UTF-8 in notification envelope");
+                }
+            }
+            return out.append(chars, 0, size);
+        }
+        
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= end) {
+                    throw new IllegalArgumentException("Truncated notification envelope");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in notification envelope");
+        }
+    }
+    
+    // Same text as String.format("%.2f") for a whole number of cents
+    private static StringBuilder appendAmount(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        return out.append(cents / 100).append('.').append(fraction < 10 ? "0" : "").append(fraction);
+    }
+    
+    // yyyy-MM-dd, as LocalDate.toString() for four-digit years
+    private static StringBuilder appendDate(StringBuilder out, LocalDate date) {
+        int year = date.getYear();
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        return out.append(year < 1000 ? (year < 100 ? (year < 10 ? "000" : "00") : "0") : "").append(year).append('-')
+            .append(month < 10 ? "0" : "").append(month).append('-')
+            .append(day < 10 ? "0" : "").append(day);
+    }
+    
+    // HH:mm:ss, as java.sql.Time.toString()
+    private static StringBuilder appendTime(StringBuilder out, int seconds) {
+        int hours = seconds / 3600;
+        int minutes = seconds / 60 % 60;
+        int secs = seconds % 60;
+        return out.append(hours < 10 ? "0" : "").append(hours).append(':')
+            .append(minutes < 10 ? "0" : "").append(minutes).append(':')
+            .append(secs < 10 ? "0" : "").append(secs);
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static int putVarLong(byte[] target, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset++] = (byte) value;
+        return offset;
+    }
+}
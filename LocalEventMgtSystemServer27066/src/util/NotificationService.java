@@ -1,45 +1,177 @@
 package util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.jms.*;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import dao.InboxDao;
+import dao.OutboxDao;
+import dao.UnitOfWork;
 import model.Booking;
+import model.OutboxMessage;
 import model.User;
 import model.Event;
 
 /**
  * Notification Service using ActiveMQ Message Broker
- * Sends notifications when payment is confirmed
- * 
+ * Sends booking, payment and event notifications to admins and customers
+ *
+ * Callers never touch JMS: each send* method formats the message on the calling
+ * thread and writes it to the recipients' inboxes and the outbox in the caller's
+ * transaction (OutboxRelay publishes it after the commit), or hands it to the
+ * sender threads directly when the outbox is off.
+ *
  * @author 27066
  */
 public class NotificationService {
     
-    private static final String BROKER_URL = "tcp://localhost:61616";
-    private static final String QUEUE_NAME = "payment.notifications";
+    // External broker by default; in-VM when the server runs the embedded one (EmbeddedBroker)
+    private static final String BROKER_URL = System.getProperty("notifications.brokerUrl",
+        EmbeddedBroker.isRunning() ? EmbeddedBroker.getVmUrl() : "tcp://localhost:61616");
     
-    private ConnectionFactory connectionFactory;
+    // One topic per audience (targetRole): notifications.admin, notifications.customer.
+    // Desktops hold durable subscriptions with selectors on targetRole/userId, so the broker
+    // does the fan-out; the TTL keeps subscriptions of absent users bounded.
+    private static final String TOPIC_PREFIX = "notifications.";
+    private static final long TIME_TO_LIVE_MILLIS = Long.getLong("notifications.ttlHours", 72) * 3_600_000;
+    
+    private static final int QUEUE_CAPACITY = Integer.getInteger("notifications.queueCapacity", 10000);
+    private static final int SENDERS = Math.max(1, Integer.getInteger("notifications.senders", 2));
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger("notifications.batchSize", 100));
+    private static final long OFFER_TIMEOUT_MILLIS = Long.getLong("notifications.offerTimeoutMillis", 250);
+    private static final long CONFIRM_TIMEOUT_MILLIS = Long.getLong("notifications.confirmTimeoutMillis", 10000);
+    private static final boolean OUTBOX = Boolean.parseBoolean(System.getProperty("notifications.outbox", "true"));
+    private static final boolean INBOX = Boolean.parseBoolean(System.getProperty("notifications.inbox", "true"));
+    private static final boolean COALESCE = Boolean.parseBoolean(System.getProperty("notifications.coalesce", "true"));
+    private static final long COALESCE_WINDOW_NANOS = COALESCE
+        ? TimeUnit.MILLISECONDS.toNanos(Long.getLong("notifications.coalesce.windowMillis", 100)) : 0;
+    private static final int DIGEST_THRESHOLD = Math.max(2, Integer.getInteger("notifications.coalesce.digestThreshold", 3));
+    private static final int DIGEST_LABELS = 5;
+    private static final boolean BINARY = !"text".equalsIgnoreCase(System.getProperty("notifications.format", "binary"));
+    private static final OverflowPolicy OVERFLOW = OverflowPolicy.valueOf(
+        System.getProperty("notifications.overflow", "BLOCK").trim().toUpperCase());
+    private static final int SEND_ATTEMPTS = 3;
+    private static final long RECONNECT_MILLIS = 2000;
+    
+    public enum OverflowPolicy {
+        BLOCK, DROP_NEWEST, DROP_OLDEST
+    }
+    
+    public static final String COMPOSITE = "COMPOSITE";
+    public static final String DIGEST = "DIGEST";
+    private static final char MEMBER_SEPARATOR = '\u001E';
+    private static final char ITEM_SEPARATOR = '\u001D';
+    private static final String LABEL_SEPARATOR = "\u001F";
+    
+    private final OutboxDao outboxDao = new OutboxDao();
+    private final InboxDao inboxDao = new InboxDao();
+    private final ConnectionFactory connectionFactory = new ActiveMQConnectionFactory(BROKER_URL);
     private Connection connection;
-    private Session session;
-    private MessageProducer producer;
+    
+    private final BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Thread> senders = new ArrayList<>();
+    private volatile boolean running = true;
+    
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong payloadBytes = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
     
     private static NotificationService instance;
     
+    // A formatted message waiting for a sender; confirmation is set only when the caller waits for the commit
+    private static final class Notification {
+        final String type;
+        final String body;
+        final Map<String, String> properties = new LinkedHashMap<>();
+        final long enqueuedAt = System.nanoTime();
+        long createdAt = System.currentTimeMillis();
+        CompletableFuture<Boolean> confirmation;
+        String label; // Event name(s) listed in digests
+        
+        Notification(String type, String body) {
+            this.type = type;
+            this.body = body;
+            properties.put("notificationType", type);
+        }
+        
+        Notification with(String name, Object value) {
+            properties.put(name, String.valueOf(value));
+            return this;
+        }
+        
+        Notification about(String label) {
+            this.label = label;
+            return this;
+        }
+        
+        String recipient() {
+            String userId = properties.get("userId");
+            return properties.get("targetRole") + ":" + (userId != null ? userId : "*");
+        }
+        
+        // Booking or event this notification is about; null when it stands alone
+        String subject() {
+            String bookingId = properties.get("bookingId");
+            if (bookingId != null) {
+                return "booking:" + bookingId;
+            }
+            String eventId = properties.get("eventId");
+            return eventId != null ? "event:" + eventId : null;
+        }
+        
+        String memberTypes() {
+            return COMPOSITE.equals(type) ? properties.get("memberTypes") : type;
+        }
+    }
+    
+    // Everything published in one unit of work, coalesced and written just before it commits
+    private final class PendingNotifications implements UnitOfWork.Work<Void> {
+        final List<Notification> notifications = new ArrayList<>();
+        
+        @Override
+        public Void execute(org.hibernate.Session session) {
+            for (Notification notification : coalesceWrites(notifications)) {
+                write(notification);
+            }
+            return null;
+        }
+    }
+    
     private NotificationService() {
-        try {
-            connectionFactory = new ActiveMQConnectionFactory(BROKER_URL);
-            connection = connectionFactory.createConnection();
-            connection.start();
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            Queue queue = session.createQueue(QUEUE_NAME);
-            producer = session.createProducer(queue);
-            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
-        } catch (JMSException e) {
-            System.err.println("Failed to initialize NotificationService: " + e.getMessage());
-            e.printStackTrace();
+        if (connection() == null) {
+            System.err.println("Notifications will be queued until ActiveMQ is reachable at " + BROKER_URL);
         }
+        for (int i = 1; i <= SENDERS; i++) {
+            Thread sender = new Thread(this::runSender, "notification-sender-" + i);
+            sender.setDaemon(true);
+            sender.start();
+            senders.add(sender);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "notification-shutdown"));
     }
     
-    public static NotificationService getInstance() {
+    public static synchronized NotificationService getInstance() {
         if (instance == null) {
             instance = new NotificationService();
         }
@@ -50,217 +182,730 @@ public class NotificationService {
      * Send payment confirmation notification
      */
     public void sendPaymentConfirmationNotification(Booking booking, User user, Event event) {
-        try {
-            if (producer == null) {
-                System.err.println("Notification producer not initialized. ActiveMQ may not be running.");
-                return;
-            }
-            
-            // Create notification message
-            String message = String.format(
-                "PAYMENT_CONFIRMED|%d|%s|%s|%s|%s|%s|%.2f|%s",
-                booking.getBookingId(),
-                booking.getTicketNumber(),
-                user.getEmail(),
-                user.getPhoneNumber(),
-                user.getFullName(),
-                event.getEventName(),
-                booking.getTotalAmount(),
-                booking.getPaymentStatus()
-            );
-            
-            TextMessage textMessage = session.createTextMessage(message);
-            textMessage.setStringProperty("notificationType", "PAYMENT_CONFIRMED");
-            textMessage.setStringProperty("userId", String.valueOf(user.getUserId()));
-            textMessage.setStringProperty("bookingId", String.valueOf(booking.getBookingId()));
-            textMessage.setStringProperty("targetRole", "customer"); // For customers
-            
-            producer.send(textMessage);
-            System.out.println("Payment confirmation notification sent for booking: " + booking.getTicketNumber());
-            
-        } catch (JMSException e) {
-            System.err.println("Failed to send payment confirmation notification: " + e.getMessage());
-            e.printStackTrace();
-        }
+        publish(createPaymentConfirmationMessage(booking, user, event));
     }
     
     /**
      * Send ticket ready notification
      */
     public void sendTicketReadyNotification(Booking booking, User user, Event event) {
-        try {
-            if (producer == null) {
-                System.err.println("Notification producer not initialized. ActiveMQ may not be running.");
-                return;
-            }
-            
-            String message = String.format(
-                "TICKET_READY|%d|%s|%s|%s|%s|%s",
-                booking.getBookingId(),
-                booking.getTicketNumber(),
-                user.getEmail(),
-                user.getPhoneNumber(),
-                user.getFullName(),
-                event.getEventName()
-            );
-            
-            TextMessage textMessage = session.createTextMessage(message);
-            textMessage.setStringProperty("notificationType", "TICKET_READY");
-            textMessage.setStringProperty("userId", String.valueOf(user.getUserId()));
-            textMessage.setStringProperty("bookingId", String.valueOf(booking.getBookingId()));
-            textMessage.setStringProperty("targetRole", "customer"); // For customers
-            
-            producer.send(textMessage);
-            System.out.println("Ticket ready notification sent for booking: " + booking.getTicketNumber());
-            
-        } catch (JMSException e) {
-            System.err.println("Failed to send ticket ready notification: " + e.getMessage());
-            e.printStackTrace();
-        }
+        publish(createTicketReadyMessage(booking, user, event));
     }
     
     /**
      * Send new event notification to all users
      */
     public void sendNewEventNotification(Event event) {
-        try {
-            if (producer == null) {
-                System.err.println("Notification producer not initialized. ActiveMQ may not be running.");
-                return;
-            }
-            
-            String message = String.format(
-                "NEW_EVENT|%d|%s|%s|%s|%s",
-                event.getEventId(),
-                event.getEventName(),
-                event.getEventDescription() != null ? event.getEventDescription() : "",
-                event.getEventDate() != null ? event.getEventDate().toString() : "",
-                event.getEventTime() != null ? event.getEventTime().toString() : ""
-            );
-            
-            TextMessage textMessage = session.createTextMessage(message);
-            textMessage.setStringProperty("notificationType", "NEW_EVENT");
-            textMessage.setStringProperty("eventId", String.valueOf(event.getEventId()));
-            textMessage.setStringProperty("targetRole", "customer"); // For all customers
-            
-            producer.send(textMessage);
-            System.out.println("New event notification sent: " + event.getEventName());
-            
-        } catch (JMSException e) {
-            System.err.println("Failed to send new event notification: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String message = String.format(
+            "NEW_EVENT|%d|%s|%s|%s|%s",
+            event.getEventId(),
+            event.getEventName(),
+            event.getEventDescription() != null ? event.getEventDescription() : "",
+            event.getEventDate() != null ? event.getEventDate().toString() : "",
+            event.getEventTime() != null ? event.getEventTime().toString() : ""
+        );
+        
+        publish(new Notification("NEW_EVENT", message)
+            .about(event.getEventName())
+            .with("eventId", event.getEventId())
+            .with("targetRole", "customer")); // For all customers
     }
     
     /**
      * Send new booking notification to admin
      */
     public void sendNewBookingNotification(Booking booking, User user, Event event) {
-        try {
-            if (producer == null) {
-                System.err.println("Notification producer not initialized. ActiveMQ may not be running.");
-                return;
-            }
-            
-            String message = String.format(
-                "NEW_BOOKING|%d|%d|%s|%s|%s|%s|%.2f|%s",
-                booking.getBookingId(),
-                user.getUserId(),
-                user.getFullName(),
-                user.getEmail(),
-                event.getEventName(),
-                booking.getTicketNumber(),
-                booking.getTotalAmount(),
-                booking.getPaymentStatus()
-            );
-            
-            TextMessage textMessage = session.createTextMessage(message);
-            textMessage.setStringProperty("notificationType", "NEW_BOOKING");
-            textMessage.setStringProperty("bookingId", String.valueOf(booking.getBookingId()));
-            textMessage.setStringProperty("targetRole", "admin"); // For admin
-            
-            producer.send(textMessage);
-            System.out.println("New booking notification sent to admin for booking: " + booking.getTicketNumber());
-            
-        } catch (JMSException e) {
-            System.err.println("Failed to send new booking notification: " + e.getMessage());
-            e.printStackTrace();
+        String message = String.format(
+            "NEW_BOOKING|%d|%d|%s|%s|%s|%s|%.2f|%s",
+            booking.getBookingId(),
+            user.getUserId(),
+            user.getFullName(),
+            user.getEmail(),
+            event.getEventName(),
+            booking.getTicketNumber(),
+            booking.getTotalAmount(),
+            booking.getPaymentStatus()
+        );
+        
+        publish(new Notification("NEW_BOOKING", message)
+            .about(event.getEventName())
+            .with("bookingId", booking.getBookingId())
+            .with("targetRole", "admin")); // For admin
+    }
+    
+    /**
+     * Send one consolidated notification to admin for a group booking
+     */
+    public void sendGroupBookingNotification(List<Booking> bookings) {
+        int totalTickets = 0;
+        double totalAmount = 0;
+        Set<Integer> userIds = new LinkedHashSet<>();
+        Set<String> eventNames = new LinkedHashSet<>();
+        for (Booking booking : bookings) {
+            totalTickets += booking.getNumberOfTickets();
+            totalAmount += booking.getTotalAmount();
+            userIds.add(booking.getUserId());
+            eventNames.add(booking.getEventName());
         }
+        Booking first = bookings.get(0);
+        boolean singleCustomer = userIds.size() == 1;
+        
+        String message = String.format(
+            "NEW_GROUP_BOOKING|%d|%d|%s|%d|%.2f|%s",
+            bookings.size(),
+            singleCustomer ? first.getUserId() : 0,
+            singleCustomer ? first.getUserName() : userIds.size() + " customers",
+            totalTickets,
+            totalAmount,
+            String.join(", ", eventNames)
+        );
+        
+        publish(new Notification("NEW_GROUP_BOOKING", message)
+            .about(String.join(", ", eventNames))
+            .with("targetRole", "admin")); // For admin
     }
     
     /**
      * Send booking approved notification to user
      */
     public void sendBookingApprovedNotification(Booking booking, User user, Event event) {
-        try {
-            if (producer == null) {
-                System.err.println("Notification producer not initialized. ActiveMQ may not be running.");
+        publish(createBookingApprovedMessage(booking, user, event));
+    }
+    
+    /**
+     * Tell admin that a reservation the capacity ledger accepted is still not in the
+     * database after attempts writes (0: queued again at start without free seats)
+     */
+    public void sendReservationDelayedNotification(Booking booking, int attempts) {
+        String message = String.format(
+            "RESERVATION_DELAYED|%s|%d|%s|%d|%d|%.2f|%d",
+            booking.getTicketNumber(),
+            booking.getEventId(),
+            booking.getEventName() != null ? booking.getEventName() : "",
+            booking.getUserId(),
+            booking.getNumberOfTickets(),
+            booking.getTotalAmount(),
+            attempts
+        );
+        
+        publish(new Notification("RESERVATION_DELAYED", message)
+            .about(booking.getEventName())
+            .with("eventId", booking.getEventId())
+            .with("targetRole", "admin")); // For admin
+    }
+    
+    /**
+     * Send event expired notification to admin; true once it is safe to record as sent:
+     * written to (or, inside a unit of work, held for) the outbox, or (without the outbox)
+     * committed by the broker within notifications.confirmTimeoutMillis.
+     * EventExpirySweeper records the notice only then.
+     */
+    public boolean sendEventExpiredNotification(Event event) {
+        String message = String.format(
+            "EVENT_EXPIRED|%d|%s|%s",
+            event.getEventId(),
+            event.getEventName(),
+            event.getEventDate() != null ? event.getEventDate().toString() : ""
+        );
+        
+        Notification notification = new Notification("EVENT_EXPIRED", message)
+            .about(event.getEventName())
+            .with("eventId", event.getEventId())
+            .with("targetRole", "admin"); // For admin
+        if (OUTBOX && COALESCE && UnitOfWork.isActive()) {
+            // Written when the caller's expiry claim commits, or rolled back with it
+            publish(notification);
+            return true;
+        }
+        if (!record(notification) && UnitOfWork.isActive()) {
+            return false;
+        }
+        if (OUTBOX) {
+            // Committed with the caller's expiry claim, so outbox acceptance is delivery
+            return outboxDao.append(notification.type, notification.body, notification.properties);
+        }
+        CompletableFuture<Boolean> confirmation = new CompletableFuture<>();
+        notification.confirmation = confirmation;
+        enqueue(notification);
+        if (!await(confirmation, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONFIRM_TIMEOUT_MILLIS))) {
+            System.err.println("Event expired notification not confirmed for event: " + event.getEventName());
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Send the payment confirmed, ticket ready and booking approved notifications
+     * for many bookings at once (bulk payment reconciliation). The three notifications
+     * of a booking become one COMPOSITE, and a customer with several bookings gets one
+     * DIGEST; the outbox rows are JDBC-batched into the caller's transaction.
+     * Bookings carry the flat user/event display fields from the status transition.
+     */
+    public void sendPaymentConfirmedBatch(List<Booking> bookings) {
+        List<Notification> notifications = new ArrayList<>(bookings.size() * 3);
+        for (Booking booking : bookings) {
+            User user = notificationUser(booking);
+            Event event = notificationEvent(booking);
+            notifications.add(createPaymentConfirmationMessage(booking, user, event));
+            notifications.add(createTicketReadyMessage(booking, user, event));
+            notifications.add(createBookingApprovedMessage(booking, user, event));
+        }
+        publish(notifications);
+    }
+    
+    /**
+     * Recipient built from a flat booking (userName/userEmail/userPhone display fields)
+     */
+    public static User notificationUser(Booking booking) {
+        User user = new User();
+        user.setUserId(booking.getUserId());
+        user.setFullName(booking.getUserName());
+        user.setEmail(booking.getUserEmail());
+        user.setPhoneNumber(booking.getUserPhone());
+        return user;
+    }
+    
+    /**
+     * Event built from a flat booking (eventName display field)
+     */
+    public static Event notificationEvent(Booking booking) {
+        Event event = new Event();
+        event.setEventId(booking.getEventId());
+        event.setEventName(booking.getEventName());
+        return event;
+    }
+    
+    private static Notification createPaymentConfirmationMessage(Booking booking, User user, Event event) {
+        // Create notification message
+        String message = String.format(
+            "PAYMENT_CONFIRMED|%d|%s|%s|%s|%s|%s|%.2f|%s",
+            booking.getBookingId(),
+            booking.getTicketNumber(),
+            user.getEmail(),
+            user.getPhoneNumber(),
+            user.getFullName(),
+            event.getEventName(),
+            booking.getTotalAmount(),
+            booking.getPaymentStatus()
+        );
+        
+        return new Notification("PAYMENT_CONFIRMED", message)
+            .about(event.getEventName())
+            .with("userId", user.getUserId())
+            .with("bookingId", booking.getBookingId())
+            .with("targetRole", "customer"); // For customers
+    }
+    
+    private static Notification createTicketReadyMessage(Booking booking, User user, Event event) {
+        String message = String.format(
+            "TICKET_READY|%d|%s|%s|%s|%s|%s",
+            booking.getBookingId(),
+            booking.getTicketNumber(),
+            user.getEmail(),
+            user.getPhoneNumber(),
+            user.getFullName(),
+            event.getEventName()
+        );
+        
+        return new Notification("TICKET_READY", message)
+            .about(event.getEventName())
+            .with("userId", user.getUserId())
+            .with("bookingId", booking.getBookingId())
+            .with("targetRole", "customer"); // For customers
+    }
+    
+    private static Notification createBookingApprovedMessage(Booking booking, User user, Event event) {
+        String message = String.format(
+            "BOOKING_APPROVED|%d|%s|%s|%s|%.2f",
+            booking.getBookingId(),
+            booking.getTicketNumber(),
+            user.getFullName(),
+            event.getEventName(),
+            booking.getTotalAmount()
+        );
+        
+        return new Notification("BOOKING_APPROVED", message)
+            .about(event.getEventName())
+            .with("userId", user.getUserId())
+            .with("bookingId", booking.getBookingId())
+            .with("targetRole", "customer"); // For customers
+    }
+    
+    private void publish(Notification notification) {
+        publish(Collections.singletonList(notification));
+    }
+    
+    // Inside a unit of work notifications wait for its commit, so everything one transaction
+    // announces is coalesced together (an approval is one row and one message instead of three,
+    // a bulk payment one DIGEST per customer); outside one they are coalesced with each other only.
+    // notifications.coalesce=false writes each one as it comes.
+    private void publish(List<Notification> notifications) {
+        if (!COALESCE) {
+            notifications.forEach(this::write);
+        } else if (UnitOfWork.isActive()) {
+            UnitOfWork.beforeCommit(PendingNotifications.class, PendingNotifications::new)
+                .notifications.addAll(notifications);
+        } else {
+            coalesceWrites(notifications).forEach(this::write);
+        }
+    }
+    
+    private List<Notification> coalesceWrites(List<Notification> notifications) {
+        List<Notification> coalesced = coalesce(notifications, true);
+        published.addAndGet(notifications.size());
+        written.addAndGet(coalesced.size());
+        return coalesced;
+    }
+    
+    /**
+     * Merge notifications for the same recipient and subject (booking or event) into one
+     * COMPOSITE, whose body is the member bodies separated by \u001E, keeping first-seen
+     * order; with digests, a recipient with DIGEST_THRESHOLD
+     * (notifications.coalesce.digestThreshold) or more subjects gets a single DIGEST instead
+     */
+    private static List<Notification> coalesce(List<Notification> notifications, boolean digests) {
+        if (notifications.size() < 2) {
+            return notifications;
+        }
+        Map<String, Map<Object, List<Notification>>> byRecipient = new LinkedHashMap<>();
+        for (Notification notification : notifications) {
+            String subject = notification.subject();
+            byRecipient.computeIfAbsent(notification.recipient(), r -> new LinkedHashMap<>())
+                .computeIfAbsent(subject != null ? subject : notification, s -> new ArrayList<>(3))
+                .add(notification);
+        }
+        
+        List<Notification> coalesced = new ArrayList<>(byRecipient.size());
+        for (Map<Object, List<Notification>> subjects : byRecipient.values()) {
+            if (digests && subjects.size() >= DIGEST_THRESHOLD) {
+                coalesced.add(digest(subjects.values()));
+                continue;
+            }
+            for (List<Notification> members : subjects.values()) {
+                coalesced.add(members.size() == 1 ? members.get(0) : composite(members));
+            }
+        }
+        return coalesced;
+    }
+    
+    private static Notification composite(List<Notification> members) {
+        StringBuilder body = new StringBuilder();
+        StringBuilder types = new StringBuilder();
+        for (Notification member : members) {
+            if (body.length() > 0) {
+                body.append(MEMBER_SEPARATOR);
+                types.append(',');
+            }
+            body.append(member.body);
+            types.append(member.memberTypes());
+        }
+        Notification first = members.get(0);
+        Notification composite = new Notification(COMPOSITE, body.toString()).about(first.label);
+        first.properties.forEach(composite.properties::putIfAbsent);
+        composite.properties.put("memberTypes", types.toString());
+        return composite;
+    }
+    
+    // DIGEST|notifications|subjects|TYPE=count;...|labels|label\u001Flabel... (first DIGEST_LABELS labels),
+    // then per subject \u001D and its notifications' bodies separated by \u001E, so the digest keeps
+    // every booking's ticket number and amount
+    private static Notification digest(Collection<List<Notification>> subjects) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        Set<String> labels = new LinkedHashSet<>();
+        StringBuilder items = new StringBuilder();
+        int total = 0;
+        Notification first = null;
+        for (List<Notification> members : subjects) {
+            items.append(ITEM_SEPARATOR);
+            for (int i = 0; i < members.size(); i++) {
+                Notification member = members.get(i);
+                if (i > 0) {
+                    items.append(MEMBER_SEPARATOR);
+                }
+                items.append(member.body);
+                first = first != null ? first : member;
+                for (String type : member.memberTypes().split(",")) {
+                    counts.merge(type, 1, Integer::sum);
+                    total++;
+                }
+                if (member.label != null && !member.label.isEmpty()) {
+                    labels.add(member.label);
+                }
+            }
+        }
+        StringBuilder countList = new StringBuilder();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            if (countList.length() > 0) {
+                countList.append(';');
+            }
+            countList.append(count.getKey()).append('=').append(count.getValue());
+        }
+        List<String> shown = new ArrayList<>(labels).subList(0, Math.min(labels.size(), DIGEST_LABELS));
+        
+        String message = String.format("DIGEST|%d|%d|%s|%d|%s",
+            total, subjects.size(), countList, labels.size(), String.join(LABEL_SEPARATOR, shown)) + items;
+        Notification digest = new Notification(DIGEST, message).with("targetRole", first.properties.get("targetRole"));
+        if (first.properties.containsKey("userId")) {
+            digest.with("userId", first.properties.get("userId"));
+        }
+        return digest;
+    }
+    
+    // Inbox (notifications.inbox) and outbox (notifications.outbox) rows join the caller's
+    // unit of work, or get their own transaction outside one; with the outbox off, or when it
+    // cannot be written outside a transaction, the message goes to the dispatch queue
+    private void write(Notification notification) {
+        if (!record(notification) && UnitOfWork.isActive()) {
+            // The caller's transaction is rolled back with the failed append: nothing to announce
+            return;
+        }
+        if (OUTBOX) {
+            if (outboxDao.append(notification.type, notification.body, notification.properties)) {
+                return;
+            }
+            if (UnitOfWork.isActive()) {
+                // The caller's transaction is rolled back with the failed append: nothing to announce
                 return;
             }
-            
-            String message = String.format(
-                "BOOKING_APPROVED|%d|%s|%s|%s|%.2f",
-                booking.getBookingId(),
-                booking.getTicketNumber(),
-                user.getFullName(),
-                event.getEventName(),
-                booking.getTotalAmount()
-            );
-            
-            TextMessage textMessage = session.createTextMessage(message);
-            textMessage.setStringProperty("notificationType", "BOOKING_APPROVED");
-            textMessage.setStringProperty("userId", String.valueOf(user.getUserId()));
-            textMessage.setStringProperty("bookingId", String.valueOf(booking.getBookingId()));
-            textMessage.setStringProperty("targetRole", "customer"); // For customers
-            
-            producer.send(textMessage);
-            System.out.println("Booking approved notification sent for booking: " + booking.getTicketNumber());
-            
-        } catch (JMSException e) {
-            System.err.println("Failed to send booking approved notification: " + e.getMessage());
-            e.printStackTrace();
         }
+        enqueue(notification);
+    }
+    
+    // Append to the recipients' inboxes; false only when that failed
+    private boolean record(Notification notification) {
+        return !INBOX || inboxDao.append(notification.type, notification.body, notification.properties) >= 0;
+    }
+    
+    public static boolean isInboxEnabled() {
+        return INBOX;
+    }
+    
+    public static boolean isOutboxEnabled() {
+        return OUTBOX;
+    }
+    
+    // How long deliver() waits for the broker; outbox leases must outlast it
+    public static long getConfirmTimeoutMillis() {
+        return CONFIRM_TIMEOUT_MILLIS;
     }
     
     /**
-     * Send event expired notification to admin
+     * Publish claimed outbox rows through the sender sessions and wait for the broker
+     * commits; returns the ids that were delivered. Rows not confirmed in time are
+     * withdrawn, so a later relay attempt cannot duplicate them.
      */
-    public void sendEventExpiredNotification(Event event) {
+    public Collection<Long> deliver(List<OutboxMessage> rows) {
+        List<CompletableFuture<Boolean>> confirmations = new ArrayList<>(rows.size());
+        for (OutboxMessage row : rows) {
+            Notification notification = new Notification(row.getNotificationType(), row.getBody());
+            notification.properties.putAll(OutboxDao.decode(row.getProperties()));
+            if (row.getCreatedAt() != null) {
+                notification.createdAt = row.getCreatedAt().getTime();
+            }
+            notification.confirmation = new CompletableFuture<>();
+            confirmations.add(notification.confirmation);
+            enqueue(notification);
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONFIRM_TIMEOUT_MILLIS);
+        List<Long> delivered = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (await(confirmations.get(i), deadline)) {
+                delivered.add(rows.get(i).getOutboxId());
+            }
+        }
+        return delivered;
+    }
+    
+    // True when the sender committed it before the deadline; otherwise it is cancelled
+    private static boolean await(CompletableFuture<Boolean> confirmation, long deadline) {
         try {
-            if (producer == null) {
-                System.err.println("Notification producer not initialized. ActiveMQ may not be running.");
-                return;
+            return confirmation.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
             }
-            
-            String message = String.format(
-                "EVENT_EXPIRED|%d|%s|%s",
-                event.getEventId(),
-                event.getEventName(),
-                event.getEventDate() != null ? event.getEventDate().toString() : ""
-            );
-            
-            TextMessage textMessage = session.createTextMessage(message);
-            textMessage.setStringProperty("notificationType", "EVENT_EXPIRED");
-            textMessage.setStringProperty("eventId", String.valueOf(event.getEventId()));
-            textMessage.setStringProperty("targetRole", "admin"); // For admin
-            
-            producer.send(textMessage);
-            System.out.println("Event expired notification sent for event: " + event.getEventName());
-            
-        } catch (JMSException e) {
-            System.err.println("Failed to send event expired notification: " + e.getMessage());
-            e.printStackTrace();
+            // Withdraw it so a late send cannot duplicate the caller's retry
+            return !confirmation.cancel(false) && confirmation.getNow(false);
+        } catch (Exception e) {
+            return false;
         }
     }
     
+    // Bounded by notifications.queueCapacity; when full, notifications.overflow decides:
+    // BLOCK (wait up to notifications.offerTimeoutMillis, then drop), DROP_NEWEST or DROP_OLDEST
+    private void enqueue(Notification notification) {
+        boolean accepted;
+        if (!running) {
+            accepted = false;
+        } else if (OVERFLOW == OverflowPolicy.DROP_NEWEST) {
+            accepted = queue.offer(notification);
+        } else if (OVERFLOW == OverflowPolicy.DROP_OLDEST) {
+            while (!(accepted = queue.offer(notification))) {
+                Notification oldest = queue.poll();
+                if (oldest != null) {
+                    drop(oldest);
+                }
+            }
+        } else {
+            try {
+                accepted = queue.offer(notification, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        }
+        if (accepted) {
+            enqueued.incrementAndGet();
+        } else {
+            drop(notification);
+        }
+    }
+    
+    private void drop(Notification notification) {
+        long count = dropped.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            System.err.println("Notification queue full (" + OVERFLOW + "), dropped " + count
+                + " so far, latest " + notification.type);
+        }
+        complete(notification, false);
+    }
+    
+    // One of notifications.senders threads, each owning one transacted Session and producer on
+    // the shared Connection. It takes up to notifications.batchSize queued messages, lingers
+    // notifications.coalesce.windowMillis to merge messages for the same recipient and subject,
+    // sends them and commits once; on a broker error the batch is rolled back and retried
+    // on a fresh session.
+    private void runSender() {
+        Session session = null;
+        MessageProducer producer = null;
+        Map<String, Topic> topics = new HashMap<>();
+        NotificationEnvelope.Writer writer = new NotificationEnvelope.Writer();
+        List<Notification> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Notification first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                // Linger for the coalescing window so later messages about the same subject can join
+                long lingerUntil = first.enqueuedAt + COALESCE_WINDOW_NANOS;
+                long remaining;
+                while (batch.size() < BATCH_SIZE && (remaining = lingerUntil - System.nanoTime()) > 0) {
+                    Notification next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, BATCH_SIZE - batch.size());
+                }
+                // Callers that stopped waiting have withdrawn their message
+                batch.removeIf(n -> n.confirmation != null && n.confirmation.isCancelled());
+                Collection<List<Notification>> outgoing = pack(COALESCE_WINDOW_NANOS > 0 ? coalesce(batch, false) : batch);
+                long payload = 0;
+                
+                boolean delivered = false;
+                for (int attempt = 1; attempt <= SEND_ATTEMPTS && !delivered && !batch.isEmpty(); attempt++) {
+                    try {
+                        if (session == null) {
+                            Connection current = connection();
+                            if (current == null) {
+                                throw new JMSException("ActiveMQ not reachable at " + BROKER_URL);
+                            }
+                            session = current.createSession(true, Session.SESSION_TRANSACTED);
+                            // Anonymous producer: the destination is chosen per message
+                            producer = session.createProducer(null);
+                            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+                            producer.setTimeToLive(TIME_TO_LIVE_MILLIS);
+                            topics.clear();
+                        }
+                        payload = 0;
+                        for (List<Notification> packed : outgoing) {
+                            Notification notification = packed.get(0);
+                            Message message;
+                            if (BINARY) {
+                                BytesMessage envelope = session.createBytesMessage();
+                                writer.reset();
+                                packed.forEach(n -> addTo(writer, n));
+                                payload += writer.writeTo(envelope);
+                                envelope.setStringProperty("targetRole", notification.properties.get("targetRole"));
+                                if (notification.properties.containsKey("userId")) {
+                                    envelope.setStringProperty("userId", notification.properties.get("userId"));
+                                }
+                                envelope.setIntProperty("notificationCount", writer.count());
+                                message = envelope;
+                            } else {
+                                message = session.createTextMessage(notification.body);
+                                for (Map.Entry<String, String> property : notification.properties.entrySet()) {
+                                    message.setStringProperty(property.getKey(), property.getValue());
+                                }
+                                payload += notification.body.length();
+                            }
+                            String audience = TOPIC_PREFIX + notification.properties.get("targetRole");
+                            Topic topic = topics.get(audience);
+                            if (topic == null) {
+                                topic = session.createTopic(audience);
+                                topics.put(audience, topic);
+                            }
+                            producer.send(topic, message);
+                        }
+                        session.commit();
+                        delivered = true;
+                    } catch (JMSException e) {
+                        System.err.println("Failed to send " + batch.size() + " notifications (attempt "
+                            + attempt + "/" + SEND_ATTEMPTS + "): " + e.getMessage());
+                        closeQuietly(session);
+                        session = null;
+                        producer = null;
+                        resetConnection();
+                        if (attempt < SEND_ATTEMPTS) {
+                            Thread.sleep(RECONNECT_MILLIS);
+                        }
+                    }
+                }
+                
+                if (delivered) {
+                    long now = System.nanoTime();
+                    for (Notification notification : batch) {
+                        long latency = now - notification.enqueuedAt;
+                        latencyNanos.addAndGet(latency);
+                        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                        complete(notification, true);
+                    }
+                    sent.addAndGet(batch.size());
+                    messages.addAndGet(outgoing.size());
+                    payloadBytes.addAndGet(payload);
+                    batches.incrementAndGet();
+                } else {
+                    failed.addAndGet(batch.size());
+                    batch.forEach(n -> complete(n, false));
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                // close() interrupts only after the queue has had time to drain
+                failed.addAndGet(batch.size());
+                batch.forEach(n -> complete(n, false));
+                break;
+            } catch (Exception e) {
+                System.err.println("Notification sender error: " + e.getMessage());
+                failed.addAndGet(batch.size());
+                batch.forEach(n -> complete(n, false));
+                batch.clear();
+            }
+        }
+        closeQuietly(session);
+    }
+    
+    // notifications.format binary (default): one BytesMessage per recipient holding a
+    // NotificationEnvelope (selectors route on its targetRole/userId, notificationCount says how
+    // many it carries); text: one TextMessage per notification with its pipe-separated body
+    private static Collection<List<Notification>> pack(List<Notification> notifications) {
+        if (!BINARY) {
+            List<List<Notification>> singles = new ArrayList<>(notifications.size());
+            for (Notification notification : notifications) {
+                singles.add(Collections.singletonList(notification));
+            }
+            return singles;
+        }
+        Map<String, List<Notification>> byRecipient = new LinkedHashMap<>();
+        for (Notification notification : notifications) {
+            byRecipient.computeIfAbsent(notification.recipient(), r -> new ArrayList<>()).add(notification);
+        }
+        return byRecipient.values();
+    }
+    
+    // A COMPOSITE becomes its member records, flagged as one group
+    private static void addTo(NotificationEnvelope.Writer writer, Notification notification) {
+        if (!COMPOSITE.equals(notification.type)) {
+            writer.add(notification.body, notification.createdAt, false);
+            return;
+        }
+        int start = 0;
+        while (start <= notification.body.length()) {
+            int end = notification.body.indexOf(MEMBER_SEPARATOR, start);
+            if (end < 0) {
+                end = notification.body.length();
+            }
+            writer.add(notification.body.substring(start, end), notification.createdAt, start > 0);
+            start = end + 1;
+        }
+    }
+    
+    private static void complete(Notification notification, boolean delivered) {
+        if (notification.confirmation != null) {
+            // No effect when the caller already gave up and cancelled it
+            notification.confirmation.complete(delivered);
+        }
+    }
+    
+    private synchronized Connection connection() {
+        if (connection == null) {
+            try {
+                Connection created = connectionFactory.createConnection();
+                created.start();
+                connection = created;
+            } catch (JMSException e) {
+                System.err.println("Failed to connect NotificationService: " + e.getMessage());
+            }
+        }
+        return connection;
+    }
+    
+    private synchronized void resetConnection() {
+        // Sessions of other senders fail on their next send and reopen on the new connection
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (JMSException ignored) {
+                // Already broken
+            }
+            connection = null;
+        }
+    }
+    
+    private static void closeQuietly(Session session) {
+        if (session != null) {
+            try {
+                session.close();
+            } catch (JMSException ignored) {
+                // Connection already gone
+            }
+        }
+    }
+    
+    // Monitoring: queue depth, sends, drops, failures, coalescing ratios, payload bytes
+    // and enqueue-to-commit latency
+    public String getStatistics() {
+        long delivered = sent.get();
+        long brokerMessages = messages.get();
+        long written = this.written.get();
+        return String.format("Notifications[queued=%d/%d, enqueued=%d, coalesced=%d->%d (%.2fx), sent=%d in %d messages "
+                + "(%.2fx), payload=%.1fB/notification, batches=%d, dropped=%d, failed=%d, avgLatency=%.1fms, maxLatency=%.1fms]",
+            queue.size(), QUEUE_CAPACITY, enqueued.get(), published.get(), written,
+            written == 0 ? 1.0 : (double) published.get() / written, delivered, brokerMessages,
+            brokerMessages == 0 ? 1.0 : (double) delivered / brokerMessages,
+            delivered == 0 ? 0.0 : (double) payloadBytes.get() / delivered, batches.get(), dropped.get(), failed.get(),
+            delivered == 0 ? 0.0 : latencyNanos.get() / 1e6 / delivered, maxLatencyNanos.get() / 1e6);
+    }
+    
+    /**
+     * Stop accepting notifications, let the senders drain the queue, then disconnect
+     */
     public void close() {
-        try {
-            if (producer != null) producer.close();
-            if (session != null) session.close();
-            if (connection != null) connection.close();
-        } catch (JMSException e) {
-            e.printStackTrace();
+        if (!running) {
+            return;
         }
+        running = false;
+        for (Thread sender : senders) {
+            try {
+                sender.join(5000);
+                sender.interrupt();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        resetConnection();
     }
 }
-
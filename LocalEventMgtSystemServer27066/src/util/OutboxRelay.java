@@ -0,0 +1,167 @@
+package util;
+
+import dao.OutboxDao;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import model.OutboxMessage;
+
+/**
+ * Publishes the notification outbox to ActiveMQ, so booking and payment requests
+ * never wait on the broker and a notification is never lost with it.
+ *
+ * - Each pass leases up to notifications.outbox.batchSize (default 200) due rows for
+ *   notifications.outbox.leaseSeconds (default 60, always longer than the broker
+ *   confirm timeout), publishes them through NotificationService's sender sessions with
+ *   no transaction open, then marks the confirmed ones delivered; several relays
+ *   (notifications.outbox.relays, or several servers) never share a leased row
+ * - An unconfirmed row is retried after notifications.outbox.retryMillis (default 1000)
+ *   doubled per attempt, up to notifications.outbox.maxRetryMillis (default 300000), and
+ *   is dead-lettered after notifications.outbox.maxAttempts (default 10), so a bad row
+ *   never holds up the rows behind it
+ * - A full batch is followed at once by the next; otherwise the relay polls every
+ *   notifications.outbox.pollMillis (default 100), backing off to 5s while the
+ *   database or the broker is down
+ * - Delivery is at least once: a row whose broker commit succeeded but whose
+ *   settle failed, or whose lease ran out first, is published again
+ * - Delivered rows are purged after notifications.outbox.retentionHours (default 24)
+ *
+ * @author 27066
+ */
+public class OutboxRelay {
+    
+    private static final int RELAYS = Math.max(1, Integer.getInteger("notifications.outbox.relays", 1));
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger("notifications.outbox.batchSize", 200));
+    private static final long POLL_MILLIS = Long.getLong("notifications.outbox.pollMillis", 100);
+    private static final int RETENTION_HOURS = Integer.getInteger("notifications.outbox.retentionHours", 24);
+    private static final int LEASE_SECONDS = (int) Math.max(Integer.getInteger("notifications.outbox.leaseSeconds", 60),
+        NotificationService.getConfirmTimeoutMillis() / 1000 + 30);
+    private static final int MAX_ATTEMPTS = Math.max(1, Integer.getInteger("notifications.outbox.maxAttempts", 10));
+    private static final long RETRY_MILLIS = Long.getLong("notifications.outbox.retryMillis", 1000);
+    private static final long MAX_RETRY_MILLIS = Long.getLong("notifications.outbox.maxRetryMillis", 300_000);
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final long PURGE_INTERVAL_MILLIS = 3_600_000;
+    
+    private static OutboxRelay instance;
+    
+    private final OutboxDao outboxDao = new OutboxDao();
+    private final List<Thread> relays = new ArrayList<>();
+    private volatile boolean running;
+    private volatile long nextPurge;
+    
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong undelivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    
+    private OutboxRelay() {}
+    
+    public static synchronized OutboxRelay getInstance() {
+        if (instance == null) {
+            instance = new OutboxRelay();
+        }
+        return instance;
+    }
+    
+    /**
+     * Start the relay threads (no-op when the outbox is disabled)
+     */
+    public synchronized void start() {
+        if (running || !NotificationService.isOutboxEnabled()) {
+            return;
+        }
+        running = true;
+        for (int i = 1; i <= RELAYS; i++) {
+            Thread relay = new Thread(this::run, "outbox-relay-" + i);
+            relay.setDaemon(true);
+            relay.start();
+            relays.add(relay);
+        }
+    }
+    
+    /**
+     * Stop the relay threads once their current batch is settled; rows they had
+     * not yet claimed stay in the outbox for the next start
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread relay : relays) {
+            try {
+                // Past the broker confirm timeout, so a batch in flight is settled rather than interrupted
+                relay.join(NotificationService.getConfirmTimeoutMillis() + 5000);
+                relay.interrupt();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        relays.clear();
+    }
+    
+    private void run() {
+        long backoff = POLL_MILLIS;
+        while (running) {
+            try {
+                List<OutboxMessage> claimed = outboxDao.claim(BATCH_SIZE, LEASE_SECONDS);
+                if (claimed != null && !claimed.isEmpty()) {
+                    // Published with no transaction open; the leases keep other relays off these rows
+                    Collection<Long> delivered = NotificationService.getInstance().deliver(claimed);
+                    int failed = outboxDao.settle(claimed, delivered, MAX_ATTEMPTS, RETRY_MILLIS, MAX_RETRY_MILLIS);
+                    if (failed > 0) {
+                        deadLettered.addAndGet(failed);
+                        System.err.println("Outbox relay: " + failed + " notifications dead-lettered after "
+                            + MAX_ATTEMPTS + " attempts");
+                    }
+                    if (failed >= 0 && !delivered.isEmpty()) {
+                        relayed.addAndGet(delivered.size());
+                        batches.incrementAndGet();
+                    }
+                    if (failed < 0 || delivered.size() < claimed.size()) {
+                        // Broker trouble: the unconfirmed rows are rescheduled (or their leases run out)
+                        undelivered.addAndGet(claimed.size() - (failed < 0 ? 0 : delivered.size()));
+                        claimed = null;
+                    }
+                }
+                if (claimed == null) {
+                    // Database or broker trouble: back off
+                    failures.incrementAndGet();
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    continue;
+                }
+                backoff = POLL_MILLIS;
+                if (claimed.size() < BATCH_SIZE) {
+                    purgeIfDue();
+                    Thread.sleep(POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Outbox relay error: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void purgeIfDue() {
+        long now = System.currentTimeMillis();
+        if (now < nextPurge) {
+            return;
+        }
+        nextPurge = now + PURGE_INTERVAL_MILLIS;
+        int purged = outboxDao.purgeDelivered(RETENTION_HOURS);
+        if (purged > 0) {
+            System.out.println("Outbox relay: purged " + purged + " delivered notifications");
+        }
+    }
+    
+    // Monitoring
+    public String getStatistics() {
+        return String.format("OutboxRelay[relayed=%d, batches=%d, undelivered=%d, deadLettered=%d, failures=%d]",
+            relayed.get(), batches.get(), undelivered.get(), deadLettered.get(), failures.get());
+    }
+}
@@ -0,0 +1,109 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style ticket number generator, replacing "TKT-" + currentTimeMillis
+ * which collided on the unique ticket_number column whenever two bookings
+ * landed in the same millisecond.
+ *
+ * Layout of the 63-bit id:
+ * - 41 bits milliseconds since EPOCH (about 69 years)
+ * - 10 bits node id (-Dbooking.nodeId, 0-1023), so several servers never overlap
+ * - 12 bits sequence within the millisecond (4096 per ms per node)
+ *
+ * Lock-free: the last (timestamp, sequence) pair lives in one AtomicLong and is
+ * advanced with a CAS loop. When a millisecond's sequence is exhausted the
+ * generator borrows the next millisecond instead of spinning, so ids stay
+ * strictly monotonic and unique even if the wall clock stalls or steps back.
+ *
+ * Ticket numbers are "TKT-" + the id in base 36 + one Luhn mod 36 check character,
+ * so a mistyped or misscanned ticket is rejected by isValid() without a lookup.
+ *
+ * @author 27066
+ */
+public final class TicketNumberGenerator {
+
+    public static final String PREFIX = "TKT-";
+
+    // 2024-01-01T00:00:00Z
+    private static final long EPOCH = 1704067200000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private static final TicketNumberGenerator INSTANCE = new TicketNumberGenerator(Long.getLong("booking.nodeId", 0));
+
+    private final long nodeId;
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong last = new AtomicLong();
+
+    TicketNumberGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("booking.nodeId must be between 0 and " + MAX_NODE);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public static TicketNumberGenerator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Next unique, monotonic 63-bit id
+     */
+    public long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            // Same or earlier millisecond: continue the sequence (overflow rolls into the next ms)
+            next = Math.max(now, prev + 1);
+        } while (!last.compareAndSet(prev, next));
+
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * Next ticket number, e.g. TKT-1A2B3C4D5E6F7G
+     */
+    public String nextTicketNumber() {
+        String body = Long.toString(nextId(), 36).toUpperCase();
+        return PREFIX + body + checkCharacter(body);
+    }
+
+    /**
+     * True when the ticket number is well formed and its check character matches
+     */
+    public static boolean isValid(String ticketNumber) {
+        if (ticketNumber == null || !ticketNumber.startsWith(PREFIX) || ticketNumber.length() < PREFIX.length() + 2) {
+            return false;
+        }
+        String code = ticketNumber.substring(PREFIX.length()).toUpperCase();
+        String body = code.substring(0, code.length() - 1);
+        for (int i = 0; i < body.length(); i++) {
+            if (ALPHABET.indexOf(body.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return checkCharacter(body) == code.charAt(code.length() - 1);
+    }
+
+    // Luhn mod 36: catches every single-character error and most adjacent transpositions
+    private static char checkCharacter(String body) {
+        int n = ALPHABET.length();
+        int factor = 2;
+        int sum = 0;
+        for (int i = body.length() - 1; i >= 0; i--) {
+            int addend = factor * ALPHABET.indexOf(body.charAt(i));
+            factor = factor == 2 ? 1 : 2;
+            sum += addend / n + addend % n;
+        }
+        return ALPHABET.charAt((n - sum % n) % n);
+    }
+}
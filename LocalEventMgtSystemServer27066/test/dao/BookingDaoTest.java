@@ -0,0 +1,216 @@
+package dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Booking;
+import model.Event;
+import model.GroupReservationResult;
+import model.ReservationResult;
+import model.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * BookingDao against the embedded database
+ *
+ * @author 27066
+ */
+class BookingDaoTest {
+
+    private final BookingDao dao = new BookingDao();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        int capacity = 100;
+        int threads = 32;
+        int attemptsPerThread = 20;
+        Event event = TestDatabase.createEvent(capacity, 10.0);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(TestDatabase.createUser());
+        }
+
+        // Demand (32 x 20 x 1-3 tickets) is far above capacity, so the last seats are fought over
+        AtomicInteger sold = new AtomicInteger();
+        List<String> errors = new ArrayList<>();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            User user = users.get(t % users.size());
+            done.add(pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    int quantity = 1 + i % 3;
+                    ReservationResult result = dao.reserveTickets(event.getEventId(), user.getUserId(), quantity, null);
+                    if (result.isAccepted()) {
+                        sold.addAndGet(quantity);
+                        assertTrue(result.getRemainingCapacity() >= 0);
+                    } else if (!result.getMessage().startsWith("Not enough tickets")) {
+                        synchronized (errors) {
+                            errors.add(result.getMessage());
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> f : done) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertTrue(errors.isEmpty(), "Reservations failed instead of being rejected: " + errors);
+        assertTrue(sold.get() <= capacity, "Oversold: " + sold.get() + " of " + capacity);
+        // Only 1-3 tickets per request: the counter is drained down to less than one request
+        assertTrue(sold.get() > capacity - 3, "Seats left unsold: " + sold.get() + " of " + capacity);
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(
+                 "SELECT e.remaining_capacity, COALESCE(SUM(b.number_of_tickets), 0) FROM events e " +
+                 "LEFT JOIN bookings b ON b.event_id = e.event_id WHERE e.event_id = ? GROUP BY e.remaining_capacity")) {
+            ps.setInt(1, event.getEventId());
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(capacity - sold.get(), rs.getInt(1), "remaining_capacity");
+                assertEquals(sold.get(), rs.getInt(2), "tickets in bookings");
+            }
+        }
+    }
+
+    @Test
+    void groupReservationIsAllOrNothing() throws Exception {
+        Event roomy = TestDatabase.createEvent(10, 10.0);
+        Event small = TestDatabase.createEvent(3, 25.0);
+        User user = TestDatabase.createUser();
+
+        // The first event has room, the second is one seat short: nothing may be booked
+        GroupReservationResult rejected = dao.reserveGroup(List.of(
+            request(roomy, user, 2), request(roomy, user, 2), request(small, user, 4)));
+        assertFalse(rejected.isAccepted());
+        assertTrue(rejected.getMessage().contains(small.getEventName()), rejected.getMessage());
+        assertFalse(rejected.getMessage().contains(roomy.getEventName()), rejected.getMessage());
+        assertTrue(rejected.getBookings().isEmpty());
+        assertEquals(10, rejected.getRemainingCapacity().get(roomy.getEventId()));
+        assertEquals(3, rejected.getRemainingCapacity().get(small.getEventId()));
+        assertEquals(10, remainingCapacity(roomy));
+        assertEquals(3, remainingCapacity(small));
+        assertEquals(0, bookedTickets(roomy));
+        assertEquals(0, bookedTickets(small));
+
+        GroupReservationResult accepted = dao.reserveGroup(List.of(
+            request(roomy, user, 2), request(roomy, user, 2), request(small, user, 3)));
+        assertTrue(accepted.isAccepted(), accepted.getMessage());
+        assertEquals(3, accepted.getBookings().size());
+        assertEquals(7, accepted.getTotalTickets());
+        assertEquals(4 * 10.0 + 3 * 25.0, accepted.getTotalAmount(), 0.001);
+        HashSet<String> ticketNumbers = new HashSet<>();
+        for (Booking booking : accepted.getBookings()) {
+            ticketNumbers.add(booking.getTicketNumber());
+        }
+        assertEquals(3, ticketNumbers.size(), "ticket numbers must be unique");
+        assertEquals(6, accepted.getRemainingCapacity().get(roomy.getEventId()));
+        assertEquals(0, accepted.getRemainingCapacity().get(small.getEventId()));
+        assertEquals(6, remainingCapacity(roomy));
+        assertEquals(0, remainingCapacity(small));
+        assertEquals(4, bookedTickets(roomy));
+        assertEquals(3, bookedTickets(small));
+    }
+
+    @Test
+    void groupReservationWithUnknownEventWritesNothing() throws Exception {
+        Event event = TestDatabase.createEvent(10, 10.0);
+        User user = TestDatabase.createUser();
+        Booking unknown = new Booking();
+        unknown.setEventId(Integer.MAX_VALUE);
+        unknown.setUserId(user.getUserId());
+        unknown.setNumberOfTickets(1);
+
+        GroupReservationResult result = dao.reserveGroup(List.of(request(event, user, 2), unknown));
+        assertFalse(result.isAccepted());
+        assertEquals("Event not found.", result.getMessage());
+        assertEquals(10, remainingCapacity(event));
+        assertEquals(0, bookedTickets(event));
+    }
+
+    @Test
+    void categoryIsPricedOnlyUnderCategoryPricing() {
+        Event single = TestDatabase.createEvent(10, 10.0);
+        Event tiered = TestDatabase.createEvent(10, 10.0);
+        tiered.setPricingType("category");
+        tiered.setVipPrice(40.0);
+        tiered = new EventDao().updateEvent(tiered);
+        User user = TestDatabase.createUser();
+
+        Booking vip = dao.reserveTickets(tiered.getEventId(), user.getUserId(), 2, "VIP").getBooking();
+        assertEquals(80.0, vip.getTotalAmount(), 0.001);
+        assertEquals("VIP", vip.getTicketCategory());
+
+        // No price set for the category: the base price
+        Booking casual = dao.reserveTickets(tiered.getEventId(), user.getUserId(), 1, "casual").getBooking();
+        assertEquals(10.0, casual.getTotalAmount(), 0.001);
+
+        Booking ignored = dao.reserveTickets(single.getEventId(), user.getUserId(), 2, "VIP").getBooking();
+        assertEquals(20.0, ignored.getTotalAmount(), 0.001);
+        assertNull(ignored.getTicketCategory());
+
+        GroupReservationResult group = dao.reserveGroup(List.of(
+            request(tiered, user, 1, "vip"), request(single, user, 1, "vip")));
+        assertTrue(group.isAccepted(), group.getMessage());
+        assertEquals(40.0 + 10.0, group.getTotalAmount(), 0.001);
+        assertEquals("vip", group.getBookings().get(0).getTicketCategory());
+        assertNull(group.getBookings().get(1).getTicketCategory());
+    }
+
+    private static Booking request(Event event, User user, int tickets, String category) {
+        Booking request = request(event, user, tickets);
+        request.setTicketCategory(category);
+        return request;
+    }
+
+    private static Booking request(Event event, User user, int tickets) {
+        Booking request = new Booking();
+        request.setEventId(event.getEventId());
+        request.setUserId(user.getUserId());
+        request.setNumberOfTickets(tickets);
+        return request;
+    }
+
+    private static int remainingCapacity(Event event) throws Exception {
+        return queryInt("SELECT remaining_capacity FROM events WHERE event_id = ?", event);
+    }
+
+    private static int bookedTickets(Event event) throws Exception {
+        return queryInt("SELECT COALESCE(SUM(number_of_tickets), 0) FROM bookings WHERE event_id = ?", event);
+    }
+
+    private static int queryInt(String sql, Event event) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, event.getEventId());
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import model.Booking;
+import model.Event;
+import model.User;
+import model.Venue;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Booking list read path on 100k seeded bookings: the BookingView projection
+ * (BookingDao.findAllBookings / findBookingsByUser) against the entity
+ * SELECT DISTINCT ... LEFT JOIN FETCH plus display-field copy it replaced.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args=BookingReadBenchmark
+ *
+ * @author 27066
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+public class BookingReadBenchmark {
+
+    private static final int BOOKINGS = 100_000;
+    private static final int USERS = 1_000;
+    private static final int EVENTS = 50;
+
+    // all = every booking (admin list), user = one customer's ~100 bookings
+    @Param({"all", "user"})
+    public String scope;
+
+    private final BookingDao dao = new BookingDao();
+    private int userId;
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        TestDatabase.start();
+        for (int i = 0; i < EVENTS; i++) {
+            TestDatabase.createEvent(10000, 10.0 + i);
+        }
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            st.executeUpdate(
+                "INSERT INTO users (user_id, username, password, email, full_name, phone_number, user_role, account_status) " +
+                "SELECT nextval('users_user_id_seq'), 'bench' || g, 'secret', 'bench' || g || '@example.com', " +
+                "'Bench User ' || g, '0788000000', 'customer', 'active' FROM generate_series(1, " + USERS + ") g");
+            st.executeUpdate(
+                "WITH u AS (SELECT user_id, row_number() OVER (ORDER BY user_id) - 1 AS n FROM users WHERE username LIKE 'bench%'), " +
+                "e AS (SELECT event_id, row_number() OVER (ORDER BY event_id) - 1 AS n FROM events) " +
+                "INSERT INTO bookings (booking_id, booking_date, check_in_status, number_of_tickets, payment_status, " +
+                "ticket_number, total_amount, event_id, user_id) " +
+                "SELECT nextval('bookings_booking_id_seq'), LOCALTIMESTAMP - g * interval '1 minute', false, 1 + g % 4, 'paid', " +
+                "'TKT-BENCH' || g, 10.0 * (1 + g % 4), e.event_id, u.user_id " +
+                "FROM generate_series(1, " + BOOKINGS + ") g JOIN u ON u.n = g % " + USERS + " JOIN e ON e.n = g % " + EVENTS);
+            st.execute("ANALYZE");
+            try (ResultSet rs = st.executeQuery("SELECT MIN(user_id) FROM users WHERE username LIKE 'bench%'")) {
+                rs.next();
+                userId = rs.getInt(1);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Booking> projection() {
+        return "all".equals(scope) ? dao.findAllBookings() : dao.findBookingsByUser(userId);
+    }
+
+    @Benchmark
+    public List<Booking> entityJoinFetch() {
+        // The read path before the projection, as it was in BookingDao and BookingServiceImpl
+        Session ss = HibernateUtil.getSessionFactory().openSession();
+        try {
+            List<Booking> bookings = ss.createQuery(
+                "SELECT DISTINCT b FROM Booking b " +
+                "LEFT JOIN FETCH b.event e " +
+                "LEFT JOIN FETCH b.user u " +
+                "LEFT JOIN FETCH e.venue v " +
+                ("all".equals(scope) ? "" : "WHERE b.user.userId = " + userId + " ") +
+                "ORDER BY b.bookingDate DESC",
+                Booking.class
+            ).list();
+            for (Booking booking : bookings) {
+                populateDisplayFields(booking);
+                booking.setEventId(booking.getEventId());
+                booking.setUserId(booking.getUserId());
+                booking.setEvent(null);
+                booking.setUser(null);
+            }
+            return bookings;
+        } finally {
+            ss.close();
+        }
+    }
+
+    private static void populateDisplayFields(Booking booking) {
+        Event event = booking.getEvent();
+        if (event != null) {
+            booking.setEventName(event.getEventName());
+            booking.setEventDescription(event.getEventDescription());
+            if (event.getEventDate() != null) {
+                booking.setEventDate(event.getEventDate().toString());
+            }
+            if (event.getEventTime() != null) {
+                booking.setEventTime(event.getEventTime().toString());
+            }
+            Venue venue = event.getVenue();
+            if (venue != null) {
+                booking.setVenueName(venue.getVenueName());
+                booking.setVenueLocation(venue.getLocation());
+            }
+        }
+        User user = booking.getUser();
+        if (user != null) {
+            booking.setUserName(user.getFullName());
+            booking.setUserEmail(user.getEmail());
+            booking.setUserPhone(user.getPhoneNumber());
+        }
+    }
+}
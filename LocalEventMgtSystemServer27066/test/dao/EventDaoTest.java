@@ -0,0 +1,101 @@
+package dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Event;
+import model.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * EventDao against the embedded database
+ *
+ * @author 27066
+ */
+class EventDaoTest {
+
+    private final EventDao dao = new EventDao();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @Test
+    void capacityCutBelowSoldTicketsIsRejected() {
+        Event event = TestDatabase.createEvent(20, 10.0);
+        User user = TestDatabase.createUser();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(new BookingDao().reserveTickets(event.getEventId(), user.getUserId(), 5, null).isAccepted());
+        }
+
+        assertNull(dao.updateEvent(withCapacity(event, 14)), "15 tickets are sold");
+        assertEquals(20, dao.findEventById(event.getEventId()).getCapacity());
+        assertEquals(5, dao.getAvailableCapacity(event.getEventId()));
+
+        assertNotNull(dao.updateEvent(withCapacity(event, 15)));
+        assertEquals(0, dao.getAvailableCapacity(event.getEventId()));
+
+        assertNotNull(dao.updateEvent(withCapacity(event, 30)));
+        assertEquals(15, dao.getAvailableCapacity(event.getEventId()));
+    }
+
+    @Test
+    void remainingCapacityCheckIsMigrated() throws SQLException {
+        // The schema here comes from hbm2ddl, which never creates the CHECK itself
+        Event event = TestDatabase.createEvent(10, 10.0);
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT convalidated FROM pg_constraint WHERE conrelid = 'events'::regclass " +
+                    "AND pg_get_constraintdef(oid) = 'CHECK ((remaining_capacity >= 0))'")) {
+                assertTrue(rs.next(), "CHECK (remaining_capacity >= 0) missing");
+                assertTrue(rs.getBoolean(1), "CHECK (remaining_capacity >= 0) not validated");
+            }
+            assertThrows(SQLException.class, () -> st.executeUpdate(
+                "UPDATE events SET remaining_capacity = -1 WHERE event_id = " + event.getEventId()));
+        }
+    }
+
+    @Test
+    void expiryNoticeIsClaimedOnceAndOnlyWhenSent() throws SQLException {
+        Event started = TestDatabase.createEvent(10, 10.0);
+        Event upcoming = TestDatabase.createEvent(10, 10.0);
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            st.executeUpdate("UPDATE events SET event_date = CURRENT_DATE - 1 WHERE event_id = " + started.getEventId());
+        }
+        List<Integer> both = List.of(started.getEventId(), upcoming.getEventId());
+        AtomicInteger notified = new AtomicInteger();
+
+        // A failed send rolls the claim back, so the notice is retried
+        assertNull(dao.sendExpiryNotices(both, event -> false));
+        assertTrue(dao.findPendingExpiries().stream().anyMatch(row -> ((Number) row[0]).intValue() == started.getEventId()));
+
+        assertEquals(1, dao.sendExpiryNotices(both, event -> {
+            assertEquals(started.getEventId(), event.getEventId());
+            notified.incrementAndGet();
+            return true;
+        }));
+        assertNotNull(dao.findEventById(started.getEventId()).getExpiryNotifiedAt());
+
+        // A second sweep, or another server, finds nothing left to send
+        assertEquals(0, dao.sendExpiryNotices(both, event -> notified.incrementAndGet() > 0));
+        assertEquals(1, notified.get());
+        assertTrue(dao.findPendingExpiries().stream().noneMatch(row -> ((Number) row[0]).intValue() == started.getEventId()));
+    }
+
+    private Event withCapacity(Event event, int capacity) {
+        Event edit = dao.findEventById(event.getEventId());
+        edit.setCapacity(capacity);
+        return edit;
+    }
+}
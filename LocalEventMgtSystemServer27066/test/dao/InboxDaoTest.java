@@ -0,0 +1,173 @@
+package dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.InboxNotification;
+import model.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * InboxDao against the embedded database: notification_unread must always equal the
+ * number of unread notification_inbox rows
+ *
+ * @author 27066
+ */
+class InboxDaoTest {
+
+    private final InboxDao dao = new InboxDao();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @Test
+    void counterFollowsAppendsAndReads() throws Exception {
+        User user = TestDatabase.createUser();
+        User other = TestDatabase.createUser();
+        assertEquals(0, dao.unreadCount(user.getUserId()));
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(1, dao.append("TICKET_READY", "TICKET_READY|" + i, to(user)));
+        }
+        assertEquals(1, dao.append("TICKET_READY", "TICKET_READY|other", to(other)));
+        assertConsistent(user, 5);
+
+        List<InboxNotification> inbox = dao.fetchSince(user.getUserId(), 0, 10);
+        assertEquals(5, inbox.size());
+        assertEquals("TICKET_READY|1", inbox.get(0).getBody());
+        List<Long> ids = new ArrayList<>();
+        inbox.forEach(n -> ids.add(n.getNotificationId()));
+
+        assertEquals(3, dao.markRead(user.getUserId(), ids.subList(0, 2)));
+        assertConsistent(user, 3);
+
+        // Already-read ids and another user's ids are not taken off again
+        long othersId = dao.fetchSince(other.getUserId(), 0, 10).get(0).getNotificationId();
+        assertEquals(2, dao.markRead(user.getUserId(), List.of(ids.get(0), ids.get(1), ids.get(2), othersId)));
+        assertConsistent(user, 2);
+        assertConsistent(other, 1);
+        assertEquals(2, dao.markRead(user.getUserId(), List.of()));
+
+        assertEquals(0, dao.markRead(user.getUserId(), null));
+        assertConsistent(user, 0);
+        assertNotNull(dao.fetchSince(user.getUserId(), 0, 10).get(4).getReadAt());
+        assertEquals(1, dao.append("BOOKING_APPROVED", "BOOKING_APPROVED|6", to(user)));
+        assertConsistent(user, 1);
+
+        // Paging forward from the last id seen returns only what came after it
+        List<InboxNotification> newer = dao.fetchSince(user.getUserId(), ids.get(4), 10);
+        assertEquals(1, newer.size());
+        assertEquals("BOOKING_APPROVED|6", newer.get(0).getBody());
+        assertNull(newer.get(0).getReadAt());
+    }
+
+    @Test
+    void rolledBackAppendLeavesTheCounterAlone() throws Exception {
+        User user = TestDatabase.createUser();
+        dao.append("TICKET_READY", "TICKET_READY|kept", to(user));
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.execute(ss -> {
+            dao.append("TICKET_READY", "TICKET_READY|lost", to(user));
+            throw new IllegalStateException("booking failed");
+        }));
+        assertConsistent(user, 1);
+    }
+
+    @Test
+    void roleFanOutReachesActiveUsersOnly() throws Exception {
+        User first = TestDatabase.createUser();
+        User second = TestDatabase.createUser();
+        User suspended = TestDatabase.createUser();
+        execute("UPDATE users SET user_role = 'admin' WHERE user_id IN ("
+            + first.getUserId() + ", " + second.getUserId() + ", " + suspended.getUserId() + ")");
+        execute("UPDATE users SET account_status = 'inactive' WHERE user_id = " + suspended.getUserId());
+        int before = actualUnread(first);
+
+        int written = dao.append("NEW_BOOKING", "NEW_BOOKING|1", Map.of("targetRole", "admin"));
+        assertEquals(written, admins());
+        assertConsistent(first, before + 1);
+        assertConsistent(second, before + 1);
+        assertConsistent(suspended, 0);
+    }
+
+    @Test
+    void concurrentAppendsAndReadsKeepTheCounter() throws Exception {
+        User user = TestDatabase.createUser();
+        int threads = 4;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            boolean reader = t % 2 == 1;
+            done.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 25; i++) {
+                    if (reader) {
+                        List<InboxNotification> page = dao.fetchSince(user.getUserId(), 0, 3);
+                        List<Long> ids = new ArrayList<>();
+                        page.forEach(n -> ids.add(n.getNotificationId()));
+                        dao.markRead(user.getUserId(), ids);
+                    } else {
+                        dao.append("TICKET_READY", "TICKET_READY|" + i, to(user));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : done) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(actualUnread(user), dao.unreadCount(user.getUserId()));
+        assertEquals(0, dao.markRead(user.getUserId(), null));
+        assertConsistent(user, 0);
+    }
+
+    private static Map<String, String> to(User user) {
+        return Map.of("userId", String.valueOf(user.getUserId()), "targetRole", "customer");
+    }
+
+    private void assertConsistent(User user, int unread) throws Exception {
+        assertEquals(unread, actualUnread(user), "unread rows");
+        assertEquals(unread, dao.unreadCount(user.getUserId()), "unread counter");
+    }
+
+    private static int actualUnread(User user) throws Exception {
+        return count("SELECT COUNT(*) FROM notification_inbox WHERE read_at IS NULL AND user_id = " + user.getUserId());
+    }
+
+    private static int admins() throws Exception {
+        return count("SELECT COUNT(*) FROM users WHERE user_role = 'admin' AND account_status = 'active'");
+    }
+
+    private static int count(String sql) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void execute(String sql) throws Exception {
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import model.Booking;
+import model.Event;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Booking insert throughput through BookingDao.persistReservations with pooled-lo
+ * sequence ids: JDBC batching on (hibernate.jdbc.batch_size) against one round trip
+ * per row, which is what IDENTITY ids forced before.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args=InsertBatchBenchmark
+ *
+ * @author 27066
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 8, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+public class InsertBatchBenchmark {
+
+    // Rows per transaction, as in a large group booking or a ledger flush
+    private static final int ROWS = 500;
+
+    // 1 = every insert its own statement round trip; 50 = hibernate.cfg.xml
+    @Param({"1", "50"})
+    public int batchSize;
+
+    private final BookingDao dao = new BookingDao();
+    private Event event;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        TestDatabase.start();
+        event = TestDatabase.createEvent(10000, 10.0);
+        user = TestDatabase.createUser();
+    }
+
+    @Setup(Level.Iteration)
+    public void refillSeats() throws Exception {
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            st.executeUpdate("UPDATE events SET remaining_capacity = 100000000 WHERE event_id = " + event.getEventId());
+        }
+    }
+
+    /**
+     * One op = one transaction inserting ROWS bookings; rows/s = ops/s x ROWS
+     */
+    @Benchmark
+    public List<Booking> insertBookings() {
+        List<Booking> reservations = new ArrayList<>(ROWS);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < ROWS; i++) {
+            Booking booking = new Booking();
+            booking.setEventId(event.getEventId());
+            booking.setUserId(user.getUserId());
+            booking.setPaymentStatus("pending");
+            booking.setTicketNumber(dao.generateTicketNumber());
+            booking.setNumberOfTickets(1);
+            booking.setTotalAmount(10.0);
+            booking.setBookingDate(now);
+            reservations.add(booking);
+        }
+        return UnitOfWork.execute(ss -> {
+            ss.setJdbcBatchSize(batchSize);
+            return dao.persistReservations(reservations);
+        });
+    }
+}
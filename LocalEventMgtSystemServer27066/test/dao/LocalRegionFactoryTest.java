@@ -0,0 +1,94 @@
+package dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import model.User;
+import model.Venue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * LocalRegionFactory regions on their own, and the venue and user regions
+ * against the embedded database
+ *
+ * @author 27066
+ */
+class LocalRegionFactoryTest {
+
+    private final VenueDao venues = new VenueDao();
+    private final UserDao users = new UserDao();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        LocalRegionFactory.LocalStorage region = new LocalRegionFactory.LocalStorage("lru", 2, 0);
+        region.putIntoCache(1, "one", null);
+        region.putIntoCache(2, "two", null);
+        assertEquals("one", region.getFromCache(1, null));
+
+        // 2 is now the least recently used
+        region.putIntoCache(3, "three", null);
+        assertTrue(region.contains(1));
+        assertFalse(region.contains(2));
+        assertTrue(region.contains(3));
+        assertNull(region.getFromCache(2, null));
+        assertEquals("lru{size=2, hits=1, misses=1, hitRatio=50.0%, puts=3, evictions=1}", region.getStatistics());
+    }
+
+    @Test
+    void entriesExpireAfterTheirTtl() throws Exception {
+        LocalRegionFactory.LocalStorage region = new LocalRegionFactory.LocalStorage("ttl", 10, 1);
+        region.putIntoCache(1, "one", null);
+        assertEquals("one", region.getFromCache(1, null));
+
+        Thread.sleep(1100);
+        assertFalse(region.contains(1));
+        assertNull(region.getFromCache(1, null));
+        assertEquals("ttl{size=0, hits=1, misses=1, hitRatio=50.0%, puts=1, evictions=1}", region.getStatistics());
+    }
+
+    @Test
+    void venueUpdateReplacesTheCachedVenue() throws Exception {
+        Venue venue = venues.findVenueById(TestDatabase.createEvent(10, 10.0).getVenue().getVenueId());
+        int venueId = venue.getVenueId();
+        String name = venue.getVenueName();
+
+        // A change made outside Hibernate is not seen while the entry is cached
+        execute("UPDATE venues SET venue_name = 'Renamed in psql' WHERE venue_id = " + venueId);
+        assertEquals(name, venues.findVenueById(venueId).getVenueName());
+
+        venue.setVenueName("Kigali Arena");
+        assertNotNull(venues.updateVenue(venue));
+        assertEquals("Kigali Arena", venues.findVenueById(venueId).getVenueName());
+        assertTrue(LocalRegionFactory.getStatistics().contains("venue{"), LocalRegionFactory.getStatistics());
+    }
+
+    @Test
+    void userUpdateReplacesTheCachedUser() throws Exception {
+        User user = users.findUserById(TestDatabase.createUser());
+        String fullName = user.getFullName();
+
+        execute("UPDATE users SET full_name = 'Renamed in psql' WHERE user_id = " + user.getUserId());
+        assertEquals(fullName, users.findUserById(user).getFullName());
+
+        user.setFullName("Renamed by UserDao");
+        assertNotNull(users.updateUser(user));
+        assertEquals("Renamed by UserDao", users.findUserById(user).getFullName());
+    }
+
+    private static void execute(String sql) throws Exception {
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+}
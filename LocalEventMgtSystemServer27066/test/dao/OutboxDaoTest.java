@@ -0,0 +1,237 @@
+package dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import model.OutboxMessage;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * OutboxDao claims, settling and purging against the embedded database
+ *
+ * @author 27066
+ */
+class OutboxDaoTest {
+
+    private final OutboxDao dao = new OutboxDao();
+    private final String marker = "OUTBOX_TEST|" + UUID.randomUUID() + "|";
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @BeforeEach
+    void parkOtherRows() throws Exception {
+        // Rows other tests left pending would otherwise be claimed along with this test's
+        execute("UPDATE notification_outbox SET failed_at = LOCALTIMESTAMP WHERE delivered_at IS NULL AND failed_at IS NULL");
+    }
+
+    @Test
+    void concurrentClaimsAreDisjoint() throws Exception {
+        List<Long> appended = append(300);
+        int relays = 4;
+        CyclicBarrier start = new CyclicBarrier(relays);
+        ExecutorService pool = Executors.newFixedThreadPool(relays);
+        List<Future<List<OutboxMessage>>> claims = new ArrayList<>();
+        for (int r = 0; r < relays; r++) {
+            claims.add(pool.submit(() -> {
+                List<OutboxMessage> mine = new ArrayList<>();
+                start.await();
+                List<OutboxMessage> batch;
+                while (!(batch = dao.claim(25, 60)).isEmpty()) {
+                    mine.addAll(batch);
+                }
+                return mine;
+            }));
+        }
+        List<Long> claimed = new ArrayList<>();
+        for (Future<List<OutboxMessage>> claim : claims) {
+            for (OutboxMessage row : claim.get()) {
+                assertEquals(1, row.getAttempts());
+                claimed.add(row.getOutboxId());
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(new HashSet<>(claimed).size(), claimed.size(), "a row was claimed twice");
+        Collections.sort(claimed);
+        assertEquals(appended, claimed);
+    }
+
+    @Test
+    void rowsLockedByAnotherTransactionAreSkipped() throws Exception {
+        List<Long> appended = append(5);
+        try (Connection other = TestDatabase.connect()) {
+            other.setAutoCommit(false);
+            try (PreparedStatement ps = other.prepareStatement(
+                    "SELECT outbox_id FROM notification_outbox WHERE outbox_id IN (?, ?) FOR UPDATE")) {
+                ps.setLong(1, appended.get(0));
+                ps.setLong(2, appended.get(1));
+                ps.executeQuery().close();
+            }
+
+            // No waiting on the held locks: the rest of the batch is claimed at once
+            List<OutboxMessage> claimed = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> dao.claim(10, 60));
+            assertEquals(appended.subList(2, 5), ids(claimed));
+            other.rollback();
+        }
+        assertEquals(appended.subList(0, 2), ids(dao.claim(10, 60)));
+    }
+
+    @Test
+    void expiredLeaseIsClaimedAgain() throws Exception {
+        long id = append(1).get(0);
+        assertEquals(List.of(id), ids(dao.claim(10, 1)));
+        assertTrue(dao.claim(10, 1).isEmpty(), "leased row claimed again");
+
+        // The relay holding it died: once the lease runs out another relay takes it
+        long deadline = System.currentTimeMillis() + 5000;
+        List<OutboxMessage> reclaimed;
+        while ((reclaimed = dao.claim(10, 60)).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(List.of(id), ids(reclaimed));
+        assertEquals(2, reclaimed.get(0).getAttempts());
+    }
+
+    @Test
+    void failedRowsBackOffThenAreDeadLettered() throws Exception {
+        long id = append(1).get(0);
+        int maxAttempts = 3;
+
+        // 60s after the first attempt, doubled after the second but capped at 90s
+        assertEquals(0, dao.settle(dao.claim(10, 60), List.of(), maxAttempts, 60_000, 90_000));
+        assertEquals(60, secondsUntilDue(id), 2);
+        makeDue(id);
+        assertEquals(0, dao.settle(dao.claim(10, 60), List.of(), maxAttempts, 60_000, 90_000));
+        assertEquals(90, secondsUntilDue(id), 2);
+        assertTrue(dao.claim(10, 60).isEmpty(), "row claimed before its retry time");
+
+        // The last allowed attempt fails too: the row is set aside for good
+        makeDue(id);
+        List<OutboxMessage> last = dao.claim(10, 60);
+        assertEquals(maxAttempts, last.get(0).getAttempts());
+        assertEquals(1, dao.settle(last, List.of(), maxAttempts, 60_000, 90_000));
+        assertNotNull(column(id, "failed_at"));
+        assertNull(column(id, "delivered_at"));
+        makeDue(id);
+        assertTrue(dao.claim(10, 60).isEmpty(), "dead-lettered row claimed");
+    }
+
+    @Test
+    void deliveredRowsAreSettledThenPurged() throws Exception {
+        List<Long> appended = append(3);
+        List<OutboxMessage> claimed = dao.claim(10, 60);
+
+        // The broker confirmed two of the three
+        assertEquals(0, dao.settle(claimed, appended.subList(0, 2), 10, 1000, 300_000));
+        assertNotNull(column(appended.get(0), "delivered_at"));
+        assertNotNull(column(appended.get(1), "delivered_at"));
+        assertNull(column(appended.get(2), "delivered_at"));
+        for (long id : appended) {
+            makeDue(id);
+        }
+        assertEquals(appended.subList(2, 3), ids(dao.claim(10, 60)));
+
+        // Only rows delivered before the retention window go
+        execute("UPDATE notification_outbox SET delivered_at = LOCALTIMESTAMP - interval '25 hours' WHERE outbox_id = "
+            + appended.get(0));
+        assertTrue(dao.purgeDelivered(24) >= 1);
+        assertFalse(exists(appended.get(0)));
+        assertTrue(exists(appended.get(1)));
+        assertTrue(exists(appended.get(2)));
+    }
+
+    @Test
+    void propertiesRoundTrip() {
+        Map<String, String> properties = Map.of("notificationType", "NEW_BOOKING", "targetRole", "admin", "bookingId", "42");
+        assertEquals(properties, OutboxDao.decode(OutboxDao.encode(properties)));
+        assertTrue(OutboxDao.decode(null).isEmpty());
+        assertTrue(OutboxDao.decode("").isEmpty());
+    }
+
+    // Appends count rows in one transaction and returns their ids in order
+    private List<Long> append(int count) throws Exception {
+        UnitOfWork.execute(ss -> {
+            for (int i = 0; i < count; i++) {
+                assertTrue(dao.append("OUTBOX_TEST", marker + i, Map.of("targetRole", "admin")));
+            }
+            return null;
+        });
+        List<Long> ids = new ArrayList<>();
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(
+                 "SELECT outbox_id FROM notification_outbox WHERE body LIKE ? ORDER BY outbox_id")) {
+            ps.setString(1, marker + "%");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        assertEquals(count, ids.size());
+        return ids;
+    }
+
+    private static List<Long> ids(List<OutboxMessage> rows) {
+        List<Long> ids = new ArrayList<>();
+        for (OutboxMessage row : rows) {
+            ids.add(row.getOutboxId());
+        }
+        return ids;
+    }
+
+    private static void makeDue(long id) throws Exception {
+        execute("UPDATE notification_outbox SET available_at = NULL WHERE outbox_id = " + id);
+    }
+
+    private static double secondsUntilDue(long id) throws Exception {
+        return ((Number) query("SELECT EXTRACT(EPOCH FROM available_at - LOCALTIMESTAMP) FROM notification_outbox "
+            + "WHERE outbox_id = " + id)).doubleValue();
+    }
+
+    private static Object column(long id, String column) throws Exception {
+        return query("SELECT " + column + " FROM notification_outbox WHERE outbox_id = " + id);
+    }
+
+    private static boolean exists(long id) throws Exception {
+        return (Boolean) query("SELECT EXISTS (SELECT 1 FROM notification_outbox WHERE outbox_id = " + id + ")");
+    }
+
+    private static Object query(String sql) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getObject(1);
+        }
+    }
+
+    private static void execute(String sql) throws Exception {
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package dao;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Event;
+import model.User;
+import model.Venue;
+
+/**
+ * Embedded PostgreSQL shared by the tests and benchmarks, started once per JVM.
+ * HibernateUtil is pointed at it before first use, so the schema is built the way
+ * an existing database is upgraded: hbm2ddl update, then SchemaMigration.
+ *
+ * @author 27066
+ */
+public final class TestDatabase {
+
+    private static final AtomicInteger names = new AtomicInteger();
+    private static EmbeddedPostgres postgres;
+
+    private TestDatabase() {}
+
+    public static synchronized void start() throws IOException {
+        if (postgres != null) {
+            return;
+        }
+        postgres = EmbeddedPostgres.start();
+        System.setProperty("hibernate.connection.url", postgres.getJdbcUrl("postgres", "postgres"));
+        System.setProperty("hibernate.connection.username", "postgres");
+        System.setProperty("hibernate.connection.password", "");
+        HibernateUtil.getSessionFactory();
+    }
+
+    public static Connection connect() throws SQLException {
+        return postgres.getPostgresDatabase().getConnection();
+    }
+
+    public static User createUser() {
+        int n = names.incrementAndGet();
+        User user = new User();
+        user.setUsername("user" + n);
+        user.setPassword("secret");
+        user.setEmail("user" + n + "@example.com");
+        user.setFullName("Test User " + n);
+        user.setUserRole("customer");
+        user.setAccountStatus("active");
+        return UnitOfWork.execute(ss -> {
+            ss.save(user);
+            return user;
+        });
+    }
+
+    // A scheduled single-price event in its own venue, with every seat unsold
+    public static Event createEvent(int capacity, double ticketPrice) {
+        User organizer = createUser();
+        int n = names.incrementAndGet();
+        Venue venue = new Venue();
+        venue.setVenueName("Venue " + n);
+        venue.setLocation("Kigali");
+        venue.setCapacity(10000);
+        venue.setRentalCost(100);
+        UnitOfWork.execute(ss -> {
+            ss.save(venue);
+            return venue;
+        });
+
+        Event event = new Event();
+        event.setEventName("Event " + n);
+        event.setEventDate(new Date(System.currentTimeMillis() + 30L * 24 * 3600 * 1000));
+        event.setEventTime(Time.valueOf("18:00:00"));
+        event.setVenue(venue);
+        event.setOrganizer(organizer);
+        event.setCapacity(capacity);
+        event.setTicketPrice(ticketPrice);
+        event.setPricingType("single");
+        event.setStatus("scheduled");
+        return new EventDao().createEvent(event);
+    }
+}
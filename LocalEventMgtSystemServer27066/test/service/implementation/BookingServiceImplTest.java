@@ -0,0 +1,124 @@
+package service.implementation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dao.BookingDao;
+import dao.EventDao;
+import dao.TestDatabase;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Booking;
+import model.Event;
+import model.PaymentTransition;
+import model.ReservationResult;
+import model.StatusChange;
+import model.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.CapacityLedger;
+
+/**
+ * BookingServiceImpl against the embedded database
+ *
+ * @author 27066
+ */
+class BookingServiceImplTest {
+
+    private static BookingServiceImpl service;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+        service = new BookingServiceImpl();
+    }
+
+    @AfterAll
+    static void unexport() throws Exception {
+        UnicastRemoteObject.unexportObject(service, true);
+    }
+
+    @Test
+    void reservationsFillAnEventExactly() throws Exception {
+        int capacity = 40;
+        int threads = 8;
+        Event event = TestDatabase.createEvent(capacity, 10.0);
+        User user = TestDatabase.createUser();
+
+        // Every client keeps asking for one seat until the server says the event is full
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            done.add(pool.submit(() -> {
+                go.await();
+                while (true) {
+                    ReservationResult result = service.reserveTickets(event.getEventId(), user.getUserId(), 1, null);
+                    if (!result.isAccepted()) {
+                        assertTrue(result.getMessage().startsWith("Not enough tickets"), result.getMessage());
+                        return null;
+                    }
+                    sold.incrementAndGet();
+                }
+            }));
+        }
+        go.countDown();
+        for (Future<?> f : done) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(capacity, sold.get());
+        assertEquals(0, new EventDao().getAvailableCapacity(event.getEventId()));
+        ReservationResult full = service.reserveTickets(event.getEventId(), user.getUserId(), 1, null);
+        assertFalse(full.isAccepted());
+        assertEquals(0, full.getRemainingCapacity());
+        assertEquals(capacity, service.findBookingsByUser(user.getUserId()).stream()
+            .filter(b -> b.getEventId() == event.getEventId()).mapToInt(b -> b.getNumberOfTickets()).sum());
+    }
+
+    @Test
+    void ledgerReactivationWithoutSeatsIsRolledBack() throws Exception {
+        Event event = TestDatabase.createEvent(3, 10.0);
+        User user = TestDatabase.createUser();
+        Booking booking = new BookingDao().reserveTickets(event.getEventId(), user.getUserId(), 2, null).getBooking();
+
+        System.setProperty("booking.ledger", "true");
+        try {
+            assertTrue(service.transitionPaymentStatus(booking.getBookingId(), "pending", "cancelled").isApplied());
+
+            // Held by the ledger as a queued reservation would be: the database still shows all 3 seats as free
+            CapacityLedger ledger = CapacityLedger.getInstance();
+            assertTrue(ledger.take(event.getEventId(), 2));
+            assertEquals(1, ledger.getRemaining(event.getEventId()));
+
+            PaymentTransition rejected = service.transitionPaymentStatus(booking.getBookingId(), "cancelled", "paid");
+            assertFalse(rejected.isApplied());
+            assertEquals("cancelled", rejected.getCurrentStatus());
+            assertTrue(rejected.getMessage().startsWith("Not enough tickets"), rejected.getMessage());
+            assertEquals("cancelled", new BookingDao().findPaymentStatus(booking.getBookingId()));
+            assertEquals(3, new EventDao().getAvailableCapacity(event.getEventId()));
+            assertEquals(1, ledger.getRemaining(event.getEventId()));
+
+            // Once the seats are free again the same reactivation goes through, in the ledger and the database
+            ledger.release(event.getEventId(), 2);
+            List<PaymentTransition> applied = service.applyPaymentStatuses(
+                List.of(new StatusChange(booking.getBookingId(), "cancelled", "paid")));
+            assertTrue(applied.get(0).isApplied(), applied.get(0).getMessage());
+            assertEquals("paid", new BookingDao().findPaymentStatus(booking.getBookingId()));
+            assertEquals(1, new EventDao().getAvailableCapacity(event.getEventId()));
+            assertEquals(1, ledger.getRemaining(event.getEventId()));
+        } finally {
+            System.clearProperty("booking.ledger");
+        }
+    }
+}
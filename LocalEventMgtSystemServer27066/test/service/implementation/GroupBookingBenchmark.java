@@ -0,0 +1,109 @@
+package service.implementation;
+
+import dao.TestDatabase;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import model.Booking;
+import model.Event;
+import model.GroupReservationResult;
+import model.ReservationResult;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A corporate block of bookings across three events through BookingServiceImpl:
+ * one createBookings call (grouped capacity claim, batched inserts, one admin
+ * notification) against a loop of reserveTickets calls (a transaction, a claim,
+ * an insert and a notification per booking). Notifications go the default way
+ * for the build, through the inbox and outbox tables.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args=GroupBookingBenchmark
+ *
+ * @author 27066
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+public class GroupBookingBenchmark {
+
+    // Bookings in the block
+    @Param({"10", "100", "500"})
+    public int bookings;
+
+    private BookingServiceImpl service;
+    private final List<Event> events = new ArrayList<>();
+    private final List<Booking> requests = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        TestDatabase.start();
+        service = new BookingServiceImpl();
+        for (int i = 0; i < 3; i++) {
+            events.add(TestDatabase.createEvent(10000, 5000.0 * (i + 1)));
+        }
+        User user = TestDatabase.createUser();
+        for (int i = 0; i < bookings; i++) {
+            Booking request = new Booking();
+            request.setEventId(events.get(i % events.size()).getEventId());
+            request.setUserId(user.getUserId());
+            request.setNumberOfTickets(1 + i % 4);
+            requests.add(request);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void refillSeats() throws Exception {
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            for (Event event : events) {
+                st.executeUpdate("UPDATE events SET remaining_capacity = 100000000 WHERE event_id = " + event.getEventId());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void unexport() throws Exception {
+        UnicastRemoteObject.unexportObject(service, true);
+    }
+
+    @Benchmark
+    public GroupReservationResult createBookings() throws Exception {
+        GroupReservationResult result = service.createBookings(requests);
+        if (!result.isAccepted()) {
+            throw new IllegalStateException(result.getMessage());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<ReservationResult> reserveTicketsLoop() throws Exception {
+        List<ReservationResult> results = new ArrayList<>(bookings);
+        for (Booking request : requests) {
+            ReservationResult result = service.reserveTickets(request.getEventId(), request.getUserId(),
+                request.getNumberOfTickets(), null);
+            if (!result.isAccepted()) {
+                throw new IllegalStateException(result.getMessage());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+}
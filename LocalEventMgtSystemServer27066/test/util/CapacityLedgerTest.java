@@ -0,0 +1,103 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dao.TestDatabase;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import model.Booking;
+import model.Event;
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * CapacityLedger write-behind against the embedded database
+ *
+ * @author 27066
+ */
+class CapacityLedgerTest {
+
+    private static final Path DEAD_LETTERS = Paths.get(
+        System.getProperty("booking.ledger.deadLetterFile", "capacity-ledger-unflushed.tsv"));
+
+    private final CapacityLedger ledger = CapacityLedger.getInstance();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @AfterEach
+    void stopLedger() throws Exception {
+        ledger.stop();
+        Files.deleteIfExists(DEAD_LETTERS);
+    }
+
+    @Test
+    void unwritableReservationKeepsItsSeatsUntilWritten() throws Exception {
+        Event event = TestDatabase.createEvent(5, 10.0);
+        User user = TestDatabase.createUser();
+        ledger.start();
+
+        // The second row can never be inserted: its user does not exist
+        Booking written = ledger.reserve(event.getEventId(), user.getUserId(), 2, null);
+        Booking stuck = ledger.reserve(event.getEventId(), Integer.MAX_VALUE, 2, null);
+        assertNotNull(written);
+        assertNotNull(stuck);
+        awaitBookedTickets(event, 2);
+        awaitRetrying(1);
+        assertEquals(1, ledger.getRemaining(event.getEventId()), "the failed reservation must keep its seats");
+        assertEquals(0, ledger.getPendingCount());
+
+        // Shutdown makes one last attempt, then records the row instead of dropping it
+        ledger.stop();
+        List<String> lines = Files.readAllLines(DEAD_LETTERS);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith(stuck.getTicketNumber() + "\t" + event.getEventId() + "\t"), lines.get(0));
+
+        // The next start queues it again against the reconciled counter
+        ledger.start();
+        assertFalse(Files.exists(DEAD_LETTERS));
+        assertEquals(1, ledger.getRemaining(event.getEventId()));
+        awaitRetrying(1);
+        assertEquals(2, bookedTickets(event));
+    }
+
+    private void awaitRetrying(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ledger.getRetryingCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, ledger.getRetryingCount(), "reservations being retried");
+    }
+
+    private static void awaitBookedTickets(Event event, int tickets) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (bookedTickets(event) != tickets && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(tickets, bookedTickets(event), "tickets in bookings");
+    }
+
+    private static int bookedTickets(Event event) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(
+                 "SELECT COALESCE(SUM(number_of_tickets), 0) FROM bookings WHERE event_id = ?")) {
+            ps.setInt(1, event.getEventId());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
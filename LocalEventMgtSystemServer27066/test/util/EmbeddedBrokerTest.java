@@ -0,0 +1,203 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dao.TestDatabase;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.Topic;
+import model.Booking;
+import model.Event;
+import model.OutboxMessage;
+import model.User;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * NotificationService through the in-VM EmbeddedBroker to selector subscribers,
+ * the way desktops subscribe
+ *
+ * @author 27066
+ */
+class EmbeddedBrokerTest {
+
+    @BeforeAll
+    static void startDatabaseAndBroker() throws Exception {
+        TestDatabase.start();
+        EmbeddedBroker.start();
+    }
+
+    @AfterEach
+    void stopRelay() {
+        OutboxRelay.getInstance().stop();
+    }
+
+    @Test
+    void customerNotificationReachesOnlyItsUser() throws Exception {
+        assertTrue(EmbeddedBroker.isRunning());
+        Event event = TestDatabase.createEvent(10, 2500.0);
+        User customer = TestDatabase.createUser();
+        User other = TestDatabase.createUser();
+        Booking booking = new Booking();
+        booking.setBookingId(700_001);
+        booking.setTicketNumber("TKT-EMBEDDED-" + customer.getUserId());
+
+        Connection connection = new ActiveMQConnectionFactory(EmbeddedBroker.getVmUrl()).createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Topic customers = session.createTopic("notifications.customer");
+            MessageConsumer mine = session.createConsumer(customers,
+                "targetRole = 'customer' AND userId = '" + customer.getUserId() + "'");
+            MessageConsumer theirs = session.createConsumer(customers,
+                "targetRole = 'customer' AND userId = '" + other.getUserId() + "'");
+
+            // Written to the outbox, then published by the relay over the in-VM transport
+            NotificationService.getInstance().sendTicketReadyNotification(booking, customer, event);
+            OutboxRelay.getInstance().start();
+
+            Message received = mine.receive(15_000);
+            assertNotNull(received, "no notification for the customer");
+            assertEquals(String.valueOf(customer.getUserId()), received.getStringProperty("userId"));
+            assertEquals(1, received.getIntProperty("notificationCount"));
+            List<String> bodies = bodies((BytesMessage) received);
+            assertEquals(1, bodies.size());
+            assertTrue(bodies.get(0).startsWith("TICKET_READY|700001|" + booking.getTicketNumber() + "|"), bodies.get(0));
+            assertTrue(bodies.get(0).endsWith("|" + event.getEventName()), bodies.get(0));
+
+            // The selector keeps it away from every other customer
+            assertNull(theirs.receive(500));
+        } finally {
+            connection.close();
+        }
+        assertTrue(EmbeddedBroker.getStatistics().contains("enqueued="), EmbeddedBroker.getStatistics());
+    }
+
+    @Test
+    void senderBatchesPackOneMessagePerRecipient() throws Exception {
+        User customer = TestDatabase.createUser();
+        int bookings = 200;
+        List<OutboxMessage> rows = new ArrayList<>();
+        Set<String> expected = new HashSet<>();
+        for (int b = 1; b <= bookings; b++) {
+            for (String type : new String[] {"PAYMENT_CONFIRMED", "TICKET_READY", "BOOKING_APPROVED"}) {
+                String body = type + "|" + (800_000 + b) + "|TKT-BATCH-" + b + "|" + customer.getUserId();
+                rows.add(row(rows.size() + 1, type, body, "notificationType=" + type + "\nuserId=" + customer.getUserId()
+                    + "\nbookingId=" + (800_000 + b) + "\ntargetRole=customer"));
+                expected.add(body);
+            }
+        }
+
+        Connection connection = new ActiveMQConnectionFactory(EmbeddedBroker.getVmUrl()).createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer mine = session.createConsumer(session.createTopic("notifications.customer"),
+                "targetRole = 'customer' AND userId = '" + customer.getUserId() + "'");
+
+            // Every row is confirmed by a sender's session commit
+            Collection<Long> delivered = NotificationService.getInstance().deliver(rows);
+            assertEquals(rows.size(), delivered.size());
+
+            // Each sender batch becomes one envelope for this customer, a booking's three notifications one group
+            Set<String> received = new HashSet<>();
+            int messages = 0;
+            int grouped = 0;
+            Message message;
+            while (received.size() < expected.size() && (message = mine.receive(5000)) != null) {
+                messages++;
+                byte[] envelope = new byte[(int) ((BytesMessage) message).getBodyLength()];
+                ((BytesMessage) message).readBytes(envelope);
+                NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader().reset(envelope, envelope.length);
+                assertEquals(message.getIntProperty("notificationCount"), reader.count());
+                while (reader.next()) {
+                    grouped += reader.isGrouped() ? 1 : 0;
+                    assertTrue(received.add(reader.appendBody(new StringBuilder()).toString()), "received twice");
+                }
+            }
+            assertEquals(expected, received);
+            assertTrue(messages <= rows.size() / 10, messages + " messages for " + rows.size() + " notifications");
+            assertTrue(grouped > 0, "no notifications were coalesced");
+            assertNull(mine.receive(500));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    void audiencesStayOnTheirTopicsAndDurableSubscribersCatchUp() throws Exception {
+        User admin = TestDatabase.createUser();
+        User customer = TestDatabase.createUser();
+        String adminBody = "NEW_BOOKING|Kigali Jazz Night|" + admin.getUserId();
+        String customerBody = "TICKET_READY|900001|TKT-TOPIC-" + customer.getUserId() + "|" + customer.getUserId();
+        List<OutboxMessage> rows = List.of(
+            row(1, "NEW_BOOKING", adminBody, "notificationType=NEW_BOOKING\ntargetRole=admin"),
+            row(2, "TICKET_READY", customerBody, "notificationType=TICKET_READY\nuserId=" + customer.getUserId()
+                + "\ntargetRole=customer"));
+
+        Connection connection = new ActiveMQConnectionFactory(EmbeddedBroker.getVmUrl()).createConnection();
+        try {
+            // Subscribed the way the desktops subscribe, then the admin desktop goes offline
+            connection.setClientID("event-desktop-" + admin.getUserId());
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Topic admins = session.createTopic("notifications.admin");
+            String subscription = "admin-" + admin.getUserId();
+            session.createDurableSubscriber(admins, subscription, "targetRole = 'admin'", false).close();
+            MessageConsumer customers = session.createConsumer(session.createTopic("notifications.customer"),
+                "targetRole = 'customer' AND (userId IS NULL OR userId = '" + customer.getUserId() + "')");
+
+            assertEquals(rows.size(), NotificationService.getInstance().deliver(rows).size());
+
+            // The customer topic carries only customer traffic
+            Message received = customers.receive(5000);
+            assertNotNull(received, "no notification for the customer");
+            assertEquals(List.of(customerBody), bodies((BytesMessage) received));
+            assertNull(customers.receive(500));
+
+            // The broker kept the admin broadcast for the offline subscription, and nothing else
+            MessageConsumer reconnected = session.createDurableSubscriber(admins, subscription, "targetRole = 'admin'", false);
+            received = reconnected.receive(5000);
+            assertNotNull(received, "admin broadcast not kept for the durable subscription");
+            assertEquals("admin", received.getStringProperty("targetRole"));
+            assertEquals(List.of(adminBody), bodies((BytesMessage) received));
+            assertNull(reconnected.receive(500));
+            reconnected.close();
+            session.unsubscribe(subscription);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static OutboxMessage row(long id, String type, String body, String properties) {
+        OutboxMessage row = new OutboxMessage(type, body, properties);
+        row.setOutboxId(id);
+        row.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        return row;
+    }
+
+    private static List<String> bodies(BytesMessage message) throws Exception {
+        byte[] envelope = new byte[(int) message.getBodyLength()];
+        message.readBytes(envelope);
+        NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader().reset(envelope, envelope.length);
+        List<String> bodies = new ArrayList<>();
+        while (reader.next()) {
+            bodies.add(reader.appendBody(new StringBuilder()).toString());
+        }
+        return bodies;
+    }
+}
@@ -0,0 +1,60 @@
+package util;
+
+import dao.EventDao;
+import dao.TestDatabase;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import model.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scheduled-events read latency under 8 concurrent readers: the EventCatalogue
+ * snapshot against the HQL query findScheduledEvents() ran on every dashboard load.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args=EventCatalogueBenchmark
+ *
+ * @author 27066
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+@Threads(8)
+public class EventCatalogueBenchmark {
+
+    private static final int EVENTS = 200;
+
+    private final EventDao eventDao = new EventDao();
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        TestDatabase.start();
+        for (int i = 0; i < EVENTS; i++) {
+            TestDatabase.createEvent(500, 10.0);
+        }
+        EventCatalogue.getInstance().start();
+    }
+
+    @Benchmark
+    public List<Event> snapshot() {
+        return EventCatalogue.getInstance().getScheduledEvents();
+    }
+
+    @Benchmark
+    public List<Event> database() {
+        return eventDao.findScheduledEvents();
+    }
+}
@@ -0,0 +1,106 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import dao.EventDao;
+import dao.TestDatabase;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import model.Event;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * EventExpirySweeper against the embedded database
+ *
+ * @author 27066
+ */
+class EventExpirySweeperTest {
+
+    private final EventExpirySweeper sweeper = EventExpirySweeper.getInstance();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @AfterEach
+    void stopSweeper() {
+        sweeper.stop();
+    }
+
+    @Test
+    void startedEventsAreNoticedOnceAcrossRestarts() throws Exception {
+        Event first = started(TestDatabase.createEvent(10, 10.0));
+        Event second = started(TestDatabase.createEvent(10, 10.0));
+        Event upcoming = TestDatabase.createEvent(10, 10.0);
+
+        sweeper.start();
+        Timestamp firstNotice = awaitNotified(first);
+        awaitNotified(second);
+        assertNull(notifiedAt(upcoming));
+        assertEquals(1, notices(first));
+        assertEquals(1, notices(second));
+
+        // A restarted server loads only events without expiry_notified_at, and an edit that
+        // keeps the past start reschedules the event but finds its notice already sent
+        sweeper.stop();
+        sweeper.start();
+        sweeper.eventChanged(new EventDao().findEventById(first.getEventId()));
+        Thread.sleep(1000);
+        assertEquals(1, notices(first));
+        assertEquals(1, notices(second));
+        assertEquals(firstNotice, notifiedAt(first));
+        assertNull(notifiedAt(upcoming));
+    }
+
+    // Moves the event's start to a minute ago
+    private static Event started(Event event) throws Exception {
+        try (Connection connection = TestDatabase.connect(); Statement st = connection.createStatement()) {
+            st.executeUpdate("UPDATE events SET event_date = (LOCALTIMESTAMP - interval '1 minute')::date, " +
+                "event_time = (LOCALTIMESTAMP - interval '1 minute')::time WHERE event_id = " + event.getEventId());
+        }
+        return event;
+    }
+
+    private static Timestamp awaitNotified(Event event) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (notifiedAt(event) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Timestamp notifiedAt = notifiedAt(event);
+        assertNotNull(notifiedAt, "no expiry notice for event " + event.getEventId());
+        return notifiedAt;
+    }
+
+    private static Timestamp notifiedAt(Event event) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(
+                 "SELECT expiry_notified_at FROM events WHERE event_id = ?")) {
+            ps.setInt(1, event.getEventId());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getTimestamp(1);
+            }
+        }
+    }
+
+    // EVENT_EXPIRED messages written to the outbox for the event
+    private static int notices(Event event) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(
+                 "SELECT COUNT(*) FROM notification_outbox WHERE body LIKE ?")) {
+            ps.setString(1, "EVENT_EXPIRED|" + event.getEventId() + "|%");
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.command.CommandTypes;
+import org.apache.activemq.command.MessageId;
+import org.apache.activemq.openwire.OpenWireFormat;
+import org.apache.activemq.util.ByteSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Notifications for one customer (payment confirmed, ticket ready and booking approved
+ * for each booking) sent the old way, one TextMessage per notification with its
+ * properties, against one BytesMessage holding a NotificationEnvelope. Both are
+ * marshalled to OpenWire (tight encoding, no string cache) as the producer's connection
+ * would send them; encode covers building and marshalling, decode covers unmarshalling
+ * and reading every body back as text. Wire bytes per notification are printed in setup.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args=NotificationEnvelopeBenchmark
+ *
+ * @author 27066
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationEnvelopeBenchmark {
+
+    private static final ActiveMQTopic TOPIC = new ActiveMQTopic("notifications.customer");
+    private static final String[] EVENTS = {"Kigali Jazz Night", "Umuganda Food Festival", "Lake Kivu Half Marathon"};
+
+    // Notifications per send, as one sender batch for one recipient
+    @Param({"1", "9", "99"})
+    public int notifications;
+
+    private final OpenWireFormat wire = new OpenWireFormat(CommandTypes.PROTOCOL_VERSION);
+    private final NotificationEnvelope.Writer writer = new NotificationEnvelope.Writer();
+    private final NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader();
+    private final StringBuilder body = new StringBuilder(256);
+    private byte[] buffer = new byte[1024];
+    private long sequence;
+
+    private final List<String> bodies = new ArrayList<>();
+    private final List<String> types = new ArrayList<>();
+    private final List<String> bookingIds = new ArrayList<>();
+    private List<ByteSequence> textWire;
+    private ByteSequence envelopeWire;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        wire.setTightEncodingEnabled(true);
+        for (int booking = 1; bodies.size() < notifications; booking++) {
+            String ticket = String.format("TKT-%013X", 0x2F8A4C10000L + booking * 7919L);
+            String event = EVENTS[booking % EVENTS.length];
+            String amount = String.format("%.2f", 5000.0 * (1 + booking % 4));
+            add("PAYMENT_CONFIRMED", booking, String.format("PAYMENT_CONFIRMED|%d|%s|%s|%s|%s|%s|%s|%s",
+                booking, ticket, "aline.uwase@example.com", "0788123456", "Aline Uwase", event, amount, "paid"));
+            add("TICKET_READY", booking, String.format("TICKET_READY|%d|%s|%s|%s|%s|%s",
+                booking, ticket, "aline.uwase@example.com", "0788123456", "Aline Uwase", event));
+            add("BOOKING_APPROVED", booking, String.format("BOOKING_APPROVED|%d|%s|%s|%s|%s",
+                booking, ticket, "Aline Uwase", event, amount));
+        }
+
+        textWire = encodeText();
+        envelopeWire = encodeEnvelope();
+        long textBytes = 0;
+        long bodyChars = 0;
+        for (int i = 0; i < notifications; i++) {
+            textBytes += textWire.get(i).getLength();
+            bodyChars += bodies.get(i).length();
+        }
+        System.out.printf("%n  %d notifications: text bodies %.1f chars, TextMessages %.1f B, envelope %.1f B per notification%n",
+            notifications, (double) bodyChars / notifications, (double) textBytes / notifications,
+            (double) envelopeWire.getLength() / notifications);
+    }
+
+    private void add(String type, int booking, String text) {
+        if (bodies.size() < notifications) {
+            types.add(type);
+            bookingIds.add(String.valueOf(booking));
+            bodies.add(text);
+        }
+    }
+
+    @Benchmark
+    public List<ByteSequence> encodeText() throws Exception {
+        List<ByteSequence> sent = new ArrayList<>(notifications);
+        for (int i = 0; i < notifications; i++) {
+            ActiveMQTextMessage message = new ActiveMQTextMessage();
+            message.setText(bodies.get(i));
+            message.setStringProperty("notificationType", types.get(i));
+            message.setStringProperty("userId", "42");
+            message.setStringProperty("bookingId", bookingIds.get(i));
+            message.setStringProperty("targetRole", "customer");
+            sent.add(wire.marshal(stamp(message)));
+        }
+        return sent;
+    }
+
+    @Benchmark
+    public ByteSequence encodeEnvelope() throws Exception {
+        ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        writer.reset();
+        long now = System.currentTimeMillis();
+        for (String text : bodies) {
+            writer.add(text, now, false);
+        }
+        writer.writeTo(message);
+        message.setStringProperty("targetRole", "customer");
+        message.setStringProperty("userId", "42");
+        message.setIntProperty("notificationCount", writer.count());
+        // The session's send does this before the message reaches the wire
+        message.storeContent();
+        return wire.marshal(stamp(message));
+    }
+
+    @Benchmark
+    public int decodeText() throws Exception {
+        int chars = 0;
+        for (ByteSequence received : textWire) {
+            ActiveMQTextMessage message = (ActiveMQTextMessage) wire.unmarshal(received);
+            chars += message.getStringProperty("notificationType").length() + message.getText().length();
+        }
+        return chars;
+    }
+
+    @Benchmark
+    public int decodeEnvelope() throws Exception {
+        ActiveMQBytesMessage message = (ActiveMQBytesMessage) wire.unmarshal(envelopeWire);
+        message.reset();
+        int length = (int) message.getBodyLength();
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        message.readBytes(buffer, length);
+        reader.reset(buffer, length);
+        int chars = 0;
+        while (reader.next()) {
+            body.setLength(0);
+            chars += reader.appendBody(body).length();
+        }
+        return chars;
+    }
+
+    // Headers the producer sets on every message
+    private ActiveMQMessage stamp(ActiveMQMessage message) {
+        message.setMessageId(new MessageId("ID:event-server-40123-1790000000000-1:1:1:1", ++sequence));
+        message.setDestination(TOPIC);
+        message.setPersistent(true);
+        message.setTimestamp(System.currentTimeMillis());
+        message.setExpiration(message.getTimestamp() + 72L * 3_600_000);
+        return message;
+    }
+}
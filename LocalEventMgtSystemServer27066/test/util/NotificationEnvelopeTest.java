@@ -0,0 +1,180 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * NotificationEnvelope encoding and decoding
+ *
+ * @author 27066
+ */
+class NotificationEnvelopeTest {
+
+    private static final long BASE = 1_790_000_000_000L;
+
+    @Test
+    void everyTypeRoundTrips() {
+        List<String> bodies = List.of(
+            "PAYMENT_CONFIRMED|41|TKT-2T8OFSYU2LMOV|aline@example.com|0788123456|Aline Uwase|Kigali Jazz Night|15000.00|paid",
+            "TICKET_READY|41|TKT-2T8OFSYU2LMOV|aline@example.com|null|Aline Uwase|Kigali Jazz Night",
+            "BOOKING_APPROVED|41|TKT-2T8OFSYU2LMOV|Aline Uwase|Kigali Jazz Night|15000.00",
+            "NEW_EVENT|7|Kigali Jazz Night|Live music | food|2026-12-31|18:30:00",
+            "NEW_EVENT|8|Unscheduled||||",
+            "NEW_BOOKING|42|3|Jean Habimana|jean@example.com|Café Umuganda ☕|TKT-2T8OFSYU2LMOW|0.05|pending",
+            "NEW_GROUP_BOOKING|3|0|2 customers|9|-120.50|Kigali Jazz Night, Café Umuganda ☕",
+            "EVENT_EXPIRED|7|Kigali Jazz Night|2024-02-29",
+            "DIGEST|9|3|PAYMENT_CONFIRMED=3;TICKET_READY=3;BOOKING_APPROVED=3|2|Kigali Jazz Night\u001FFestival 🎉",
+            "DIGEST|2|1|PAYMENT_CONFIRMED=1;BOOKING_APPROVED=1|1|Kigali Jazz Night"
+                + "\u001DPAYMENT_CONFIRMED|41|TKT-1|a@b.c|null|Aline|Kigali Jazz Night|15000.00|paid"
+                + "\u001EBOOKING_APPROVED|41|TKT-1|Aline|Kigali Jazz Night|15000.00");
+
+        assertEquals(bodies, decode(encode(bodies)));
+    }
+
+    @Test
+    void unknownTypesAndNonCanonicalFieldsKeepTheirText() {
+        List<String> bodies = List.of(
+            "RESERVATION_DELAYED|TKT-2T8OFSYU2LMOV|7|Kigali Jazz Night|3|2|30000.00|5",
+            "NO_FIELDS",
+            "PAYMENT_CONFIRMED|041|TKT-1|a@b.c|1|Name|Event|10.00|paid", // leading zero
+            "BOOKING_APPROVED|41|TKT-1|Name|Event|10.5",                   // not %.2f
+            "EVENT_EXPIRED|7|Event|2026-02-30",                            // no such day
+            "NEW_EVENT|7|Event||2026-01-01|25:00:00",                      // no such time
+            "TICKET_READY|41|too|few|fields",
+            "DIGEST|1|1|X=1|0|",
+            "");
+
+        assertEquals(bodies, decode(encode(bodies)));
+    }
+
+    @Test
+    void repeatedStringsPastTheLiteralTableRoundTrip() {
+        // More distinct e-mails than numbered literals, each sent twice
+        List<String> bodies = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 400; i++) {
+                bodies.add("TICKET_READY|" + i + "|TKT-" + i + "|customer" + i + "@example.com|null|Customer " + i + "|Event " + i % 3);
+            }
+        }
+
+        byte[] envelope = encode(bodies);
+        assertEquals(bodies, decode(envelope));
+        int text = bodies.stream().mapToInt(String::length).sum();
+        assertTrue(envelope.length < text, envelope.length + " bytes for " + text + " characters");
+    }
+
+    @Test
+    void groupingAndTimesRoundTrip() {
+        NotificationEnvelope.Writer writer = new NotificationEnvelope.Writer();
+        writer.add("PAYMENT_CONFIRMED|1|T|e|p|n|Event|1.00|paid", BASE, false)
+            .add("TICKET_READY|1|T|e|p|n|Event", BASE, true)
+            .add("NEW_EVENT|2|Event|d|2026-01-01|", BASE - 5000, false)
+            .add("EVENT_EXPIRED|2|Event|", BASE + 86_400_000, true);
+        byte[] envelope = writer.toByteArray();
+
+        NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader().reset(envelope, envelope.length);
+        assertEquals(4, reader.count());
+        boolean[] grouped = new boolean[4];
+        long[] times = new long[4];
+        for (int i = 0; reader.next(); i++) {
+            grouped[i] = reader.isGrouped();
+            times[i] = reader.createdAt();
+        }
+        assertArrayEquals(new boolean[] {false, true, false, true}, grouped);
+        assertArrayEquals(new long[] {BASE, BASE, BASE - 5000, BASE + 86_400_000}, times);
+
+        // A writer is reusable after reset; the first record never joins a previous one
+        writer.reset().add("TICKET_READY|1|T|e|p|n|Event", BASE, true);
+        byte[] single = writer.toByteArray();
+        reader.reset(single, single.length);
+        assertTrue(reader.next());
+        assertFalse(reader.isGrouped());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void unsupportedVersionsAndDamageAreRejected() {
+        byte[] envelope = encode(List.of("EVENT_EXPIRED|7|Kigali Jazz Night|2026-12-31"));
+        NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader();
+
+        byte[] newer = envelope.clone();
+        newer[1] = NotificationEnvelope.VERSION + 1;
+        IllegalArgumentException rejected = assertThrows(IllegalArgumentException.class,
+            () -> reader.reset(newer, newer.length));
+        assertTrue(rejected.getMessage().contains("version " + (NotificationEnvelope.VERSION + 1)), rejected.getMessage());
+
+        byte[] zero = envelope.clone();
+        zero[1] = 0;
+        assertThrows(IllegalArgumentException.class, () -> reader.reset(zero, zero.length));
+
+        byte[] text = "EVENT_EXPIRED|7".getBytes();
+        assertThrows(IllegalArgumentException.class, () -> reader.reset(text, text.length));
+        assertThrows(IllegalArgumentException.class, () -> reader.reset(envelope, 1));
+
+        reader.reset(envelope, envelope.length - 3);
+        assertThrows(IllegalArgumentException.class, reader::next);
+
+        byte[] badType = envelope.clone();
+        int head = headerLength(envelope);
+        badType[head] = 0x3F;
+        reader.reset(badType, badType.length);
+        assertThrows(IllegalArgumentException.class, reader::next);
+    }
+
+    @Test
+    void clientCopyIsIdentical() throws Exception {
+        // The desktop client carries its own copy; both must read and write the same bytes
+        Path server = Paths.get("src/util/NotificationEnvelope.java");
+        Path client = Paths.get("../LocalEventMgtSystemClient27066/src/util/NotificationEnvelope.java");
+        assertTrue(Files.exists(client), client.toAbsolutePath().toString());
+        assertEquals(Files.readAllLines(server), Files.readAllLines(client));
+    }
+
+    private static byte[] encode(List<String> bodies) {
+        NotificationEnvelope.Writer writer = new NotificationEnvelope.Writer();
+        for (int i = 0; i < bodies.size(); i++) {
+            writer.add(bodies.get(i), BASE + i * 1000L, false);
+        }
+        return writer.toByteArray();
+    }
+
+    private static List<String> decode(byte[] envelope) {
+        // Trailing spare capacity, as in the client's reused receive buffer
+        byte[] buffer = Arrays.copyOf(envelope, envelope.length + 64);
+        NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader().reset(buffer, envelope.length);
+        List<String> bodies = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (long i = 0; reader.next(); i++) {
+            body.setLength(0);
+            String decoded = reader.appendBody(body).toString();
+            int typeEnd = decoded.indexOf('|');
+            assertEquals(typeEnd < 0 ? decoded : decoded.substring(0, typeEnd), reader.type());
+            assertEquals(BASE + i * 1000L, reader.createdAt());
+            bodies.add(decoded);
+        }
+        assertEquals(bodies.size(), reader.count());
+        return bodies;
+    }
+
+    // 'N', version, then the record count and base time as varints
+    private static int headerLength(byte[] envelope) {
+        int position = 2;
+        for (int varints = 0; varints < 2; varints++) {
+            while (envelope[position++] < 0) {
+                // continuation byte
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,133 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dao.InboxDao;
+import dao.TestDatabase;
+import dao.UnitOfWork;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import model.Booking;
+import model.InboxNotification;
+import model.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * NotificationService coalescing against the embedded database: what a bulk payment
+ * writes to each customer's inbox and to the outbox
+ *
+ * @author 27066
+ */
+class NotificationServiceTest {
+
+    private final InboxDao inbox = new InboxDao();
+    private int nextBookingId = ThreadLocalRandom.current().nextInt(1_000_000, 100_000_000);
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @Test
+    void bulkPaymentIsCoalescedPerRecipientAndSubject() throws Exception {
+        User single = TestDatabase.createUser();
+        User pair = TestDatabase.createUser();
+        User bulk = TestDatabase.createUser();
+        List<Booking> bookings = new ArrayList<>();
+        Booking alone = booking(single, "Kigali Jazz Night", 15000);
+        bookings.add(alone);
+        List<Booking> pairs = List.of(booking(pair, "Kigali Jazz Night", 5000), booking(pair, "Umuganda Food Festival", 7500));
+        List<Booking> many = List.of(booking(bulk, "Kigali Jazz Night", 10000), booking(bulk, "Kigali Jazz Night", 20000),
+            booking(bulk, "Lake Kivu Half Marathon", 12500.5));
+        // Interleaved, as a reconciliation run reports them
+        for (int i = 0; i < 3; i++) {
+            bookings.add(many.get(i));
+            if (i < pairs.size()) {
+                bookings.add(pairs.get(i));
+            }
+        }
+
+        // Written when the unit of work commits, coalesced across everything it published
+        UnitOfWork.execute(ss -> {
+            NotificationService.getInstance().sendPaymentConfirmedBatch(bookings);
+            return null;
+        });
+
+        // One booking: its three notifications become one COMPOSITE
+        List<InboxNotification> singles = inbox.fetchSince(single.getUserId(), 0, 10);
+        assertEquals(1, singles.size());
+        assertComposite(singles.get(0), alone);
+
+        // Two bookings, under the digest threshold: one COMPOSITE per booking, never merged across bookings
+        List<InboxNotification> pairRows = inbox.fetchSince(pair.getUserId(), 0, 10);
+        assertEquals(2, pairRows.size());
+        assertComposite(pairRows.get(0), pairs.get(0));
+        assertComposite(pairRows.get(1), pairs.get(1));
+
+        // Three bookings: one DIGEST that still carries every booking's notifications
+        List<InboxNotification> bulkRows = inbox.fetchSince(bulk.getUserId(), 0, 10);
+        assertEquals(1, bulkRows.size());
+        String digest = bulkRows.get(0).getBody();
+        assertEquals("DIGEST", bulkRows.get(0).getNotificationType());
+        String[] items = digest.split("\u001D");
+        assertEquals("DIGEST|9|3|PAYMENT_CONFIRMED=3;TICKET_READY=3;BOOKING_APPROVED=3|2|"
+            + "Kigali Jazz Night\u001FLake Kivu Half Marathon", items[0]);
+        assertEquals(4, items.length);
+        for (int i = 0; i < many.size(); i++) {
+            Booking booking = many.get(i);
+            String[] members = items[i + 1].split("\u001E");
+            assertEquals(3, members.length);
+            assertTrue(members[0].startsWith("PAYMENT_CONFIRMED|" + booking.getBookingId() + "|" + booking.getTicketNumber() + "|"));
+            assertTrue(members[0].contains(String.format("|%.2f|", booking.getTotalAmount())), members[0]);
+            assertTrue(members[2].endsWith(String.format("|%.2f", booking.getTotalAmount())), members[2]);
+        }
+
+        // The outbox carries the same messages as the inboxes: one per booking, or one digest
+        assertEquals(1, outboxRows(single));
+        assertEquals(2, outboxRows(pair));
+        assertEquals(1, outboxRows(bulk));
+        assertEquals(1, inbox.unreadCount(bulk.getUserId()));
+    }
+
+    private Booking booking(User user, String eventName, double amount) {
+        Booking booking = new Booking();
+        booking.setBookingId(nextBookingId++);
+        booking.setTicketNumber("TKT-" + booking.getBookingId());
+        booking.setNumberOfTickets(1);
+        booking.setTotalAmount(amount);
+        booking.setPaymentStatus("paid");
+        booking.setEventId(1);
+        booking.setEventName(eventName);
+        booking.setUserId(user.getUserId());
+        booking.setUserName(user.getFullName());
+        booking.setUserEmail(user.getEmail());
+        return booking;
+    }
+
+    private static void assertComposite(InboxNotification row, Booking booking) {
+        assertEquals(NotificationService.COMPOSITE, row.getNotificationType());
+        String[] members = row.getBody().split("\u001E");
+        assertEquals(3, members.length);
+        assertTrue(members[0].startsWith("PAYMENT_CONFIRMED|" + booking.getBookingId() + "|" + booking.getTicketNumber() + "|"));
+        assertTrue(members[1].startsWith("TICKET_READY|" + booking.getBookingId() + "|"));
+        assertTrue(members[2].startsWith("BOOKING_APPROVED|" + booking.getBookingId() + "|"));
+    }
+
+    private static int outboxRows(User user) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(
+                 "SELECT COUNT(*) FROM notification_outbox WHERE properties ~ ?")) {
+            ps.setString(1, "(^|\n)userId=" + user.getUserId() + "(\n|$)");
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
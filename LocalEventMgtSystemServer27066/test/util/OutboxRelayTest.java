@@ -0,0 +1,117 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dao.OutboxDao;
+import dao.TestDatabase;
+import dao.UnitOfWork;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.jms.BytesMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * OutboxRelay against the embedded database and the in-VM broker
+ *
+ * @author 27066
+ */
+class OutboxRelayTest {
+
+    @BeforeAll
+    static void startDatabaseAndBroker() throws Exception {
+        TestDatabase.start();
+        EmbeddedBroker.start();
+    }
+
+    @AfterEach
+    void stopRelay() {
+        OutboxRelay.getInstance().stop();
+    }
+
+    @Test
+    void committedRowsArePublishedAndMarkedDelivered() throws Exception {
+        String name = "Relay " + UUID.randomUUID();
+        List<String> bodies = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            bodies.add("EVENT_EXPIRED|" + (900_000 + i) + "|" + name + " " + i + "|2026-12-31");
+        }
+
+        javax.jms.Connection connection = new ActiveMQConnectionFactory(EmbeddedBroker.getVmUrl()).createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer admin = session.createConsumer(session.createTopic("notifications.admin"), "targetRole = 'admin'");
+
+            // Written in one transaction, as NotificationService does for a commit
+            OutboxDao outbox = new OutboxDao();
+            UnitOfWork.execute(ss -> {
+                for (int i = 0; i < bodies.size(); i++) {
+                    Map<String, String> properties = new LinkedHashMap<>();
+                    properties.put("notificationType", "EVENT_EXPIRED");
+                    properties.put("eventId", String.valueOf(900_001 + i));
+                    properties.put("targetRole", "admin");
+                    assertTrue(outbox.append("EVENT_EXPIRED", bodies.get(i), properties));
+                }
+                return null;
+            });
+            OutboxRelay.getInstance().start();
+
+            // Rows other tests left behind may be published too; only this test's are checked
+            List<String> received = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + 15_000;
+            while (!received.containsAll(bodies) && System.currentTimeMillis() < deadline) {
+                Message message = admin.receive(500);
+                if (message instanceof BytesMessage) {
+                    received.addAll(bodies((BytesMessage) message));
+                }
+            }
+            assertTrue(received.containsAll(bodies), "received " + received);
+        } finally {
+            connection.close();
+        }
+
+        // Settled after the broker confirmed
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delivered(name) < bodies.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(bodies.size(), delivered(name));
+    }
+
+    private static List<String> bodies(BytesMessage message) throws Exception {
+        byte[] envelope = new byte[(int) message.getBodyLength()];
+        message.readBytes(envelope);
+        NotificationEnvelope.Reader reader = new NotificationEnvelope.Reader().reset(envelope, envelope.length);
+        assertEquals(message.getIntProperty("notificationCount"), reader.count());
+        List<String> bodies = new ArrayList<>();
+        while (reader.next()) {
+            bodies.add(reader.appendBody(new StringBuilder()).toString());
+        }
+        return bodies;
+    }
+
+    private static int delivered(String name) throws Exception {
+        try (Connection connection = TestDatabase.connect();
+             PreparedStatement ps = connection.prepareStatement(
+                 "SELECT COUNT(*) FROM notification_outbox WHERE body LIKE ? AND delivered_at IS NOT NULL")) {
+            ps.setString(1, "%" + name + "%");
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TicketNumberGenerator uniqueness, ordering and check character
+ *
+ * @author 27066
+ */
+class TicketNumberGeneratorTest {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    @Test
+    void concurrentIdsAreUniqueAndMonotonicPerThread() throws Exception {
+        // 4M ids is far above 4096 per millisecond, so the sequence overflows into borrowed milliseconds
+        int threads = 8;
+        int idsPerThread = 500_000;
+        TicketNumberGenerator generator = new TicketNumberGenerator(7);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                long[] ids = new long[idsPerThread];
+                go.await();
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids[i] = generator.nextId();
+                }
+                return ids;
+            }));
+        }
+        go.countDown();
+
+        long[] all = new long[threads * idsPerThread];
+        int n = 0;
+        for (Future<long[]> result : results) {
+            long[] ids = result.get();
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1], "ids went backwards within a thread");
+            }
+            System.arraycopy(ids, 0, all, n, ids.length);
+            n += ids.length;
+        }
+        pool.shutdown();
+
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "duplicate id");
+        }
+        for (long id : all) {
+            assertEquals(7, (id >>> 12) & 1023, "node bits");
+        }
+    }
+
+    @Test
+    void nodesNeverCollide() {
+        TicketNumberGenerator a = new TicketNumberGenerator(1);
+        TicketNumberGenerator b = new TicketNumberGenerator(2);
+        long[] ids = new long[20_000];
+        for (int i = 0; i < ids.length; i += 2) {
+            ids[i] = a.nextId();
+            ids[i + 1] = b.nextId();
+        }
+        assertEquals(ids.length, Arrays.stream(ids).distinct().count());
+    }
+
+    @Test
+    void nodeIdOutOfRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TicketNumberGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new TicketNumberGenerator(1024));
+    }
+
+    @Test
+    void checkCharacterCatchesSingleCharacterErrors() {
+        TicketNumberGenerator generator = new TicketNumberGenerator(0);
+        for (int k = 0; k < 200; k++) {
+            String ticket = generator.nextTicketNumber();
+            assertTrue(TicketNumberGenerator.isValid(ticket), ticket);
+            assertTrue(TicketNumberGenerator.isValid(ticket.toLowerCase().replace("tkt-", "TKT-")), ticket);
+            for (int i = TicketNumberGenerator.PREFIX.length(); i < ticket.length(); i++) {
+                for (char c : ALPHABET.toCharArray()) {
+                    if (c != ticket.charAt(i)) {
+                        String typo = ticket.substring(0, i) + c + ticket.substring(i + 1);
+                        assertFalse(TicketNumberGenerator.isValid(typo), typo);
+                    }
+                }
+            }
+        }
+        assertFalse(TicketNumberGenerator.isValid("TKT-1700000000000"));
+        assertFalse(TicketNumberGenerator.isValid(null));
+    }
+}
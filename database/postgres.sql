@@ -42,13 +42,15 @@ CREATE TABLE IF NOT EXISTS events (
     venue_id INTEGER REFERENCES venues(venue_id) ON DELETE RESTRICT,
     organizer_id INTEGER REFERENCES users(user_id) ON DELETE RESTRICT,
     capacity INTEGER NOT NULL,
+    remaining_capacity INTEGER CHECK (remaining_capacity >= 0),
     ticket_price DECIMAL(10,2) NOT NULL CHECK (ticket_price >= 0),
     vvip_price DECIMAL(10,2),
     vip_price DECIMAL(10,2),
     casual_price DECIMAL(10,2),
     pricing_type VARCHAR(20) DEFAULT 'single',
     status VARCHAR(20) CHECK (status IN ('scheduled', 'ongoing', 'completed', 'cancelled')),
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expiry_notified_at TIMESTAMP
 );
 
 -- Create bookings table
@@ -109,6 +111,37 @@ CREATE TABLE IF NOT EXISTS event_tags (
     PRIMARY KEY (event_id, tag_id)
 );
 
+-- Notification outbox: broker messages written in the same transaction as the
+-- booking/event change they announce, published by util.OutboxRelay
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    outbox_id BIGSERIAL PRIMARY KEY,
+    notification_type VARCHAR(40) NOT NULL,
+    body TEXT NOT NULL,
+    properties TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    delivered_at TIMESTAMP,
+    available_at TIMESTAMP,   -- relay lease or retry backoff; NULL = due now
+    failed_at TIMESTAMP       -- dead-lettered after notifications.outbox.maxAttempts
+);
+
+-- Per-user notification inbox: appended with the outbox row, read by desktops through
+-- the notificationService RMI service; only read_at is ever updated
+CREATE TABLE IF NOT EXISTS notification_inbox (
+    notification_id BIGSERIAL PRIMARY KEY,
+    user_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    notification_type VARCHAR(40) NOT NULL,
+    body TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    read_at TIMESTAMP
+);
+
+-- Unread inbox rows per user, adjusted by the statements that append or mark them
+CREATE TABLE IF NOT EXISTS notification_unread (
+    user_id INTEGER PRIMARY KEY REFERENCES users(user_id) ON DELETE CASCADE,
+    unread_count INTEGER NOT NULL DEFAULT 0
+);
+
 -- =====================================================
 -- INDEXES FOR PERFORMANCE
 -- =====================================================
@@ -121,6 +154,38 @@ CREATE INDEX IF NOT EXISTS idx_events_date ON events(event_date);
 CREATE INDEX IF NOT EXISTS idx_bookings_user ON bookings(user_id);
 CREATE INDEX IF NOT EXISTS idx_bookings_event ON bookings(event_id);
 CREATE INDEX IF NOT EXISTS idx_bookings_ticket_number ON bookings(ticket_number);
+-- Keyset pagination for booking search (ORDER BY booking_date DESC NULLS LAST, booking_id DESC)
+CREATE INDEX IF NOT EXISTS idx_bookings_date_id ON bookings(booking_date DESC NULLS LAST, booking_id DESC);
+-- Ticket-number prefix search (LIKE 'prefix%') under any collation
+CREATE INDEX IF NOT EXISTS idx_bookings_ticket_prefix ON bookings(ticket_number text_pattern_ops);
+-- Events still waiting for their EVENT_EXPIRED notice (util.EventExpirySweeper)
+CREATE INDEX IF NOT EXISTS idx_events_expiry_pending ON events(event_date) WHERE expiry_notified_at IS NULL;
+-- Outbox rows the relay still has to publish (claimed in outbox_id order)
+CREATE INDEX IF NOT EXISTS idx_outbox_pending ON notification_outbox(outbox_id) WHERE delivered_at IS NULL AND failed_at IS NULL;
+-- Inbox paging (WHERE user_id = ? AND notification_id > ? ORDER BY notification_id)
+CREATE INDEX IF NOT EXISTS idx_inbox_user_id ON notification_inbox(user_id, notification_id);
+
+-- =====================================================
+-- ID SEQUENCES (pooled-lo, allocationSize 50)
+-- =====================================================
+-- Hibernate reserves 50 ids per nextval so inserts can be JDBC-batched.
+-- The server applies this automatically on startup (dao.SequenceMigration).
+
+ALTER SEQUENCE users_user_id_seq INCREMENT BY 50;
+ALTER SEQUENCE venues_venue_id_seq INCREMENT BY 50;
+ALTER SEQUENCE events_event_id_seq INCREMENT BY 50;
+ALTER SEQUENCE bookings_booking_id_seq INCREMENT BY 50;
+ALTER SEQUENCE user_profiles_profile_id_seq INCREMENT BY 50;
+ALTER SEQUENCE event_tags_tag_id_seq INCREMENT BY 50;
+ALTER SEQUENCE notification_outbox_outbox_id_seq INCREMENT BY 50;
+
+SELECT setval('users_user_id_seq', COALESCE((SELECT MAX(user_id) FROM users), 0) + 1, false);
+SELECT setval('venues_venue_id_seq', COALESCE((SELECT MAX(venue_id) FROM venues), 0) + 1, false);
+SELECT setval('events_event_id_seq', COALESCE((SELECT MAX(event_id) FROM events), 0) + 1, false);
+SELECT setval('bookings_booking_id_seq', COALESCE((SELECT MAX(booking_id) FROM bookings), 0) + 1, false);
+SELECT setval('user_profiles_profile_id_seq', COALESCE((SELECT MAX(profile_id) FROM user_profiles), 0) + 1, false);
+SELECT setval('event_tags_tag_id_seq', COALESCE((SELECT MAX(tag_id) FROM event_tags), 0) + 1, false);
+SELECT setval('notification_outbox_outbox_id_seq', COALESCE((SELECT MAX(outbox_id) FROM notification_outbox), 0) + 1, false);
 
 -- =====================================================
 -- INITIAL DATA